@@ -148,6 +148,11 @@ public class StreamCatalogService {
                                                                               UDF3.class, UDF4.class, UDF5.class, UDF6.class, UDF7.class);
     public static final long PLACEHOLDER_ID = -1L;
     private static final String CLONE_SUFFIX = "-clone";
+    // the processors without state per key, which accept the keys split across tasks by the partial key grouping
+    // and whose bolts report the inputLoad of each task
+    private static final Set<String> PARTIAL_KEY_GROUPING_PROCESSORS = ImmutableSet.of(ComponentTypes.RULE,
+            ComponentTypes.BRANCH, ComponentTypes.PROJECTION, ComponentTypes.NORMALIZATION, ComponentTypes.SPLIT,
+            ComponentTypes.STAGE);
 
     private final StorageManager dao;
     private final FileStorage fileStorage;
@@ -1680,6 +1685,14 @@ public class StreamCatalogService {
         }
         // check the fields specified in the fields grouping is a subset of the stream fields
         for (StreamGrouping streamGrouping : edge.getStreamGroupings()) {
+            if (streamGrouping.getGrouping() == Stream.Grouping.PARTIAL_KEY
+                    && (streamGrouping.getFields() == null || streamGrouping.getFields().isEmpty())) {
+                throw new IllegalArgumentException("Partial key grouping of stream " + streamGrouping.getStreamId() +
+                        " must specify the fields to group by");
+            }
+            if (streamGrouping.getGrouping() == Stream.Grouping.PARTIAL_KEY) {
+                validatePartialKeyGroupingTarget(edge, processor);
+            }
             List<String> fields;
             if ((fields = streamGrouping.getFields()) != null) {
                 Set<String> schemaFieldPatterns = getFieldPatterns(
@@ -1694,6 +1707,40 @@ public class StreamCatalogService {
         }
     }
 
+    // a key split across tasks can only go to a stateless processor or to windowed rules merging partial aggregates
+    void validatePartialKeyGroupingTarget(TopologyEdge edge, TopologyProcessor processor) {
+        if (processor != null) {
+            TopologyComponentBundle bundle = getTopologyComponentBundle(processor.getTopologyComponentBundleId());
+            String subType = bundle != null ? bundle.getSubType() : null;
+            if (PARTIAL_KEY_GROUPING_PROCESSORS.contains(subType)
+                    || (ComponentTypes.WINDOW.equals(subType) && isTwoPhaseAggregation(processor))) {
+                return;
+            }
+        }
+        throw new IllegalArgumentException("Partial key grouping of edge " + edge + " splits the keys across tasks, " +
+                "it can only go to a stateless processor or to windowed rules with two phase aggregation");
+    }
+
+    private boolean isTwoPhaseAggregation(TopologyProcessor processor) {
+        if (!processor.getConfig().getBoolean(RulesProcessor.CONFIG_KEY_TWO_PHASE_AGGREGATION, false)) {
+            return false;
+        }
+        Object ruleList = processor.getConfig().getAnyOptional(RulesProcessor.CONFIG_KEY_RULES).orElse(null);
+        if (ruleList == null) {
+            return false;
+        }
+        List<Long> windowIds = new ObjectMapper().convertValue(ruleList, new TypeReference<List<Long>>() {
+        });
+        for (Long windowId : windowIds) {
+            WindowInfo windowInfo = getWindow(processor.getTopologyId(), windowId, processor.getVersionId());
+            if (windowInfo == null || windowInfo.getWindow() == null
+                    || !RulesProcessor.supportsTwoPhaseAggregation(windowInfo.getWindow())) {
+                return false;
+            }
+        }
+        return true;
+    }
+
     private Set<String> getFieldPatterns(List<Schema.Field> fields) {
         if (fields == null || fields.isEmpty()) {
             return Collections.emptySet();
@@ -2047,11 +2094,11 @@ public class StreamCatalogService {
         return windowInfo;
     }
 
-    public WindowInfo getWindow(Long topologyId, Long windowId) throws Exception {
+    public WindowInfo getWindow(Long topologyId, Long windowId) {
         return getWindow(topologyId, windowId, getCurrentVersionId(topologyId));
     }
 
-    public WindowInfo getWindow(Long topologyId, Long windowId, Long versionId) throws Exception {
+    public WindowInfo getWindow(Long topologyId, Long windowId, Long versionId) {
         WindowInfo topologyWindowInfo = new WindowInfo();
         topologyWindowInfo.setId(windowId);
         topologyWindowInfo.setVersionId(versionId);
@@ -19,17 +19,26 @@ import mockit.Expectations;
 import mockit.Injectable;
 import mockit.Tested;
 import mockit.integration.junit4.JMockit;
+import com.hortonworks.streamline.common.ComponentTypes;
+import com.hortonworks.streamline.common.Config;
 import com.hortonworks.streamline.common.util.FileStorage;
 import com.hortonworks.streamline.registries.model.client.MLModelRegistryClient;
 import com.hortonworks.streamline.storage.StorableKey;
 import com.hortonworks.streamline.storage.StorageManager;
 import com.hortonworks.streamline.streams.catalog.Topology;
+import com.hortonworks.streamline.streams.catalog.TopologyEdge;
+import com.hortonworks.streamline.streams.catalog.TopologyProcessor;
 import com.hortonworks.streamline.streams.catalog.TopologyVersionInfo;
+import com.hortonworks.streamline.streams.catalog.WindowInfo;
+import com.hortonworks.streamline.streams.catalog.topology.TopologyComponentBundle;
+import com.hortonworks.streamline.streams.layout.component.impl.RulesProcessor;
+import com.hortonworks.streamline.streams.layout.component.rule.expression.Window;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.List;
 import java.util.Map;
 import java.util.stream.Collectors;
@@ -133,5 +142,75 @@ public class StreamCatalogServiceTest {
         assertEquals("foo-clone10", streamCatalogService.getLatestCloneName("foo", topologies).get());
     }
 
+    @Test
+    public void testPartialKeyGroupingIntoStatelessProcessor() {
+        TopologyProcessor processor = createProcessor(new Config());
+        expectBundle(ComponentTypes.RULE);
+        streamCatalogService.validatePartialKeyGroupingTarget(new TopologyEdge(), processor);
+    }
+
+    @Test
+    public void testPartialKeyGroupingIntoTwoPhaseWindow() throws Exception {
+        TopologyProcessor processor = createProcessor(createWindowConfig(true));
+        TopologyComponentBundle bundle = createBundle(ComponentTypes.WINDOW);
+        WindowInfo windowInfo = new WindowInfo();
+        windowInfo.setWindow(new Window("{\"windowLength\":{\"class\":\".Window$Duration\",\"durationMs\":1000}}"));
+        new Expectations(streamCatalogService) {{
+            streamCatalogService.getTopologyComponentBundle(10L);
+            result = bundle;
+            streamCatalogService.getWindow(1L, 5L, 1L);
+            result = windowInfo;
+        }};
+        streamCatalogService.validatePartialKeyGroupingTarget(new TopologyEdge(), processor);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testPartialKeyGroupingIntoSinglePhaseWindowRejected() {
+        TopologyProcessor processor = createProcessor(createWindowConfig(false));
+        expectBundle(ComponentTypes.WINDOW);
+        streamCatalogService.validatePartialKeyGroupingTarget(new TopologyEdge(), processor);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testPartialKeyGroupingIntoJoinRejected() {
+        TopologyProcessor processor = createProcessor(new Config());
+        expectBundle(ComponentTypes.JOIN);
+        streamCatalogService.validatePartialKeyGroupingTarget(new TopologyEdge(), processor);
+    }
 
-}
\ No newline at end of file
+    @Test(expected = IllegalArgumentException.class)
+    public void testPartialKeyGroupingIntoSinkRejected() {
+        // the target of the edge is a sink, not a processor
+        streamCatalogService.validatePartialKeyGroupingTarget(new TopologyEdge(), null);
+    }
+
+    private TopologyProcessor createProcessor(Config config) {
+        TopologyProcessor processor = new TopologyProcessor();
+        processor.setTopologyId(1L);
+        processor.setVersionId(1L);
+        processor.setTopologyComponentBundleId(10L);
+        processor.setConfig(config);
+        return processor;
+    }
+
+    private TopologyComponentBundle createBundle(String subType) {
+        TopologyComponentBundle bundle = new TopologyComponentBundle();
+        bundle.setSubType(subType);
+        return bundle;
+    }
+
+    private void expectBundle(String subType) {
+        TopologyComponentBundle bundle = createBundle(subType);
+        new Expectations(streamCatalogService) {{
+            streamCatalogService.getTopologyComponentBundle(10L);
+            result = bundle;
+        }};
+    }
+
+    private Config createWindowConfig(boolean twoPhaseAggregation) {
+        Config config = new Config();
+        config.put(RulesProcessor.CONFIG_KEY_TWO_PHASE_AGGREGATION, twoPhaseAggregation);
+        config.setAny(RulesProcessor.CONFIG_KEY_RULES, Collections.singletonList(5L));
+        return config;
+    }
+}
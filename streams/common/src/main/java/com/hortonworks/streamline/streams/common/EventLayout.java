@@ -0,0 +1,174 @@
+/**
+  * Copyright 2017 Hortonworks.
+  *
+  * Licensed under the Apache License, Version 2.0 (the "License");
+  * you may not use this file except in compliance with the License.
+  * You may obtain a copy of the License at
+
+  *   http://www.apache.org/licenses/LICENSE-2.0
+
+  * Unless required by applicable law or agreed to in writing, software
+  * distributed under the License is distributed on an "AS IS" BASIS,
+  * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  * See the License for the specific language governing permissions and
+  * limitations under the License.
+ **/
+package com.hortonworks.streamline.streams.common;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Interner;
+import com.google.common.collect.Interners;
+import com.hortonworks.streamline.common.Schema;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * An interned, ordered set of field names that maps each field to a slot index.
+ * <p>
+ * Events of the same shape share a single {@link EventLayout} instance so that the per event
+ * storage can be a plain array indexed by the slot of a field. Layouts are immutable; a layout
+ * with an extra field is derived via {@link #withField(String)} and keeps the slots of the parent
+ * layout unchanged, so that events derived from a parent can reuse the parent's value array.
+ * </p>
+ */
+public final class EventLayout implements Serializable {
+    private static final Interner<EventLayout> INTERNER = Interners.newWeakInterner();
+
+    public static final EventLayout EMPTY = of(ImmutableList.<String>of());
+
+    private final ImmutableList<String> fieldNames;
+    private final ImmutableMap<String, Integer> indexes;
+    // cached layouts derived by adding a single field to this layout
+    private transient volatile ConcurrentMap<String, EventLayout> extensions;
+
+    private EventLayout(ImmutableList<String> fieldNames) {
+        this.fieldNames = fieldNames;
+        ImmutableMap.Builder<String, Integer> builder = ImmutableMap.builder();
+        for (int i = 0; i < fieldNames.size(); i++) {
+            builder.put(fieldNames.get(i), i);
+        }
+        this.indexes = builder.build();
+    }
+
+    /**
+     * Returns the interned layout for the given field names in the given order.
+     *
+     * @throws IllegalArgumentException if the field names contain duplicates
+     */
+    public static EventLayout of(Collection<String> fieldNames) {
+        return INTERNER.intern(new EventLayout(ImmutableList.copyOf(fieldNames)));
+    }
+
+    /**
+     * Returns the interned layout for the top level fields of the given schema.
+     */
+    public static EventLayout of(Schema schema) {
+        List<String> fieldNames = new ArrayList<>();
+        for (Schema.Field field : schema.getFields()) {
+            fieldNames.add(field.getName());
+        }
+        return of(fieldNames);
+    }
+
+    /**
+     * Returns the interned layout for the keys of the given map in its iteration order.
+     */
+    public static EventLayout of(Map<String, ?> fieldsAndValues) {
+        return of(fieldsAndValues.keySet());
+    }
+
+    /**
+     * Returns the layout with the given field appended after the fields of this layout,
+     * or this layout if it already contains the field.
+     */
+    public EventLayout withField(String fieldName) {
+        if (indexes.containsKey(fieldName)) {
+            return this;
+        }
+        ConcurrentMap<String, EventLayout> cache = extensions;
+        if (cache == null) {
+            synchronized (this) {
+                cache = extensions;
+                if (cache == null) {
+                    extensions = cache = new ConcurrentHashMap<>();
+                }
+            }
+        }
+        EventLayout layout = cache.get(fieldName);
+        if (layout == null) {
+            layout = of(ImmutableList.<String>builder().addAll(fieldNames).add(fieldName).build());
+            EventLayout existing = cache.putIfAbsent(fieldName, layout);
+            if (existing != null) {
+                layout = existing;
+            }
+        }
+        return layout;
+    }
+
+    /**
+     * Returns the slot index of the given field or -1 if the layout does not contain the field.
+     */
+    public int indexOf(Object fieldName) {
+        Integer index = indexes.get(fieldName);
+        return index != null ? index : -1;
+    }
+
+    public String fieldName(int index) {
+        return fieldNames.get(index);
+    }
+
+    public List<String> getFieldNames() {
+        return fieldNames;
+    }
+
+    public int size() {
+        return fieldNames.size();
+    }
+
+    /**
+     * Returns true if the fields of this layout are a prefix of the fields of the other layout,
+     * i.e. every slot of this layout refers to the same field in the other layout.
+     */
+    public boolean isPrefixOf(EventLayout other) {
+        if (this == other) {
+            return true;
+        }
+        if (size() > other.size()) {
+            return false;
+        }
+        return fieldNames.equals(other.fieldNames.subList(0, size()));
+    }
+
+    private Object readResolve() {
+        return INTERNER.intern(this);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+
+        EventLayout that = (EventLayout) o;
+
+        return fieldNames.equals(that.fieldNames);
+    }
+
+    @Override
+    public int hashCode() {
+        return fieldNames.hashCode();
+    }
+
+    @Override
+    public String toString() {
+        return "EventLayout{" +
+                "fieldNames=" + fieldNames +
+                '}';
+    }
+}
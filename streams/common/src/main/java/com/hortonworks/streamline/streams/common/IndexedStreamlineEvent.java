@@ -0,0 +1,483 @@
+/**
+  * Copyright 2017 Hortonworks.
+  *
+  * Licensed under the Apache License, Version 2.0 (the "License");
+  * you may not use this file except in compliance with the License.
+  * You may obtain a copy of the License at
+
+  *   http://www.apache.org/licenses/LICENSE-2.0
+
+  * Unless required by applicable law or agreed to in writing, software
+  * distributed under the License is distributed on an "AS IS" BASIS,
+  * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  * See the License for the specific language governing permissions and
+  * limitations under the License.
+ **/
+package com.hortonworks.streamline.streams.common;
+
+import com.google.common.base.Joiner;
+import com.google.common.base.Predicate;
+import com.google.common.collect.Collections2;
+import com.hortonworks.streamline.streams.StreamlineEvent;
+import com.hortonworks.streamline.streams.common.id.EventId;
+import com.hortonworks.streamline.streams.common.id.EventIdGenerators;
+
+import java.io.Serializable;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.Set;
+
+/**
+ * A {@link StreamlineEvent} that keeps its field values in an array indexed by a shared {@link EventLayout}
+ * instead of copying them into a new map for every event.
+ * <p>
+ * The value storage is never modified after construction, so derived events share it with the event they
+ * were derived from. An event that only differs in the source stream (see {@link #withSourceStream(String)})
+ * shares all of the parent's storage, and an event with additional fields (see {@link #addFieldsAndValues(Map)})
+ * shares the parent's value array and only allocates the slots for the new fields. The auxiliary fields are
+ * copied when an event is derived, the parent is never modified so that it can be read by other threads, and
+ * no auxiliary map is allocated while the event has none.
+ * </p>
+ * <p>
+ * Like {@link StreamlineEventImpl}, the event is an immutable {@link Map} of field names to non null values.
+ * </p>
+ */
+public final class IndexedStreamlineEvent extends AbstractMap<String, Object> implements StreamlineEvent, Serializable {
+    private static final Object[] EMPTY_VALUES = new Object[0];
+
+    private final EventLayout layout;
+    // values for the slots [0, base.length) of the layout, shared with the events this event is derived from
+    private final Object[] base;
+    // values for the slots [base.length, layout.size()) of the layout
+    private final Object[] tail;
+    private final int size;
+    private final Map<String, Object> header;
+    private final String sourceStream;
+    private final String dataSourceId;
+    // binary form of the id if the id was generated, the string form is created lazily from it
+    private final EventId eventId;
+    private String id;
+    private Map<String, Object> auxiliaryFieldsAndValues;
+    // true if the auxiliaryFieldsAndValues is the immutable empty map and has to be replaced before modification
+    private boolean auxiliaryShared;
+
+    private transient Set<Entry<String, Object>> entrySet;
+
+    /**
+     * Creates an event with the given fieldsAndValues, dataSourceId and a generated id.
+     */
+    public IndexedStreamlineEvent(Map<String, Object> fieldsAndValues, String dataSourceId) {
+        this(EventLayout.of(fieldsAndValues), fieldsAndValues, dataSourceId, EventIdGenerators.next(), null,
+                new HashMap<>(), DEFAULT_SOURCE_STREAM, null);
+    }
+
+    /**
+     * Creates an event with the given fieldsAndValues, dataSourceId, id, header, sourceStream and auxiliary fields.
+     * The layout of the event is derived from the iteration order of the fieldsAndValues.
+     */
+    public IndexedStreamlineEvent(Map<String, Object> fieldsAndValues, String dataSourceId, String id,
+                                  Map<String, Object> header, String sourceStream,
+                                  Map<String, Object> auxiliaryFieldsAndValues) {
+        this(EventLayout.of(fieldsAndValues), fieldsAndValues, dataSourceId, null, id, header, sourceStream, auxiliaryFieldsAndValues);
+    }
+
+    /**
+     * Creates an event with the given layout. Fields of the layout that are not present in the fieldsAndValues
+     * are absent in the event and fields of the fieldsAndValues which are not part of the layout are appended
+     * to the layout.
+     */
+    public IndexedStreamlineEvent(EventLayout layout, Map<String, Object> fieldsAndValues, String dataSourceId, String id,
+                                  Map<String, Object> header, String sourceStream,
+                                  Map<String, Object> auxiliaryFieldsAndValues) {
+        this(layout, fieldsAndValues, dataSourceId, null, id, header, sourceStream, auxiliaryFieldsAndValues);
+    }
+
+    /**
+     * Creates an event with the given layout and binary id.
+     *
+     * @see #IndexedStreamlineEvent(EventLayout, Map, String, String, Map, String, Map)
+     */
+    public IndexedStreamlineEvent(EventLayout layout, Map<String, Object> fieldsAndValues, String dataSourceId, EventId eventId,
+                                  Map<String, Object> header, String sourceStream,
+                                  Map<String, Object> auxiliaryFieldsAndValues) {
+        this(layout, fieldsAndValues, dataSourceId, eventId, null, header, sourceStream, auxiliaryFieldsAndValues);
+    }
+
+    private IndexedStreamlineEvent(EventLayout layout, Map<String, Object> fieldsAndValues, String dataSourceId,
+                                   EventId eventId, String id, Map<String, Object> header, String sourceStream,
+                                   Map<String, Object> auxiliaryFieldsAndValues) {
+        Objects.requireNonNull(layout, "layout is null");
+        for (String field : fieldsAndValues.keySet()) {
+            layout = layout.withField(field);
+        }
+        Object[] values = new Object[layout.size()];
+        for (Map.Entry<String, Object> entry : fieldsAndValues.entrySet()) {
+            values[layout.indexOf(entry.getKey())] = checkValue(entry.getKey(), entry.getValue());
+        }
+        this.layout = layout;
+        this.base = values;
+        this.tail = EMPTY_VALUES;
+        this.size = fieldsAndValues.size();
+        this.dataSourceId = dataSourceId;
+        this.eventId = eventId;
+        this.id = id;
+        this.header = header;
+        this.sourceStream = sourceStream;
+        this.auxiliaryFieldsAndValues = auxiliaryFieldsAndValues != null ? new HashMap<>(auxiliaryFieldsAndValues) : new HashMap<>();
+        this.auxiliaryShared = false;
+    }
+
+    /**
+     * Creates an event with the values of the fields of the layout, a null value being an absent field, the given
+     * dataSourceId and a generated id. The event takes the values array as its storage without copying it, so the
+     * caller must not modify the array afterwards.
+     */
+    public static IndexedStreamlineEvent of(EventLayout layout, Object[] values, String dataSourceId) {
+        if (values.length != layout.size()) {
+            throw new IllegalArgumentException("Expected " + layout.size() + " values for layout " + layout
+                    + " but got " + values.length);
+        }
+        int size = 0;
+        for (Object value : values) {
+            if (value != null) {
+                size++;
+            }
+        }
+        return new IndexedStreamlineEvent(layout, values, size, dataSourceId, EventIdGenerators.next());
+    }
+
+    private IndexedStreamlineEvent(EventLayout layout, Object[] values, int size, String dataSourceId, EventId eventId) {
+        this.layout = layout;
+        this.base = values;
+        this.tail = EMPTY_VALUES;
+        this.size = size;
+        this.dataSourceId = dataSourceId;
+        this.eventId = eventId;
+        this.header = new HashMap<>();
+        this.sourceStream = DEFAULT_SOURCE_STREAM;
+        this.auxiliaryFieldsAndValues = new HashMap<>();
+        this.auxiliaryShared = false;
+    }
+
+    /*
+     * Creates an event derived from 'other' with the given storage, header and source stream.
+     */
+    private IndexedStreamlineEvent(IndexedStreamlineEvent other, EventLayout layout, Object[] base, Object[] tail,
+                                   int size, Map<String, Object> header, String sourceStream) {
+        this.layout = layout;
+        this.base = base;
+        this.tail = tail;
+        this.size = size;
+        this.header = header;
+        this.sourceStream = sourceStream;
+        this.dataSourceId = other.dataSourceId;
+        this.eventId = other.eventId;
+        this.id = other.id;
+        if (other.auxiliaryFieldsAndValues.isEmpty()) {
+            this.auxiliaryFieldsAndValues = Collections.emptyMap();
+            this.auxiliaryShared = true;
+        } else {
+            this.auxiliaryFieldsAndValues = new HashMap<>(other.auxiliaryFieldsAndValues);
+            this.auxiliaryShared = false;
+        }
+    }
+
+    /**
+     * Returns a new event with the given source stream that shares the fields, header and auxiliary fields
+     * with this event.
+     */
+    public IndexedStreamlineEvent withSourceStream(String sourceStream) {
+        return new IndexedStreamlineEvent(this, layout, base, tail, size, header, sourceStream);
+    }
+
+    public EventLayout getLayout() {
+        return layout;
+    }
+
+    /**
+     * Returns the value in the given slot of the layout or null if the field is absent.
+     */
+    public Object getValue(int index) {
+        return index < base.length ? base[index] : tail[index - base.length];
+    }
+
+    @Override
+    public Object get(Object key) {
+        int index = layout.indexOf(key);
+        return index >= 0 ? getValue(index) : null;
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        return get(key) != null;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    @Override
+    public Set<Entry<String, Object>> entrySet() {
+        Set<Entry<String, Object>> result = entrySet;
+        if (result == null) {
+            entrySet = result = new EntrySet();
+        }
+        return result;
+    }
+
+    @Override
+    public Map<String, Object> getAuxiliaryFieldsAndValues() {
+        // callers may modify the returned map
+        if (auxiliaryShared) {
+            auxiliaryFieldsAndValues = new HashMap<>(auxiliaryFieldsAndValues);
+            auxiliaryShared = false;
+        }
+        return auxiliaryFieldsAndValues;
+    }
+
+    @Override
+    public void addAuxiliaryFieldAndValue(String field, Object value) {
+        getAuxiliaryFieldsAndValues().put(field, value);
+    }
+
+    @Override
+    public Map<String, Object> getHeader() {
+        return header;
+    }
+
+    @Override
+    public String getId() {
+        String result = id;
+        if (result == null) {
+            id = result = eventId.toString();
+        }
+        return result;
+    }
+
+    /**
+     * Returns the binary form of the id if the id of this event was generated, null otherwise.
+     */
+    public EventId getEventId() {
+        return eventId;
+    }
+
+    @Override
+    public String getDataSourceId() {
+        String res = dataSourceId;
+        if (res == null) {
+            Object dataSourceIds = header.get("dataSourceIds");
+            if (dataSourceIds instanceof List) {
+                res = Joiner.on(",").join(Collections2.filter((List) dataSourceIds, new Predicate() {
+                    @Override
+                    public boolean apply(Object input) {
+                        return input != null;
+                    }
+                }));
+            }
+        }
+        return res;
+    }
+
+    @Override
+    public String getSourceStream() {
+        return sourceStream;
+    }
+
+    /**
+     * Returns a new Streamline event with the given fieldsAndValues added to the existing fieldsAndValues.
+     * The new event shares the value array of this event unless an existing field is overwritten.
+     *
+     * @param fieldsAndValues the map of fieldsAndValues to add
+     * @return the new StreamlineEvent
+     */
+    @Override
+    public StreamlineEvent addFieldsAndValues(Map<String, Object> fieldsAndValues) {
+        Objects.requireNonNull(fieldsAndValues, "keyValues is null");
+        if (fieldsAndValues.isEmpty()) {
+            return new IndexedStreamlineEvent(this, layout, base, tail, size, header, sourceStream);
+        }
+        EventLayout newLayout = layout;
+        boolean overwritesBase = false;
+        for (String field : fieldsAndValues.keySet()) {
+            int index = newLayout.indexOf(field);
+            if (index < 0) {
+                newLayout = newLayout.withField(field);
+            } else if (index < base.length) {
+                overwritesBase = true;
+            }
+        }
+        Object[] newBase;
+        Object[] newTail;
+        int newSize = size;
+        if (overwritesBase) {
+            newBase = new Object[newLayout.size()];
+            System.arraycopy(base, 0, newBase, 0, base.length);
+            System.arraycopy(tail, 0, newBase, base.length, tail.length);
+            newTail = EMPTY_VALUES;
+        } else {
+            newBase = base;
+            newTail = new Object[newLayout.size() - base.length];
+            System.arraycopy(tail, 0, newTail, 0, tail.length);
+        }
+        for (Map.Entry<String, Object> entry : fieldsAndValues.entrySet()) {
+            int index = newLayout.indexOf(entry.getKey());
+            Object value = checkValue(entry.getKey(), entry.getValue());
+            if (index < newBase.length) {
+                if (newBase[index] == null) {
+                    newSize++;
+                }
+                newBase[index] = value;
+            } else {
+                if (newTail[index - newBase.length] == null) {
+                    newSize++;
+                }
+                newTail[index - newBase.length] = value;
+            }
+        }
+        return new IndexedStreamlineEvent(this, newLayout, newBase, newTail, newSize, header, sourceStream);
+    }
+
+    @Override
+    public StreamlineEvent addFieldAndValue(String key, Object value) {
+        return addFieldsAndValues(Collections.singletonMap(key, value));
+    }
+
+    /**
+     * Returns a new Streamline event with the given headers added to the existing headers.
+     * The new event shares the fields of this event.
+     *
+     * @param headers the map of fieldsAndValues to add or overwrite
+     * @return the new StreamlineEvent
+     */
+    @Override
+    public StreamlineEvent addHeaders(Map<String, Object> headers) {
+        Map<String, Object> newHeader = header != null ? new HashMap<>(header) : new HashMap<>();
+        newHeader.putAll(headers);
+        return new IndexedStreamlineEvent(this, layout, base, tail, size, newHeader, sourceStream);
+    }
+
+    @Override
+    public byte[] getBytes() {
+        return this.toString().getBytes();
+    }
+
+    private static Object checkValue(String field, Object value) {
+        if (value == null) {
+            // same as the ImmutableMap backing the StreamlineEventImpl
+            throw new NullPointerException("null value in entry: " + field + "=null");
+        }
+        return value;
+    }
+
+    private class EntrySet extends AbstractSet<Entry<String, Object>> {
+        @Override
+        public Iterator<Entry<String, Object>> iterator() {
+            return new Iterator<Entry<String, Object>>() {
+                private int next = advance(0);
+
+                private int advance(int from) {
+                    int index = from;
+                    while (index < layout.size() && getValue(index) == null) {
+                        index++;
+                    }
+                    return index;
+                }
+
+                @Override
+                public boolean hasNext() {
+                    return next < layout.size();
+                }
+
+                @Override
+                public Entry<String, Object> next() {
+                    if (!hasNext()) {
+                        throw new NoSuchElementException();
+                    }
+                    Entry<String, Object> entry = new SimpleImmutableEntry<>(layout.fieldName(next), getValue(next));
+                    next = advance(next + 1);
+                    return entry;
+                }
+            };
+        }
+
+        @Override
+        public int size() {
+            return size;
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public final Object put(String k, Object v) {
+        return StreamlineEvent.super.put(k, v);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public final Object remove(Object o) {
+        return StreamlineEvent.super.remove(o);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public final void putAll(Map<? extends String, ? extends Object> map) {
+        StreamlineEvent.super.putAll(map);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public final void clear() {
+        StreamlineEvent.super.clear();
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+
+        IndexedStreamlineEvent that = (IndexedStreamlineEvent) o;
+
+        if (eventId != null && that.eventId != null) {
+            return eventId.equals(that.eventId);
+        }
+        return getId().equals(that.getId());
+    }
+
+    @Override
+    public int hashCode() {
+        return getId().hashCode();
+    }
+
+    @Override
+    public String toString() {
+        return "IndexedStreamlineEvent{" +
+                "header=" + header +
+                ", sourceStream='" + sourceStream + '\'' +
+                ", fieldsAndValues=" + super.toString() +
+                ", auxiliaryFieldsAndValues=" + auxiliaryFieldsAndValues +
+                ", dataSourceId='" + dataSourceId + '\'' +
+                ", id='" + getId() + '\'' +
+                '}';
+    }
+}
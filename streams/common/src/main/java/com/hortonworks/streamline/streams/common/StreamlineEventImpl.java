@@ -21,13 +21,14 @@ import com.google.common.collect.Collections2;
 import com.google.common.collect.ForwardingMap;
 import com.google.common.collect.ImmutableMap;
 import com.hortonworks.streamline.streams.StreamlineEvent;
+import com.hortonworks.streamline.streams.common.id.EventId;
+import com.hortonworks.streamline.streams.common.id.EventIdGenerators;
 
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
-import java.util.UUID;
 
 /**
  * A default implementation of StreamlineEvent.
@@ -42,7 +43,9 @@ public final class StreamlineEventImpl extends ForwardingMap<String, Object> imp
     private final String sourceStream;
     private final Map<String, Object> auxiliaryFieldsAndValues;
     private final String dataSourceId;
-    private final String id;
+    // binary form of the id if the id was generated, the string form is created lazily from it
+    private final EventId eventId;
+    private String id;
     private final ImmutableMap<String, Object> delegate;
 
     @Override
@@ -52,10 +55,10 @@ public final class StreamlineEventImpl extends ForwardingMap<String, Object> imp
 
     /**
      * Creates an StreamlineEvent with given keyValues, dataSourceId
-     * and a random UUID as the id.
+     * and a generated id.
      */
     public StreamlineEventImpl(Map<String, Object> keyValues, String dataSourceId) {
-        this(keyValues, dataSourceId, UUID.randomUUID().toString());
+        this(keyValues, dataSourceId, EventIdGenerators.next(), new HashMap<>(), DEFAULT_SOURCE_STREAM, null);
     }
 
     /**
@@ -69,7 +72,7 @@ public final class StreamlineEventImpl extends ForwardingMap<String, Object> imp
      * Creates an StreamlineEvent with given keyValues, dataSourceId and header.
      */
     public StreamlineEventImpl(Map<String, Object> keyValues, String dataSourceId, Map<String, Object> header) {
-        this(keyValues, dataSourceId, UUID.randomUUID().toString(), header, DEFAULT_SOURCE_STREAM);
+        this(keyValues, dataSourceId, EventIdGenerators.next(), header, DEFAULT_SOURCE_STREAM, null);
     }
 
 
@@ -92,15 +95,27 @@ public final class StreamlineEventImpl extends ForwardingMap<String, Object> imp
      * Creates an StreamlineEvent with given keyValues, dataSourceId, header and sourceStream.
      */
     public StreamlineEventImpl(Map<String, Object> keyValues, String dataSourceId, Map<String, Object> header, String sourceStream) {
-        this(keyValues, dataSourceId, UUID.randomUUID().toString(), header, sourceStream);
+        this(keyValues, dataSourceId, EventIdGenerators.next(), header, sourceStream, null);
     }
 
     /**
      * Creates an StreamlineEvent with given keyValues, dataSourceId, id, header and sourceStream.
      */
     public StreamlineEventImpl(Map<String, Object> keyValues, String dataSourceId, String id, Map<String, Object> header, String sourceStream, Map<String, Object> auxiliaryFieldsAndValues) {
+        this(keyValues, dataSourceId, null, id, header, sourceStream, auxiliaryFieldsAndValues);
+    }
+
+    /**
+     * Creates an StreamlineEvent with given keyValues, dataSourceId, binary id, header, sourceStream and auxiliary fields.
+     */
+    public StreamlineEventImpl(Map<String, Object> keyValues, String dataSourceId, EventId eventId, Map<String, Object> header, String sourceStream, Map<String, Object> auxiliaryFieldsAndValues) {
+        this(keyValues, dataSourceId, eventId, null, header, sourceStream, auxiliaryFieldsAndValues);
+    }
+
+    private StreamlineEventImpl(Map<String, Object> keyValues, String dataSourceId, EventId eventId, String id, Map<String, Object> header, String sourceStream, Map<String, Object> auxiliaryFieldsAndValues) {
         this.delegate = ImmutableMap.copyOf(keyValues);
         this.dataSourceId = dataSourceId;
+        this.eventId = eventId;
         this.id = id;
         this.header = header;
         this.sourceStream = sourceStream;
@@ -112,6 +127,7 @@ public final class StreamlineEventImpl extends ForwardingMap<String, Object> imp
         this.sourceStream = other.sourceStream;
         this.auxiliaryFieldsAndValues = new HashMap<>(other.auxiliaryFieldsAndValues);
         this.dataSourceId = other.dataSourceId;
+        this.eventId = other.eventId;
         this.id = other.id;
         this.delegate = ImmutableMap.copyOf(other.delegate);
     }
@@ -124,10 +140,35 @@ public final class StreamlineEventImpl extends ForwardingMap<String, Object> imp
         this.sourceStream = other.sourceStream;
         this.auxiliaryFieldsAndValues = new HashMap<>(other.auxiliaryFieldsAndValues);
         this.dataSourceId = other.dataSourceId;
+        this.eventId = other.eventId;
         this.id = other.id;
         this.delegate = ImmutableMap.copyOf(keyValues);
     }
 
+    /*
+     * Creates a copy of 'other' but with the given sourceStream, the fields are shared with 'other'.
+     */
+    private StreamlineEventImpl(StreamlineEventImpl other, String sourceStream) {
+        this.header = other.header;
+        this.sourceStream = sourceStream;
+        this.auxiliaryFieldsAndValues = new HashMap<>(other.auxiliaryFieldsAndValues);
+        this.dataSourceId = other.dataSourceId;
+        this.eventId = other.eventId;
+        this.id = other.id;
+        this.delegate = other.delegate;
+    }
+
+    /**
+     * Returns a new Streamline event with the given source stream. The fields and the id
+     * are shared with this event.
+     *
+     * @param sourceStream the source stream
+     * @return the new StreamlineEvent
+     */
+    public StreamlineEventImpl withSourceStream(String sourceStream) {
+        return new StreamlineEventImpl(this, sourceStream);
+    }
+
     @Override
     public Map<String, Object> getAuxiliaryFieldsAndValues() {
         return auxiliaryFieldsAndValues;
@@ -139,7 +180,18 @@ public final class StreamlineEventImpl extends ForwardingMap<String, Object> imp
 
     @Override
     public String getId() {
-        return id;
+        String result = id;
+        if (result == null) {
+            id = result = eventId.toString();
+        }
+        return result;
+    }
+
+    /**
+     * Returns the binary form of the id if the id of this event was generated, null otherwise.
+     */
+    public EventId getEventId() {
+        return eventId;
     }
 
     @Override
@@ -214,12 +266,15 @@ public final class StreamlineEventImpl extends ForwardingMap<String, Object> imp
 
         StreamlineEventImpl that = (StreamlineEventImpl) o;
 
-        return id.equals(that.id);
+        if (eventId != null && that.eventId != null) {
+            return eventId.equals(that.eventId);
+        }
+        return getId().equals(that.getId());
     }
 
     @Override
     public int hashCode() {
-        return id.hashCode();
+        return getId().hashCode();
     }
 
     /**
@@ -259,7 +314,7 @@ public final class StreamlineEventImpl extends ForwardingMap<String, Object> imp
                 ", fieldsAndValues=" + super.toString() +
                 ", auxiliaryFieldsAndValues=" + auxiliaryFieldsAndValues +
                 ", dataSourceId='" + dataSourceId + '\'' +
-                ", id='" + id + '\'' +
+                ", id='" + getId() + '\'' +
                 '}';
     }
 }
@@ -0,0 +1,44 @@
+/**
+  * Copyright 2017 Hortonworks.
+  *
+  * Licensed under the Apache License, Version 2.0 (the "License");
+  * you may not use this file except in compliance with the License.
+  * You may obtain a copy of the License at
+
+  *   http://www.apache.org/licenses/LICENSE-2.0
+
+  * Unless required by applicable law or agreed to in writing, software
+  * distributed under the License is distributed on an "AS IS" BASIS,
+  * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  * See the License for the specific language governing permissions and
+  * limitations under the License.
+ **/
+package com.hortonworks.streamline.streams.common;
+
+import com.hortonworks.streamline.streams.StreamlineEvent;
+
+/**
+ * Utility methods for deriving {@link StreamlineEvent}s.
+ */
+public final class StreamlineEventUtils {
+
+    private StreamlineEventUtils() {
+    }
+
+    /**
+     * Returns an event with the same fields, id, header and auxiliary fields as the given event
+     * but with the given source stream. The returned event shares the fields and the id of the given event
+     * if it is an {@link IndexedStreamlineEvent} or a {@link StreamlineEventImpl}, otherwise the fields are
+     * copied into a new {@link StreamlineEventImpl}.
+     */
+    public static StreamlineEvent withSourceStream(StreamlineEvent event, String sourceStream) {
+        if (event instanceof IndexedStreamlineEvent) {
+            return ((IndexedStreamlineEvent) event).withSourceStream(sourceStream);
+        }
+        if (event instanceof StreamlineEventImpl) {
+            return ((StreamlineEventImpl) event).withSourceStream(sourceStream);
+        }
+        return new StreamlineEventImpl(event, event.getDataSourceId(), event.getId(), event.getHeader(),
+                sourceStream, event.getAuxiliaryFieldsAndValues());
+    }
+}
@@ -0,0 +1,95 @@
+/**
+  * Copyright 2017 Hortonworks.
+  *
+  * Licensed under the Apache License, Version 2.0 (the "License");
+  * you may not use this file except in compliance with the License.
+  * You may obtain a copy of the License at
+
+  *   http://www.apache.org/licenses/LICENSE-2.0
+
+  * Unless required by applicable law or agreed to in writing, software
+  * distributed under the License is distributed on an "AS IS" BASIS,
+  * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  * See the License for the specific language governing permissions and
+  * limitations under the License.
+ **/
+package com.hortonworks.streamline.streams.common.id;
+
+import java.io.Serializable;
+import java.nio.ByteBuffer;
+import java.util.UUID;
+
+/**
+ * A 128 bit event id in a compact binary form. The string form is in the {@link UUID} format
+ * and is only created when it is first requested.
+ */
+public final class EventId implements Serializable {
+    public static final int BYTES = 16;
+
+    private final long mostSigBits;
+    private final long leastSigBits;
+    // lazily computed string form, benign race since Strings are immutable
+    private transient String string;
+
+    public EventId(long mostSigBits, long leastSigBits) {
+        this.mostSigBits = mostSigBits;
+        this.leastSigBits = leastSigBits;
+    }
+
+    public static EventId fromUUID(UUID uuid) {
+        return new EventId(uuid.getMostSignificantBits(), uuid.getLeastSignificantBits());
+    }
+
+    public static EventId fromString(String id) {
+        return fromUUID(UUID.fromString(id));
+    }
+
+    public static EventId fromBytes(byte[] bytes) {
+        if (bytes.length != BYTES) {
+            throw new IllegalArgumentException("Event id should be " + BYTES + " bytes but was " + bytes.length);
+        }
+        ByteBuffer buffer = ByteBuffer.wrap(bytes);
+        return new EventId(buffer.getLong(), buffer.getLong());
+    }
+
+    public long getMostSignificantBits() {
+        return mostSigBits;
+    }
+
+    public long getLeastSignificantBits() {
+        return leastSigBits;
+    }
+
+    public byte[] toBytes() {
+        return ByteBuffer.allocate(BYTES).putLong(mostSigBits).putLong(leastSigBits).array();
+    }
+
+    public UUID toUUID() {
+        return new UUID(mostSigBits, leastSigBits);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+
+        EventId that = (EventId) o;
+
+        return mostSigBits == that.mostSigBits && leastSigBits == that.leastSigBits;
+    }
+
+    @Override
+    public int hashCode() {
+        long hilo = mostSigBits ^ leastSigBits;
+        return ((int) (hilo >> 32)) ^ (int) hilo;
+    }
+
+    @Override
+    public String toString() {
+        String result = string;
+        if (result == null) {
+            string = result = toUUID().toString();
+        }
+        return result;
+    }
+}
@@ -0,0 +1,29 @@
+/**
+  * Copyright 2017 Hortonworks.
+  *
+  * Licensed under the Apache License, Version 2.0 (the "License");
+  * you may not use this file except in compliance with the License.
+  * You may obtain a copy of the License at
+
+  *   http://www.apache.org/licenses/LICENSE-2.0
+
+  * Unless required by applicable law or agreed to in writing, software
+  * distributed under the License is distributed on an "AS IS" BASIS,
+  * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  * See the License for the specific language governing permissions and
+  * limitations under the License.
+ **/
+package com.hortonworks.streamline.streams.common.id;
+
+/**
+ * Generates unique ids for the events created by sources and processors.
+ * Implementations should be thread safe and avoid contention since ids are generated
+ * for every event.
+ */
+public interface EventIdGenerator {
+
+    /**
+     * @return the next unique event id
+     */
+    EventId next();
+}
@@ -0,0 +1,81 @@
+/**
+  * Copyright 2017 Hortonworks.
+  *
+  * Licensed under the Apache License, Version 2.0 (the "License");
+  * you may not use this file except in compliance with the License.
+  * You may obtain a copy of the License at
+
+  *   http://www.apache.org/licenses/LICENSE-2.0
+
+  * Unless required by applicable law or agreed to in writing, software
+  * distributed under the License is distributed on an "AS IS" BASIS,
+  * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  * See the License for the specific language governing permissions and
+  * limitations under the License.
+ **/
+package com.hortonworks.streamline.streams.common.id;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Holds the {@link EventIdGenerator} used for the events created in this JVM.
+ * <p>
+ * The generator can be chosen with the {@value #EVENT_ID_GENERATOR_PROPERTY} system property, which is either
+ * {@value #RANDOM}, {@value #TIME_COUNTER} or the fully qualified class name of an {@link EventIdGenerator}
+ * with a no-arg constructor. The default is {@value #RANDOM}.
+ * </p>
+ */
+public final class EventIdGenerators {
+    private static final Logger LOG = LoggerFactory.getLogger(EventIdGenerators.class);
+
+    public static final String EVENT_ID_GENERATOR_PROPERTY = "streamline.event.id.generator";
+    public static final String RANDOM = "random";
+    public static final String TIME_COUNTER = "time-counter";
+
+    private static volatile EventIdGenerator generator = create(System.getProperty(EVENT_ID_GENERATOR_PROPERTY, RANDOM));
+
+    private EventIdGenerators() {
+    }
+
+    /**
+     * @return the configured generator
+     */
+    public static EventIdGenerator get() {
+        return generator;
+    }
+
+    /**
+     * @return the next id from the configured generator
+     */
+    public static EventId next() {
+        return generator.next();
+    }
+
+    /**
+     * Replaces the configured generator.
+     */
+    public static void set(EventIdGenerator eventIdGenerator) {
+        if (eventIdGenerator == null) {
+            throw new IllegalArgumentException("eventIdGenerator cannot be null");
+        }
+        generator = eventIdGenerator;
+    }
+
+    /**
+     * Creates the generator for the given name or class name.
+     */
+    public static EventIdGenerator create(String name) {
+        if (RANDOM.equals(name)) {
+            return new RandomEventIdGenerator();
+        } else if (TIME_COUNTER.equals(name)) {
+            return new TimeCounterEventIdGenerator();
+        }
+        try {
+            return (EventIdGenerator) Class.forName(name).newInstance();
+        } catch (ClassNotFoundException | InstantiationException | IllegalAccessException | ClassCastException e) {
+            LOG.error("Could not create event id generator [{}], falling back to [{}]", name, RANDOM, e);
+            return new RandomEventIdGenerator();
+        }
+    }
+}
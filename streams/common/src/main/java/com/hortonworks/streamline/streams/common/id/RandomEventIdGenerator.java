@@ -0,0 +1,35 @@
+/**
+  * Copyright 2017 Hortonworks.
+  *
+  * Licensed under the Apache License, Version 2.0 (the "License");
+  * you may not use this file except in compliance with the License.
+  * You may obtain a copy of the License at
+
+  *   http://www.apache.org/licenses/LICENSE-2.0
+
+  * Unless required by applicable law or agreed to in writing, software
+  * distributed under the License is distributed on an "AS IS" BASIS,
+  * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  * See the License for the specific language governing permissions and
+  * limitations under the License.
+ **/
+package com.hortonworks.streamline.streams.common.id;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Generates random (version 4) UUIDs from a {@link ThreadLocalRandom} instead of the shared
+ * {@link java.security.SecureRandom} used by {@link java.util.UUID#randomUUID()}.
+ */
+public class RandomEventIdGenerator implements EventIdGenerator {
+
+    @Override
+    public EventId next() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        long mostSigBits = random.nextLong();
+        long leastSigBits = random.nextLong();
+        mostSigBits = (mostSigBits & 0xffffffffffff0fffL) | 0x0000000000004000L;  // version 4
+        leastSigBits = (leastSigBits & 0x3fffffffffffffffL) | 0x8000000000000000L; // IETF variant
+        return new EventId(mostSigBits, leastSigBits);
+    }
+}
@@ -0,0 +1,48 @@
+/**
+  * Copyright 2017 Hortonworks.
+  *
+  * Licensed under the Apache License, Version 2.0 (the "License");
+  * you may not use this file except in compliance with the License.
+  * You may obtain a copy of the License at
+
+  *   http://www.apache.org/licenses/LICENSE-2.0
+
+  * Unless required by applicable law or agreed to in writing, software
+  * distributed under the License is distributed on an "AS IS" BASIS,
+  * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  * See the License for the specific language governing permissions and
+  * limitations under the License.
+ **/
+package com.hortonworks.streamline.streams.common.id;
+
+import java.security.SecureRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Generates ids from a per generator prefix and a counter. The most significant bits hold the creation
+ * time of the generator in milliseconds and a random node id, so that generators in different workers
+ * do not collide, and the least significant bits hold a counter that is incremented for every id.
+ * <p>
+ * The counter is shared by all threads of the worker; use {@link RandomEventIdGenerator} if the
+ * contention on the counter shows up.
+ * </p>
+ */
+public class TimeCounterEventIdGenerator implements EventIdGenerator {
+    private final long prefix;
+    private final AtomicLong counter;
+
+    public TimeCounterEventIdGenerator() {
+        this(System.currentTimeMillis(), new SecureRandom().nextInt(1 << 20));
+    }
+
+    public TimeCounterEventIdGenerator(long timeMillis, int nodeId) {
+        // 44 bits of time (good until the year 2527) followed by 20 bits of node id
+        this.prefix = (timeMillis << 20) | (nodeId & 0xfffff);
+        this.counter = new AtomicLong();
+    }
+
+    @Override
+    public EventId next() {
+        return new EventId(prefix, counter.getAndIncrement());
+    }
+}
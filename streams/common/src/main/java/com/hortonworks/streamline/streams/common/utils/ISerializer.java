@@ -63,4 +63,26 @@ public interface ISerializer extends Serializable {
      * @param msg bolt message
      */
     void writeProcessorMsg(ProcessorMsg msg) throws IOException;
+
+    /**
+     * This method sends a batch of Process messages to a non-JVM process. The process replies to the messages
+     * in order, each reply ending with a sync.
+     *
+     * @param msgs processor messages
+     */
+    default void writeProcessorMsgs(List<ProcessorMsg> msgs) throws IOException {
+        for (ProcessorMsg msg : msgs) {
+            writeProcessorMsg(msg);
+        }
+    }
+
+    /**
+     * This method returns the name of the wire protocol, passed to the non-JVM process in the
+     * {@link ShellProcess#PROTOCOL_ENV} environment variable.
+     *
+     * @return protocol name
+     */
+    default String getProtocol() {
+        return "json";
+    }
 }
@@ -0,0 +1,292 @@
+/**
+  * Copyright 2017 Hortonworks.
+  *
+  * Licensed under the Apache License, Version 2.0 (the "License");
+  * you may not use this file except in compliance with the License.
+  * You may obtain a copy of the License at
+
+  *   http://www.apache.org/licenses/LICENSE-2.0
+
+  * Unless required by applicable law or agreed to in writing, software
+  * distributed under the License is distributed on an "AS IS" BASIS,
+  * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  * See the License for the specific language governing permissions and
+  * limitations under the License.
+ **/
+
+package com.hortonworks.streamline.streams.common.utils;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.lang.reflect.Array;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Encodes and decodes values in the <a href="https://github.com/msgpack/msgpack/blob/master/spec.md">MessagePack</a>
+ * format for the multilang protocol.
+ * <p>
+ * Maps, collections, arrays, strings, numbers, booleans, byte arrays and nulls are supported, other objects are
+ * encoded as their string representation. Integers are decoded as {@link Integer} when they fit and as {@link Long}
+ * otherwise, like the json serializer does.
+ * </p>
+ */
+final class MessagePackCodec {
+    private static final int NIL = 0xc0;
+    private static final int FALSE = 0xc2;
+    private static final int TRUE = 0xc3;
+    private static final int BIN8 = 0xc4;
+    private static final int BIN16 = 0xc5;
+    private static final int BIN32 = 0xc6;
+    private static final int FLOAT32 = 0xca;
+    private static final int FLOAT64 = 0xcb;
+    private static final int UINT8 = 0xcc;
+    private static final int UINT16 = 0xcd;
+    private static final int UINT32 = 0xce;
+    private static final int UINT64 = 0xcf;
+    private static final int INT8 = 0xd0;
+    private static final int INT16 = 0xd1;
+    private static final int INT32 = 0xd2;
+    private static final int INT64 = 0xd3;
+    private static final int STR8 = 0xd9;
+    private static final int STR16 = 0xda;
+    private static final int STR32 = 0xdb;
+    private static final int ARRAY16 = 0xdc;
+    private static final int ARRAY32 = 0xdd;
+    private static final int MAP16 = 0xde;
+    private static final int MAP32 = 0xdf;
+
+    private MessagePackCodec() {
+    }
+
+    static void pack(Object value, DataOutput out) throws IOException {
+        if (value == null) {
+            out.writeByte(NIL);
+        } else if (value instanceof String) {
+            packString((String) value, out);
+        } else if (value instanceof Integer || value instanceof Long || value instanceof Short || value instanceof Byte) {
+            packLong(((Number) value).longValue(), out);
+        } else if (value instanceof Double) {
+            out.writeByte(FLOAT64);
+            out.writeDouble((Double) value);
+        } else if (value instanceof Float) {
+            out.writeByte(FLOAT32);
+            out.writeFloat((Float) value);
+        } else if (value instanceof Boolean) {
+            out.writeByte((Boolean) value ? TRUE : FALSE);
+        } else if (value instanceof Map) {
+            Map<?, ?> map = (Map<?, ?>) value;
+            packHeader(map.size(), 0x80, 16, MAP16, MAP32, out);
+            for (Map.Entry<?, ?> entry : map.entrySet()) {
+                pack(entry.getKey(), out);
+                pack(entry.getValue(), out);
+            }
+        } else if (value instanceof Collection) {
+            Collection<?> collection = (Collection<?>) value;
+            packHeader(collection.size(), 0x90, 16, ARRAY16, ARRAY32, out);
+            for (Object element : collection) {
+                pack(element, out);
+            }
+        } else if (value instanceof byte[]) {
+            byte[] bytes = (byte[]) value;
+            if (bytes.length < (1 << 8)) {
+                out.writeByte(BIN8);
+                out.writeByte(bytes.length);
+            } else if (bytes.length < (1 << 16)) {
+                out.writeByte(BIN16);
+                out.writeShort(bytes.length);
+            } else {
+                out.writeByte(BIN32);
+                out.writeInt(bytes.length);
+            }
+            out.write(bytes);
+        } else if (value.getClass().isArray()) {
+            int length = Array.getLength(value);
+            packHeader(length, 0x90, 16, ARRAY16, ARRAY32, out);
+            for (int i = 0; i < length; i++) {
+                pack(Array.get(value, i), out);
+            }
+        } else if (value instanceof Enum) {
+            packString(((Enum<?>) value).name(), out);
+        } else {
+            packString(value.toString(), out);
+        }
+    }
+
+    private static void packLong(long value, DataOutput out) throws IOException {
+        if (value >= 0) {
+            if (value < (1 << 7)) {
+                out.writeByte((int) value);
+            } else if (value < (1 << 8)) {
+                out.writeByte(UINT8);
+                out.writeByte((int) value);
+            } else if (value < (1 << 16)) {
+                out.writeByte(UINT16);
+                out.writeShort((int) value);
+            } else if (value < (1L << 32)) {
+                out.writeByte(UINT32);
+                out.writeInt((int) value);
+            } else {
+                out.writeByte(UINT64);
+                out.writeLong(value);
+            }
+        } else if (value >= -32) {
+            out.writeByte((int) value);
+        } else if (value >= Byte.MIN_VALUE) {
+            out.writeByte(INT8);
+            out.writeByte((int) value);
+        } else if (value >= Short.MIN_VALUE) {
+            out.writeByte(INT16);
+            out.writeShort((int) value);
+        } else if (value >= Integer.MIN_VALUE) {
+            out.writeByte(INT32);
+            out.writeInt((int) value);
+        } else {
+            out.writeByte(INT64);
+            out.writeLong(value);
+        }
+    }
+
+    private static void packString(String value, DataOutput out) throws IOException {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        if (bytes.length < 32) {
+            out.writeByte(0xa0 | bytes.length);
+        } else if (bytes.length < (1 << 8)) {
+            out.writeByte(STR8);
+            out.writeByte(bytes.length);
+        } else if (bytes.length < (1 << 16)) {
+            out.writeByte(STR16);
+            out.writeShort(bytes.length);
+        } else {
+            out.writeByte(STR32);
+            out.writeInt(bytes.length);
+        }
+        out.write(bytes);
+    }
+
+    private static void packHeader(int size, int fixPrefix, int fixLimit, int type16, int type32, DataOutput out)
+            throws IOException {
+        if (size < fixLimit) {
+            out.writeByte(fixPrefix | size);
+        } else if (size < (1 << 16)) {
+            out.writeByte(type16);
+            out.writeShort(size);
+        } else {
+            out.writeByte(type32);
+            out.writeInt(size);
+        }
+    }
+
+    static Object unpack(DataInput in) throws IOException {
+        int type = in.readUnsignedByte();
+        if (type <= 0x7f) {
+            return type;
+        } else if (type >= 0xe0) {
+            return (int) (byte) type;
+        } else if (type <= 0x8f) {
+            return unpackMap(type & 0x0f, in);
+        } else if (type <= 0x9f) {
+            return unpackArray(type & 0x0f, in);
+        } else if (type <= 0xbf) {
+            return unpackString(type & 0x1f, in);
+        }
+        switch (type) {
+            case NIL:
+                return null;
+            case FALSE:
+                return Boolean.FALSE;
+            case TRUE:
+                return Boolean.TRUE;
+            case BIN8:
+                return unpackBytes(in.readUnsignedByte(), in);
+            case BIN16:
+                return unpackBytes(in.readUnsignedShort(), in);
+            case BIN32:
+                return unpackBytes(readLength(in), in);
+            case FLOAT32:
+                return in.readFloat();
+            case FLOAT64:
+                return in.readDouble();
+            case UINT8:
+                return in.readUnsignedByte();
+            case UINT16:
+                return in.readUnsignedShort();
+            case UINT32:
+                return toNumber(in.readInt() & 0xffffffffL);
+            case UINT64:
+                // values above Long.MAX_VALUE are not supported and wrap around
+                return toNumber(in.readLong());
+            case INT8:
+                return (int) in.readByte();
+            case INT16:
+                return (int) in.readShort();
+            case INT32:
+                return in.readInt();
+            case INT64:
+                return toNumber(in.readLong());
+            case STR8:
+                return unpackString(in.readUnsignedByte(), in);
+            case STR16:
+                return unpackString(in.readUnsignedShort(), in);
+            case STR32:
+                return unpackString(readLength(in), in);
+            case ARRAY16:
+                return unpackArray(in.readUnsignedShort(), in);
+            case ARRAY32:
+                return unpackArray(readLength(in), in);
+            case MAP16:
+                return unpackMap(in.readUnsignedShort(), in);
+            case MAP32:
+                return unpackMap(readLength(in), in);
+            default:
+                throw new IOException("Unsupported MessagePack type 0x" + Integer.toHexString(type));
+        }
+    }
+
+    private static Object toNumber(long value) {
+        if (value >= Integer.MIN_VALUE && value <= Integer.MAX_VALUE) {
+            return (int) value;
+        }
+        return value;
+    }
+
+    private static int readLength(DataInput in) throws IOException {
+        int length = in.readInt();
+        if (length < 0) {
+            throw new IOException("Invalid MessagePack length " + (length & 0xffffffffL));
+        }
+        return length;
+    }
+
+    private static String unpackString(int length, DataInput in) throws IOException {
+        return new String(unpackBytes(length, in), StandardCharsets.UTF_8);
+    }
+
+    private static byte[] unpackBytes(int length, DataInput in) throws IOException {
+        byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        return bytes;
+    }
+
+    private static List<Object> unpackArray(int size, DataInput in) throws IOException {
+        List<Object> list = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            list.add(unpack(in));
+        }
+        return list;
+    }
+
+    private static Map<Object, Object> unpackMap(int size, DataInput in) throws IOException {
+        Map<Object, Object> map = new LinkedHashMap<>(size * 4 / 3 + 1);
+        for (int i = 0; i < size; i++) {
+            Object key = unpack(in);
+            map.put(key, unpack(in));
+        }
+        return map;
+    }
+}
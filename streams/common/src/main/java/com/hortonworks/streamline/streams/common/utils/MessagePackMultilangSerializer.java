@@ -0,0 +1,198 @@
+/**
+  * Copyright 2017 Hortonworks.
+  *
+  * Licensed under the Apache License, Version 2.0 (the "License");
+  * you may not use this file except in compliance with the License.
+  * You may obtain a copy of the License at
+
+  *   http://www.apache.org/licenses/LICENSE-2.0
+
+  * Unless required by applicable law or agreed to in writing, software
+  * distributed under the License is distributed on an "AS IS" BASIS,
+  * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  * See the License for the specific language governing permissions and
+  * limitations under the License.
+ **/
+
+package com.hortonworks.streamline.streams.common.utils;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Multilang serializer exchanging length prefixed MessagePack frames with the non-JVM process, each frame is a four
+ * bytes big endian length followed by a MessagePack map.
+ * <p>
+ * Unlike the {@link JsonMultilangSerializer}, a batch of processor messages is sent as a single
+ * {@code {"command": "process", "events": [...]}} frame and a single flush. The process replies with the emit, error
+ * and sync frames of each event of the batch, in order.
+ * </p>
+ */
+public class MessagePackMultilangSerializer implements ISerializer {
+    private static final long serialVersionUID = -2372164906394734021L;
+
+    public static final String PROTOCOL = "msgpack";
+    public static final int MAX_FRAME_SIZE = 64 * 1024 * 1024;
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private transient DataOutputStream processIn;
+    private transient DataInputStream processOut;
+    private transient FrameBuffer frame;
+
+    @Override
+    public void initialize(OutputStream processIn, InputStream processOut) {
+        this.processIn = new DataOutputStream(new BufferedOutputStream(processIn, BUFFER_SIZE));
+        this.processOut = new DataInputStream(new BufferedInputStream(processOut, BUFFER_SIZE));
+        this.frame = new FrameBuffer();
+    }
+
+    @Override
+    public String getProtocol() {
+        return PROTOCOL;
+    }
+
+    @Override
+    public Long connect(Map<String, Object> conf, ShellContext context, List<String> outputStreams)
+            throws IOException, NoOutputException {
+        Map<String, Object> contextMap = new HashMap<>();
+        contextMap.put("codeDir", context.getCodeDir());
+        contextMap.put("pidDir", context.getPidDir());
+        contextMap.put("componentId", context.getComponentId());
+        Map<String, Object> connectMsg = new HashMap<>();
+        connectMsg.put("pidDir", context.getPidDir());
+        connectMsg.put("conf", conf);
+        connectMsg.put("context", contextMap);
+        connectMsg.put("outputStreams", outputStreams);
+        writeFrame(connectMsg);
+        processIn.flush();
+
+        Object pid = readFrame().get("pid");
+        if (!(pid instanceof Number)) {
+            throw new IOException("Invalid pid " + pid + " received from subprocess");
+        }
+        return ((Number) pid).longValue();
+    }
+
+    @Override
+    public void writeProcessorMsg(ProcessorMsg msg) throws IOException {
+        writeFrame(toMap(msg));
+        processIn.flush();
+    }
+
+    @Override
+    public void writeProcessorMsgs(List<ProcessorMsg> msgs) throws IOException {
+        List<Map<String, Object>> events = new ArrayList<>(msgs.size());
+        for (ProcessorMsg msg : msgs) {
+            events.add(toMap(msg));
+        }
+        Map<String, Object> batch = new HashMap<>();
+        batch.put("command", "process");
+        batch.put("events", events);
+        writeFrame(batch);
+        processIn.flush();
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public ShellMsg readShellMsg() throws IOException, NoOutputException {
+        Map<Object, Object> map = readFrame();
+        ShellMsg shellMsg = new ShellMsg();
+        shellMsg.setCommand((String) map.get("command"));
+        shellMsg.setMsg((String) map.get("msg"));
+        shellMsg.setOutputStream((String) map.get("outputStream"));
+        Map<Object, Object> event = (Map<Object, Object>) map.get("streamlineEvent");
+        if (event != null) {
+            ShellMsg.ShellEvent shellEvent = new ShellMsg.ShellEvent();
+            shellEvent.setId(event.get("id"));
+            shellEvent.setSourceId((String) event.get("sourceId"));
+            shellEvent.setSourceStream((String) event.get("sourceStream"));
+            shellEvent.setFieldsAndValues(toFieldsAndValues((Map<Object, Object>) event.get("fieldsAndValues")));
+            shellMsg.setStreamlineEvent(shellEvent);
+        }
+        return shellMsg;
+    }
+
+    private Map<String, Object> toMap(ProcessorMsg msg) {
+        Map<String, Object> map = new HashMap<>();
+        map.put("id", msg.getId());
+        map.put("sourceId", msg.getSourceId());
+        map.put("sourceStream", msg.getSourceStream());
+        map.put("fieldsAndValues", msg.getFieldsAndValues());
+        return map;
+    }
+
+    private Map<String, Object> toFieldsAndValues(Map<Object, Object> map) {
+        if (map == null) {
+            return null;
+        }
+        Map<String, Object> fieldsAndValues = new LinkedHashMap<>(map.size() * 4 / 3 + 1);
+        for (Map.Entry<Object, Object> entry : map.entrySet()) {
+            fieldsAndValues.put(String.valueOf(entry.getKey()), entry.getValue());
+        }
+        return fieldsAndValues;
+    }
+
+    private void writeFrame(Object msg) throws IOException {
+        frame.reset();
+        MessagePackCodec.pack(msg, frame.data);
+        processIn.writeInt(frame.size());
+        frame.writeTo(processIn);
+    }
+
+    @SuppressWarnings("unchecked")
+    private Map<Object, Object> readFrame() throws IOException, NoOutputException {
+        int length;
+        try {
+            length = processOut.readInt();
+        } catch (EOFException e) {
+            throw new NoOutputException("Pipe to subprocess seems to be broken! No output read.\n");
+        }
+        if (length < 0 || length > MAX_FRAME_SIZE) {
+            throw new IOException("Invalid frame length " + length + " received from subprocess");
+        }
+        byte[] bytes = frame.getBytes(length);
+        try {
+            processOut.readFully(bytes, 0, length);
+        } catch (EOFException e) {
+            throw new NoOutputException("Pipe to subprocess seems to be broken! Read an incomplete frame of "
+                    + length + " bytes.\n");
+        }
+        Object msg = MessagePackCodec.unpack(new DataInputStream(new ByteArrayInputStream(bytes, 0, length)));
+        if (!(msg instanceof Map)) {
+            throw new IOException("Unexpected message received from subprocess: " + msg);
+        }
+        return (Map<Object, Object>) msg;
+    }
+
+    /**
+     * A reusable buffer for the frames sent to and read from the process.
+     */
+    private static final class FrameBuffer extends ByteArrayOutputStream {
+        private final DataOutputStream data = new DataOutputStream(this);
+        private byte[] readBuffer = new byte[1024];
+
+        FrameBuffer() {
+            super(1024);
+        }
+
+        byte[] getBytes(int length) {
+            if (readBuffer.length < length) {
+                readBuffer = new byte[Math.max(length, readBuffer.length * 2)];
+            }
+            return readBuffer;
+        }
+    }
+}
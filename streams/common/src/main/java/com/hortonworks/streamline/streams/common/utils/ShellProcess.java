@@ -28,6 +28,11 @@ import java.util.List;
 import java.util.Map;
 
 public class ShellProcess implements Serializable {
+    /**
+     * Environment variable telling the subprocess which wire protocol the serializer speaks.
+     */
+    public static final String PROTOCOL_ENV = "STREAMLINE_MULTILANG_PROTOCOL";
+
     private static final Logger LOG = LoggerFactory.getLogger(ShellProcess.class);
     private static Logger ShellLogger;
     private Process subprocess;
@@ -68,6 +73,7 @@ public class ShellProcess implements Serializable {
         ShellLogger = LoggerFactory.getLogger(context.getComponentId());
         this.componentName = context.getComponentId();
         serializer = getSerializer();
+        builder.environment().put(PROTOCOL_ENV, serializer.getProtocol());
 
         try {
             LOG.info("Process Environment :" + builder.environment());
@@ -125,6 +131,11 @@ public class ShellProcess implements Serializable {
         logErrorStream();
     }
 
+    public void writeProcessorMsgs(List<ProcessorMsg> msgs) throws IOException {
+        serializer.writeProcessorMsgs(msgs);
+        logErrorStream();
+    }
+
     public void logErrorStream() {
         String error = getErrorsString();
         if (!error.isEmpty())
@@ -0,0 +1,158 @@
+/**
+  * Copyright 2017 Hortonworks.
+  *
+  * Licensed under the Apache License, Version 2.0 (the "License");
+  * you may not use this file except in compliance with the License.
+  * You may obtain a copy of the License at
+
+  *   http://www.apache.org/licenses/LICENSE-2.0
+
+  * Unless required by applicable law or agreed to in writing, software
+  * distributed under the License is distributed on an "AS IS" BASIS,
+  * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  * See the License for the specific language governing permissions and
+  * limitations under the License.
+ **/
+package com.hortonworks.streamline.streams.common;
+
+import com.hortonworks.streamline.streams.StreamlineEvent;
+import org.apache.commons.lang.StringUtils;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class IndexedStreamlineEventTest {
+
+    @Test
+    public void testGetFieldsAndValues() throws Exception {
+        Map<String, Object> map = new HashMap<>();
+        map.put("a", "aval");
+        map.put("b", "bval");
+
+        StreamlineEvent event = new IndexedStreamlineEvent(map, StringUtils.EMPTY);
+
+        assertEquals(map, event);
+        assertEquals("aval", event.get("a"));
+        assertNull(event.get("c"));
+    }
+
+    @Test
+    public void testLayoutIsInterned() throws Exception {
+        EventLayout layout = EventLayout.of(Arrays.asList("a", "b"));
+        assertSame(layout, EventLayout.of(Arrays.asList("a", "b")));
+        assertSame(layout.withField("c"), EventLayout.of(Arrays.asList("a", "b", "c")));
+        assertSame(layout, layout.withField("a"));
+    }
+
+    @Test
+    public void testAbsentFieldsOfLayout() throws Exception {
+        EventLayout layout = EventLayout.of(Arrays.asList("a", "b", "c"));
+        StreamlineEvent event = new IndexedStreamlineEvent(layout, Collections.singletonMap("b", 1), "1", "id",
+                new HashMap<>(), StreamlineEvent.DEFAULT_SOURCE_STREAM, null);
+
+        assertEquals(1, event.size());
+        assertEquals(Collections.singletonMap("b", 1), event);
+        assertFalse(event.containsKey("a"));
+    }
+
+    @Test
+    public void testOfValues() throws Exception {
+        EventLayout layout = EventLayout.of(Arrays.asList("a", "b", "c"));
+        IndexedStreamlineEvent event = IndexedStreamlineEvent.of(layout, new Object[]{"aval", null, 3}, "1");
+
+        assertEquals(2, event.size());
+        assertSame(layout, event.getLayout());
+        assertEquals("aval", event.get("a"));
+        assertFalse(event.containsKey("b"));
+        assertEquals(3, event.get("c"));
+        assertEquals("1", event.getDataSourceId());
+        assertEquals(StreamlineEvent.DEFAULT_SOURCE_STREAM, event.getSourceStream());
+    }
+
+    @Test
+    public void testWithSourceStream() throws Exception {
+        IndexedStreamlineEvent event = new IndexedStreamlineEvent(Collections.singletonMap("a", 1), "1");
+        event.addAuxiliaryFieldAndValue("aux", "auxval");
+
+        StreamlineEvent withStream = StreamlineEventUtils.withSourceStream(event, "stream");
+
+        assertEquals("stream", withStream.getSourceStream());
+        assertEquals(event.getId(), withStream.getId());
+        assertEquals(event, withStream);
+        assertEquals("auxval", withStream.getAuxiliaryFieldsAndValues().get("aux"));
+
+        // auxiliary fields are copied when the event is derived
+        withStream.addAuxiliaryFieldAndValue("aux2", "auxval2");
+        assertFalse(event.getAuxiliaryFieldsAndValues().containsKey("aux2"));
+        event.addAuxiliaryFieldAndValue("aux3", "auxval3");
+        assertFalse(withStream.getAuxiliaryFieldsAndValues().containsKey("aux3"));
+
+        // an event without auxiliary fields derives events without them
+        StreamlineEvent withoutAuxiliary = new IndexedStreamlineEvent(Collections.singletonMap("a", 1), "1")
+                .withSourceStream("stream");
+        assertTrue(withoutAuxiliary.getAuxiliaryFieldsAndValues().isEmpty());
+        withoutAuxiliary.addAuxiliaryFieldAndValue("aux", "auxval");
+        assertEquals("auxval", withoutAuxiliary.getAuxiliaryFieldsAndValues().get("aux"));
+    }
+
+    @Test
+    public void testAddFieldsAndValues() throws Exception {
+        Map<String, Object> map = new HashMap<>();
+        map.put("a", "aval");
+        map.put("b", "bval");
+        StreamlineEvent event = new IndexedStreamlineEvent(map, StringUtils.EMPTY);
+
+        StreamlineEvent added = event.addFieldAndValue("c", "cval").addFieldAndValue("d", "dval");
+        Map<String, Object> expected = new HashMap<>(map);
+        expected.put("c", "cval");
+        expected.put("d", "dval");
+        assertEquals(expected, added);
+        assertEquals(2, event.size());
+
+        StreamlineEvent overwritten = added.addFieldAndValue("a", "aval2");
+        expected.put("a", "aval2");
+        assertEquals(expected, overwritten);
+        assertEquals("aval", event.get("a"));
+        assertEquals("aval", added.get("a"));
+    }
+
+    @Test
+    public void testAddHeaders() throws Exception {
+        Map<String, Object> header = new HashMap<>();
+        header.put("h1", "h1val");
+        StreamlineEvent event = new IndexedStreamlineEvent(Collections.singletonMap("a", 1), "1", "id", header,
+                StreamlineEvent.DEFAULT_SOURCE_STREAM, null);
+
+        StreamlineEvent withHeaders = event.addHeaders(Collections.singletonMap("h2", "h2val"));
+
+        assertEquals(2, withHeaders.getHeader().size());
+        assertEquals(1, event.getHeader().size());
+        assertTrue(withHeaders.containsKey("a"));
+    }
+
+    @Test(expected = NullPointerException.class)
+    public void testNullValue() throws Exception {
+        new IndexedStreamlineEvent(Collections.singletonMap("a", null), StringUtils.EMPTY);
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void testPut() throws Exception {
+        StreamlineEvent event = new IndexedStreamlineEvent(Collections.singletonMap("foo", "bar"), StringUtils.EMPTY);
+        event.put("key", "val");
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void testRemove() throws Exception {
+        StreamlineEvent event = new IndexedStreamlineEvent(Collections.emptyMap(), StringUtils.EMPTY);
+        event.remove("foo");
+    }
+}
@@ -0,0 +1,82 @@
+/**
+  * Copyright 2017 Hortonworks.
+  *
+  * Licensed under the Apache License, Version 2.0 (the "License");
+  * you may not use this file except in compliance with the License.
+  * You may obtain a copy of the License at
+
+  *   http://www.apache.org/licenses/LICENSE-2.0
+
+  * Unless required by applicable law or agreed to in writing, software
+  * distributed under the License is distributed on an "AS IS" BASIS,
+  * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  * See the License for the specific language governing permissions and
+  * limitations under the License.
+ **/
+package com.hortonworks.streamline.streams.common.id;
+
+import com.hortonworks.streamline.streams.common.StreamlineEventImpl;
+import org.junit.Test;
+
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.UUID;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class EventIdTest {
+
+    @Test
+    public void testRandomIdIsUUID() throws Exception {
+        EventId id = new RandomEventIdGenerator().next();
+        UUID uuid = UUID.fromString(id.toString());
+        assertEquals(4, uuid.version());
+        assertEquals(id, EventId.fromUUID(uuid));
+    }
+
+    @Test
+    public void testTimeCounterIdsAreUnique() throws Exception {
+        EventIdGenerator generator = new TimeCounterEventIdGenerator();
+        Set<EventId> ids = new HashSet<>();
+        Set<String> strings = new HashSet<>();
+        for (int i = 0; i < 1000; i++) {
+            EventId id = generator.next();
+            ids.add(id);
+            strings.add(id.toString());
+        }
+        assertEquals(1000, ids.size());
+        assertEquals(1000, strings.size());
+    }
+
+    @Test
+    public void testBytes() throws Exception {
+        EventId id = new RandomEventIdGenerator().next();
+        byte[] bytes = id.toBytes();
+        assertEquals(EventId.BYTES, bytes.length);
+        assertEquals(id, EventId.fromBytes(bytes));
+    }
+
+    @Test
+    public void testEventIdIsLazy() throws Exception {
+        EventId id = new RandomEventIdGenerator().next();
+        StreamlineEventImpl event = new StreamlineEventImpl(Collections.emptyMap(), "1", id, Collections.emptyMap(),
+                StreamlineEventImpl.DEFAULT_SOURCE_STREAM, null);
+        StreamlineEventImpl copy = new StreamlineEventImpl(event, "1", id.toString());
+
+        assertEquals(id, event.getEventId());
+        assertEquals(id.toString(), event.getId());
+        assertNull(copy.getEventId());
+        assertTrue(event.equals(copy) && copy.equals(event));
+        assertEquals(event.hashCode(), copy.hashCode());
+    }
+
+    @Test
+    public void testCreateByName() throws Exception {
+        assertTrue(EventIdGenerators.create(EventIdGenerators.TIME_COUNTER) instanceof TimeCounterEventIdGenerator);
+        assertTrue(EventIdGenerators.create(RandomEventIdGenerator.class.getName()) instanceof RandomEventIdGenerator);
+        assertTrue(EventIdGenerators.create("no.such.Generator") instanceof RandomEventIdGenerator);
+    }
+}
@@ -0,0 +1,145 @@
+/**
+  * Copyright 2017 Hortonworks.
+  *
+  * Licensed under the Apache License, Version 2.0 (the "License");
+  * you may not use this file except in compliance with the License.
+  * You may obtain a copy of the License at
+
+  *   http://www.apache.org/licenses/LICENSE-2.0
+
+  * Unless required by applicable law or agreed to in writing, software
+  * distributed under the License is distributed on an "AS IS" BASIS,
+  * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  * See the License for the specific language governing permissions and
+  * limitations under the License.
+ **/
+
+package com.hortonworks.streamline.streams.common.utils;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+public class MessagePackMultilangSerializerTest {
+
+    @Test
+    public void testCodecRoundTrip() throws Exception {
+        List<Object> values = Arrays.<Object>asList(null, true, false, 0, 127, 128, 255, 256, 65535, 65536,
+                Integer.MAX_VALUE, 4294967295L, Long.MAX_VALUE, -1, -32, -33, -128, -129, -32768, -32769,
+                Integer.MIN_VALUE, Long.MIN_VALUE, 1.5d, 2.5f, "", "abc", "\u00e9t\u00e9", repeat('x', 31),
+                repeat('x', 32), repeat('x', 256), repeat('x', 65536), Arrays.asList(1, "a", null),
+                Collections.singletonMap("k", Collections.singletonMap("n", 1)));
+        for (Object value : values) {
+            assertEquals(value, roundTrip(value));
+        }
+        Map<String, Object> large = new LinkedHashMap<>();
+        for (int i = 0; i < 20; i++) {
+            large.put("k" + i, i);
+        }
+        assertEquals(large, roundTrip(large));
+        assertArrayEquals(new byte[]{1, 2, 3}, (byte[]) roundTrip(new byte[]{1, 2, 3}));
+        assertEquals(Arrays.asList(1, 2), roundTrip(new int[]{1, 2}));
+    }
+
+    @Test
+    public void testWriteProcessorMsgs() throws Exception {
+        ByteArrayOutputStream processIn = new ByteArrayOutputStream();
+        MessagePackMultilangSerializer serializer = new MessagePackMultilangSerializer();
+        serializer.initialize(processIn, new ByteArrayInputStream(new byte[0]));
+        serializer.writeProcessorMsgs(Arrays.asList(processorMsg("1", 10), processorMsg("2", 20)));
+
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(processIn.toByteArray()));
+        assertEquals(processIn.size() - 4, in.readInt());
+        Map<?, ?> batch = (Map<?, ?>) MessagePackCodec.unpack(in);
+        assertEquals("process", batch.get("command"));
+        List<?> events = (List<?>) batch.get("events");
+        assertEquals(2, events.size());
+        Map<?, ?> second = (Map<?, ?>) events.get(1);
+        assertEquals("2", second.get("id"));
+        assertEquals("source", second.get("sourceId"));
+        assertEquals("default", second.get("sourceStream"));
+        assertEquals(Collections.singletonMap("value", 20), second.get("fieldsAndValues"));
+    }
+
+    @Test
+    public void testReadShellMsg() throws Exception {
+        Map<String, Object> fieldsAndValues = new HashMap<>();
+        fieldsAndValues.put("word", "streamline");
+        fieldsAndValues.put("count", 3000000000L);
+        fieldsAndValues.put("score", 0.5d);
+        Map<String, Object> event = new HashMap<>();
+        event.put("fieldsAndValues", fieldsAndValues);
+        event.put("id", null);
+        Map<String, Object> emit = new HashMap<>();
+        emit.put("command", "emit");
+        emit.put("outputStream", "stream");
+        emit.put("streamlineEvent", event);
+
+        ByteArrayOutputStream processOut = new ByteArrayOutputStream();
+        writeFrame(emit, processOut);
+        writeFrame(Collections.singletonMap("command", "sync"), processOut);
+        MessagePackMultilangSerializer serializer = new MessagePackMultilangSerializer();
+        serializer.initialize(new ByteArrayOutputStream(), new ByteArrayInputStream(processOut.toByteArray()));
+
+        ShellMsg shellMsg = serializer.readShellMsg();
+        assertEquals("emit", shellMsg.getCommand());
+        assertEquals("stream", shellMsg.getOutputStream());
+        assertEquals(fieldsAndValues, shellMsg.getStreamlineEvent().getFieldsAndValues());
+        assertNull(shellMsg.getStreamlineEvent().getId());
+        shellMsg = serializer.readShellMsg();
+        assertEquals("sync", shellMsg.getCommand());
+        assertNull(shellMsg.getStreamlineEvent());
+    }
+
+    @Test(expected = NoOutputException.class)
+    public void testReadBrokenPipe() throws Exception {
+        MessagePackMultilangSerializer serializer = new MessagePackMultilangSerializer();
+        serializer.initialize(new ByteArrayOutputStream(), new ByteArrayInputStream(new byte[]{0, 0}));
+        serializer.readShellMsg();
+    }
+
+    private Object roundTrip(Object value) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        MessagePackCodec.pack(value, new DataOutputStream(bytes));
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes.toByteArray()));
+        Object result = MessagePackCodec.unpack(in);
+        assertEquals(-1, in.read());
+        return result;
+    }
+
+    private void writeFrame(Object msg, ByteArrayOutputStream out) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        MessagePackCodec.pack(msg, new DataOutputStream(bytes));
+        new DataOutputStream(out).writeInt(bytes.size());
+        bytes.writeTo(out);
+    }
+
+    private ProcessorMsg processorMsg(String id, int value) {
+        ProcessorMsg msg = new ProcessorMsg();
+        msg.setId(id);
+        msg.setSourceId("source");
+        msg.setSourceStream("default");
+        msg.setFieldsAndValues(Collections.<String, Object>singletonMap("value", value));
+        return msg;
+    }
+
+    private static String repeat(char c, int count) {
+        char[] chars = new char[count];
+        Arrays.fill(chars, c);
+        return new String(chars);
+    }
+}
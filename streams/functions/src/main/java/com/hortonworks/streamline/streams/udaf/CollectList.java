@@ -18,7 +18,9 @@ package com.hortonworks.streamline.streams.udaf;
 import com.hortonworks.streamline.streams.rule.UDAF;
 
 import java.util.ArrayList;
+import java.util.LinkedList;
 import java.util.List;
+import java.util.Objects;
 
 /**
  * Collects elements within a group and returns the list of aggregated objects
@@ -26,7 +28,7 @@ import java.util.List;
 public class CollectList implements UDAF<List<Object>, Object, List<Object>> {
     @Override
     public List<Object> init() {
-        return new ArrayList<>();
+        return new LinkedList<>();
     }
 
     @Override
@@ -36,7 +38,25 @@ public class CollectList implements UDAF<List<Object>, Object, List<Object>> {
     }
 
     @Override
-    public List<Object> result(List<Object> aggregate) {
+    public List<Object> retract(List<Object> aggregate, Object val) {
+        // the values leaving a window are usually the oldest ones, removed from the head of the linked list
+        if (!aggregate.isEmpty() && Objects.equals(aggregate.get(0), val)) {
+            aggregate.remove(0);
+        } else {
+            aggregate.remove(val);
+        }
         return aggregate;
     }
+
+    @Override
+    public List<Object> merge(List<Object> aggregate1, List<Object> aggregate2) {
+        aggregate1.addAll(aggregate2);
+        return aggregate1;
+    }
+
+    @Override
+    public List<Object> result(List<Object> aggregate) {
+        // the aggregate keeps changing in a sliding window
+        return new ArrayList<>(aggregate);
+    }
 }
@@ -41,6 +41,30 @@ public class NumberSum implements UDAF<Number, Number, Number> {
         throw new IllegalArgumentException("Value type " + val.getClass());
     }
 
+    @Override
+    public Number retract(Number aggregate, Number val) {
+        if (val instanceof Byte) {
+            return (byte) (aggregate.byteValue() - val.byteValue());
+        } else if (val instanceof Short) {
+            return (short) (aggregate.shortValue() - val.shortValue());
+        } else if (val instanceof Integer) {
+            return aggregate.intValue() - val.intValue();
+        } else if (val instanceof Long) {
+            return aggregate.longValue() - val.longValue();
+        } else if (val instanceof Float) {
+            return aggregate.floatValue() - val.floatValue();
+        } else if (val instanceof Double) {
+            return aggregate.doubleValue() - val.doubleValue();
+        }
+        throw new IllegalArgumentException("Value type " + val.getClass());
+    }
+
+    @Override
+    public Number merge(Number aggregate1, Number aggregate2) {
+        // the sum has the type of the values, except the initial Integer 0 of an empty aggregate
+        return aggregate1 instanceof Integer ? add(aggregate1, aggregate2) : add(aggregate2, aggregate1);
+    }
+
     @Override
     public Number result(Number aggregate) {
         return aggregate;
@@ -0,0 +1,97 @@
+/**
+  * Copyright 2017 Hortonworks.
+  *
+  * Licensed under the Apache License, Version 2.0 (the "License");
+  * you may not use this file except in compliance with the License.
+  * You may obtain a copy of the License at
+
+  *   http://www.apache.org/licenses/LICENSE-2.0
+
+  * Unless required by applicable law or agreed to in writing, software
+  * distributed under the License is distributed on an "AS IS" BASIS,
+  * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  * See the License for the specific language governing permissions and
+  * limitations under the License.
+ **/
+package com.hortonworks.streamline.streams.udaf;
+
+import com.hortonworks.streamline.streams.rule.UDAF2;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Computes streaming top n values of a group of values, like {@link Topn}, for windows whose values are retracted.
+ * <p>
+ * The values are kept in a sorted multiset so that values leaving a sliding window can be retracted
+ * and partial aggregates can be merged, the top n values are picked when the result is computed.
+ * Unlike {@link Topn} it keeps every distinct value of the group, so it should only be used when the
+ * window is aggregated incrementally.
+ * </p>
+ */
+public class RetractableTopn<T extends Comparable<T>> implements UDAF2<RetractableTopn.Values<T>, Integer, T, List<T>> {
+    @Override
+    public Values<T> init() {
+        return new Values<>();
+    }
+
+    @Override
+    public Values<T> add(Values<T> aggregate, Integer n, T val) {
+        aggregate.n = n;
+        if (n > 0) {
+            Integer count = aggregate.counts.get(val);
+            aggregate.counts.put(val, count == null ? 1 : count + 1);
+        }
+        return aggregate;
+    }
+
+    @Override
+    public Values<T> retract(Values<T> aggregate, Integer n, T val) {
+        Integer count = aggregate.counts.get(val);
+        if (count != null) {
+            if (count == 1) {
+                aggregate.counts.remove(val);
+            } else {
+                aggregate.counts.put(val, count - 1);
+            }
+        }
+        return aggregate;
+    }
+
+    @Override
+    public Values<T> merge(Values<T> aggregate1, Values<T> aggregate2) {
+        if (aggregate1.n == 0) {
+            aggregate1.n = aggregate2.n;
+        }
+        for (Map.Entry<T, Integer> entry : aggregate2.counts.entrySet()) {
+            Integer count = aggregate1.counts.get(entry.getKey());
+            aggregate1.counts.put(entry.getKey(), count == null ? entry.getValue() : count + entry.getValue());
+        }
+        return aggregate1;
+    }
+
+    @Override
+    public List<T> result(Values<T> aggregate) {
+        List<T> res = new ArrayList<>(Math.max(aggregate.n, 0));
+        for (Map.Entry<T, Integer> entry : aggregate.counts.descendingMap().entrySet()) {
+            for (int i = 0; i < entry.getValue() && res.size() < aggregate.n; i++) {
+                res.add(entry.getKey());
+            }
+            if (res.size() >= aggregate.n) {
+                break;
+            }
+        }
+        return res;
+    }
+
+    /**
+     * The values of a group with their number of occurrences and the n of the last added value.
+     */
+    public static class Values<T> implements Serializable {
+        private final TreeMap<T, Integer> counts = new TreeMap<>();
+        private int n;
+    }
+}
@@ -28,6 +28,16 @@ public class Stddev implements UDAF<StddevOnline, Number, Double> {
         return aggregate.add(val);
     }
 
+    @Override
+    public StddevOnline retract(StddevOnline aggregate, Number val) {
+        return aggregate.retract(val);
+    }
+
+    @Override
+    public StddevOnline merge(StddevOnline aggregate1, StddevOnline aggregate2) {
+        return aggregate1.merge(aggregate2);
+    }
+
     @Override
     public Double result(StddevOnline aggregate) {
         return aggregate.stddev();
@@ -15,11 +15,13 @@
  **/
 package com.hortonworks.streamline.streams.udaf;
 
+import java.io.Serializable;
+
 /**
  * Computes online variance and stddev of values using
  * B.P. Welford's algorithm described in Knuth's TAOCP Vol2. p232, 3rd edition.
  */
-public class StddevOnline {
+public class StddevOnline implements Serializable {
     private int n;
     private double mean;
     private double aggregate;
@@ -32,6 +34,40 @@ public class StddevOnline {
         return this;
     }
 
+    // reverses the update of add for a value that was previously added
+    StddevOnline retract(Number val) {
+        if (n <= 1) {
+            n = 0;
+            mean = 0;
+            aggregate = 0;
+            return this;
+        }
+        double meanWithVal = mean;
+        --n;
+        mean = (meanWithVal * (n + 1) - val.doubleValue()) / n;
+        aggregate -= (val.doubleValue() - mean) * (val.doubleValue() - meanWithVal);
+        return this;
+    }
+
+    // combines the statistics of two disjoint sets of values using the parallel algorithm of Chan et al.
+    StddevOnline merge(StddevOnline other) {
+        if (other.n == 0) {
+            return this;
+        } else if (n == 0) {
+            // copy the statistics, returning other would share its state with this aggregate
+            n = other.n;
+            mean = other.mean;
+            aggregate = other.aggregate;
+            return this;
+        }
+        int count = n + other.n;
+        double delta = other.mean - mean;
+        mean += delta * other.n / count;
+        aggregate += other.aggregate + delta * delta * ((double) n * other.n / count);
+        n = count;
+        return this;
+    }
+
     double stddevp() {
         return Math.sqrt(variancep());
     }
@@ -23,19 +23,56 @@ import java.util.List;
 import java.util.PriorityQueue;
 
 /**
- * Computes streaming top n values of a group of values
+ * Computes streaming top n values of a group of values.
+ * <p>
+ * The values are kept in a priority queue bounded to n values, so it cannot retract values leaving a sliding window.
+ * Use {@link RetractableTopn} to aggregate sliding windows incrementally. The aggregates created by {@link #init()}
+ * also keep n, so that partial aggregates can be merged.
+ * </p>
  */
 public class Topn<T extends Comparable<T>> implements UDAF2<PriorityQueue<T>, Integer, T, List<T>> {
     @Override
     public PriorityQueue<T> init() {
-        return new PriorityQueue<>();
+        return new Values<>();
     }
 
     @Override
     public PriorityQueue<T> add(PriorityQueue<T> aggregate, Integer n, T val) {
+        if (aggregate instanceof Values) {
+            ((Values<T>) aggregate).n = n;
+        }
         if (n <= 0) {
             return aggregate;
         }
+        offer(aggregate, n, val);
+        return aggregate;
+    }
+
+    @Override
+    public PriorityQueue<T> merge(PriorityQueue<T> aggregate1, PriorityQueue<T> aggregate2) {
+        int n = getN(aggregate1);
+        if (n == 0) {
+            n = getN(aggregate2);
+            if (aggregate1 instanceof Values) {
+                ((Values<T>) aggregate1).n = n;
+            }
+        }
+        if (n > 0) {
+            for (T val : aggregate2) {
+                offer(aggregate1, n, val);
+            }
+        }
+        return aggregate1;
+    }
+
+    @Override
+    public List<T> result(PriorityQueue<T> aggregate) {
+        List<T> res = new ArrayList<>(aggregate);
+        Collections.sort(res, Collections.<T>reverseOrder());
+        return res;
+    }
+
+    private void offer(PriorityQueue<T> aggregate, int n, T val) {
         if (aggregate.size() >= n) {
             if (val.compareTo(aggregate.peek()) > 0) {
                 aggregate.remove();
@@ -44,14 +81,17 @@ public class Topn<T extends Comparable<T>> implements UDAF2<PriorityQueue<T>, In
         } else {
             aggregate.add(val);
         }
-        return aggregate;
+    }
 
+    // the n of the last added value, 0 if unknown
+    private int getN(PriorityQueue<T> aggregate) {
+        return aggregate instanceof Values ? ((Values<T>) aggregate).n : 0;
     }
 
-    @Override
-    public List<T> result(PriorityQueue<T> aggregate) {
-        List<T> res = new ArrayList<>(aggregate);
-        Collections.reverse(res);
-        return res;
+    /**
+     * The top n values of a group, smallest first, with the n of the last added value.
+     */
+    public static class Values<T> extends PriorityQueue<T> {
+        private int n;
     }
 }
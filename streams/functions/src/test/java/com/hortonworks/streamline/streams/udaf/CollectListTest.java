@@ -0,0 +1,52 @@
+/**
+  * Copyright 2017 Hortonworks.
+  *
+  * Licensed under the Apache License, Version 2.0 (the "License");
+  * you may not use this file except in compliance with the License.
+  * You may obtain a copy of the License at
+
+  *   http://www.apache.org/licenses/LICENSE-2.0
+
+  * Unless required by applicable law or agreed to in writing, software
+  * distributed under the License is distributed on an "AS IS" BASIS,
+  * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  * See the License for the specific language governing permissions and
+  * limitations under the License.
+ **/
+
+package com.hortonworks.streamline.streams.udaf;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.List;
+
+public class CollectListTest {
+    @Test
+    public void testResultIsNotChangedByTheAggregate() {
+        CollectList collectList = new CollectList();
+        List<Object> aggregate = collectList.init();
+        aggregate = collectList.add(aggregate, "a");
+        aggregate = collectList.add(aggregate, "b");
+        List<Object> result = collectList.result(aggregate);
+        aggregate = collectList.add(aggregate, "c");
+        aggregate = collectList.retract(aggregate, "a");
+        Assert.assertEquals(Arrays.<Object>asList("a", "b"), result);
+        Assert.assertEquals(Arrays.<Object>asList("b", "c"), collectList.result(aggregate));
+    }
+
+    @Test
+    public void testRetract() {
+        CollectList collectList = new CollectList();
+        List<Object> aggregate = collectList.init();
+        for (Object value : Arrays.<Object>asList("a", null, "b", "a")) {
+            aggregate = collectList.add(aggregate, value);
+        }
+        aggregate = collectList.retract(aggregate, "a");
+        Assert.assertEquals(Arrays.<Object>asList(null, "b", "a"), collectList.result(aggregate));
+        aggregate = collectList.retract(aggregate, null);
+        aggregate = collectList.retract(aggregate, "a");
+        Assert.assertEquals(Arrays.<Object>asList("b"), collectList.result(aggregate));
+    }
+}
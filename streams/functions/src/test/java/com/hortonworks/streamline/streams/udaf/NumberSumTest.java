@@ -44,5 +44,11 @@ public class NumberSumTest {
         }
         Assert.assertEquals(clazz, agg.getClass());
         Assert.assertEquals(10, agg.intValue());
+        agg = sum.retract(agg, arr[0]);
+        Assert.assertEquals(clazz, agg.getClass());
+        Assert.assertEquals(9, agg.intValue());
+        agg = sum.merge(sum.init(), agg);
+        Assert.assertEquals(clazz, agg.getClass());
+        Assert.assertEquals(9, agg.intValue());
     }
 }
\ No newline at end of file
@@ -0,0 +1,40 @@
+/**
+  * Copyright 2017 Hortonworks.
+  *
+  * Licensed under the Apache License, Version 2.0 (the "License");
+  * you may not use this file except in compliance with the License.
+  * You may obtain a copy of the License at
+
+  *   http://www.apache.org/licenses/LICENSE-2.0
+
+  * Unless required by applicable law or agreed to in writing, software
+  * distributed under the License is distributed on an "AS IS" BASIS,
+  * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  * See the License for the specific language governing permissions and
+  * limitations under the License.
+ **/
+package com.hortonworks.streamline.streams.udaf;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Arrays;
+
+public class RetractableTopnTest {
+    @Test
+    public void testRetractAndMerge() throws Exception {
+        RetractableTopn<Integer> topn = new RetractableTopn<>();
+        RetractableTopn.Values<Integer> agg = topn.init();
+        for (int i : new int[]{5, 1, 7, 3}) {
+            agg = topn.add(agg, 2, i);
+        }
+        agg = topn.retract(agg, 2, 7);
+        Assert.assertEquals(Arrays.asList(5, 3), topn.result(agg));
+        agg = topn.retract(agg, 2, 5);
+        Assert.assertEquals(Arrays.asList(3, 1), topn.result(agg));
+
+        RetractableTopn.Values<Integer> other = topn.add(topn.add(topn.init(), 2, 3), 2, 2);
+        Assert.assertEquals(Arrays.asList(3, 3), topn.result(topn.merge(agg, other)));
+        Assert.assertEquals(Arrays.asList(3, 2), topn.result(topn.merge(topn.init(), other)));
+    }
+}
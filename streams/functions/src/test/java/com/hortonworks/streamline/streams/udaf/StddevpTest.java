@@ -53,4 +53,53 @@ public class StddevpTest {
         Assert.assertEquals(sqsum / (arr.length - 1), variance.result(varianceAgg), .0001);
     }
 
-}
\ No newline at end of file
+    @Test
+    public void testRetractAndMerge() throws Exception {
+        Stddevp stddevp = new Stddevp();
+        Variance variance = new Variance();
+        Mean mean = new Mean();
+        StddevOnline sliding = stddevp.init();
+        // window of the last three values of 1, 2, 2, 3, 3, 4, 5
+        double arr[] = {1, 2, 2, 3, 3, 4, 5};
+        for (int i = 0; i < arr.length; i++) {
+            sliding = stddevp.add(sliding, arr[i]);
+            if (i >= 3) {
+                sliding = stddevp.retract(sliding, arr[i - 3]);
+            }
+        }
+        // 3, 4, 5
+        Assert.assertEquals(4.0, mean.result(sliding), .0001);
+        Assert.assertEquals(Math.sqrt(2.0 / 3), stddevp.result(sliding), .0001);
+        Assert.assertEquals(1.0, variance.result(sliding), .0001);
+
+        StddevOnline left = variance.init();
+        StddevOnline right = variance.init();
+        for (int i = 0; i < arr.length; i++) {
+            if (i < 2) {
+                left = variance.add(left, arr[i]);
+            } else {
+                right = variance.add(right, arr[i]);
+            }
+        }
+        StddevOnline merged = variance.merge(left, right);
+        Assert.assertEquals(20.0 / 7, mean.result(merged), .0001);
+        Assert.assertEquals(variance.result(variance.merge(variance.init(), merged)), variance.result(merged), .0001);
+        double sqsum = 0.0;
+        for (double i : arr) {
+            sqsum += (20.0 / 7 - i) * (20.0 / 7 - i);
+        }
+        Assert.assertEquals(sqsum / (arr.length - 1), variance.result(merged), .0001);
+    }
+
+    @Test
+    public void testMergeIntoEmpty() throws Exception {
+        Variance variance = new Variance();
+        StddevOnline other = variance.add(variance.add(variance.init(), 1.0), 3.0);
+        StddevOnline merged = variance.merge(variance.init(), other);
+        Assert.assertNotSame(other, merged);
+        Assert.assertEquals(2.0, variance.result(merged), .0001);
+        // the merged aggregate does not share the state of other
+        variance.add(merged, 8.0);
+        Assert.assertEquals(2.0, variance.result(other), .0001);
+    }
+}
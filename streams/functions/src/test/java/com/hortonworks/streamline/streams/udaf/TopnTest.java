@@ -0,0 +1,58 @@
+/**
+  * Copyright 2017 Hortonworks.
+  *
+  * Licensed under the Apache License, Version 2.0 (the "License");
+  * you may not use this file except in compliance with the License.
+  * You may obtain a copy of the License at
+
+  *   http://www.apache.org/licenses/LICENSE-2.0
+
+  * Unless required by applicable law or agreed to in writing, software
+  * distributed under the License is distributed on an "AS IS" BASIS,
+  * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  * See the License for the specific language governing permissions and
+  * limitations under the License.
+ **/
+package com.hortonworks.streamline.streams.udaf;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.PriorityQueue;
+
+public class TopnTest {
+    @Test
+    public void testResult() throws Exception {
+        Topn<Integer> topn = new Topn<>();
+        PriorityQueue<Integer> agg = topn.init();
+        for (int i : new int[]{5, 1, 7, 3, 7, 2}) {
+            agg = topn.add(agg, 3, i);
+        }
+        Assert.assertEquals(Arrays.asList(7, 7, 5), topn.result(agg));
+        Assert.assertEquals(Collections.emptyList(), topn.result(topn.add(topn.init(), 0, 1)));
+    }
+
+    @Test
+    public void testMerge() throws Exception {
+        Topn<Integer> topn = new Topn<>();
+        PriorityQueue<Integer> agg = topn.init();
+        for (int i : new int[]{5, 1, 7, 3}) {
+            agg = topn.add(agg, 2, i);
+        }
+        PriorityQueue<Integer> other = topn.add(topn.add(topn.init(), 2, 6), 2, 2);
+        Assert.assertEquals(Arrays.asList(6, 2), topn.result(topn.merge(topn.init(), other)));
+        Assert.assertEquals(Arrays.asList(7, 6), topn.result(topn.merge(agg, other)));
+    }
+
+    @Test
+    public void testAggregateNotCreatedByInit() throws Exception {
+        Topn<Integer> topn = new Topn<>();
+        PriorityQueue<Integer> agg = new PriorityQueue<>();
+        for (int i : new int[]{5, 1, 7, 3}) {
+            agg = topn.add(agg, 2, i);
+        }
+        Assert.assertEquals(Arrays.asList(7, 5), topn.result(agg));
+    }
+}
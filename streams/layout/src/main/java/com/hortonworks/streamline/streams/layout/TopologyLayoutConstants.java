@@ -92,6 +92,11 @@ public final class TopologyLayoutConstants {
     public final static String JSON_KEY_RETRY_DELAY_MULTIPLIER = "retryDelayMultiplier";
     public final static String JSON_KEY_RETRY_DELAY_MAX_MS = "retryDelayMaxMs";
     public final static String JSON_KEY_OUTPUT_STREAM_ID = "outputStreamId";
+    public final static String JSON_KEY_BOOTSTRAP_SERVERS = "bootstrapServers";
+    public final static String JSON_KEY_MAX_POLL_RECORDS = "maxPollRecords";
+    public final static String JSON_KEY_POLL_TIMEOUT_MS = "pollTimeoutMs";
+    public final static String JSON_KEY_OFFSET_COMMIT_PERIOD_MS = "offsetCommitPeriodMs";
+    public final static String JSON_KEY_MAX_UNCOMMITTED_OFFSETS = "maxUncommittedOffsets";
     public final static String JSON_KEY_PARSED_TUPLES_STREAM = "parsedTuplesStream";
     public final static String JSON_KEY_FAILED_TUPLES_STREAM = "failedTuplesStream";
     public final static String JSON_KEY_PARSER_JAR_PATH = "parserJarPath";
@@ -39,7 +39,12 @@ public class Stream implements Serializable {
         /**
          * Fields grouping
          */
-        FIELDS
+        FIELDS,
+        /**
+         * Partial key grouping on the fields, each key is sent to the least loaded of two tasks. The results of
+         * a key are split across the two tasks, so the receiving component must be stateless or merge them.
+         */
+        PARTIAL_KEY
     }
 
     private Stream() {
@@ -24,6 +24,7 @@ import com.hortonworks.streamline.streams.layout.component.Stream;
 import com.hortonworks.streamline.streams.layout.component.TopologyDagVisitor;
 import com.hortonworks.streamline.streams.layout.component.rule.Rule;
 import com.hortonworks.streamline.streams.layout.component.rule.action.Action;
+import com.hortonworks.streamline.streams.layout.component.rule.expression.Window;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -40,6 +41,19 @@ public class RulesProcessor extends StreamlineProcessor {     //TODO: Rename to
 
     public static final String CONFIG_KEY_RULES = "rules";
     public static final String CONFIG_PROCESS_ALL = "processAll";
+    /**
+     * Boolean config to aggregate windowed rules in two phases, partial aggregates computed by the tasks
+     * that receive the events and merged by the tasks that own the groups.
+     */
+    public static final String CONFIG_KEY_TWO_PHASE_AGGREGATION = "twoPhaseAggregation";
+    /**
+     * Config of the script type evaluating the rules, SQL (default), GROOVY or COMPILED.
+     */
+    public static final String CONFIG_KEY_SCRIPT_TYPE = "scriptType";
+    public static final String DEFAULT_SCRIPT_TYPE = "SQL";
+    // fields of the partial aggregate events the groups are distributed by
+    public static final String PARTIAL_AGGREGATE_RULE_ID = "__ruleId";
+    public static final String PARTIAL_AGGREGATE_GROUP_KEY = "__groupKey";
     private List<Rule> rules;
     private boolean processAll = true;
 
@@ -60,6 +74,17 @@ public class RulesProcessor extends StreamlineProcessor {     //TODO: Rename to
         this.processAll = processAll;
     }
 
+    /**
+     * Whether the rules with the given window can be aggregated in two phases. The panes of the partial phase are
+     * only aligned with the window of the final phase for processing time windows with duration based length and
+     * sliding interval.
+     */
+    public static boolean supportsTwoPhaseAggregation(Window window) {
+        return window.getWindowLength() instanceof Window.Duration
+                && (window.getSlidingInterval() == null || window.getSlidingInterval() instanceof Window.Duration)
+                && window.getTsField() == null;
+    }
+
     public List<Rule> getRules() {
         return rules;
     }
@@ -50,7 +50,7 @@ public class NormalizationProcessor extends StreamlineProcessor {
      *
      * @param inputStreamsWithNormalizationConfig normalization configuration for each input stream
      * @param declaredOutputStream output stream of this component
-     * @param type type of normalization which can be {@code Type.bulk} or {@code Type.fineGrained}
+     * @param type type of normalization which can be {@code Type.bulk}, {@code Type.fineGrained} or {@code Type.compiled}
      */
     public NormalizationProcessor(Map<String, NormalizationConfig> inputStreamsWithNormalizationConfig, Stream declaredOutputStream, Type type) {
         this.inputStreamsWithNormalizationConfig = inputStreamsWithNormalizationConfig;
@@ -83,7 +83,13 @@ public class NormalizationProcessor extends StreamlineProcessor {
         /**
          * It represents a configuration of using a script for each field for normalizing input to output schema.
          */
-        fineGrained
+        fineGrained,
+
+        /**
+         * It represents the configuration of {@code fineGrained} with all the fields compiled into one function and the
+         * types validated when the normalization is initialized.
+         */
+        compiled
     }
 
 }
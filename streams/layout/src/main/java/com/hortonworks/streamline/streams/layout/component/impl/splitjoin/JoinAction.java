@@ -47,6 +47,12 @@ public class JoinAction extends Action {
      */
     private Long eventExpiryInterval = DEFAULT_EXPIRY_INTERVAL;
 
+    /**
+     * Stream to which the events of the split groups expiring before they are complete are sent, they are dropped if
+     * it is not set.
+     */
+    private String expiredGroupsStream;
+
     public JoinAction() {
     }
 
@@ -60,6 +66,7 @@ public class JoinAction extends Action {
         joinerClassName = other.joinerClassName;
         groupExpiryInterval = other.groupExpiryInterval;
         eventExpiryInterval = other.eventExpiryInterval;
+        expiredGroupsStream = other.expiredGroupsStream;
     }
 
     @Override
@@ -87,6 +94,12 @@ public class JoinAction extends Action {
         this.eventExpiryInterval = eventExpiryInterval;
     }
 
+    public JoinAction(Long jarId, String joinerClassName, Long groupExpiryInterval, Long eventExpiryInterval,
+                      String expiredGroupsStream) {
+        this(jarId, joinerClassName, groupExpiryInterval, eventExpiryInterval);
+        this.expiredGroupsStream = expiredGroupsStream;
+    }
+
     /**
      * @return id of a jar resource which contains {@code joinerClassName} and its dependent classes
      */
@@ -115,6 +128,13 @@ public class JoinAction extends Action {
         return eventExpiryInterval;
     }
 
+    /**
+     * @return Stream to which the events of the split groups expiring before they are complete are sent, or null.
+     */
+    public String getExpiredGroupsStream() {
+        return expiredGroupsStream;
+    }
+
     @Override
     public String toString() {
         return "JoinAction{" +
@@ -122,6 +142,7 @@ public class JoinAction extends Action {
                 ", joinerClassName='" + joinerClassName + '\'' +
                 ", groupExpiryInterval=" + groupExpiryInterval +
                 ", eventExpiryInterval=" + eventExpiryInterval +
+                ", expiredGroupsStream='" + expiredGroupsStream + '\'' +
                 '}' + super.toString();
     }
 }
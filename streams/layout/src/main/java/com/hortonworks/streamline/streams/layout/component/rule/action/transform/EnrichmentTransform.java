@@ -32,6 +32,9 @@ public class EnrichmentTransform extends Transform {
     public static final long DEFAULT_MAX_CACHE_SIZE = 1000;
     public static final long DEFAULT_ENTRY_EXPIRATION_INTERVAL = 60 * 5 * 1000;
     public static final long DEFAULT_ENTRY_REFRESH_INTERVAL = 60 * 5 * 1000;
+    public static final int DEFAULT_MAX_LOOKUP_BATCH_SIZE = 100;
+    public static final long DEFAULT_LOOKUP_BATCH_LINGER_MS = 10;
+    public static final int DEFAULT_MAX_IN_FLIGHT_LOOKUPS = 4;
 
     public static final String ENRICHMENTS_FIELD_NAME="__enrichments";
 
@@ -60,6 +63,26 @@ public class EnrichmentTransform extends Transform {
      */
     private long entryRefreshInterval = DEFAULT_ENTRY_REFRESH_INTERVAL;
 
+    /**
+     * whether the values are looked up asynchronously, in batches of the keys missing in the cache.
+     */
+    private boolean asyncLookups;
+
+    /**
+     * maximum number of keys looked up in a batch.
+     */
+    private int maxLookupBatchSize = DEFAULT_MAX_LOOKUP_BATCH_SIZE;
+
+    /**
+     * time (in milliseconds) a batch waits for more keys before it is looked up.
+     */
+    private long lookupBatchLingerMs = DEFAULT_LOOKUP_BATCH_LINGER_MS;
+
+    /**
+     * maximum number of batches being looked up concurrently.
+     */
+    private int maxInFlightLookups = DEFAULT_MAX_IN_FLIGHT_LOOKUPS;
+
     private EnrichmentTransform() {
         this(null, null, null);
     }
@@ -93,6 +116,21 @@ public class EnrichmentTransform extends Transform {
         this.entryRefreshInterval = timeUnit.convert(refreshInterval, TimeUnit.SECONDS);
     }
 
+    /**
+     * Looks up the values asynchronously, the keys missing in the cache are collected across events and looked up
+     * in batches from the {@link TransformDataProvider}.
+     *
+     * @param maxLookupBatchSize maximum number of keys looked up in a batch
+     * @param lookupBatchLingerMs time in milliseconds a batch waits for more keys before it is looked up
+     * @param maxInFlightLookups maximum number of batches being looked up concurrently
+     */
+    public void withAsyncLookups(int maxLookupBatchSize, long lookupBatchLingerMs, int maxInFlightLookups) {
+        this.asyncLookups = true;
+        this.maxLookupBatchSize = maxLookupBatchSize;
+        this.lookupBatchLingerMs = lookupBatchLingerMs;
+        this.maxInFlightLookups = maxInFlightLookups;
+    }
+
     public List<String> getFieldsToBeEnriched() {
         return Collections.unmodifiableList(fieldsToBeEnriched);
     }
@@ -113,6 +151,22 @@ public class EnrichmentTransform extends Transform {
         return entryRefreshInterval;
     }
 
+    public boolean isAsyncLookups() {
+        return asyncLookups;
+    }
+
+    public int getMaxLookupBatchSize() {
+        return maxLookupBatchSize;
+    }
+
+    public long getLookupBatchLingerMs() {
+        return lookupBatchLingerMs;
+    }
+
+    public int getMaxInFlightLookups() {
+        return maxInFlightLookups;
+    }
+
     @Override
     public String toString() {
         return "EnrichmentTransform{" +
@@ -121,6 +175,10 @@ public class EnrichmentTransform extends Transform {
                 ", maxCacheSize=" + maxCacheSize +
                 ", entryExpirationInterval=" + entryExpirationInterval +
                 ", entryRefreshInterval=" + entryRefreshInterval +
+                ", asyncLookups=" + asyncLookups +
+                ", maxLookupBatchSize=" + maxLookupBatchSize +
+                ", lookupBatchLingerMs=" + lookupBatchLingerMs +
+                ", maxInFlightLookups=" + maxInFlightLookups +
                 '}'+super.toString();
     }
 }
@@ -0,0 +1,114 @@
+/**
+  * Copyright 2017 Hortonworks.
+  *
+  * Licensed under the Apache License, Version 2.0 (the "License");
+  * you may not use this file except in compliance with the License.
+  * You may obtain a copy of the License at
+
+  *   http://www.apache.org/licenses/LICENSE-2.0
+
+  * Unless required by applicable law or agreed to in writing, software
+  * distributed under the License is distributed on an "AS IS" BASIS,
+  * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  * See the License for the specific language governing permissions and
+  * limitations under the License.
+ **/
+
+package com.hortonworks.streamline.streams.layout.component.rule.action.transform;
+
+/**
+ * Data provider of a reference table which is loaded completely from a delimited file into an off heap index, shared by
+ * all the executors of a worker. The table is loaded again when the file changes and the new snapshot replaces the
+ * previous one atomically.
+ * <p>
+ * With the {@link IndexType#HASH} index, each line of the file is {@code key<delimiter>value} and the keys are looked
+ * up by their string representation. With the {@link IndexType#RANGE} index, each line is
+ * {@code start<delimiter>end<delimiter>value} with an inclusive range of longs, sorted by start and not overlapping,
+ * and a key is looked up by the range containing it. Range bounds and keys can also be IPv4 addresses.
+ * </p>
+ * The file should be replaced atomically, for example by renaming a new file over it, so that a refresh does not
+ * read a partially written file.
+ */
+public class SnapshotTransformDataProvider extends TransformDataProvider {
+    public static final String DEFAULT_DELIMITER = ",";
+    public static final long DEFAULT_REFRESH_INTERVAL = 60 * 5;
+
+    public enum IndexType {
+        HASH, RANGE
+    }
+
+    private final String path;
+    private final IndexType indexType;
+    private String delimiter = DEFAULT_DELIMITER;
+
+    /**
+     * interval (in seconds) at which the file is checked for changes, no refresh if it is not positive.
+     */
+    private long refreshInterval = DEFAULT_REFRESH_INTERVAL;
+
+    private SnapshotTransformDataProvider() {
+        this(null, IndexType.HASH);
+    }
+
+    public SnapshotTransformDataProvider(String path, IndexType indexType) {
+        super(null);
+        this.path = path;
+        this.indexType = indexType;
+    }
+
+    public void withDelimiter(String delimiter) {
+        this.delimiter = delimiter;
+    }
+
+    public void withRefreshInterval(long refreshInterval) {
+        this.refreshInterval = refreshInterval;
+    }
+
+    public String getPath() {
+        return path;
+    }
+
+    public IndexType getIndexType() {
+        return indexType;
+    }
+
+    public String getDelimiter() {
+        return delimiter;
+    }
+
+    public long getRefreshInterval() {
+        return refreshInterval;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+
+        SnapshotTransformDataProvider that = (SnapshotTransformDataProvider) o;
+
+        if (refreshInterval != that.refreshInterval) return false;
+        if (path != null ? !path.equals(that.path) : that.path != null) return false;
+        if (indexType != that.indexType) return false;
+        return delimiter != null ? delimiter.equals(that.delimiter) : that.delimiter == null;
+    }
+
+    @Override
+    public int hashCode() {
+        int result = path != null ? path.hashCode() : 0;
+        result = 31 * result + (indexType != null ? indexType.hashCode() : 0);
+        result = 31 * result + (delimiter != null ? delimiter.hashCode() : 0);
+        result = 31 * result + (int) (refreshInterval ^ (refreshInterval >>> 32));
+        return result;
+    }
+
+    @Override
+    public String toString() {
+        return "SnapshotTransformDataProvider{" +
+                "path='" + path + '\'' +
+                ", indexType=" + indexType +
+                ", delimiter='" + delimiter + '\'' +
+                ", refreshInterval=" + refreshInterval +
+                '}';
+    }
+}
@@ -28,6 +28,16 @@ import java.io.Serializable;
 public class Window implements Serializable {
     public static final String WINDOW_ID = "windowid";
 
+    /**
+     * How the watermark of an event time window is derived from the timestamps of its input streams.
+     */
+    public enum WatermarkStrategy {
+        // the watermark follows the slowest input stream, once every input stream has been seen
+        MIN_OF_INPUTS,
+        // the watermark follows the fastest input stream, windows fire earlier but lagging streams produce late events
+        MAX_OF_INPUTS
+    }
+
     @JsonTypeInfo(use= JsonTypeInfo.Id.MINIMAL_CLASS, include= JsonTypeInfo.As.PROPERTY, property="class")
     public static class WindowParam  implements Serializable {
     }
@@ -109,6 +119,14 @@ public class Window implements Serializable {
     private WindowParam slidingInterval;
     private String tsField;
     private int lagMs;
+    // keep the events of the window in a segment store on local disk instead of the heap, the events are acked once
+    // stored and the results emitted unanchored, a window that spills to disk is lost if the worker fails
+    private boolean spillToDisk;
+    // event time windows: the watermark strategy, how long fired windows accept late events and are fired again
+    // with the late events, and the stream that receives the events arriving after that
+    private WatermarkStrategy watermarkStrategy;
+    private int allowedLatenessMs;
+    private String lateEventsStream;
 
     // for jackson
     private Window() {
@@ -125,6 +143,10 @@ public class Window implements Serializable {
         this.slidingInterval = other.getSlidingInterval();
         this.tsField = other.getTsField();
         this.lagMs = other.getLagMs();
+        this.spillToDisk = other.isSpillToDisk();
+        this.watermarkStrategy = other.getWatermarkStrategy();
+        this.allowedLatenessMs = other.getAllowedLatenessMs();
+        this.lateEventsStream = other.getLateEventsStream();
     }
 
     public WindowParam getWindowLength() {
@@ -159,6 +181,43 @@ public class Window implements Serializable {
         this.lagMs = lagMs;
     }
 
+    public boolean isSpillToDisk() {
+        return spillToDisk;
+    }
+
+    /**
+     * Sets whether the events of the window are kept on local disk instead of the heap. This opts out of at least
+     * once processing for the window: the events are acked as soon as they are stored and are not replayed if the
+     * worker fails, so a window longer than the heap allows does not hold back the spouts either.
+     */
+    public void setSpillToDisk(boolean spillToDisk) {
+        this.spillToDisk = spillToDisk;
+    }
+
+    public WatermarkStrategy getWatermarkStrategy() {
+        return watermarkStrategy;
+    }
+
+    public void setWatermarkStrategy(WatermarkStrategy watermarkStrategy) {
+        this.watermarkStrategy = watermarkStrategy;
+    }
+
+    public int getAllowedLatenessMs() {
+        return allowedLatenessMs;
+    }
+
+    public void setAllowedLatenessMs(int allowedLatenessMs) {
+        this.allowedLatenessMs = allowedLatenessMs;
+    }
+
+    public String getLateEventsStream() {
+        return lateEventsStream;
+    }
+
+    public void setLateEventsStream(String lateEventsStream) {
+        this.lateEventsStream = lateEventsStream;
+    }
+
     @Override
     public boolean equals(Object o) {
         if (this == o) return true;
@@ -167,6 +226,11 @@ public class Window implements Serializable {
         Window window = (Window) o;
 
         if (lagMs != window.lagMs) return false;
+        if (spillToDisk != window.spillToDisk) return false;
+        if (allowedLatenessMs != window.allowedLatenessMs) return false;
+        if (watermarkStrategy != window.watermarkStrategy) return false;
+        if (lateEventsStream != null ? !lateEventsStream.equals(window.lateEventsStream) : window.lateEventsStream != null)
+            return false;
         if (windowLength != null ? !windowLength.equals(window.windowLength) : window.windowLength != null)
             return false;
         if (slidingInterval != null ? !slidingInterval.equals(window.slidingInterval) : window.slidingInterval != null)
@@ -181,6 +245,10 @@ public class Window implements Serializable {
         result = 31 * result + (slidingInterval != null ? slidingInterval.hashCode() : 0);
         result = 31 * result + (tsField != null ? tsField.hashCode() : 0);
         result = 31 * result + lagMs;
+        result = 31 * result + (spillToDisk ? 1 : 0);
+        result = 31 * result + (watermarkStrategy != null ? watermarkStrategy.hashCode() : 0);
+        result = 31 * result + allowedLatenessMs;
+        result = 31 * result + (lateEventsStream != null ? lateEventsStream.hashCode() : 0);
         return result;
     }
 
@@ -191,6 +259,10 @@ public class Window implements Serializable {
                 ", slidingInterval=" + slidingInterval +
                 ", tsField='" + tsField + '\'' +
                 ", lagMs=" + lagMs +
+                ", spillToDisk=" + spillToDisk +
+                ", watermarkStrategy=" + watermarkStrategy +
+                ", allowedLatenessMs=" + allowedLatenessMs +
+                ", lateEventsStream='" + lateEventsStream + '\'' +
                 '}';
     }
 }
@@ -18,6 +18,7 @@
 
 import sys
 import os
+import struct
 import traceback
 
 try:
@@ -25,14 +26,204 @@ try:
 except ImportError:
     import json
 
+PY3 = sys.version_info[0] >= 3
+if PY3:
+    text_type = str
+    integer_types = (int,)
+    stdin = sys.stdin.buffer
+    stdout = sys.stdout.buffer
+else:
+    text_type = unicode
+    integer_types = (int, long)
+    stdin = sys.stdin
+    stdout = sys.stdout
+
+# the wire protocol of the serializer of the parent, see ShellProcess.PROTOCOL_ENV
+PROTOCOL = os.environ.get('STREAMLINE_MULTILANG_PROTOCOL', 'json')
+
 json_encode = lambda x: json.dumps(x, default=obj_dict)
 json_decode = lambda x: json.loads(x)
 
 def obj_dict(obj):
     return obj.__dict__
 
+# MessagePack codec, the msgpack package is used when it is installed
+_B = struct.Struct('>B').pack
+_BB = struct.Struct('>BB').pack
+_BH = struct.Struct('>BH').pack
+_BI = struct.Struct('>BI').pack
+
+def _pack(obj, out):
+    t = type(obj)
+    if t is text_type:
+        _pack_raw(obj.encode('utf-8'), 0xa0, 0xd9, out)
+    elif t is dict:
+        _pack_header(len(obj), 0x80, 0xde, out)
+        for k, v in obj.items():
+            _pack(k, out)
+            _pack(v, out)
+    elif obj is None:
+        out.append(b'\xc0')
+    elif obj is True:
+        out.append(b'\xc3')
+    elif obj is False:
+        out.append(b'\xc2')
+    elif isinstance(obj, integer_types):
+        _pack_int(obj, out)
+    elif isinstance(obj, float):
+        out.append(struct.pack('>Bd', 0xcb, obj))
+    elif isinstance(obj, text_type):
+        _pack_raw(obj.encode('utf-8'), 0xa0, 0xd9, out)
+    elif not PY3 and isinstance(obj, str):
+        _pack_raw(obj, 0xa0, 0xd9, out)
+    elif isinstance(obj, (bytes, bytearray)):
+        _pack_raw(bytes(obj), None, 0xc4, out)
+    elif isinstance(obj, dict):
+        _pack(dict(obj), out)
+    elif isinstance(obj, (list, tuple)):
+        _pack_header(len(obj), 0x90, 0xdc, out)
+        for v in obj:
+            _pack(v, out)
+    elif hasattr(obj, '__dict__'):
+        _pack(obj_dict(obj), out)
+    else:
+        _pack(str(obj), out)
+
+def _pack_int(n, out):
+    if 0 <= n < 0x80:
+        out.append(_B(n))
+    elif -32 <= n < 0:
+        out.append(_B(n + 0x100))
+    elif n >= 0:
+        if n <= 0xff:
+            out.append(_BB(0xcc, n))
+        elif n <= 0xffff:
+            out.append(_BH(0xcd, n))
+        elif n <= 0xffffffff:
+            out.append(_BI(0xce, n))
+        else:
+            out.append(struct.pack('>BQ', 0xcf, n))
+    elif n >= -0x80:
+        out.append(struct.pack('>Bb', 0xd0, n))
+    elif n >= -0x8000:
+        out.append(struct.pack('>Bh', 0xd1, n))
+    elif n >= -0x80000000:
+        out.append(struct.pack('>Bi', 0xd2, n))
+    else:
+        out.append(struct.pack('>Bq', 0xd3, n))
+
+# str8 and bin8 are followed by the 16 and 32 bit variants
+def _pack_raw(data, fix, type8, out):
+    n = len(data)
+    if fix is not None and n < 32:
+        out.append(_B(fix | n))
+    elif n <= 0xff:
+        out.append(_BB(type8, n))
+    elif n <= 0xffff:
+        out.append(_BH(type8 + 1, n))
+    else:
+        out.append(_BI(type8 + 2, n))
+    out.append(data)
+
+def _pack_header(n, fix, type16, out):
+    if n < 16:
+        out.append(_B(fix | n))
+    elif n <= 0xffff:
+        out.append(_BH(type16, n))
+    else:
+        out.append(_BI(type16 + 1, n))
+
+_FIXED = {
+    0xca: ('>f', 4), 0xcb: ('>d', 8),
+    0xcc: ('>B', 1), 0xcd: ('>H', 2), 0xce: ('>I', 4), 0xcf: ('>Q', 8),
+    0xd0: ('>b', 1), 0xd1: ('>h', 2), 0xd2: ('>i', 4), 0xd3: ('>q', 8),
+}
+
+def _unpack(data, pos):
+    t = data[pos]
+    pos += 1
+    if t <= 0x7f:
+        return t, pos
+    if t >= 0xe0:
+        return t - 0x100, pos
+    if t <= 0x8f:
+        return _unpack_map(t & 0x0f, data, pos)
+    if t <= 0x9f:
+        return _unpack_array(t & 0x0f, data, pos)
+    if t <= 0xbf:
+        return _unpack_str(t & 0x1f, data, pos)
+    if t == 0xc0:
+        return None, pos
+    if t == 0xc2:
+        return False, pos
+    if t == 0xc3:
+        return True, pos
+    if t in _FIXED:
+        fmt, size = _FIXED[t]
+        return struct.unpack_from(fmt, data, pos)[0], pos + size
+    if 0xc4 <= t <= 0xc6:
+        n, pos = _unpack_length(t - 0xc4, data, pos)
+        return bytes(data[pos:pos + n]), pos + n
+    if 0xd9 <= t <= 0xdb:
+        n, pos = _unpack_length(t - 0xd9, data, pos)
+        return _unpack_str(n, data, pos)
+    if 0xdc <= t <= 0xdd:
+        n, pos = _unpack_length(t - 0xdc + 1, data, pos)
+        return _unpack_array(n, data, pos)
+    if 0xde <= t <= 0xdf:
+        n, pos = _unpack_length(t - 0xde + 1, data, pos)
+        return _unpack_map(n, data, pos)
+    raise Exception('Unsupported MessagePack type %#x' % t)
+
+def _unpack_length(width, data, pos):
+    fmt, size = (('>B', 1), ('>H', 2), ('>I', 4))[width]
+    return struct.unpack_from(fmt, data, pos)[0], pos + size
+
+def _unpack_str(n, data, pos):
+    return bytes(data[pos:pos + n]).decode('utf-8'), pos + n
+
+def _unpack_array(n, data, pos):
+    result = []
+    for _ in range(n):
+        v, pos = _unpack(data, pos)
+        result.append(v)
+    return result, pos
+
+def _unpack_map(n, data, pos):
+    result = {}
+    for _ in range(n):
+        k, pos = _unpack(data, pos)
+        v, pos = _unpack(data, pos)
+        result[k] = v
+    return result, pos
+
+try:
+    import msgpack
+    packb = lambda x: msgpack.packb(x, use_bin_type=True, default=obj_dict)
+    if msgpack.version >= (0, 5, 2):
+        unpackb = lambda x: msgpack.unpackb(x, raw=False)
+    else:
+        unpackb = lambda x: msgpack.unpackb(x, encoding='utf-8')
+except ImportError:
+    def packb(obj):
+        out = []
+        _pack(obj, out)
+        return b''.join(out)
+
+    def unpackb(data):
+        return _unpack(bytearray(data), 0)[0]
+
+def _readFully(n):
+    data = stdin.read(n)
+    if len(data) < n:
+        raise Exception('Read EOF from stdin')
+    return data
+
 #reads lines and reconstructs newlines appropriately
 def readMsg():
+    if PROTOCOL == 'msgpack':
+        length = struct.unpack('>I', _readFully(4))[0]
+        return unpackb(_readFully(length))
     msg = ""
     while True:
         line = sys.stdin.readline()
@@ -43,27 +234,59 @@ def readMsg():
         msg = msg + line
     return json_decode(msg[0:-1])
 
+def _toEvent(cmd):
+    return StreamlineEvent(cmd["fieldsAndValues"], cmd["id"], cmd["sourceId"], cmd["sourceStream"])
+
 def readEvent():
+    return _toEvent(readMsg())
+
+# reads the next event, or the batch of events sent in one message
+def readEvents():
     cmd = readMsg()
-    return StreamlineEvent(cmd["fieldsAndValues"], cmd["id"], cmd["sourceId"], cmd["sourceStream"])
+    if "events" in cmd:
+        return [_toEvent(event) for event in cmd["events"]]
+    return [_toEvent(cmd)]
 
+# binary messages are buffered until the end of the batch, see flush()
 def sendMsgToParent(msg):
+    if PROTOCOL == 'msgpack':
+        data = packb(msg)
+        stdout.write(struct.pack('>I', len(data)))
+        stdout.write(data)
+        return
     print(json_encode(msg))
     print("end")
     sys.stdout.flush()
 
+def flush():
+    if PROTOCOL == 'msgpack':
+        stdout.flush()
+    else:
+        sys.stdout.flush()
+
+_SYNC = {'command':'sync'}
+_sync_frame = None
+
 def sync():
-    sendMsgToParent({'command':'sync'})
+    global _sync_frame
+    if PROTOCOL == 'msgpack':
+        if _sync_frame is None:
+            data = packb(_SYNC)
+            _sync_frame = struct.pack('>I', len(data)) + data
+        stdout.write(_sync_frame)
+        return
+    sendMsgToParent(_SYNC)
 
 def sendpid(piddir):
     pid = os.getpid()
     sendMsgToParent({'pid':pid})
+    flush()
     open(piddir + "/" + str(pid), "w").close()
 
 def emit(stream, fieldsAndValues):
     m = {"command": "emit"}
     m["outputStream"] = stream
-    m["streamlineEvent"] = StreamlineEvent(fieldsAndValues)
+    m["streamlineEvent"] = {"fieldsAndValues": fieldsAndValues, "id": None, "sourceId": None, "sourceStream": None}
     sendMsgToParent(m)
 
 def reportError(msg):
@@ -99,11 +322,13 @@ class Processor(object):
         try:
             self.initialize(conf, context, outputStreams)
             while True:
-                event = readEvent()
-                try:
-                    self.process(event)
-                except Exception as e:
-                    reportError(traceback.format_exc(e))
-                sync()
+                for event in readEvents():
+                    try:
+                        self.process(event)
+                    except Exception as e:
+                        reportError(traceback.format_exc())
+                    sync()
+                flush()
         except Exception as e:
-                reportError(traceback.format_exc(e))
+                reportError(traceback.format_exc())
+                flush()
@@ -22,61 +22,254 @@ import com.hortonworks.streamline.streams.notification.Notifier;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.Semaphore;
 import java.util.concurrent.TimeUnit;
 
 /**
  * Asynchronously delivers notifications to notifiers.
+ * <p>
+ * Each notifier has its own queue, drained by at most one thread of the pool at a time. The number of
+ * notifications of a notifier that are queued or not yet acked or failed is bounded by the queue size,
+ * {@link #enqueue(Notifier, Notification)} blocks while the queue is full and fails with a
+ * {@link NotificationQueueFullException} if it stays full longer than the enqueue timeout, so that a slow
+ * notifier pushes back on the caller instead of accumulating notifications.
+ * </p>
+ * The notifier properties below configure the queue of a notifier:
+ * <ul>
+ *     <li>{@code queueSize}: the maximum number of pending notifications.</li>
+ *     <li>{@code rateLimit}: the maximum number of deliveries per second, unlimited if not set.</li>
+ *     <li>{@code batchSize}: the maximum number of queued notifications delivered in a single
+ *     {@link Notifier#notify(List)} call, e.g. as a digest email. Defaults to 1.</li>
+ * </ul>
  */
 public class NotificationQueueHandler {
     private static final Logger LOG = LoggerFactory.getLogger(NotificationQueueHandler.class);
-    private static final int MAX_THREADS = 10;
+    static final int MAX_THREADS = 10;
+    static final int DEFAULT_QUEUE_SIZE = 1000;
+    static final int DEFAULT_ENQUEUE_TIMEOUT_MS = 5000;
+
+    static final String PROP_QUEUE_SIZE = "queueSize";
+    static final String PROP_RATE_LIMIT = "rateLimit";
+    static final String PROP_BATCH_SIZE = "batchSize";
+
     /**
      * Track the tasks so that it can be re-submitted in case of retry.
      */
     private final ConcurrentHashMap<String, NotificationQueueTask> taskMap;
+    private final ConcurrentHashMap<Notifier, NotifierQueue> notifierQueues;
+    private final int defaultQueueSize;
+    private final long enqueueTimeoutMs;
 
-    private static class NotificationQueueTask implements Runnable {
-        final Notifier notifier;
+    private static class NotificationQueueTask {
+        final NotifierQueue queue;
         final Notification notification;
+        // whether the notification was resubmitted, acked or failed since its delivery started
+        volatile boolean settled;
 
-        NotificationQueueTask(Notifier notifier, Notification notification) {
-            this.notifier = notifier;
+        NotificationQueueTask(NotifierQueue queue, Notification notification) {
+            this.queue = queue;
             this.notification = notification;
         }
+    }
+
+    /**
+     * The pending notifications of a notifier. The queue is scheduled on the executor whenever it has
+     * notifications, and delivers a batch of them each time it runs.
+     */
+    private class NotifierQueue implements Runnable {
+        final Notifier notifier;
+        // one permit per notification enqueued and not yet acked or failed
+        final Semaphore permits;
+        final int batchSize;
+        // minimum interval between two deliveries, 0 if the notifier is not rate limited
+        final long intervalNanos;
+        // guarded by this
+        final Deque<Notification> pending = new ArrayDeque<>();
+        boolean scheduled;
+        boolean closed;
+        // only accessed by the thread running the queue
+        long nextDeliveryNanos;
+
+        NotifierQueue(Notifier notifier, int queueSize, double rateLimit, int batchSize) {
+            this.notifier = notifier;
+            this.permits = new Semaphore(queueSize);
+            this.batchSize = batchSize;
+            this.intervalNanos = rateLimit > 0 ? (long) (TimeUnit.SECONDS.toNanos(1) / rateLimit) : 0;
+        }
+
+        synchronized void add(Notification notification, boolean retry) {
+            if (closed) {
+                LOG.warn("Dropping notification {} of closed notifier {}", notification, notifier);
+                return;
+            }
+            if (retry) {
+                pending.addFirst(notification);
+            } else {
+                pending.addLast(notification);
+            }
+            if (!scheduled) {
+                scheduled = true;
+                executorService.execute(this);
+            }
+        }
+
+        synchronized void close() {
+            closed = true;
+            pending.clear();
+        }
 
         @Override
         public void run() {
+            long delayNanos = nextDeliveryNanos - System.nanoTime();
+            if (intervalNanos > 0 && delayNanos > 0) {
+                executorService.schedule(this, delayNanos, TimeUnit.NANOSECONDS);
+                return;
+            }
+            List<Notification> batch = new ArrayList<>();
+            synchronized (this) {
+                while (batch.size() < batchSize && !pending.isEmpty()) {
+                    batch.add(pending.pollFirst());
+                }
+            }
+            if (!batch.isEmpty()) {
+                nextDeliveryNanos = System.nanoTime() + intervalNanos;
+                deliver(batch);
+            }
+            synchronized (this) {
+                if (pending.isEmpty()) {
+                    scheduled = false;
+                } else {
+                    // give the other notifiers a chance before delivering the next batch
+                    executorService.execute(this);
+                }
+            }
+        }
+
+        private void deliver(List<Notification> batch) {
+            for (Notification notification : batch) {
+                NotificationQueueTask task = taskMap.get(notification.getId());
+                if (task != null) {
+                    task.settled = false;
+                }
+            }
             try {
-                notifier.notify(notification);
+                if (batch.size() == 1) {
+                    notifier.notify(batch.get(0));
+                } else {
+                    notifier.notify(batch);
+                }
             } catch (Throwable th) {
                 LOG.error("Sending notification failed ", th);
-                // fail so that the framework can retry
-                notifier.getContext().fail(notification.getId());
-                throw th;
+                // fail so that the framework can retry, except the notifications the notifier already acked or failed
+                for (Notification notification : batch) {
+                    NotificationQueueTask task = taskMap.get(notification.getId());
+                    if (task == null || task.settled) {
+                        continue;
+                    }
+                    try {
+                        notifier.getContext().fail(notification.getId());
+                    } catch (Exception ex) {
+                        LOG.error("Failing notification {} failed", notification, ex);
+                    }
+                }
             }
         }
     }
 
-    private final ExecutorService executorService;
+    /**
+     * The pool threads drain the notifier queues. The work queue of the executor holds at most one
+     * task per notifier, the notifications themselves are bounded by the notifier queues.
+     */
+    private final ScheduledExecutorService executorService;
 
     public NotificationQueueHandler() {
         this(MAX_THREADS);
     }
 
     public NotificationQueueHandler(int nThreads) {
-        // TODO: evaluate ThreadPoolExecutor with bounded queue size
-        executorService = Executors.newFixedThreadPool(nThreads);
+        this(nThreads, DEFAULT_QUEUE_SIZE, DEFAULT_ENQUEUE_TIMEOUT_MS);
+    }
+
+    /**
+     * @param nThreads         the number of threads delivering the notifications
+     * @param defaultQueueSize the queue size of the notifiers that do not configure one
+     * @param enqueueTimeoutMs how long an enqueue waits for a full queue before it fails
+     */
+    public NotificationQueueHandler(int nThreads, int defaultQueueSize, long enqueueTimeoutMs) {
+        if (defaultQueueSize <= 0) {
+            throw new IllegalArgumentException("Invalid queue size " + defaultQueueSize);
+        }
+        executorService = new ScheduledThreadPoolExecutor(nThreads);
         taskMap = new ConcurrentHashMap<>();
+        notifierQueues = new ConcurrentHashMap<>();
+        this.defaultQueueSize = defaultQueueSize;
+        this.enqueueTimeoutMs = enqueueTimeoutMs;
+    }
+
+    /**
+     * Creates the queue of a notifier with the queue settings of the notifier properties.
+     */
+    public void register(Notifier notifier, Properties properties) {
+        int queueSize = getProperty(properties, PROP_QUEUE_SIZE, defaultQueueSize);
+        int batchSize = getProperty(properties, PROP_BATCH_SIZE, 1);
+        String rateLimit = properties != null ? properties.getProperty(PROP_RATE_LIMIT) : null;
+        NotifierQueue queue = new NotifierQueue(notifier, queueSize, rateLimit != null ? Double.parseDouble(rateLimit) : 0,
+                                                batchSize);
+        if (notifierQueues.putIfAbsent(notifier, queue) == null) {
+            LOG.info("Registered queue for notifier {}, queue size {}, rate limit {}, batch size {}",
+                     notifier, queueSize, rateLimit, batchSize);
+        }
     }
 
+    /**
+     * Removes the queue of a notifier, dropping its pending notifications.
+     */
+    public void unregister(Notifier notifier) {
+        NotifierQueue queue = notifierQueues.remove(notifier);
+        if (queue != null) {
+            queue.close();
+            Iterator<Map.Entry<String, NotificationQueueTask>> it = taskMap.entrySet().iterator();
+            while (it.hasNext()) {
+                if (it.next().getValue().queue == queue) {
+                    it.remove();
+                }
+            }
+        }
+    }
 
+    /**
+     * Enqueues a notification, waiting while the queue of the notifier is full.
+     *
+     * @throws NotificationQueueFullException if the queue is still full after the enqueue timeout
+     */
     public void enqueue(Notifier notifier, Notification notification) {
-        NotificationQueueTask task = new NotificationQueueTask(notifier, notification);
-        taskMap.put(notification.getId(), task);
-        executorService.submit(task);
+        NotifierQueue queue = getQueue(notifier);
+        String notificationId = notification.getId();
+        try {
+            if (!queue.permits.tryAcquire(enqueueTimeoutMs, TimeUnit.MILLISECONDS)) {
+                throw new NotificationQueueFullException("Timed out enqueuing notification " + notificationId
+                                                                 + ", the queue of notifier " + notifier + " is full");
+            }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new NotificationServiceException("Interrupted while enqueuing notification " + notificationId, ex);
+        }
+        NotificationQueueTask previous = taskMap.put(notificationId, new NotificationQueueTask(queue, notification));
+        if (previous != null) {
+            // a notification enqueued again before it was acked or failed holds a single permit
+            previous.queue.permits.release();
+        }
+        queue.add(notification, false);
     }
 
     /**
@@ -90,11 +283,15 @@ public class NotificationQueueHandler {
             throw new NotificationServiceException("Could not find a previously enqueued task" +
                                                            " for notification id " + notificationId);
         }
-        executorService.submit(task);
+        task.settled = true;
+        task.queue.add(task.notification, true);
     }
 
     public void remove(String notificationId) {
-        taskMap.remove(notificationId);
+        NotificationQueueTask task = taskMap.remove(notificationId);
+        if (task != null) {
+            task.queue.permits.release();
+        }
     }
 
     public void shutdown() {
@@ -113,4 +310,22 @@ public class NotificationQueueHandler {
             Thread.currentThread().interrupt();
         }
     }
+
+    private NotifierQueue getQueue(Notifier notifier) {
+        NotifierQueue queue = notifierQueues.get(notifier);
+        if (queue == null) {
+            register(notifier, null);
+            queue = notifierQueues.get(notifier);
+        }
+        return queue;
+    }
+
+    private int getProperty(Properties properties, String key, int defaultValue) {
+        String value = properties != null ? properties.getProperty(key) : null;
+        int result = value != null ? Integer.parseInt(value) : defaultValue;
+        if (result <= 0) {
+            throw new IllegalArgumentException("Invalid value " + result + " for " + key);
+        }
+        return result;
+    }
 }
@@ -25,6 +25,7 @@ import com.hortonworks.streamline.streams.notification.Notifier;
 import com.hortonworks.streamline.streams.notification.NotifierConfig;
 
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
 
 /**
  * <p>
@@ -100,6 +101,11 @@ public interface NotificationService {
      */
     Notification updateNotificationStatus(String notificationId, Notification.Status status);
 
+    /**
+     * Returns a future completed once the notifications and status updates written so far are durable.
+     */
+    CompletableFuture<Void> sync();
+
     /**
      * Any clean up goes here
      */
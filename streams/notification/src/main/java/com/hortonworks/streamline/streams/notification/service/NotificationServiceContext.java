@@ -42,6 +42,7 @@ public class NotificationServiceContext implements NotificationContext {
     private final NotificationService notificationService;
     private final ConcurrentHashMap<String, AtomicInteger> notificationMap;
     private final int maxAttempts;
+    private final Properties properties;
 
     public NotificationServiceContext(NotificationContext context, NotificationQueueHandler queueHandler,
                                       NotificationService notificationService) {
@@ -49,7 +50,7 @@ public class NotificationServiceContext implements NotificationContext {
         this.queueHandler = queueHandler;
         this.notificationService = notificationService;
         this.notificationMap = new ConcurrentHashMap<>();
-        Properties properties = context.getConfig().getProperties();
+        this.properties = context.getConfig().getProperties();
         String propRetryCount = null;
         if (properties != null) {
             propRetryCount = properties.getProperty(PROP_RETRY_COUNT);
@@ -68,7 +69,15 @@ public class NotificationServiceContext implements NotificationContext {
         notificationService.updateNotificationStatus(notificationId, Notification.Status.DELIVERED);
         notificationMap.remove(notificationId);
         queueHandler.remove(notificationId);
-        wrappedContext.ack(notificationId);
+        // ack only once the notification and its status are durable, so that it is replayed otherwise
+        notificationService.sync().whenComplete((result, th) -> {
+            if (th == null) {
+                wrappedContext.ack(notificationId);
+            } else {
+                LOG.error("Failing notification id {}, storing it failed", notificationId, th);
+                wrappedContext.fail(notificationId);
+            }
+        });
     }
 
     @Override
@@ -80,13 +89,20 @@ public class NotificationServiceContext implements NotificationContext {
             notificationService.updateNotificationStatus(notificationId, Notification.Status.FAILED);
             notificationMap.remove(notificationId);
             queueHandler.remove(notificationId);
-            wrappedContext.fail(notificationId);
+            notificationService.sync().whenComplete((result, th) -> wrappedContext.fail(notificationId));
         } else {
             // queue it again
             queueHandler.resubmit(notificationId);
         }
     }
 
+    /**
+     * Returns the notifier properties, also used to configure the queue of the notifier.
+     */
+    Properties getProperties() {
+        return properties;
+    }
+
     @Override
     public String toString() {
         return "NotificationServiceContext{" +
@@ -33,6 +33,7 @@ import java.util.Collections;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
 
 /**
@@ -48,6 +49,8 @@ public class NotificationServiceImpl implements NotificationService {
     private static final String QUERY_PARAM_DESC = "desc";
 
     private static final String QUEUEHANDLER_THREADS = "queuehandler.threads";
+    private static final String QUEUEHANDLER_QUEUE_SIZE = "queuehandler.queue.size";
+    private static final String QUEUEHANDLER_ENQUEUE_TIMEOUT_MS = "queuehandler.enqueue.timeout.ms";
 
     private final ConcurrentHashMap<String, Notifier> notifiers = new ConcurrentHashMap<>();
 
@@ -78,11 +81,10 @@ public class NotificationServiceImpl implements NotificationService {
     public NotificationServiceImpl(Map<String, Object> config, NotificationStore store) {
         LOG.info("Initializing NotificationServiceImpl with config {}, notification store {}", config, store);
         this.notificationStore = Optional.ofNullable(store);
-        if(config.get(QUEUEHANDLER_THREADS) != null) {
-            this.queueHandler = new NotificationQueueHandler(((Number)config.get(QUEUEHANDLER_THREADS)).intValue());
-        } else {
-            this.queueHandler = new NotificationQueueHandler();
-        }
+        this.queueHandler = new NotificationQueueHandler(
+                getInt(config, QUEUEHANDLER_THREADS, NotificationQueueHandler.MAX_THREADS),
+                getInt(config, QUEUEHANDLER_QUEUE_SIZE, NotificationQueueHandler.DEFAULT_QUEUE_SIZE),
+                getInt(config, QUEUEHANDLER_ENQUEUE_TIMEOUT_MS, NotificationQueueHandler.DEFAULT_ENQUEUE_TIMEOUT_MS));
         this.notifierProxyUtil = new ProxyUtil<>(Notifier.class);
     }
 
@@ -94,7 +96,9 @@ public class NotificationServiceImpl implements NotificationService {
         Notifier registeredNotifier = notifiers.putIfAbsent(notifierName, notifier);
         if (registeredNotifier == null) {
             LOG.info("Initializing notifier");
-            notifier.open(new NotificationServiceContext(ctx, queueHandler, this));
+            NotificationServiceContext serviceContext = new NotificationServiceContext(ctx, queueHandler, this);
+            queueHandler.register(notifier, serviceContext.getProperties());
+            notifier.open(serviceContext);
             registeredNotifier = notifier;
         }
         LOG.info("Notifier {} registered", notifierName);
@@ -107,6 +111,7 @@ public class NotificationServiceImpl implements NotificationService {
         Notifier notifier = notifiers.remove(notifierName);
         if (notifier != null) {
             LOG.info("Closing notifier {}", notifierName);
+            queueHandler.unregister(notifier);
             notifier.close();
         }
         return notifier;
@@ -174,11 +179,21 @@ public class NotificationServiceImpl implements NotificationService {
         return notificationStore.map(s -> s.updateNotificationStatus(notificationId, status)).orElse(null);
     }
 
+    @Override
+    public CompletableFuture<Void> sync() {
+        return notificationStore.map(s -> s.sync()).orElse(CompletableFuture.<Void>completedFuture(null));
+    }
+
     @Override
     public void close() {
         queueHandler.shutdown();
     }
 
+    private int getInt(Map<String, Object> config, String key, int defaultValue) {
+        Object value = config.get(key);
+        return value != null ? ((Number) value).intValue() : defaultValue;
+    }
+
     /**
      * Loads the jar from jarPath and instantiates {@link Notifier} specified in className.
      */
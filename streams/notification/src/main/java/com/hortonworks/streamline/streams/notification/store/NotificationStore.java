@@ -22,6 +22,7 @@ import com.hortonworks.streamline.streams.notification.Notification;
 
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 
 /**
  * <p>
@@ -83,6 +84,15 @@ public interface NotificationStore {
      */
     <T> List<T> findEntities(Criteria<T> criteria);
 
+    /**
+     * Returns a future completed once the notifications stored and updated so far are durable.
+     * Stores that write synchronously return a completed future, stores that buffer writes
+     * complete it after flushing them.
+     */
+    default CompletableFuture<Void> sync() {
+        return CompletableFuture.completedFuture(null);
+    }
+
     /**
      * Close connections with the data store and clean up.
      */
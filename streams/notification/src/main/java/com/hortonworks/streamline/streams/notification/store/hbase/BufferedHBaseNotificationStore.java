@@ -0,0 +1,261 @@
+/**
+  * Copyright 2017 Hortonworks.
+  *
+  * Licensed under the Apache License, Version 2.0 (the "License");
+  * you may not use this file except in compliance with the License.
+  * You may obtain a copy of the License at
+
+  *   http://www.apache.org/licenses/LICENSE-2.0
+
+  * Unless required by applicable law or agreed to in writing, software
+  * distributed under the License is distributed on an "AS IS" BASIS,
+  * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  * See the License for the specific language governing permissions and
+  * limitations under the License.
+ **/
+
+package com.hortonworks.streamline.streams.notification.store.hbase;
+
+import com.hortonworks.streamline.streams.notification.Notification;
+import com.hortonworks.streamline.streams.notification.common.NotificationImpl;
+import com.hortonworks.streamline.streams.notification.store.NotificationStoreException;
+import com.hortonworks.streamline.streams.notification.store.hbase.mappers.TableMutation;
+import org.apache.hadoop.hbase.TableName;
+import org.apache.hadoop.hbase.client.BufferedMutator;
+import org.apache.hadoop.hbase.client.BufferedMutatorParams;
+import org.apache.hadoop.hbase.client.RetriesExhaustedWithDetailsException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A write-behind {@link HBaseNotificationStore} that buffers the mutations of the notifications in a
+ * {@link BufferedMutator} per table instead of writing each of them synchronously.
+ * <p>
+ * The mutators flush when their write buffer is full ({@code hbase.client.write.buffer}) and at least
+ * every {@code notification.store.flush.interval.ms} (1000 ms by default). The future returned by {@link #sync()}
+ * completes once the writes issued before the call are flushed, or completes exceptionally if the
+ * flush fails. The notifications that are not yet flushed are served from memory, so that their status
+ * can be updated before they reach HBase.
+ * </p>
+ */
+public class BufferedHBaseNotificationStore extends HBaseNotificationStore {
+    private static final Logger LOG = LoggerFactory.getLogger(BufferedHBaseNotificationStore.class);
+
+    public static final String FLUSH_INTERVAL_MS = "notification.store.flush.interval.ms";
+    private static final long DEFAULT_FLUSH_INTERVAL_MS = 1000;
+
+    private final Map<String, BufferedMutator> mutators = new ConcurrentHashMap<>();
+    // the notifications written since the last flush, with the write sequence of their last write
+    private final Map<String, PendingNotification> pendingNotifications = new ConcurrentHashMap<>();
+    // guarded by this
+    private List<CompletableFuture<Void>> pendingSyncs = new ArrayList<>();
+    private long writeSequence;
+    private volatile Exception writeFailure;
+    private ScheduledExecutorService flusher;
+
+    private static class PendingNotification {
+        final Notification notification;
+        final long sequence;
+
+        PendingNotification(Notification notification, long sequence) {
+            this.notification = notification;
+            this.sequence = sequence;
+        }
+    }
+
+    @Override
+    public void init(Map<String, Object> config) {
+        super.init(config);
+        long flushIntervalMs = DEFAULT_FLUSH_INTERVAL_MS;
+        if (config != null && config.get(FLUSH_INTERVAL_MS) != null) {
+            flushIntervalMs = Long.parseLong((String) config.get(FLUSH_INTERVAL_MS));
+        }
+        LOG.info("Flushing notification store writes every {} ms", flushIntervalMs);
+        flusher = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread thread = new Thread(r, "notification-store-flusher");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        flusher.scheduleWithFixedDelay(new Runnable() {
+            @Override
+            public void run() {
+                flush();
+            }
+        }, flushIntervalMs, flushIntervalMs, TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public void store(Notification notification) {
+        super.store(notification);
+        addPending(notification);
+    }
+
+    @Override
+    public Notification getNotification(String notificationId) {
+        PendingNotification pending = pendingNotifications.get(notificationId);
+        return pending != null ? pending.notification : super.getNotification(notificationId);
+    }
+
+    @Override
+    public List<Notification> getNotifications(List<String> notificationIds) {
+        Notification[] notifications = new Notification[notificationIds.size()];
+        List<String> storedIds = new ArrayList<>();
+        List<Integer> storedIndexes = new ArrayList<>();
+        for (int i = 0; i < notifications.length; i++) {
+            PendingNotification pending = pendingNotifications.get(notificationIds.get(i));
+            if (pending != null) {
+                notifications[i] = pending.notification;
+            } else {
+                storedIds.add(notificationIds.get(i));
+                storedIndexes.add(i);
+            }
+        }
+        if (!storedIds.isEmpty()) {
+            List<Notification> stored = super.getNotifications(storedIds);
+            for (int i = 0; i < stored.size(); i++) {
+                notifications[storedIndexes.get(i)] = stored.get(i);
+            }
+        }
+        return Arrays.asList(notifications);
+    }
+
+    @Override
+    public Notification updateNotificationStatus(String notificationId, Notification.Status status) {
+        Notification notification = getNotification(notificationId);
+        if (notification == null) {
+            throw new NotificationStoreException("Notification not found, notification-id: " + notificationId);
+        }
+        try {
+            store(getNotificationMapper().status(notification, status));
+        } catch (IOException ex) {
+            throw new NotificationStoreException("Error updating status, notification-id: " + notificationId, ex);
+        }
+        Notification updated = new NotificationImpl.Builder(notification).status(status).build();
+        addPending(updated);
+        return updated;
+    }
+
+    @Override
+    protected void store(List<TableMutation> tableMutations) throws IOException {
+        for (TableMutation tm : tableMutations) {
+            LOG.debug("Buffering {} update(s), {} delete(s) for table {}",
+                      tm.updates().size(), tm.deletes().size(), tm.tableName());
+            BufferedMutator mutator = getMutator(tm.tableName());
+            if (!tm.updates().isEmpty()) {
+                mutator.mutate(tm.updates());
+            }
+            if (!tm.deletes().isEmpty()) {
+                mutator.mutate(tm.deletes());
+            }
+        }
+    }
+
+    @Override
+    public synchronized CompletableFuture<Void> sync() {
+        CompletableFuture<Void> future = new CompletableFuture<>();
+        pendingSyncs.add(future);
+        return future;
+    }
+
+    /**
+     * Flushes the buffered writes and completes the syncs requested before the flush.
+     */
+    public void flush() {
+        List<CompletableFuture<Void>> syncs;
+        long sequence;
+        synchronized (this) {
+            syncs = pendingSyncs;
+            pendingSyncs = new ArrayList<>();
+            sequence = writeSequence;
+        }
+        Exception failure = null;
+        try {
+            for (BufferedMutator mutator : mutators.values()) {
+                mutator.flush();
+            }
+        } catch (IOException ex) {
+            failure = ex;
+        }
+        // failures of the flushes triggered by a full write buffer
+        if (failure == null && writeFailure != null) {
+            failure = writeFailure;
+        }
+        writeFailure = null;
+        if (failure != null) {
+            LOG.error("Flushing notification store writes failed", failure);
+            for (CompletableFuture<Void> sync : syncs) {
+                sync.completeExceptionally(failure);
+            }
+        } else {
+            for (Map.Entry<String, PendingNotification> entry : pendingNotifications.entrySet()) {
+                if (entry.getValue().sequence <= sequence) {
+                    pendingNotifications.remove(entry.getKey(), entry.getValue());
+                }
+            }
+            for (CompletableFuture<Void> sync : syncs) {
+                sync.complete(null);
+            }
+        }
+    }
+
+    @Override
+    public void close() {
+        if (flusher != null) {
+            flusher.shutdown();
+        }
+        flush();
+        for (BufferedMutator mutator : mutators.values()) {
+            try {
+                mutator.close();
+            } catch (IOException ex) {
+                LOG.error("Got exception closing mutator {}", mutator, ex);
+            }
+        }
+        super.close();
+    }
+
+    private void addPending(Notification notification) {
+        long sequence;
+        synchronized (this) {
+            sequence = ++writeSequence;
+        }
+        pendingNotifications.put(notification.getId(), new PendingNotification(notification, sequence));
+    }
+
+    private BufferedMutator getMutator(String tableName) throws IOException {
+        BufferedMutator mutator = mutators.get(tableName);
+        if (mutator == null) {
+            synchronized (mutators) {
+                mutator = mutators.get(tableName);
+                if (mutator == null) {
+                    BufferedMutatorParams params = new BufferedMutatorParams(TableName.valueOf(tableName))
+                            .listener(new BufferedMutator.ExceptionListener() {
+                                @Override
+                                public void onException(RetriesExhaustedWithDetailsException ex, BufferedMutator mutator) {
+                                    LOG.error("Writing to table {} failed", mutator.getName(), ex);
+                                    writeFailure = ex;
+                                }
+                            });
+                    mutator = getConnection().getBufferedMutator(params);
+                    mutators.put(tableName, mutator);
+                }
+            }
+        }
+        return mutator;
+    }
+}
@@ -39,19 +39,28 @@ import org.apache.hadoop.hbase.TableName;
 import org.apache.hadoop.hbase.client.Connection;
 import org.apache.hadoop.hbase.client.ConnectionFactory;
 import org.apache.hadoop.hbase.client.Get;
+import org.apache.hadoop.hbase.client.RegionLocator;
 import org.apache.hadoop.hbase.client.Result;
 import org.apache.hadoop.hbase.client.ResultScanner;
 import org.apache.hadoop.hbase.client.Scan;
 import org.apache.hadoop.hbase.client.Table;
+import org.apache.hadoop.hbase.util.Bytes;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
 import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 /**
  * Notification store implementation with HBase as the underlying storage.
@@ -86,10 +95,38 @@ public class HBaseNotificationStore implements NotificationStore {
 
     private HBaseScanConfigBuilder hBaseScanConfigBuilder;
 
+    /**
+     * The number of rows fetched per scanner RPC.
+     */
+    public static final String SCAN_CACHING = "notification.store.scan.caching";
+    /**
+     * The number of region range scans run in parallel by {@link #findEntities(Criteria)}, 1 to scan sequentially.
+     */
+    public static final String SCAN_PARALLELISM = "notification.store.scan.parallelism";
+    /**
+     * The maximum number of rows fetched per multi-get.
+     */
+    public static final String MULTI_GET_BATCH_SIZE = "notification.store.multiget.batch.size";
+
+    private static final int DEFAULT_SCAN_CACHING = 100;
+    private static final int DEFAULT_MULTI_GET_BATCH_SIZE = 100;
+
+    private int scanCaching = DEFAULT_SCAN_CACHING;
+    private int multiGetBatchSize = DEFAULT_MULTI_GET_BATCH_SIZE;
+    private ExecutorService scanExecutor;
+
     @Override
     public void init(Map<String, Object> config) {
         try {
             LOG.info("Initializing HBaseNotificationStore");
+            if (config != null) {
+                scanCaching = getInt(config, SCAN_CACHING, DEFAULT_SCAN_CACHING);
+                multiGetBatchSize = getInt(config, MULTI_GET_BATCH_SIZE, DEFAULT_MULTI_GET_BATCH_SIZE);
+                int scanParallelism = getInt(config, SCAN_PARALLELISM, 1);
+                if (scanParallelism > 1) {
+                    scanExecutor = Executors.newFixedThreadPool(scanParallelism);
+                }
+            }
             configuration = HBaseConfiguration.create();
             /*
              * Override with the passed config.
@@ -134,7 +171,10 @@ public class HBaseNotificationStore implements NotificationStore {
         }
     }
 
-    private void store(List<TableMutation> tableMutations) throws IOException {
+    /**
+     * Applies the mutations to the tables.
+     */
+    protected void store(List<TableMutation> tableMutations) throws IOException {
         for (TableMutation tm : tableMutations) {
             LOG.debug("Insert/Update {} row(s), Delete {} row(s) in table {}",
                       tm.updates().size(), tm.deletes().size(), tm.tableName());
@@ -163,11 +203,15 @@ public class HBaseNotificationStore implements NotificationStore {
 
     @Override
     public List<Notification> getNotifications(List<String> notificationIds) {
-        List<Notification> notifications = new ArrayList<>();
-        for (String notificationId : notificationIds) {
-            notifications.add(getNotification(notificationId));
+        try {
+            List<Notification> notifications = new ArrayList<>();
+            for (Result result : multiGet(notificationMapper.getTableName(), notificationIds)) {
+                notifications.add(result == null || result.isEmpty() ? null : notificationMapper.entity(result));
+            }
+            return notifications;
+        } catch (IOException ex) {
+            throw new NotificationStoreException("Error getting notification ids: " + notificationIds, ex);
         }
-        return notifications;
     }
 
     @Override
@@ -185,11 +229,32 @@ public class HBaseNotificationStore implements NotificationStore {
 
     @Override
     public List<StreamlineEvent> getEvents(List<String> eventIds) {
-        List<StreamlineEvent> events = new ArrayList<>();
-        for (String eventId : eventIds) {
-            events.add(getEvent(eventId));
+        try {
+            List<StreamlineEvent> events = new ArrayList<>();
+            for (Result result : multiGet(eventMapper.getTableName(), eventIds)) {
+                events.add(result == null || result.isEmpty() ? null : eventMapper.entity(result));
+            }
+            return events;
+        } catch (IOException ex) {
+            throw new NotificationStoreException("Error getting event ids: " + eventIds, ex);
+        }
+    }
+
+    /**
+     * Gets the rows in batches of {@code multiGetBatchSize} rows, returning the results in the order of the row ids.
+     */
+    private List<Result> multiGet(String tableName, List<String> rowIds) throws IOException {
+        LOG.debug("getting {} rows from table {}", rowIds.size(), tableName);
+        Table table = tables.get(tableName).get();
+        List<Result> results = new ArrayList<>(rowIds.size());
+        for (int from = 0; from < rowIds.size(); from += multiGetBatchSize) {
+            List<Get> gets = new ArrayList<>();
+            for (String rowId : rowIds.subList(from, Math.min(from + multiGetBatchSize, rowIds.size()))) {
+                gets.add(new Get(rowId.getBytes(StandardCharsets.UTF_8)));
+            }
+            results.addAll(Arrays.asList(table.get(gets)));
         }
-        return events;
+        return results;
     }
 
     @Override
@@ -203,17 +268,11 @@ public class HBaseNotificationStore implements NotificationStore {
                 // From start to end row
                 byte[] startRow = scanConfig.getStartRow();
                 byte[] stopRow = scanConfig.getStopRow();
-                Scan scan;
-                if(criteria.isDescending()) {
-                    scan = new Scan(stopRow, startRow);
-                    scan.setReversed(true);
+                boolean descending = criteria.isDescending();
+                if (scanExecutor != null) {
+                    entities = parallelScan(scanConfig, startRow, stopRow, descending);
                 } else {
-                    scan = new Scan(startRow, stopRow);
-                }
-                scan.setFilter(scanConfig.filterList());
-                ResultScanner scanner = tables.get(scanConfig.getMapper().getTableName()).get().getScanner(scan);
-                for (Result result : scanner) {
-                    entities.add(scanConfig.getMapper().entity(result));
+                    entities = scan(table(scanConfig), scanConfig, startRow, stopRow, descending);
                 }
             }
         } catch (IOException ex) {
@@ -223,8 +282,100 @@ public class HBaseNotificationStore implements NotificationStore {
         return entities;
     }
 
+    /**
+     * Scans the rows from the start row (inclusive) to the stop row (exclusive), or from the stop row (inclusive)
+     * down to the start row (exclusive) if descending, returning at most {@link HBaseScanConfig#getNumRows()} entities.
+     */
+    private <T> List<T> scan(Table table, HBaseScanConfig<T> scanConfig, byte[] startRow, byte[] stopRow,
+                             boolean descending) throws IOException {
+        Scan scan;
+        if (descending) {
+            scan = new Scan(stopRow, startRow);
+            scan.setReversed(true);
+        } else {
+            scan = new Scan(startRow, stopRow);
+        }
+        scan.setFilter(scanConfig.filterList());
+        // the page filter limits the rows per region, no need to fetch more than the limit per RPC
+        scan.setCaching(Math.min(scanCaching, scanConfig.getNumRows()));
+        List<T> entities = new ArrayList<>();
+        try (ResultScanner scanner = table.getScanner(scan)) {
+            for (Result result : scanner) {
+                entities.add(scanConfig.getMapper().entity(result));
+                if (entities.size() >= scanConfig.getNumRows()) {
+                    break;
+                }
+            }
+        }
+        return entities;
+    }
+
+    /**
+     * Splits the scan at the region boundaries of the table and scans the regions in parallel, each scan
+     * returning at most the number of rows. The results of the regions are concatenated in row order.
+     * Each region scan opens and closes its own table, since the pooled scan threads outlive the
+     * thread local tables, which are only closed for the calling thread.
+     */
+    private <T> List<T> parallelScan(final HBaseScanConfig<T> scanConfig, byte[] startRow, byte[] stopRow,
+                                     final boolean descending) throws IOException {
+        byte[][] regionStartKeys;
+        try (RegionLocator locator = connection.getRegionLocator(
+                TableName.valueOf(scanConfig.getMapper().getTableName()))) {
+            regionStartKeys = locator.getStartKeys();
+        }
+        // the row ranges to scan, in row order
+        List<byte[][]> ranges = new ArrayList<>();
+        for (int i = 0; i < regionStartKeys.length; i++) {
+            byte[] regionStart = regionStartKeys[i];
+            byte[] regionEnd = i + 1 < regionStartKeys.length ? regionStartKeys[i + 1] : null;
+            byte[] from = Bytes.compareTo(regionStart, startRow) > 0 ? regionStart : startRow;
+            byte[] to = regionEnd != null && Bytes.compareTo(regionEnd, stopRow) < 0 ? regionEnd : stopRow;
+            if (Bytes.compareTo(from, to) < 0) {
+                ranges.add(new byte[][]{from, to});
+            }
+        }
+        if (ranges.size() <= 1) {
+            return scan(table(scanConfig), scanConfig, startRow, stopRow, descending);
+        }
+        if (descending) {
+            Collections.reverse(ranges);
+        }
+        List<Future<List<T>>> futures = new ArrayList<>();
+        for (final byte[][] range : ranges) {
+            futures.add(scanExecutor.submit(new Callable<List<T>>() {
+                @Override
+                public List<T> call() throws Exception {
+                    try (Table table = connection.getTable(TableName.valueOf(scanConfig.getMapper().getTableName()))) {
+                        return scan(table, scanConfig, range[0], range[1], descending);
+                    }
+                }
+            }));
+        }
+        List<T> entities = new ArrayList<>();
+        try {
+            for (Future<List<T>> future : futures) {
+                if (entities.size() < scanConfig.getNumRows()) {
+                    List<T> rangeEntities = future.get();
+                    entities.addAll(rangeEntities.subList(0, Math.min(rangeEntities.size(),
+                                                                      scanConfig.getNumRows() - entities.size())));
+                } else {
+                    future.cancel(true);
+                }
+            }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new NotificationStoreException("Interrupted during scan", ex);
+        } catch (ExecutionException ex) {
+            throw new NotificationStoreException("Error during scan", ex.getCause());
+        }
+        return entities;
+    }
+
     @Override
     public void close() {
+        if (scanExecutor != null) {
+            scanExecutor.shutdownNow();
+        }
         try {
             for (ThreadLocal<Table> table : tables.values()) {
                 LOG.debug("Closing table {}", table);
@@ -247,6 +398,23 @@ public class HBaseNotificationStore implements NotificationStore {
         }
     }
 
+    protected Connection getConnection() {
+        return connection;
+    }
+
+    protected NotificationMapper getNotificationMapper() {
+        return notificationMapper;
+    }
+
+    private Table table(HBaseScanConfig<?> scanConfig) {
+        return tables.get(scanConfig.getMapper().getTableName()).get();
+    }
+
+    private int getInt(Map<String, Object> config, String key, int defaultValue) {
+        Object value = config.get(key);
+        return value != null ? Integer.parseInt(value.toString()) : defaultValue;
+    }
+
     /**
      * Return a {@link ThreadLocal} wrapped HTable
      */
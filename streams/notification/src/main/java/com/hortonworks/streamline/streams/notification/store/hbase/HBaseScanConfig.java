@@ -36,6 +36,7 @@ public class HBaseScanConfig<T> {
     private final FilterList filterList = new FilterList();
     private long startTs;
     private long endTs = Long.MAX_VALUE;
+    private int numRows = DEFAULT_NUM_ROWS;
 
     public void setMapper(IndexMapper<T> mapper) {
         this.mapper = mapper;
@@ -46,7 +47,15 @@ public class HBaseScanConfig<T> {
     }
 
     public void setNumRows(int n) {
-        this.filterList.addFilter(new PageFilter(n == 0 ? DEFAULT_NUM_ROWS : n));
+        this.numRows = n == 0 ? DEFAULT_NUM_ROWS : n;
+        this.filterList.addFilter(new PageFilter(numRows));
+    }
+
+    /**
+     * Returns the maximum number of rows to return, the page filter limits the rows per region.
+     */
+    public int getNumRows() {
+        return numRows;
     }
 
     public void setStartTs(long startTsMillis) {
@@ -100,6 +109,7 @@ public class HBaseScanConfig<T> {
                 ", filterList=" + filterList +
                 ", startTsMillis=" + startTs +
                 ", endTsMillis=" + endTs +
+                ", numRows=" + numRows +
                 '}';
     }
 }
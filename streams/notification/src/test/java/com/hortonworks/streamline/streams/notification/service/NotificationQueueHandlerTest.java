@@ -0,0 +1,227 @@
+/**
+  * Copyright 2017 Hortonworks.
+  *
+  * Licensed under the Apache License, Version 2.0 (the "License");
+  * you may not use this file except in compliance with the License.
+  * You may obtain a copy of the License at
+
+  *   http://www.apache.org/licenses/LICENSE-2.0
+
+  * Unless required by applicable law or agreed to in writing, software
+  * distributed under the License is distributed on an "AS IS" BASIS,
+  * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  * See the License for the specific language governing permissions and
+  * limitations under the License.
+ **/
+package com.hortonworks.streamline.streams.notification.service;
+
+import com.hortonworks.streamline.streams.notification.Notification;
+import com.hortonworks.streamline.streams.notification.NotificationContext;
+import com.hortonworks.streamline.streams.notification.Notifier;
+import com.hortonworks.streamline.streams.notification.NotifierConfig;
+import com.hortonworks.streamline.streams.notification.common.NotificationImpl;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class NotificationQueueHandlerTest {
+
+    private NotificationQueueHandler queueHandler;
+
+    @Before
+    public void setUp() throws Exception {
+        queueHandler = new NotificationQueueHandler(2, 10, 100);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        queueHandler.shutdown();
+    }
+
+    @Test
+    public void testBackpressure() throws Exception {
+        TestNotifier notifier = new TestNotifier(3);
+        notifier.blocked = new CountDownLatch(1);
+        queueHandler.register(notifier, properties("queueSize", "2"));
+        queueHandler.enqueue(notifier, notification("1"));
+        queueHandler.enqueue(notifier, notification("2"));
+        try {
+            queueHandler.enqueue(notifier, notification("3"));
+            fail("Expected the queue to be full");
+        } catch (NotificationQueueFullException ex) {
+            // expected
+        }
+        notifier.blocked.countDown();
+        queueHandler.enqueue(notifier, notification("3"));
+        assertTrue(notifier.delivered.await(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void testBatchingWithRateLimit() throws Exception {
+        TestNotifier notifier = new TestNotifier(6);
+        queueHandler.register(notifier, properties("batchSize", "3", "rateLimit", "5"));
+        CountDownLatch first = notifier.firstDelivery;
+        queueHandler.enqueue(notifier, notification("0"));
+        assertTrue(first.await(5, TimeUnit.SECONDS));
+        // queued while the notifier waits for the rate limit and delivered in batches
+        for (int i = 1; i < 6; i++) {
+            queueHandler.enqueue(notifier, notification(String.valueOf(i)));
+        }
+        assertTrue(notifier.delivered.await(5, TimeUnit.SECONDS));
+        assertEquals(Arrays.asList(1, 3, 2), notifier.batchSizes);
+        assertEquals(Arrays.asList("0", "1", "2", "3", "4", "5"), notifier.deliveredIds());
+    }
+
+    @Test
+    public void testRetry() throws Exception {
+        TestNotifier notifier = new TestNotifier(1);
+        notifier.failures = 2;
+        queueHandler.register(notifier, properties("queueSize", "1"));
+        queueHandler.enqueue(notifier, notification("1"));
+        assertTrue(notifier.delivered.await(5, TimeUnit.SECONDS));
+        assertEquals(3, notifier.attempts);
+        // the permit is released once the notification is acked
+        queueHandler.enqueue(notifier, notification("2"));
+    }
+
+    @Test
+    public void testBatchFailureFailsOnlyUnsettled() throws Exception {
+        TestNotifier notifier = new TestNotifier(3);
+        notifier.batchFailures = 1;
+        queueHandler.register(notifier, properties("batchSize", "2", "rateLimit", "5"));
+        CountDownLatch first = notifier.firstDelivery;
+        queueHandler.enqueue(notifier, notification("0"));
+        assertTrue(first.await(5, TimeUnit.SECONDS));
+        queueHandler.enqueue(notifier, notification("1"));
+        queueHandler.enqueue(notifier, notification("2"));
+        assertTrue(notifier.delivered.await(5, TimeUnit.SECONDS));
+        // the notifier failed 1 before the batch failed, 1 is not failed again
+        assertEquals(Arrays.asList("1", "2"), notifier.failedIds());
+        assertEquals(new HashSet<>(Arrays.asList("0", "1", "2")), new HashSet<>(notifier.deliveredIds()));
+    }
+
+    private Properties properties(String... keyValues) {
+        Properties properties = new Properties();
+        for (int i = 0; i < keyValues.length; i += 2) {
+            properties.setProperty(keyValues[i], keyValues[i + 1]);
+        }
+        return properties;
+    }
+
+    private Notification notification(String id) {
+        return new NotificationImpl.Builder(Collections.<String, Object>emptyMap()).id(id).build();
+    }
+
+    /**
+     * Acks the delivered notifications, after failing the first attempts.
+     */
+    private class TestNotifier implements Notifier, NotificationContext {
+        final CountDownLatch firstDelivery = new CountDownLatch(1);
+        final CountDownLatch delivered;
+        final List<Integer> batchSizes = new ArrayList<>();
+        final List<String> ids = new ArrayList<>();
+        final List<String> failedIds = new ArrayList<>();
+        volatile CountDownLatch blocked;
+        int failures;
+        // batches failing their first notification before they throw
+        int batchFailures;
+        int attempts;
+
+        TestNotifier(int count) {
+            delivered = new CountDownLatch(count);
+        }
+
+        @Override
+        public void notify(Notification notification) {
+            notify(Collections.singletonList(notification));
+        }
+
+        @Override
+        public synchronized void notify(List<Notification> notifications) {
+            attempts++;
+            if (failures-- > 0) {
+                throw new RuntimeException("failed");
+            }
+            try {
+                if (blocked != null && !blocked.await(5, TimeUnit.SECONDS)) {
+                    throw new RuntimeException("timed out");
+                }
+            } catch (InterruptedException ex) {
+                throw new RuntimeException(ex);
+            }
+            batchSizes.add(notifications.size());
+            if (notifications.size() > 1 && batchFailures-- > 0) {
+                fail(notifications.get(0).getId());
+                throw new RuntimeException("failed");
+            }
+            for (Notification notification : notifications) {
+                ids.add(notification.getId());
+                ack(notification.getId());
+                delivered.countDown();
+            }
+            firstDelivery.countDown();
+        }
+
+        synchronized List<String> deliveredIds() {
+            return new ArrayList<>(ids);
+        }
+
+        synchronized List<String> failedIds() {
+            return new ArrayList<>(failedIds);
+        }
+
+        @Override
+        public void ack(String notificationId) {
+            queueHandler.remove(notificationId);
+        }
+
+        @Override
+        public void fail(String notificationId) {
+            synchronized (this) {
+                failedIds.add(notificationId);
+            }
+            queueHandler.resubmit(notificationId);
+        }
+
+        @Override
+        public NotifierConfig getConfig() {
+            return null;
+        }
+
+        @Override
+        public void open(NotificationContext ctx) {
+        }
+
+        @Override
+        public void close() {
+        }
+
+        @Override
+        public boolean isPull() {
+            return false;
+        }
+
+        @Override
+        public List<String> getFields() {
+            return Collections.emptyList();
+        }
+
+        @Override
+        public NotificationContext getContext() {
+            return this;
+        }
+    }
+}
@@ -0,0 +1,130 @@
+/**
+  * Copyright 2017 Hortonworks.
+  *
+  * Licensed under the Apache License, Version 2.0 (the "License");
+  * you may not use this file except in compliance with the License.
+  * You may obtain a copy of the License at
+
+  *   http://www.apache.org/licenses/LICENSE-2.0
+
+  * Unless required by applicable law or agreed to in writing, software
+  * distributed under the License is distributed on an "AS IS" BASIS,
+  * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  * See the License for the specific language governing permissions and
+  * limitations under the License.
+ **/
+package com.hortonworks.streamline.streams.notification.store.hbase;
+
+import com.hortonworks.streamline.common.test.IntegrationTest;
+import com.hortonworks.streamline.streams.notification.Notification;
+import com.hortonworks.streamline.streams.notification.util.NotificationTestObjectFactory;
+import org.apache.hadoop.hbase.HBaseTestingUtility;
+import org.apache.hadoop.hbase.HConstants;
+import org.apache.hadoop.hbase.TableName;
+import org.apache.hadoop.hbase.client.Get;
+import org.apache.hadoop.hbase.client.Table;
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Runs the write-behind notification store against an in-process HBase mini cluster.
+ */
+@Category(IntegrationTest.class)
+public class BufferedHBaseNotificationStoreIntegrationTest {
+
+    private static HBaseTestingUtility utility;
+    private static Map<String, Object> storeConfig;
+
+    private BufferedHBaseNotificationStore sut;
+
+    @BeforeClass
+    public static void setUpClass() throws Exception {
+        utility = new HBaseTestingUtility();
+        utility.startMiniCluster();
+        for (Map.Entry<String, List<String>> tableInfo : HBaseNotificationStoreIntegrationTest.tableToCfs.entrySet()) {
+            byte[][] families = new byte[tableInfo.getValue().size()][];
+            for (int i = 0; i < families.length; i++) {
+                families[i] = tableInfo.getValue().get(i).getBytes(StandardCharsets.UTF_8);
+            }
+            utility.createTable(TableName.valueOf(tableInfo.getKey()), families);
+        }
+        storeConfig = new HashMap<>();
+        storeConfig.put(HConstants.ZOOKEEPER_QUORUM, utility.getConfiguration().get(HConstants.ZOOKEEPER_QUORUM));
+        storeConfig.put(HConstants.ZOOKEEPER_CLIENT_PORT, utility.getConfiguration().get(HConstants.ZOOKEEPER_CLIENT_PORT));
+        // long enough for the tests to check the writes before a timed flush
+        storeConfig.put(BufferedHBaseNotificationStore.FLUSH_INTERVAL_MS, "60000");
+    }
+
+    @AfterClass
+    public static void tearDownClass() throws Exception {
+        utility.shutdownMiniCluster();
+    }
+
+    @Before
+    public void setUp() {
+        sut = new BufferedHBaseNotificationStore();
+        sut.init(storeConfig);
+    }
+
+    @After
+    public void tearDown() {
+        sut.close();
+    }
+
+    @Test
+    public void testStoreIsDurableAfterSync() throws Exception {
+        Notification notification = NotificationTestObjectFactory.getOne();
+        sut.store(notification);
+
+        // buffered but served from memory
+        assertFalse(existsInHBase(notification.getId()));
+        assertEquals(notification, sut.getNotification(notification.getId()));
+
+        CompletableFuture<Void> sync = sut.sync();
+        assertFalse(sync.isDone());
+        sut.flush();
+        sync.get(30, TimeUnit.SECONDS);
+        assertTrue(existsInHBase(notification.getId()));
+        assertEquals(notification.getId(), sut.getNotification(notification.getId()).getId());
+    }
+
+    @Test
+    public void testUpdateNotificationStatusBeforeFlush() throws Exception {
+        Notification notification = NotificationTestObjectFactory.getOne();
+        sut.store(notification);
+        Notification updated = sut.updateNotificationStatus(notification.getId(), Notification.Status.FAILED);
+        assertEquals(Notification.Status.FAILED, updated.getStatus());
+        sut.flush();
+
+        HBaseNotificationStore store = new HBaseNotificationStore();
+        store.init(storeConfig);
+        try {
+            Notification fetched = store.getNotification(notification.getId());
+            assertEquals(notification.getId(), fetched.getId());
+            assertEquals(Notification.Status.FAILED, fetched.getStatus());
+        } finally {
+            store.close();
+        }
+    }
+
+    private boolean existsInHBase(String notificationId) throws Exception {
+        try (Table table = utility.getConnection().getTable(TableName.valueOf("Notification"))) {
+            return table.exists(new Get(notificationId.getBytes(StandardCharsets.UTF_8)));
+        }
+    }
+}
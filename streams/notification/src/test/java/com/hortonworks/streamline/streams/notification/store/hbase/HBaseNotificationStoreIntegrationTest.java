@@ -68,7 +68,7 @@ public class HBaseNotificationStoreIntegrationTest {
     public static final Charset UTF_8 = StandardCharsets.UTF_8;
     private static Connection connection;
 
-    private static Map<String, List<String>> tableToCfs;
+    static Map<String, List<String>> tableToCfs;
 
     static List<String> newList(String ...strings) {
         return Lists.newArrayList(strings);
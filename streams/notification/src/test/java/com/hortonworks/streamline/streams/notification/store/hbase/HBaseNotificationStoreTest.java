@@ -29,10 +29,12 @@ import mockit.Verifications;
 import mockit.integration.junit4.JMockit;
 import org.apache.hadoop.conf.Configuration;
 import org.apache.hadoop.hbase.HBaseConfiguration;
+import org.apache.hadoop.hbase.TableName;
 import org.apache.hadoop.hbase.client.Connection;
 import org.apache.hadoop.hbase.client.ConnectionFactory;
 import org.apache.hadoop.hbase.client.Get;
 import org.apache.hadoop.hbase.client.Put;
+import org.apache.hadoop.hbase.client.RegionLocator;
 import org.apache.hadoop.hbase.client.Result;
 import org.apache.hadoop.hbase.client.ResultScanner;
 import org.apache.hadoop.hbase.client.Scan;
@@ -46,6 +48,7 @@ import java.nio.charset.Charset;
 import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -152,6 +155,27 @@ public class HBaseNotificationStoreTest {
         };
     }
 
+    @Test
+    public void testGetNotificationsMultiGet() throws Exception {
+        new Expectations() {
+            {
+                mockHTable.get(withAny(new ArrayList<Get>())); times = 1;
+                result = new Result[]{mockResult, mockResult};
+                mockResult.isEmpty();
+                result = true;
+            }
+        };
+
+        List<Notification> notifications = notificationStore.getNotifications(Arrays.asList("n1", "n2"));
+        assertEquals(Arrays.asList(null, null), notifications);
+        new Verifications() {
+            {
+                List<Get> gets;
+                mockHTable.get(gets = withCapture()); times = 1;
+                assertEquals(2, gets.size());
+            }
+        };
+    }
 
     @Test
     public void testFindEntities() throws Exception {
@@ -200,4 +224,42 @@ public class HBaseNotificationStoreTest {
         };
     }
 
-}
\ No newline at end of file
+    @Test
+    public void testParallelScanClosesTables(@Mocked final RegionLocator mockRegionLocator) throws Exception {
+        final List<Criteria.Field> fr = new ArrayList<>();
+        fr.add(new CriteriaImpl.FieldImpl("ruleId", "1"));
+        fr.add(new CriteriaImpl.FieldImpl("status", "NEW"));
+
+        Map<String, Object> config = new HashMap<>();
+        config.put(HBaseNotificationStore.SCAN_PARALLELISM, "2");
+        HBaseNotificationStore parallelStore = new HBaseNotificationStore();
+        parallelStore.init(config);
+
+        new Expectations() {
+            {
+                mockCriteria.clazz(); times = 1;
+                result = Notification.class;
+                mockCriteria.fieldRestrictions(); times = 1;
+                result = fr;
+                mockRegionLocator.getStartKeys();
+                result = new byte[][]{new byte[0], "1|NEW|5".getBytes(CHARSET)};
+                mockHTable.getScanner(withAny(new Scan()));
+                result = mockResultScanner;
+                mockResultScanner.iterator();
+                result = Collections.<Result>emptyList().iterator();
+            }
+        };
+
+        assertEquals(Collections.emptyList(), parallelStore.findEntities(mockCriteria));
+
+        new Verifications() {
+            {
+                // one table per region scan, each closed by the scan thread
+                mockConnection.getTable(withAny(TableName.valueOf("t"))); times = 2;
+                mockHTable.getScanner(withAny(new Scan())); times = 2;
+                mockHTable.close(); times = 2;
+            }
+        };
+    }
+
+}
@@ -35,8 +35,10 @@ import javax.mail.internet.MimeBodyPart;
 import javax.mail.internet.MimeMessage;
 import javax.mail.internet.MimeMultipart;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Date;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Properties;
@@ -95,7 +97,7 @@ public class EmailNotifier implements Notifier, TransportListener {
     private static final Field[] MSG_FIELDS = {FIELD_FROM, FIELD_TO, FIELD_SUBJECT, FIELD_CONTENT_TYPE, FIELD_BODY};
 
     private NotificationContext ctx;
-    private final Map<Message, String> msgNotificationMap = new ConcurrentHashMap<>();
+    private final Map<Message, List<String>> msgNotificationMap = new ConcurrentHashMap<>();
     private Map<String, String> msgFields;
     private Session emailSession;
     private Transport emailTransport;
@@ -116,9 +118,11 @@ public class EmailNotifier implements Notifier, TransportListener {
      */
     public void messageDelivered(TransportEvent event) {
         LOG.debug("Got messageDelivered event {}", event);
-        String notificationId = msgNotificationMap.remove(event.getMessage());
-        if (notificationId != null) {
-            ctx.ack(notificationId);
+        List<String> notificationIds = msgNotificationMap.remove(event.getMessage());
+        if (notificationIds != null) {
+            for (String notificationId : notificationIds) {
+                ctx.ack(notificationId);
+            }
         }
     }
 
@@ -142,29 +146,67 @@ public class EmailNotifier implements Notifier, TransportListener {
 
     @Override
     public void notify(Notification notification) {
-        // merge fieldsAndValues with msgFields
-        Map<String, String> fieldsToSend = getMsgFields(notification.getFieldsAndValues(), this.msgFields);
+        send(getFieldsToSend(notification), Collections.singletonList(getNotificationId(notification)));
+    }
 
-        // validate fieldsToSend
-        for (Field field : MSG_FIELDS) {
-            String val = fieldsToSend.get(field.key);
-            if (val == null || val.isEmpty()) {
-                throw new NotifierRuntimeException("Field '" + field.key + "' is empty");
+    /**
+     * {@inheritDoc} The notifications going to the same recipients are sent as a single digest email,
+     * with the subject of the first notification and the bodies of all the notifications. The notifications
+     * of an invalid notification or of a digest that could not be sent are failed, the others are still sent.
+     */
+    @Override
+    public void notify(List<Notification> notifications) {
+        Map<String, List<Map<String, String>>> recipientFields = new LinkedHashMap<>();
+        Map<String, List<String>> recipientIds = new HashMap<>();
+        for (Notification notification : notifications) {
+            String notificationId = getNotificationId(notification);
+            Map<String, String> fieldsToSend;
+            try {
+                fieldsToSend = getFieldsToSend(notification);
+            } catch (NotifierRuntimeException ex) {
+                // fail only the invalid notification and send the others
+                LOG.error("Invalid notification {}", notification, ex);
+                ctx.fail(notificationId);
+                continue;
+            }
+            String key = fieldsToSend.get(FIELD_FROM.key) + "\n" + fieldsToSend.get(FIELD_TO.key) + "\n"
+                    + fieldsToSend.get(FIELD_CONTENT_TYPE.key);
+            List<Map<String, String>> fieldsList = recipientFields.get(key);
+            if (fieldsList == null) {
+                fieldsList = new ArrayList<>();
+                recipientFields.put(key, fieldsList);
+                recipientIds.put(key, new ArrayList<String>());
             }
+            fieldsList.add(fieldsToSend);
+            recipientIds.get(key).add(notificationId);
         }
-        String notificationId = notification.getId();
-        if (notificationId == null) {
-            throw new NotifierRuntimeException("Id is null for notification " + notification);
+        for (Map.Entry<String, List<Map<String, String>>> entry : recipientFields.entrySet()) {
+            List<String> notificationIds = recipientIds.get(entry.getKey());
+            try {
+                send(getDigestFields(entry.getValue()), notificationIds);
+            } catch (NotifierRuntimeException ex) {
+                for (String notificationId : notificationIds) {
+                    ctx.fail(notificationId);
+                }
+            }
         }
+    }
+
+    private void send(Map<String, String> fieldsToSend, List<String> notificationIds) {
+        Message emailMessage = null;
         try {
-            Message emailMessage = getEmailMessage(fieldsToSend);
-            msgNotificationMap.put(emailMessage, notificationId);
+            emailMessage = getEmailMessage(fieldsToSend);
+            msgNotificationMap.put(emailMessage, notificationIds);
             if (!emailTransport.isConnected()) {
                 emailTransport.connect();
             }
             emailTransport.sendMessage(emailMessage, emailMessage.getAllRecipients());
         } catch (MessagingException ex) {
             LOG.error("Got exception", ex);
+            if (emailMessage != null) {
+                // the notifications are failed by the caller, not by a later transport event
+                msgNotificationMap.remove(emailMessage);
+            }
             throw new NotifierRuntimeException(ex);
         }
     }
@@ -211,6 +253,51 @@ public class EmailNotifier implements Notifier, TransportListener {
     }
 
 
+    /**
+     * Returns the validated email message fields of the notification.
+     */
+    private Map<String, String> getFieldsToSend(Notification notification) {
+        // merge fieldsAndValues with msgFields
+        Map<String, String> fieldsToSend = getMsgFields(notification.getFieldsAndValues(), this.msgFields);
+
+        // validate fieldsToSend
+        for (Field field : MSG_FIELDS) {
+            String val = fieldsToSend.get(field.key);
+            if (val == null || val.isEmpty()) {
+                throw new NotifierRuntimeException("Field '" + field.key + "' is empty");
+            }
+        }
+        return fieldsToSend;
+    }
+
+    private String getNotificationId(Notification notification) {
+        String notificationId = notification.getId();
+        if (notificationId == null) {
+            throw new NotifierRuntimeException("Id is null for notification " + notification);
+        }
+        return notificationId;
+    }
+
+    /**
+     * Returns the message fields of a digest of the messages sent from and to the same addresses.
+     */
+    private Map<String, String> getDigestFields(List<Map<String, String>> fieldsList) {
+        Map<String, String> digest = new HashMap<>(fieldsList.get(0));
+        if (fieldsList.size() > 1) {
+            String separator = fieldsList.get(0).get(FIELD_CONTENT_TYPE.key).startsWith("text/html") ? "<hr/>" : "\n\n";
+            StringBuilder body = new StringBuilder();
+            for (Map<String, String> fields : fieldsList) {
+                if (body.length() > 0) {
+                    body.append(separator);
+                }
+                body.append(fields.get(FIELD_BODY.key));
+            }
+            digest.put(FIELD_SUBJECT.key, digest.get(FIELD_SUBJECT.key) + " (" + fieldsList.size() + " alerts)");
+            digest.put(FIELD_BODY.key, body.toString());
+        }
+        return digest;
+    }
+
     private String getProperty(Properties properties, Field field) {
         return properties.getProperty(field.key, field.defaultVal);
     }
@@ -283,9 +370,11 @@ public class EmailNotifier implements Notifier, TransportListener {
     }
 
     private void handleFail(TransportEvent event) {
-        String notificationId = msgNotificationMap.remove(event.getMessage());
-        if (notificationId != null) {
-            ctx.fail(notificationId);
+        List<String> notificationIds = msgNotificationMap.remove(event.getMessage());
+        if (notificationIds != null) {
+            for (String notificationId : notificationIds) {
+                ctx.fail(notificationId);
+            }
         }
     }
 
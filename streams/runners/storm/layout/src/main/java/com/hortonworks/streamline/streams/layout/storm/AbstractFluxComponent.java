@@ -17,6 +17,7 @@ package com.hortonworks.streamline.streams.layout.storm;
 
 import com.hortonworks.streamline.streams.layout.ConfigFieldValidation;
 import com.hortonworks.streamline.streams.layout.TopologyLayoutConstants;
+import com.hortonworks.streamline.streams.layout.component.rule.expression.Window;
 import com.hortonworks.streamline.streams.layout.exception.ComponentConfigException;
 
 import java.util.ArrayList;
@@ -118,6 +119,32 @@ public abstract class AbstractFluxComponent implements FluxComponent {
         return component;
     }
 
+    /**
+     * Creates the component of a windowed bolt. If the window spills to disk, or is an event time window with a
+     * watermark strategy, allowed lateness or late events stream, the windowed bolt is added to the referenced
+     * components and the bolt is the executor that manages the window, otherwise the window is managed by storm.
+     */
+    protected Map<String, Object> createWindowedBoltComponent (String id, String className, List constructorArgs, List configMethods, Window window) {
+        String executorClassName;
+        if (window.isSpillToDisk()) {
+            executorClassName = "com.hortonworks.streamline.streams.runtime.storm.bolt.window.SpillableWindowedBoltExecutor";
+        } else if (hasLateEventHandling(window)) {
+            executorClassName = "com.hortonworks.streamline.streams.runtime.storm.bolt.window.EventTimeWindowedBoltExecutor";
+        } else {
+            return createComponent(id, className, null, constructorArgs, configMethods);
+        }
+        String windowedBoltId = id + "_windowed";
+        addToComponents(createComponent(windowedBoltId, className, null, constructorArgs, configMethods));
+        List executorConstructorArgs = new ArrayList();
+        executorConstructorArgs.add(getRefYaml(windowedBoltId));
+        return createComponent(id, executorClassName, null, executorConstructorArgs, null);
+    }
+
+    static boolean hasLateEventHandling(Window window) {
+        return window.getTsField() != null && (window.getWatermarkStrategy() != null
+                || window.getAllowedLatenessMs() > 0 || window.getLateEventsStream() != null);
+    }
+
     protected List getPropertiesYaml (String[] propertyNames) {
         List properties = new ArrayList();
         if ((propertyNames != null) && (propertyNames.length > 0)) {
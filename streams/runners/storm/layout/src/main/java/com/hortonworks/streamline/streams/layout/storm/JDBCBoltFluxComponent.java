@@ -33,9 +33,16 @@ public class JDBCBoltFluxComponent extends AbstractFluxComponent {
     private static final String KEY_DATASOURCE_URL = "dataSource.url";
     private static final String KEY_DATASOURCE_USER = "dataSource.user";
     private static final String KEY_DATASOURCE_PASSWORD = "dataSource.password";
+    private static final String KEY_BATCH_INSERTS = "batchInserts";
+    private static final String KEY_BATCH_SIZE = "batchSize";
+    private static final String KEY_FLUSH_INTERVAL_SECS = "flushIntervalSecs";
 
     @Override
     protected void generateComponent() {
+        if (Boolean.TRUE.equals(conf.get(KEY_BATCH_INSERTS))) {
+            generateBatchInsertComponent();
+            return;
+        }
         String boltId = "jdbcInsertBolt" + UUID_FOR_COMPONENTS;
         String boltClassName = "org.apache.storm.jdbc.bolt.JdbcInsertBolt";
         List<Object> constructorArgs = new ArrayList<>();
@@ -52,6 +59,21 @@ public class JDBCBoltFluxComponent extends AbstractFluxComponent {
         addParallelismToComponent();
     }
 
+    private void generateBatchInsertComponent() {
+        String boltId = "jdbcBatchInsertBolt" + UUID_FOR_COMPONENTS;
+        String boltClassName = "com.hortonworks.streamline.streams.runtime.storm.bolt.JdbcBatchInsertBolt";
+        List<Object> constructorArgs = new ArrayList<>();
+        String connectionProviderId = getConnectionProvider();
+        addArg(constructorArgs, getRefYaml(connectionProviderId));
+        addArg(constructorArgs, getRefYaml(getJdbcMapper(connectionProviderId)));
+        addArg(constructorArgs, KEY_TABLE_NAME);
+        String[] configMethodNames = {"withBatchSize", "withFlushIntervalSecs"};
+        String[] configKeys = {KEY_BATCH_SIZE, KEY_FLUSH_INTERVAL_SECS};
+        List configMethods = getConfigMethodsYaml(configMethodNames, configKeys);
+        component = createComponent(boltId, boltClassName, null, constructorArgs, configMethods);
+        addParallelismToComponent();
+    }
+
     private String getConnectionProvider() {
         String componentId = "ConnectionProvider" + UUID_FOR_COMPONENTS;
         List<Object> constructorArgs = new ArrayList<>();
@@ -46,11 +46,14 @@ import java.util.Map;
   [
     {"type" : "left",  "stream": "s2", "key":"k2", "with": "s1"},
     {"type" : "left",  "stream": "s3", "key":"k3", "with": "s1"},
-    {"type" : "inner", "stream": "s4", "key":"k4", "with": "s2"}
+    {"type" : "inner", "stream": "s4", "key":"k4", "with": "s2"},
+    {"type" : "right", "stream": "s5", "key":"k5", "with": "s1"},
+    {"type" : "outer", "stream": "s6", "key":"k6", "with": "s1"}
   ],
   "outputKeys" : [ "k1", "k2" ],
   "window" : {"windowLength" : {"class":".Window$Count", "count":100}, "slidingInterval":{"class":".Window$Count", "count":100}, "tsField":null, "lagMs":0},
-  "outputStream" : "joinedStream1"
+  "outputStream" : "joinedStream1",
+  "incremental" : true
 }
  */
 
@@ -78,7 +81,8 @@ public class JoinBoltFluxComponent extends AbstractFluxComponent {
 
         List configMethods = getConfigMethodsYaml(configMethodNames, configValues);
 
-        component = createComponent(boltId, boltClassName, null, boltConstructorArgs, configMethods);
+        Window window = new ObjectMapper().convertValue(conf.get("window"), Window.class);
+        component = createWindowedBoltComponent(boltId, boltClassName, boltConstructorArgs, configMethods, window);
         addParallelismToComponent();
 
     }
@@ -95,6 +99,10 @@ public class JoinBoltFluxComponent extends AbstractFluxComponent {
                     result.add("join");
                 else if( joinType.compareToIgnoreCase("left")==0 )
                     result.add("leftJoin");
+                else if( joinType.compareToIgnoreCase("right")==0 )
+                    result.add("rightJoin");
+                else if( joinType.compareToIgnoreCase("outer")==0 )
+                    result.add("outerJoin");
                 else
                     throw new IllegalArgumentException("Unsupported Join type: " + joinType);
             }
@@ -117,6 +125,10 @@ public class JoinBoltFluxComponent extends AbstractFluxComponent {
             throw new IllegalArgumentException("'outputStream' is required and cannot be null");
         }
 
+        if( Boolean.TRUE.equals(conf.get("incremental")) ) {
+            result.add("withIncrementalJoin");
+        }
+
         return result.toArray(new String[]{});
     }
 
@@ -146,6 +158,11 @@ public class JoinBoltFluxComponent extends AbstractFluxComponent {
         String outputStreamName = conf.get("outputStream").toString();
         result.add( new String[]{outputStreamName} );
 
+        // incremental join
+        if( Boolean.TRUE.equals(conf.get("incremental")) ) {
+            result.add( new Object[]{} );
+        }
+
         return result.toArray(new Object[]{});
     }
 
@@ -82,13 +82,13 @@ public class KafkaBoltFluxComponent extends AbstractFluxComponent {
             "bootstrap.servers", "buffer.memory", "compression.type", "retries", "batch.size", "client.id", "connections.max.idle.ms",
             "linger.ms", "max.block.ms", "max.request.size", "receive.buffer.bytes", "request.timeout.ms", "security.protocol", "send.buffer.bytes",
             "timeout.ms", "block.on.buffer.full", "max.in.flight.requests.per.connection", "metadata.fetch.timeout.ms", "metadata.max.age.ms",
-            "reconnect.backoff.ms", "retry.backoff.ms", "schema.registry.url"
+            "reconnect.backoff.ms", "retry.backoff.ms", "schema.registry.url", "streamline.serializer.cached.schema"
         };
         String[] fieldNames = {
             "bootstrapServers", "bufferMemory", "compressionType", "retries", "batchSize", "clientId", "maxConnectionIdle",
             "lingerTime", "maxBlock", "maxRequestSize", "receiveBufferSize", "requestTimeout", "securityProtocol", "sendBufferSize",
             "timeout", "blocKOnBufferFull", "maxInflighRequests", "metadataFetchTimeout", "metadataMaxAge", "reconnectBackoff", "retryBackoff",
-            TopologyLayoutConstants.SCHEMA_REGISTRY_URL
+            TopologyLayoutConstants.SCHEMA_REGISTRY_URL, "cachedSchema"
         };
         List<String> methodNames = new ArrayList<>();
         List args = new ArrayList<>();
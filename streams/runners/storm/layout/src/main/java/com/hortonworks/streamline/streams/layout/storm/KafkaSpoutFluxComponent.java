@@ -29,7 +29,8 @@ import java.util.List;
 import java.util.Map;
 
 /**
- * Implementation for KafkaSpout
+ * Implementation for KafkaSpout. The source is read with the consumer based StreamlineKafkaSpout if bootstrap servers
+ * are configured, and with the storm-kafka spout reading the brokers from zookeeper otherwise.
  */
 public class KafkaSpoutFluxComponent extends AbstractFluxComponent {
     private static final Logger LOG = LoggerFactory.getLogger(KafkaSpoutFluxComponent.class);
@@ -41,6 +42,10 @@ public class KafkaSpoutFluxComponent extends AbstractFluxComponent {
     @Override
     protected void generateComponent () {
         kafkaSource = (KafkaSource) conf.get(StormTopologyLayoutConstants.STREAMLINE_COMPONENT_CONF_KEY);
+        if (conf.get(TopologyLayoutConstants.JSON_KEY_BOOTSTRAP_SERVERS) != null) {
+            generateConsumerSpoutComponent();
+            return;
+        }
         String spoutConfigRef = addSpoutConfigComponent();
         String spoutId = "kafkaSpout" + UUID_FOR_COMPONENTS;
         String spoutClassName = "org.apache.storm.kafka.KafkaSpout";
@@ -51,6 +56,44 @@ public class KafkaSpoutFluxComponent extends AbstractFluxComponent {
         addParallelismToComponent();
     }
 
+    private void generateConsumerSpoutComponent() {
+        addOutputStreamToConf();
+        String schemeRef = addSchemeComponent();
+        String spoutId = "kafkaSpout" + UUID_FOR_COMPONENTS;
+        String spoutClassName = "com.hortonworks.streamline.streams.runtime.storm.spout.StreamlineKafkaSpout";
+        List<Object> spoutConstructorArgs = makeConstructorArgs(TopologyLayoutConstants.JSON_KEY_BOOTSTRAP_SERVERS,
+                TopologyLayoutConstants.JSON_KEY_TOPIC, TopologyLayoutConstants.JSON_KEY_CONSUMER_GROUP_ID);
+        addArg(spoutConstructorArgs, getRefYaml(schemeRef));
+        String[] configMethodNames = {
+                "withOutputStreamId", "withMaxPollRecords", "withPollTimeoutMs", "withOffsetCommitPeriodMs",
+                "withMaxUncommittedOffsets", "withRetryDelayMs", "withMetricsTimeBucketSizeInSecs"
+        };
+        String[] configKeys = {
+                TopologyLayoutConstants.JSON_KEY_OUTPUT_STREAM_ID,
+                TopologyLayoutConstants.JSON_KEY_MAX_POLL_RECORDS,
+                TopologyLayoutConstants.JSON_KEY_POLL_TIMEOUT_MS,
+                TopologyLayoutConstants.JSON_KEY_OFFSET_COMMIT_PERIOD_MS,
+                TopologyLayoutConstants.JSON_KEY_MAX_UNCOMMITTED_OFFSETS,
+                TopologyLayoutConstants.JSON_KEY_RETRY_INITIAL_DELAY_MS,
+                TopologyLayoutConstants.JSON_KEY_METRICS_TIME_BUCKET_SIZE_IN_SECS
+        };
+        List configMethods = getConfigMethodsYaml(configMethodNames, configKeys);
+        component = createComponent(spoutId, spoutClassName, null, spoutConstructorArgs, configMethods);
+        addParallelismToComponent();
+    }
+
+    // add the output stream to conf so that the kafka spout declares output stream properly
+    private void addOutputStreamToConf() {
+        if (kafkaSource != null && kafkaSource.getOutputStreams().size() == 1) {
+            conf.put(TopologyLayoutConstants.JSON_KEY_OUTPUT_STREAM_ID,
+                    kafkaSource.getOutputStreams().iterator().next().getId());
+        } else {
+            String msg = "Kafka source component [" + kafkaSource + "] should define exactly one output stream for Storm";
+            LOG.error(msg, kafkaSource);
+            throw new IllegalArgumentException(msg);
+        }
+    }
+
     private String addSpoutConfigComponent () {
         String zkHostsRef = addBrokerHostsComponent();
         String schemeRef = addSchemeComponent();
@@ -76,15 +119,7 @@ public class KafkaSpoutFluxComponent extends AbstractFluxComponent {
                 TopologyLayoutConstants.JSON_KEY_RETRY_DELAY_MAX_MS,
                 TopologyLayoutConstants.JSON_KEY_OUTPUT_STREAM_ID
         };
-        // add the output stream to conf so that the kafka spout declares output stream properly
-        if (kafkaSource != null && kafkaSource.getOutputStreams().size() == 1) {
-            conf.put(TopologyLayoutConstants.JSON_KEY_OUTPUT_STREAM_ID,
-                    kafkaSource.getOutputStreams().iterator().next().getId());
-        } else {
-            String msg = "Kafka source component [" + kafkaSource + "] should define exactly one output stream for Storm";
-            LOG.error(msg, kafkaSource);
-            throw new IllegalArgumentException(msg);
-        }
+        addOutputStreamToConf();
         List propertiesYaml = getPropertiesYaml(properties);
 
         propertiesYaml.add(getSchemeRefEntry(schemeRef));
@@ -182,13 +217,18 @@ public class KafkaSpoutFluxComponent extends AbstractFluxComponent {
 
     private void validateStringFields () throws ComponentConfigException {
         String[] requiredStringFields = {
-            TopologyLayoutConstants.JSON_KEY_ZK_URL,
             TopologyLayoutConstants.JSON_KEY_TOPIC,
             TopologyLayoutConstants.JSON_KEY_CONSUMER_GROUP_ID
         };
         validateStringFields(requiredStringFields, true);
+        // the zookeeper url is only needed without the bootstrap servers of the consumer based spout
+        String[] brokerStringFields = {
+            TopologyLayoutConstants.JSON_KEY_ZK_URL
+        };
+        validateStringFields(brokerStringFields, conf.get(TopologyLayoutConstants.JSON_KEY_BOOTSTRAP_SERVERS) == null);
         String[] optionalStringFields = {
-            TopologyLayoutConstants.JSON_KEY_ZK_PATH
+            TopologyLayoutConstants.JSON_KEY_ZK_PATH,
+            TopologyLayoutConstants.JSON_KEY_BOOTSTRAP_SERVERS
         };
         validateStringFields(optionalStringFields, false);
     }
@@ -201,14 +241,16 @@ public class KafkaSpoutFluxComponent extends AbstractFluxComponent {
             TopologyLayoutConstants.JSON_KEY_FETCH_MAX_WAIT,
             TopologyLayoutConstants.JSON_KEY_BUFFER_SIZE_BYTES,
             TopologyLayoutConstants.JSON_KEY_METRICS_TIME_BUCKET_SIZE_IN_SECS,
-            TopologyLayoutConstants.JSON_KEY_ZK_PORT
+            TopologyLayoutConstants.JSON_KEY_ZK_PORT,
+            TopologyLayoutConstants.JSON_KEY_MAX_POLL_RECORDS,
+            TopologyLayoutConstants.JSON_KEY_MAX_UNCOMMITTED_OFFSETS
         };
         Integer[] mins = {
-            0, 0, 0, 0, 0, 0, 1025
+            0, 0, 0, 0, 0, 0, 1025, 1, 1
         };
         Integer[] maxes = {
             Integer.MAX_VALUE, Integer.MAX_VALUE, Integer.MAX_VALUE, Integer
-                .MAX_VALUE, Integer.MAX_VALUE, Integer.MAX_VALUE, 65536
+                .MAX_VALUE, Integer.MAX_VALUE, Integer.MAX_VALUE, 65536, Integer.MAX_VALUE, Integer.MAX_VALUE
         };
         validateIntegerFields(optionalIntegerFields, false, mins, maxes);
     }
@@ -218,13 +260,15 @@ public class KafkaSpoutFluxComponent extends AbstractFluxComponent {
             TopologyLayoutConstants.JSON_KEY_MAX_OFFSET_BEHIND,
             TopologyLayoutConstants.JSON_KEY_STATE_UPDATE_INTERVAL_MS,
             TopologyLayoutConstants.JSON_KEY_RETRY_INITIAL_DELAY_MS,
-            TopologyLayoutConstants.JSON_KEY_RETRY_DELAY_MAX_MS
+            TopologyLayoutConstants.JSON_KEY_RETRY_DELAY_MAX_MS,
+            TopologyLayoutConstants.JSON_KEY_POLL_TIMEOUT_MS,
+            TopologyLayoutConstants.JSON_KEY_OFFSET_COMMIT_PERIOD_MS
         };
         Long[] mins = {
-                0L, 0L, 0L, 0L
+                0L, 0L, 0L, 0L, 0L, 0L
         };
         Long[] maxes = {
-            Long.MAX_VALUE, Long.MAX_VALUE, Long.MAX_VALUE, Long.MAX_VALUE
+            Long.MAX_VALUE, Long.MAX_VALUE, Long.MAX_VALUE, Long.MAX_VALUE, Long.MAX_VALUE, Long.MAX_VALUE
         };
         validateLongFields(optionalLongFields, false, mins, maxes);
     }
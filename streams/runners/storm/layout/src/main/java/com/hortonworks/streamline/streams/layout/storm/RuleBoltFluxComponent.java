@@ -18,7 +18,12 @@ package com.hortonworks.streamline.streams.layout.storm;
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.hortonworks.streamline.streams.layout.TopologyLayoutConstants;
+import com.hortonworks.streamline.streams.layout.Transform;
 import com.hortonworks.streamline.streams.layout.component.impl.RulesProcessor;
+import com.hortonworks.streamline.streams.layout.component.rule.Rule;
+import com.hortonworks.streamline.streams.layout.component.rule.action.Action;
+import com.hortonworks.streamline.streams.layout.component.rule.action.TransformAction;
+import com.hortonworks.streamline.streams.layout.component.rule.action.transform.EnrichmentTransform;
 import com.hortonworks.streamline.streams.layout.exception.ComponentConfigException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -40,6 +45,10 @@ public class RuleBoltFluxComponent extends AbstractFluxComponent {
     @Override
     protected void generateComponent () {
         rulesProcessor = (RulesProcessor) conf.get(StormTopologyLayoutConstants.STREAMLINE_COMPONENT_CONF_KEY);
+        if (isAsyncEnrichment()) {
+            generateAsyncEnrichmentComponent();
+            return;
+        }
         String boltId = "ruleBolt" + UUID_FOR_COMPONENTS;
         String boltClassName = "com.hortonworks.streamline.streams.runtime.storm.bolt.rules.RulesBolt";
         List boltConstructorArgs = new ArrayList();
@@ -52,12 +61,63 @@ public class RuleBoltFluxComponent extends AbstractFluxComponent {
                     e);
         }
         boltConstructorArgs.add(rulesProcessorJson);
-        // hardcode script type enum for now.
-        boltConstructorArgs.add("SQL");
+        boltConstructorArgs.add(getScriptType());
         component = createComponent(boltId, boltClassName, null, boltConstructorArgs, null);
         addParallelismToComponent();
     }
 
+    /*
+     * A processor which only enriches its events with asynchronous lookups, like an enrichment stage, runs in an
+     * AsyncEnrichmentBolt. The rules bolt would wait for the lookups of every event, one event per batch.
+     */
+    private boolean isAsyncEnrichment() {
+        List<Rule> rules = rulesProcessor.getRules();
+        if (rules == null || rules.size() != 1) {
+            return false;
+        }
+        Rule rule = rules.get(0);
+        if (rule.getCondition() != null || rule.getWindow() != null || rule.getGroupBy() != null
+                || rule.getProjection() != null || rule.getActions() == null || rule.getActions().size() != 1) {
+            return false;
+        }
+        Action action = rule.getActions().get(0);
+        if (!(action instanceof TransformAction)) {
+            return false;
+        }
+        List<Transform> transforms = ((TransformAction) action).getTransforms();
+        return transforms != null && transforms.size() == 1 && transforms.get(0) instanceof EnrichmentTransform
+                && ((EnrichmentTransform) transforms.get(0)).isAsyncLookups();
+    }
+
+    private void generateAsyncEnrichmentComponent() {
+        Rule rule = rulesProcessor.getRules().get(0);
+        Action action = rule.getActions().get(0);
+        EnrichmentTransform enrichmentTransform = (EnrichmentTransform) ((TransformAction) action).getTransforms().get(0);
+        String outputStream = action.getOutputStreams() != null && !action.getOutputStreams().isEmpty()
+                ? action.getOutputStreams().iterator().next() : rule.getOutputStreamNameForAction(action);
+        String boltId = "asyncEnrichmentBolt" + UUID_FOR_COMPONENTS;
+        String boltClassName = "com.hortonworks.streamline.streams.runtime.storm.bolt.enrichment.AsyncEnrichmentBolt";
+        List boltConstructorArgs = new ArrayList();
+        ObjectMapper mapper = new ObjectMapper();
+        try {
+            boltConstructorArgs.add(mapper.writeValueAsString(enrichmentTransform));
+        } catch (JsonProcessingException e) {
+            log.error("Error creating json config string for EnrichmentTransform", e);
+            throw new RuntimeException(e);
+        }
+        boltConstructorArgs.add(outputStream);
+        component = createComponent(boltId, boltClassName, null, boltConstructorArgs, null);
+        addParallelismToComponent();
+    }
+
+    /**
+     * The script type of the rules processor config, the runtime falls back to SQL for the rules that cannot be
+     * compiled with the COMPILED script type.
+     */
+    protected String getScriptType() {
+        return rulesProcessor.getConfig().get(RulesProcessor.CONFIG_KEY_SCRIPT_TYPE, RulesProcessor.DEFAULT_SCRIPT_TYPE);
+    }
+
     @Override
     public void validateConfig () throws ComponentConfigException {
         super.validateConfig();
@@ -41,12 +41,15 @@ import org.slf4j.LoggerFactory;
 import java.nio.file.Path;
 import java.util.AbstractMap;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.Iterator;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Optional;
 
 import static com.hortonworks.streamline.streams.layout.storm.StormTopologyLayoutConstants.YAML_KEY_ID;
 import static com.hortonworks.streamline.streams.layout.storm.StormTopologyLayoutConstants.YAML_KEY_STREAMS;
@@ -93,6 +96,12 @@ public class StormTopologyFluxGenerator extends TopologyDagVisitor {
     @Override
     public void visit(final RulesProcessor rulesProcessor) {
         rulesProcessor.getConfig().setAny("outputStreams", rulesProcessor.getOutputStreams());
+        if (topologyConfig != null && !rulesProcessor.getConfig().getAnyOptional(RulesProcessor.CONFIG_KEY_SCRIPT_TYPE).isPresent()) {
+            Optional<Object> scriptType = topologyConfig.getAnyOptional(StormTopologyLayoutConstants.RULES_SCRIPT_TYPE);
+            if (scriptType.isPresent()) {
+                rulesProcessor.getConfig().setAny(RulesProcessor.CONFIG_KEY_SCRIPT_TYPE, scriptType.get().toString());
+            }
+        }
         List<Rule> rulesWithWindow = new ArrayList<>();
         List<Rule> rulesWithoutWindow = new ArrayList<>();
         for (Rule rule : rulesProcessor.getRules()) {
@@ -122,11 +131,16 @@ public class StormTopologyFluxGenerator extends TopologyDagVisitor {
                     }
                 }));
                 LOG.debug("Rules processor with window {}", windowedRulesProcessor);
-                keysAndComponents.add(makeEntry(StormTopologyLayoutConstants.YAML_KEY_BOLTS,
-                        getYamlComponents(fluxComponentFactory.getFluxComponent(windowedRulesProcessor), windowedRulesProcessor)));
-                // Wire the windowed bolt with the appropriate edges
-                wireWindowedRulesProcessor(windowedRulesProcessor, topologyDag.getEdgesTo(rulesProcessor),
-                        topologyDag.getEdgesFrom(rulesProcessor));
+                if (isTwoPhaseAggregation(rulesProcessor, entry.getKey())) {
+                    addTwoPhaseWindowedRulesProcessor(windowedRulesProcessor, topologyDag.getEdgesTo(rulesProcessor),
+                            topologyDag.getEdgesFrom(rulesProcessor));
+                } else {
+                    keysAndComponents.add(makeEntry(StormTopologyLayoutConstants.YAML_KEY_BOLTS,
+                            getYamlComponents(fluxComponentFactory.getFluxComponent(windowedRulesProcessor), windowedRulesProcessor)));
+                    // Wire the windowed bolt with the appropriate edges
+                    wireWindowedRulesProcessor(windowedRulesProcessor, topologyDag.getEdgesTo(rulesProcessor),
+                            topologyDag.getEdgesFrom(rulesProcessor));
+                }
                 mayBeUpdateTopologyConfig(entry.getKey());
             }
         }
@@ -145,7 +159,77 @@ public class StormTopologyFluxGenerator extends TopologyDagVisitor {
         }
     }
 
+    /*
+     * Two phase aggregation is enabled by the rules processor config, for the windows that support it.
+     */
+    private boolean isTwoPhaseAggregation(RulesProcessor rulesProcessor, Window window) {
+        if (!rulesProcessor.getConfig().getBoolean(RulesProcessor.CONFIG_KEY_TWO_PHASE_AGGREGATION, false)) {
+            return false;
+        }
+        if (!RulesProcessor.supportsTwoPhaseAggregation(window)) {
+            LOG.warn("Two phase aggregation is only supported for processing time windows of durations, " +
+                    "aggregating rules of {} with window {} in a single phase", rulesProcessor.getId(), window);
+            return false;
+        }
+        return true;
+    }
+
+    /*
+     * The partial phase bolt receives the events shuffled and emits the partial aggregates of its tumbling windows,
+     * the final phase bolt receives the partial aggregates grouped by rule and group key and merges them.
+     */
+    private void addTwoPhaseWindowedRulesProcessor(RulesProcessor windowedRulesProcessor, List<Edge> inEdges, List<Edge> outEdges) {
+        String partialAggregatesStream = windowedRulesProcessor.getId() + ".partial";
+        RulesProcessor partialRulesProcessor = new RulesProcessor(windowedRulesProcessor);
+        partialRulesProcessor.setId(windowedRulesProcessor.getId() + ".partial");
+        partialRulesProcessor.setName("PartialWindowedRulesProcessor");
+        partialRulesProcessor.getConfig().setAny(WindowRuleBoltFluxComponent.CONFIG_KEY_AGGREGATION_PHASE,
+                WindowRuleBoltFluxComponent.AGGREGATION_PHASE_PARTIAL);
+        partialRulesProcessor.getConfig().setAny(WindowRuleBoltFluxComponent.CONFIG_KEY_PARTIAL_AGGREGATES_STREAM,
+                partialAggregatesStream);
+        windowedRulesProcessor.getConfig().setAny(WindowRuleBoltFluxComponent.CONFIG_KEY_AGGREGATION_PHASE,
+                WindowRuleBoltFluxComponent.AGGREGATION_PHASE_FINAL);
+        windowedRulesProcessor.getConfig().setAny(WindowRuleBoltFluxComponent.CONFIG_KEY_PARTIAL_AGGREGATES_STREAM,
+                partialAggregatesStream);
+        LOG.debug("Aggregating rules of {} in two phases", windowedRulesProcessor);
+        keysAndComponents.add(makeEntry(StormTopologyLayoutConstants.YAML_KEY_BOLTS,
+                getYamlComponents(fluxComponentFactory.getFluxComponent(partialRulesProcessor), partialRulesProcessor)));
+        keysAndComponents.add(makeEntry(StormTopologyLayoutConstants.YAML_KEY_BOLTS,
+                getYamlComponents(fluxComponentFactory.getFluxComponent(windowedRulesProcessor), windowedRulesProcessor)));
+        for (Edge edge : inEdges) {
+            for (StreamGrouping streamGrouping : edge.getStreamGroupings()) {
+                // a key split by the partial key grouping yields fewer partial aggregates than a shuffled one
+                if (Stream.Grouping.PARTIAL_KEY.equals(streamGrouping.getGrouping())) {
+                    addEdge(edge.getFrom(),
+                            partialRulesProcessor,
+                            streamGrouping.getStream().getId(),
+                            Stream.Grouping.PARTIAL_KEY,
+                            streamGrouping.getFields());
+                } else {
+                    addEdge(edge.getFrom(),
+                            partialRulesProcessor,
+                            streamGrouping.getStream().getId(),
+                            Stream.Grouping.SHUFFLE,
+                            null);
+                }
+            }
+        }
+        addEdge(partialRulesProcessor,
+                windowedRulesProcessor,
+                partialAggregatesStream,
+                Stream.Grouping.FIELDS,
+                Arrays.asList(RulesProcessor.PARTIAL_AGGREGATE_RULE_ID, RulesProcessor.PARTIAL_AGGREGATE_GROUP_KEY));
+        wireWindowedRulesProcessor(windowedRulesProcessor, Collections.<Edge>emptyList(), outEdges);
+    }
+
     private void mayBeUpdateTopologyConfig(Window window) {
+        // a window that spills to disk opts out of at least once processing, the tuples are acked once stored
+        // and are not pending until expiry
+        if (window.isSpillToDisk()) {
+            LOG.warn("Window {} spills to disk, its tuples are acked once stored and are not replayed if a worker fails",
+                    window);
+            return;
+        }
         int messageTimeoutSecs = DELTA;
         int maxPending = DELTA;
         if (window.getWindowLength() instanceof Window.Duration) {
@@ -158,6 +242,10 @@ public class StormTopologyFluxGenerator extends TopologyDagVisitor {
         } else if (window.getSlidingInterval() instanceof Window.Count) {
             maxPending += ((Window.Count) window.getSlidingInterval()).getCount();
         }
+        // event time windows hold the tuples back for the lag, and for the allowed lateness after the window fired
+        if (window.getTsField() != null) {
+            messageTimeoutSecs += (window.getLagMs() + window.getAllowedLatenessMs())/1000;
+        }
         setIfGreater(StormTopologyLayoutConstants.TOPOLOGY_MESSAGE_TIMEOUT_SECS, messageTimeoutSecs);
         setIfGreater(StormTopologyLayoutConstants.TOPOLOGY_MAX_SPOUT_PENDING, maxPending);
     }
@@ -184,6 +272,12 @@ public class StormTopologyFluxGenerator extends TopologyDagVisitor {
     private void wireWindowedRulesProcessor(RulesProcessor windowedRulesProcessor, List<Edge> inEdges, List<Edge> outEdges) {
         for (Edge edge : inEdges) {
             for (StreamGrouping streamGrouping : edge.getStreamGroupings()) {
+                // the aggregates of a key split across two tasks are only merged with two phase aggregation,
+                // the catalog rejects such edges, unless the window was changed after the edge was added
+                if (Stream.Grouping.PARTIAL_KEY.equals(streamGrouping.getGrouping())) {
+                    throw new IllegalArgumentException("Partial key grouping to " + windowedRulesProcessor.getId()
+                            + " requires two phase aggregation of a processing time window of durations");
+                }
                 addEdge(edge.getFrom(),
                         windowedRulesProcessor,
                         streamGrouping.getStream().getId(),
@@ -261,6 +355,20 @@ public class StormTopologyFluxGenerator extends TopologyDagVisitor {
             customGroupingClass.put(StormTopologyLayoutConstants.YAML_KEY_CLASS_NAME, StormTopologyLayoutConstants.YAML_KEY_CUSTOM_GROUPING_CLASSNAME);
             List constructorArgs = new ArrayList<>();
             constructorArgs.add(fields);
+            if (topologyConfig != null) {
+                Optional<Object> groupingMode = topologyConfig.getAnyOptional(StormTopologyLayoutConstants.FIELDS_GROUPING_MODE);
+                if (groupingMode.isPresent()) {
+                    constructorArgs.add(validateFieldsGroupingMode(groupingMode.get().toString()));
+                }
+            }
+            customGroupingClass.put(StormTopologyLayoutConstants.YAML_KEY_CONSTRUCTOR_ARGS, constructorArgs);
+            grouping.put(StormTopologyLayoutConstants.YAML_KEY_CUSTOM_GROUPING_CLASS, customGroupingClass);
+        } else if (Stream.Grouping.PARTIAL_KEY.equals(groupingType)) {
+            grouping.put(StormTopologyLayoutConstants.YAML_KEY_TYPE, StormTopologyLayoutConstants.YAML_KEY_CUSTOM_GROUPING);
+            Map customGroupingClass = new HashMap<>();
+            customGroupingClass.put(StormTopologyLayoutConstants.YAML_KEY_CLASS_NAME, StormTopologyLayoutConstants.YAML_KEY_PARTIAL_KEY_GROUPING_CLASSNAME);
+            List constructorArgs = new ArrayList<>();
+            constructorArgs.add(fields);
             customGroupingClass.put(StormTopologyLayoutConstants.YAML_KEY_CONSTRUCTOR_ARGS, constructorArgs);
             grouping.put(StormTopologyLayoutConstants.YAML_KEY_CUSTOM_GROUPING_CLASS, customGroupingClass);
         } else if (Stream.Grouping.SHUFFLE.equals(groupingType)) {
@@ -277,6 +385,16 @@ public class StormTopologyFluxGenerator extends TopologyDagVisitor {
         keysAndComponents.add(makeEntry(StormTopologyLayoutConstants.YAML_KEY_STREAMS, yamlComponent));
     }
 
+    // the grouping would only fail on an unknown mode when the topology is started
+    private String validateFieldsGroupingMode(String mode) {
+        if (!StormTopologyLayoutConstants.FIELDS_GROUPING_MODES.contains(mode)) {
+            throw new IllegalArgumentException("Invalid fields grouping mode '" + mode + "' in the topology config "
+                    + StormTopologyLayoutConstants.FIELDS_GROUPING_MODE + ", expected one of "
+                    + StormTopologyLayoutConstants.FIELDS_GROUPING_MODES);
+        }
+        return mode;
+    }
+
     private Map.Entry<String, Map<String, Object>> makeEntry(String key, Map<String, Object> component) {
         return new AbstractMap.SimpleImmutableEntry<>(key, component);
     }
@@ -15,6 +15,10 @@
  **/
 package com.hortonworks.streamline.streams.layout.storm;
 
+import com.google.common.collect.ImmutableList;
+
+import java.util.List;
+
 public final class StormTopologyLayoutConstants {
 
     private StormTopologyLayoutConstants() {
@@ -27,6 +31,12 @@ public final class StormTopologyLayoutConstants {
     public static final String TOPOLOGY_MESSAGE_TIMEOUT_SECS = "topology.message.timeout.secs";
     public static final String TOPOLOGY_MAX_SPOUT_PENDING = "topology.max.spout.pending";
     public static final String STREAMLINE_COMPONENT_CONF_KEY = "streamlineComponent";
+    // topology config selecting how the fields grouping maps keys to tasks, HASH (default) or CONSISTENT_HASH
+    public static final String FIELDS_GROUPING_MODE = "streamline.fieldsGrouping.mode";
+    // the names of FieldsGroupingAsCustomGrouping.Mode, the runtime of the grouping is not a dependency of the layout
+    public static final List<String> FIELDS_GROUPING_MODES = ImmutableList.of("HASH", "CONSISTENT_HASH");
+    // topology config of the script type of the rules processors not configuring their own
+    public static final String RULES_SCRIPT_TYPE = "streamline.rules.scriptType";
 
     // yaml key constants
     public static final String YAML_KEY_NAME = "name";
@@ -67,4 +77,5 @@ public final class StormTopologyLayoutConstants {
     public final static String YAML_KEY_PARALLELISM = "parallelism";
     public final static String YAML_KEY_CUSTOM_GROUPING_CLASS = "customClass";
     public final static String YAML_KEY_CUSTOM_GROUPING_CLASSNAME = "com.hortonworks.streamline.streams.runtime.storm.grouping.FieldsGroupingAsCustomGrouping";
+    public final static String YAML_KEY_PARTIAL_KEY_GROUPING_CLASSNAME = "com.hortonworks.streamline.streams.runtime.storm.grouping.PartialKeyGroupingAsCustomGrouping";
 }
@@ -47,6 +47,26 @@ public class StreamsShellBoltFluxComponent extends  AbstractFluxComponent {
         List<Object> values = new ArrayList<>();
         configMethodNames.add("withOutputStreams");
         values.add(getStreams());
+        if (conf.get("serializer") != null) {
+            configMethodNames.add("withSerializer");
+            values.add(conf.get("serializer"));
+        }
+        if (conf.get("batchSize") != null) {
+            configMethodNames.add("withBatchSize");
+            values.add(conf.get("batchSize"));
+        }
+        if (conf.get("maxInFlight") != null) {
+            configMethodNames.add("withMaxInFlight");
+            values.add(conf.get("maxInFlight"));
+        }
+        if (conf.get("poolSize") != null) {
+            configMethodNames.add("withPoolSize");
+            values.add(conf.get("poolSize"));
+        }
+        if (conf.get("keyFields") != null) {
+            configMethodNames.add("withKeyFields");
+            values.add(conf.get("keyFields"));
+        }
 
         List configMethods = getConfigMethodsYaml(configMethodNames.toArray(new String[0]), values.toArray());
 
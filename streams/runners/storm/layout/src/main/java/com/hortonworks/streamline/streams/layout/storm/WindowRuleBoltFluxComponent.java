@@ -35,6 +35,17 @@ import java.util.Set;
  * Handle rules with windowing
  */
 public class WindowRuleBoltFluxComponent extends RuleBoltFluxComponent {
+    /**
+     * Config of the phase of a two phase aggregation computed by the bolt, PARTIAL or FINAL.
+     */
+    public static final String CONFIG_KEY_AGGREGATION_PHASE = "aggregationPhase";
+    /**
+     * Config of the stream of the partial aggregates of a two phase aggregation.
+     */
+    public static final String CONFIG_KEY_PARTIAL_AGGREGATES_STREAM = "partialAggregatesStream";
+    public static final String AGGREGATION_PHASE_PARTIAL = "PARTIAL";
+    public static final String AGGREGATION_PHASE_FINAL = "FINAL";
+
     private final Logger log = LoggerFactory.getLogger(WindowRuleBoltFluxComponent.class);
 
     public WindowRuleBoltFluxComponent() {
@@ -55,12 +66,21 @@ public class WindowRuleBoltFluxComponent extends RuleBoltFluxComponent {
                     e);
         }
         boltConstructorArgs.add(rulesProcessorJson);
-        // hardcode script type enum for now.
-        boltConstructorArgs.add("SQL");
-        String[] configMethodNames = {"withWindowConfig"};
-        Object[] configKeys = {getRefYaml(addWindowConfig())};
-        List configMethods = getConfigMethodsYaml(configMethodNames, configKeys);
-        component = createComponent(boltId, boltClassName, null, boltConstructorArgs, configMethods);
+        // the windows are aggregated incrementally with the COMPILED script type
+        boltConstructorArgs.add(getScriptType());
+        List configMethods;
+        String aggregationPhase = (String) conf.get(CONFIG_KEY_AGGREGATION_PHASE);
+        if (aggregationPhase != null) {
+            String[] configMethodNames = {"withWindowConfig", "withAggregationPhase"};
+            Object[] configKeys = {getRefYaml(addWindowConfig()),
+                    new Object[]{aggregationPhase, conf.get(CONFIG_KEY_PARTIAL_AGGREGATES_STREAM)}};
+            configMethods = getConfigMethodsYaml(configMethodNames, configKeys);
+        } else {
+            String[] configMethodNames = {"withWindowConfig"};
+            Object[] configKeys = {getRefYaml(addWindowConfig())};
+            configMethods = getConfigMethodsYaml(configMethodNames, configKeys);
+        }
+        component = createWindowedBoltComponent(boltId, boltClassName, boltConstructorArgs, configMethods, getWindow());
         addParallelismToComponent();
     }
 
@@ -70,16 +90,11 @@ public class WindowRuleBoltFluxComponent extends RuleBoltFluxComponent {
         ObjectMapper mapper = new ObjectMapper();
         String windowJson = null;
         try {
-            Set<Window> windows = new HashSet<>(Collections2.transform(rulesProcessor.getRules(), new Function<Rule, Window>() {
-                @Override
-                public Window apply(Rule input) {
-                    return input.getWindow();
-                }
-            }));
-            if (windows.size() != 1) {
-                throw new IllegalArgumentException("All the rules in a windowed rule bolt should have the same window config.");
+            Window window = getWindow();
+            if (AGGREGATION_PHASE_PARTIAL.equals(conf.get(CONFIG_KEY_AGGREGATION_PHASE))) {
+                window = getPartialAggregationWindow(window);
             }
-            windowJson = mapper.writeValueAsString(windows.iterator().next());
+            windowJson = mapper.writeValueAsString(window);
         } catch (JsonProcessingException e) {
             log.error("Error creating json config string for RulesProcessor", e);
         }
@@ -88,4 +103,30 @@ public class WindowRuleBoltFluxComponent extends RuleBoltFluxComponent {
         this.addToComponents(this.createComponent(windowId, windowClassName, null, constructorArgs, null));
         return windowId;
     }
+
+    private Window getWindow() {
+        Set<Window> windows = new HashSet<>(Collections2.transform(rulesProcessor.getRules(), new Function<Rule, Window>() {
+            @Override
+            public Window apply(Rule input) {
+                return input.getWindow();
+            }
+        }));
+        if (windows.size() != 1) {
+            throw new IllegalArgumentException("All the rules in a windowed rule bolt should have the same window config.");
+        }
+        return windows.iterator().next();
+    }
+
+    /**
+     * The partial phase aggregates panes of the sliding interval of the window in tumbling windows,
+     * the final phase merges the panes of its window.
+     */
+    static Window getPartialAggregationWindow(Window window) {
+        Window partialWindow = new Window(window);
+        if (window.getSlidingInterval() != null) {
+            partialWindow.setWindowLength(window.getSlidingInterval());
+        }
+        partialWindow.setSlidingInterval(null);
+        return partialWindow;
+    }
 }
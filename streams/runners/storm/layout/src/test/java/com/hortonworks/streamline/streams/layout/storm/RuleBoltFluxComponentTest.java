@@ -0,0 +1,76 @@
+/**
+  * Copyright 2017 Hortonworks.
+  *
+  * Licensed under the Apache License, Version 2.0 (the "License");
+  * you may not use this file except in compliance with the License.
+  * You may obtain a copy of the License at
+
+  *   http://www.apache.org/licenses/LICENSE-2.0
+
+  * Unless required by applicable law or agreed to in writing, software
+  * distributed under the License is distributed on an "AS IS" BASIS,
+  * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  * See the License for the specific language governing permissions and
+  * limitations under the License.
+ **/
+
+package com.hortonworks.streamline.streams.layout.storm;
+
+import com.hortonworks.streamline.common.Schema;
+import com.hortonworks.streamline.streams.layout.Transform;
+import com.hortonworks.streamline.streams.layout.component.Stream;
+import com.hortonworks.streamline.streams.layout.component.impl.splitjoin.StageAction;
+import com.hortonworks.streamline.streams.layout.component.impl.splitjoin.StageProcessor;
+import com.hortonworks.streamline.streams.layout.component.rule.action.transform.EnrichmentTransform;
+import com.hortonworks.streamline.streams.layout.component.rule.action.transform.TransformDataProvider;
+import org.junit.Test;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+
+public class RuleBoltFluxComponentTest {
+
+    @Test
+    public void testAsyncEnrichmentStage() throws Exception {
+        Map<String, Object> component = generate(enrichmentStage(true));
+        assertEquals("com.hortonworks.streamline.streams.runtime.storm.bolt.enrichment.AsyncEnrichmentBolt",
+                component.get(StormTopologyLayoutConstants.YAML_KEY_CLASS_NAME));
+        List<Object> args = (List<Object>) component.get(StormTopologyLayoutConstants.YAML_KEY_CONSTRUCTOR_ARGS);
+        assertEquals(2, args.size());
+        assertEquals("enriched", args.get(1));
+    }
+
+    @Test
+    public void testSyncEnrichmentStage() throws Exception {
+        Map<String, Object> component = generate(enrichmentStage(false));
+        assertEquals("com.hortonworks.streamline.streams.runtime.storm.bolt.rules.RulesBolt",
+                component.get(StormTopologyLayoutConstants.YAML_KEY_CLASS_NAME));
+    }
+
+    private static StageProcessor enrichmentStage(boolean asyncLookups) {
+        EnrichmentTransform enrichmentTransform = new EnrichmentTransform("enrichment-transform",
+                Collections.singletonList("id"), new TransformDataProvider(null));
+        if (asyncLookups) {
+            enrichmentTransform.withAsyncLookups(100, 10, 2);
+        }
+        StageAction stageAction = new StageAction(Collections.<Transform>singletonList(enrichmentTransform));
+        stageAction.setName("stage-action");
+        stageAction.setOutputStreams(Collections.singleton("enriched"));
+        StageProcessor stageProcessor = new StageProcessor();
+        stageProcessor.addOutputStream(new Stream("enriched", Collections.singletonList(Schema.Field.of("id", Schema.Type.STRING))));
+        stageProcessor.setStageAction(stageAction);
+        return stageProcessor;
+    }
+
+    private static Map<String, Object> generate(StageProcessor stageProcessor) {
+        Map<String, Object> conf = new HashMap<>();
+        conf.put(StormTopologyLayoutConstants.STREAMLINE_COMPONENT_CONF_KEY, stageProcessor);
+        RuleBoltFluxComponent fluxComponent = new RuleBoltFluxComponent();
+        fluxComponent.withConfig(conf);
+        return fluxComponent.getComponent();
+    }
+}
@@ -22,8 +22,19 @@ import java.util.Map;
 public class StreamlineRuntimeUtil {
 
     public static Object getFieldValue (StreamlineEvent streamlineEvent, String fieldName) {
+        return getFieldValue(streamlineEvent, getNestedKeys(fieldName));
+    }
+
+    /**
+     * Splits a nested field name into its keys, so that callers looking up the same field for every event can split
+     * it once and use {@link #getFieldValue(StreamlineEvent, String[])}.
+     */
+    public static String[] getNestedKeys (String fieldName) {
+        return fieldName.split(StreamlineEvent.NESTED_FIELD_SPLIT_REGEX);
+    }
+
+    public static Object getFieldValue (StreamlineEvent streamlineEvent, String[] nestedKeys) {
         Map fieldValues = streamlineEvent;
-        String[] nestedKeys = fieldName.split(StreamlineEvent.NESTED_FIELD_SPLIT_REGEX);
         for (int i = 0; i < (nestedKeys.length - 1); ++i) {
             if (fieldValues == null)
                 break;
@@ -20,7 +20,7 @@ import com.hortonworks.streamline.common.Schema;
 import com.hortonworks.streamline.common.util.Utils;
 import com.hortonworks.streamline.streams.StreamlineEvent;
 import com.hortonworks.streamline.streams.Result;
-import com.hortonworks.streamline.streams.common.StreamlineEventImpl;
+import com.hortonworks.streamline.streams.common.StreamlineEventUtils;
 import com.hortonworks.streamline.streams.exception.ProcessingException;
 import com.hortonworks.streamline.streams.runtime.CustomProcessorRuntime;
 import org.apache.commons.lang.StringUtils;
@@ -161,8 +161,8 @@ public class CustomProcessorBolt extends BaseRichBolt {
             final Object tupleField = input.getValueByField(StreamlineEvent.STREAMLINE_EVENT);
             if (tupleField instanceof StreamlineEvent) {
                 StreamlineEvent event = (StreamlineEvent) tupleField;
-                List<Result> results = customProcessorRuntime.process(new StreamlineEventImpl(event, event.getDataSourceId(), event
-                        .getId(), event.getHeader(), input.getSourceStreamId()));
+                List<Result> results = customProcessorRuntime.process(
+                        StreamlineEventUtils.withSourceStream(event, input.getSourceStreamId()));
                 if (results != null) {
                     for (Result result : results) {
                         for (StreamlineEvent e : result.events) {
@@ -0,0 +1,240 @@
+/**
+  * Copyright 2017 Hortonworks.
+  *
+  * Licensed under the Apache License, Version 2.0 (the "License");
+  * you may not use this file except in compliance with the License.
+  * You may obtain a copy of the License at
+
+  *   http://www.apache.org/licenses/LICENSE-2.0
+
+  * Unless required by applicable law or agreed to in writing, software
+  * distributed under the License is distributed on an "AS IS" BASIS,
+  * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  * See the License for the specific language governing permissions and
+  * limitations under the License.
+ **/
+package com.hortonworks.streamline.streams.runtime.storm.bolt;
+
+import com.hortonworks.streamline.streams.StreamlineEvent;
+import org.apache.storm.Config;
+import org.apache.storm.jdbc.common.Column;
+import org.apache.storm.jdbc.common.ConnectionProvider;
+import org.apache.storm.jdbc.mapper.JdbcMapper;
+import org.apache.storm.task.OutputCollector;
+import org.apache.storm.task.TopologyContext;
+import org.apache.storm.topology.OutputFieldsDeclarer;
+import org.apache.storm.topology.base.BaseRichBolt;
+import org.apache.storm.tuple.Tuple;
+import org.apache.storm.utils.TupleUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Inserts the events into a database table in batches.
+ * <p>
+ * The rows of the tuples are buffered until the batch size is reached or the flush interval elapses, and written
+ * with a single prepared statement reused across the batches, using {@link PreparedStatement#addBatch()}. The tuples
+ * of a batch are acked once the batch is committed, and all failed if the batch could not be written. The rows are
+ * upserted into Phoenix tables. Drivers rewriting the batches into multi-row inserts, like MySQL with
+ * {@code rewriteBatchedStatements=true} or Postgres with {@code reWriteBatchedInserts=true}, are configured with
+ * the JDBC url.
+ * </p>
+ */
+public class JdbcBatchInsertBolt extends BaseRichBolt {
+    private static final Logger LOG = LoggerFactory.getLogger(JdbcBatchInsertBolt.class);
+    public static final int DEFAULT_BATCH_SIZE = 100;
+    public static final int DEFAULT_FLUSH_INTERVAL_SECS = 1;
+    public static final int DEFAULT_QUERY_TIMEOUT_SECS = 30;
+
+    private final ConnectionProvider connectionProvider;
+    private final JdbcMapper jdbcMapper;
+    private final String tableName;
+    private int batchSize = DEFAULT_BATCH_SIZE;
+    private int flushIntervalSecs = DEFAULT_FLUSH_INTERVAL_SECS;
+    private int queryTimeoutSecs = DEFAULT_QUERY_TIMEOUT_SECS;
+
+    private transient OutputCollector collector;
+    private transient List<Tuple> batchTuples;
+    private transient List<List<Column>> batchRows;
+    private transient Connection connection;
+    private transient PreparedStatement statement;
+
+    public JdbcBatchInsertBolt(ConnectionProvider connectionProvider, JdbcMapper jdbcMapper, String tableName) {
+        this.connectionProvider = connectionProvider;
+        this.jdbcMapper = jdbcMapper;
+        this.tableName = tableName;
+    }
+
+    public JdbcBatchInsertBolt withBatchSize(int batchSize) {
+        if (batchSize <= 0) {
+            throw new IllegalArgumentException("Invalid batch size " + batchSize);
+        }
+        this.batchSize = batchSize;
+        return this;
+    }
+
+    public JdbcBatchInsertBolt withFlushIntervalSecs(int flushIntervalSecs) {
+        if (flushIntervalSecs <= 0) {
+            throw new IllegalArgumentException("Invalid flush interval " + flushIntervalSecs);
+        }
+        this.flushIntervalSecs = flushIntervalSecs;
+        return this;
+    }
+
+    public JdbcBatchInsertBolt withQueryTimeoutSecs(int queryTimeoutSecs) {
+        this.queryTimeoutSecs = queryTimeoutSecs;
+        return this;
+    }
+
+    @Override
+    public void prepare(Map stormConf, TopologyContext context, OutputCollector collector) {
+        this.collector = collector;
+        this.batchTuples = new ArrayList<>(batchSize);
+        this.batchRows = new ArrayList<>(batchSize);
+        connectionProvider.prepare();
+    }
+
+    @Override
+    public void execute(Tuple input) {
+        if (TupleUtils.isTick(input)) {
+            flush();
+            return;
+        }
+        Object event = input.getValueByField(StreamlineEvent.STREAMLINE_EVENT);
+        if (!(event instanceof StreamlineEvent)) {
+            LOG.debug("Invalid tuple received. Tuple disregarded.\n\tTuple [{}].\n\tStreamlineEvent [{}].", input, event);
+            collector.ack(input);
+            return;
+        }
+        List<Column> row;
+        try {
+            row = jdbcMapper.getColumns(input);
+        } catch (Exception e) {
+            LOG.error("Failed to map the tuple [{}] to the columns of table {}", input, tableName, e);
+            collector.fail(input);
+            collector.reportError(e);
+            return;
+        }
+        batchTuples.add(input);
+        batchRows.add(row);
+        if (batchTuples.size() >= batchSize) {
+            flush();
+        }
+    }
+
+    private void flush() {
+        if (batchTuples.isEmpty()) {
+            return;
+        }
+        try {
+            if (statement == null) {
+                prepareStatement(batchRows.get(0));
+            }
+            for (List<Column> row : batchRows) {
+                int index = 1;
+                for (Column column : row) {
+                    if (column.getVal() == null) {
+                        statement.setNull(index++, column.getSqlType());
+                    } else {
+                        statement.setObject(index++, column.getVal(), column.getSqlType());
+                    }
+                }
+                statement.addBatch();
+            }
+            statement.executeBatch();
+            connection.commit();
+            for (Tuple tuple : batchTuples) {
+                collector.ack(tuple);
+            }
+        } catch (Exception e) {
+            LOG.error("Failed to insert a batch of {} rows into table {}", batchTuples.size(), tableName, e);
+            rollback();
+            // the connection is opened again for the next batch
+            close();
+            for (Tuple tuple : batchTuples) {
+                collector.fail(tuple);
+            }
+            collector.reportError(e);
+        } finally {
+            batchTuples.clear();
+            batchRows.clear();
+        }
+    }
+
+    private void prepareStatement(List<Column> row) throws SQLException {
+        connection = connectionProvider.getConnection();
+        connection.setAutoCommit(false);
+        boolean phoenix = connection.getMetaData().getDatabaseProductName().toLowerCase().contains("phoenix");
+        StringBuilder sql = new StringBuilder(phoenix ? "UPSERT INTO " : "INSERT INTO ")
+                .append(tableName).append(" (");
+        StringBuilder placeholders = new StringBuilder();
+        for (Column column : row) {
+            if (placeholders.length() > 0) {
+                sql.append(", ");
+                placeholders.append(", ");
+            }
+            sql.append(column.getColumnName());
+            placeholders.append('?');
+        }
+        sql.append(") VALUES (").append(placeholders).append(')');
+        LOG.info("Inserting the rows of table {} with statement [{}]", tableName, sql);
+        statement = connection.prepareStatement(sql.toString());
+        if (queryTimeoutSecs > 0) {
+            statement.setQueryTimeout(queryTimeoutSecs);
+        }
+    }
+
+    private void rollback() {
+        if (connection != null) {
+            try {
+                connection.rollback();
+            } catch (SQLException e) {
+                LOG.warn("Failed to roll back the batch of table {}", tableName, e);
+            }
+        }
+    }
+
+    private void close() {
+        try {
+            if (statement != null) {
+                statement.close();
+            }
+        } catch (SQLException e) {
+            LOG.warn("Failed to close the statement of table {}", tableName, e);
+        }
+        try {
+            if (connection != null) {
+                connection.close();
+            }
+        } catch (SQLException e) {
+            LOG.warn("Failed to close the connection of table {}", tableName, e);
+        }
+        statement = null;
+        connection = null;
+    }
+
+    @Override
+    public void declareOutputFields(OutputFieldsDeclarer declarer) {
+    }
+
+    @Override
+    public Map<String, Object> getComponentConfiguration() {
+        Map<String, Object> conf = new HashMap<>();
+        conf.put(Config.TOPOLOGY_TICK_TUPLE_FREQ_SECS, flushIntervalSecs);
+        return conf;
+    }
+
+    @Override
+    public void cleanup() {
+        close();
+        connectionProvider.cleanup();
+    }
+}
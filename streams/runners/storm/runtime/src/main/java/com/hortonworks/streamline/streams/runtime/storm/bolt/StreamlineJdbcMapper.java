@@ -26,7 +26,6 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.util.ArrayList;
-import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -37,7 +36,9 @@ public class StreamlineJdbcMapper implements JdbcMapper {
     private final String tableName;
     private final ConnectionProvider connectionProvider;
     private final List<String> fields;
-    private final Map<String, Column> fieldsToColumns = new HashMap<>();
+    // the columns of the fields and the java types of their values, in the order of the fields
+    private transient Column<?>[] fieldColumns;
+    private transient Class<?>[] fieldJavaTypes;
 
     public StreamlineJdbcMapper(String tableName,
                                 ConnectionProvider connectionProvider,
@@ -52,30 +53,36 @@ public class StreamlineJdbcMapper implements JdbcMapper {
     @Override
     public List<Column> getColumns(ITuple tuple) {
         StreamlineEvent event = (StreamlineEvent) tuple.getValueByField(StreamlineEvent.STREAMLINE_EVENT);
-        List<Column> res = new ArrayList<>();
-        if (fieldsToColumns.isEmpty()) {
-            initFieldsToColumns();
+        if (fieldColumns == null) {
+            initFieldColumns();
         }
-        for(String field: fields) {
-            Column<?> column = getColumn(field);
-            String columnName = column.getColumnName();
-            Integer columnSqlType = column.getSqlType();
-            Object value = Util.getJavaType(columnSqlType).cast(event.get(field));
-            res.add(new Column<>(columnName, value, columnSqlType));
+        List<Column> res = new ArrayList<>(fieldColumns.length);
+        for (int i = 0; i < fieldColumns.length; i++) {
+            Object value = fieldJavaTypes[i].cast(event.get(fields.get(i)));
+            res.add(new Column<>(fieldColumns[i].getColumnName(), value, fieldColumns[i].getSqlType()));
         }
         return res;
     }
 
-    private void initFieldsToColumns() {
+    private void initFieldColumns() {
         connectionProvider.prepare();
         JdbcClient client = new JdbcClient(connectionProvider, 30);
+        Map<String, Column<?>> fieldsToColumns = new HashMap<>();
         for (Column<?> column: client.getColumnSchema(tableName)) {
             fieldsToColumns.put(column.getColumnName().toUpperCase(), column);
         }
         LOG.info("fieldsToColumns {}", fieldsToColumns);
+        Column<?>[] columns = new Column<?>[fields.size()];
+        Class<?>[] javaTypes = new Class<?>[fields.size()];
+        for (int i = 0; i < columns.length; i++) {
+            columns[i] = getColumn(fieldsToColumns, fields.get(i));
+            javaTypes[i] = Util.getJavaType(columns[i].getSqlType());
+        }
+        fieldJavaTypes = javaTypes;
+        fieldColumns = columns;
     }
 
-    private Column<?> getColumn(String fieldName) {
+    private Column<?> getColumn(Map<String, Column<?>> fieldsToColumns, String fieldName) {
         Column<?> column = fieldsToColumns.get(fieldName.toUpperCase());
         if (column != null) {
             return column;
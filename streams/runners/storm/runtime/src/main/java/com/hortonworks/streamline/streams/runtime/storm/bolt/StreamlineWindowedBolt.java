@@ -23,10 +23,13 @@ import java.io.IOException;
 import java.util.concurrent.TimeUnit;
 
 public abstract class StreamlineWindowedBolt extends BaseWindowedBolt {
+    private Window windowConfig;
+
     /** Supports configuring windowing related settings via Streamline GUI.
      *  Note: This will be kept Streamline specific and wont be migrated to Storm.
      * */
     public void withWindowConfig(Window windowConfig) throws IOException {
+        this.windowConfig = windowConfig;
         if (windowConfig.getWindowLength() instanceof Window.Duration) {
             Duration windowLength = new Duration(((Window.Duration) windowConfig.getWindowLength()).getDurationMs(), TimeUnit.MILLISECONDS);
             if (windowConfig.getSlidingInterval() instanceof Window.Duration) {
@@ -59,4 +62,12 @@ public abstract class StreamlineWindowedBolt extends BaseWindowedBolt {
             withTimestampField(windowConfig.getTsField());
         }
     }
+
+    /**
+     * Returns the window config set with {@link #withWindowConfig(Window)}, or null if the window was configured
+     * with the storm APIs.
+     */
+    public Window getWindowConfig() {
+        return windowConfig;
+    }
 }
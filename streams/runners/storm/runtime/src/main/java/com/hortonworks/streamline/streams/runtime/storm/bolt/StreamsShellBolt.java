@@ -16,6 +16,8 @@
 
 package com.hortonworks.streamline.streams.runtime.storm.bolt;
 
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.MoreExecutors;
 import org.apache.storm.task.OutputCollector;
 import org.apache.storm.task.TopologyContext;
 import org.apache.storm.topology.IRichBolt;
@@ -34,8 +36,17 @@ import org.slf4j.LoggerFactory;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Queue;
 import java.util.Random;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
 
+/**
+ * Runs a multilang processor. The events are pipelined to the subprocesses by the {@link MultiLangProcessorRuntime},
+ * the results are emitted anchored to their input tuple and the tuple acked as soon as they complete, in the order the
+ * tuples were received. The results are emitted by the thread completing them, the collector is only used while
+ * holding the lock of the bolt so that it is never used by the executor and a completing thread at the same time.
+ */
 public class StreamsShellBolt implements IRichBolt {
 
     public static final Logger LOG = LoggerFactory.getLogger(StreamsShellBolt.class);
@@ -47,8 +58,14 @@ public class StreamsShellBolt implements IRichBolt {
     private Random rand;
     private int processTimeoutInMs;
     Map<String, String> envMap = new HashMap<>();
+    private String serializer;
+    private Integer batchSize;
+    private Integer maxInFlight;
+    private Integer poolSize;
+    private List<String> keyFields;
 
     private MultiLangProcessorRuntime processorRuntime ;
+    private transient Queue<Completion> completions;
 
     public StreamsShellBolt(String command, int processTimeoutInMs) {
         if(command == null || command.isEmpty())
@@ -67,11 +84,53 @@ public class StreamsShellBolt implements IRichBolt {
         return this;
     }
 
+    /**
+     * Sets the class name of the {@link com.hortonworks.streamline.streams.common.utils.ISerializer} used to talk
+     * to the subprocess.
+     */
+    public StreamsShellBolt withSerializer(String serializer) {
+        this.serializer = serializer;
+        return this;
+    }
+
+    /**
+     * Sets the maximum number of events sent to the subprocess in one batch.
+     */
+    public StreamsShellBolt withBatchSize(int batchSize) {
+        this.batchSize = batchSize;
+        return this;
+    }
+
+    /**
+     * Sets the maximum number of events sent to the subprocess and not processed yet.
+     */
+    public StreamsShellBolt withMaxInFlight(int maxInFlight) {
+        this.maxInFlight = maxInFlight;
+        return this;
+    }
+
+    /**
+     * Sets the number of subprocesses launched by each executor.
+     */
+    public StreamsShellBolt withPoolSize(int poolSize) {
+        this.poolSize = poolSize;
+        return this;
+    }
+
+    /**
+     * Sends the events with the same values of the key fields to the same subprocess of the pool.
+     */
+    public StreamsShellBolt withKeyFields(List<String> keyFields) {
+        this.keyFields = keyFields;
+        return this;
+    }
+
     public void prepare(Map stormConf, TopologyContext context,
                         final OutputCollector collector) {
 
         this.collector = collector;
         this.context = context;
+        this.completions = new ConcurrentLinkedQueue<>();
         rand = new Random();
 
         ShellContext shellContext = getShellContext(context);
@@ -83,6 +142,11 @@ public class StreamsShellBolt implements IRichBolt {
         processConfigMap.put(MultiLangProcessorRuntime.OUTPUT_STREAMS, outputStreams);
         processConfigMap.put(MultiLangProcessorRuntime.PROCESS_TIMEOUT_MILLS, processTimeoutInMs);
         processConfigMap.put(MultiLangProcessorRuntime.SHELL_ENVIRONMENT, envMap);
+        processConfigMap.put(MultiLangProcessorRuntime.MULTILANG_SERIALIZER, serializer);
+        processConfigMap.put(MultiLangProcessorRuntime.MULTILANG_BATCH_SIZE, batchSize);
+        processConfigMap.put(MultiLangProcessorRuntime.MULTILANG_MAX_IN_FLIGHT, maxInFlight);
+        processConfigMap.put(MultiLangProcessorRuntime.MULTILANG_POOL_SIZE, poolSize);
+        processConfigMap.put(MultiLangProcessorRuntime.MULTILANG_KEY_FIELDS, keyFields);
 
         processorRuntime = new MultiLangProcessorRuntime();
         processorRuntime.initialize(processConfigMap);
@@ -104,23 +168,52 @@ public class StreamsShellBolt implements IRichBolt {
                 String genId = Long.toString(rand.nextLong());
                 StreamlineEvent event = (StreamlineEvent) tupleField;
                 StreamlineEvent eventWithStream = getStreamlineEventWithStream(event, input, genId);
-                for (Result result : processorRuntime.process(eventWithStream)) {
-                    for (StreamlineEvent e : result.events) {
-                        collector.emit(result.stream, input, new Values(e));
+                final Tuple tuple = input;
+                final ListenableFuture<List<Result>> results = processorRuntime.processAsync(eventWithStream);
+                results.addListener(new Runnable() {
+                    @Override
+                    public void run() {
+                        completions.add(new Completion(tuple, results));
+                        // emits right away instead of waiting for the next tuple
+                        emitCompleted();
                     }
-                }
+                }, MoreExecutors.directExecutor());
             } else {
                 LOG.debug("Invalid tuple received. Tuple disregarded and rules not evaluated.\n\tTuple [{}]." +
                         "\n\tStreamlineEvent [{}].", input, tupleField);
+                synchronized (this) {
+                    collector.ack(input);
+                }
             }
-            collector.ack(input);
         } catch (Exception e) {
-            collector.fail(input);
-            collector.reportError(e);
-            LOG.debug("", e);
+            fail(input, e);
+        }
+    }
+
+    private synchronized void emitCompleted() {
+        Completion completion;
+        while ((completion = completions.poll()) != null) {
+            try {
+                for (Result result : completion.results.get()) {
+                    for (StreamlineEvent e : result.events) {
+                        collector.emit(result.stream, completion.input, new Values(e));
+                    }
+                }
+                collector.ack(completion.input);
+            } catch (ExecutionException e) {
+                fail(completion.input, e.getCause());
+            } catch (Exception e) {
+                fail(completion.input, e);
+            }
         }
     }
 
+    private synchronized void fail(Tuple input, Throwable error) {
+        collector.fail(input);
+        collector.reportError(error);
+        LOG.debug("", error);
+    }
+
     private StreamlineEvent getStreamlineEventWithStream(StreamlineEvent event, Tuple tuple, String genId) {
         return new StreamlineEventImpl(event,
                 event.getDataSourceId(), genId,
@@ -143,4 +236,14 @@ public class StreamsShellBolt implements IRichBolt {
     public Map<String, Object> getComponentConfiguration() {
         return null;
     }
+
+    private static final class Completion {
+        private final Tuple input;
+        private final ListenableFuture<List<Result>> results;
+
+        Completion(Tuple input, ListenableFuture<List<Result>> results) {
+            this.input = input;
+            this.results = results;
+        }
+    }
 }
@@ -0,0 +1,212 @@
+/**
+  * Copyright 2017 Hortonworks.
+  *
+  * Licensed under the Apache License, Version 2.0 (the "License");
+  * you may not use this file except in compliance with the License.
+  * You may obtain a copy of the License at
+
+  *   http://www.apache.org/licenses/LICENSE-2.0
+
+  * Unless required by applicable law or agreed to in writing, software
+  * distributed under the License is distributed on an "AS IS" BASIS,
+  * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  * See the License for the specific language governing permissions and
+  * limitations under the License.
+ **/
+package com.hortonworks.streamline.streams.runtime.storm.bolt.enrichment;
+
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.MoreExecutors;
+import com.hortonworks.streamline.common.util.Utils;
+import com.hortonworks.streamline.streams.StreamlineEvent;
+import com.hortonworks.streamline.streams.common.StreamlineEventUtils;
+import com.hortonworks.streamline.streams.layout.component.rule.action.transform.EnrichmentTransform;
+import com.hortonworks.streamline.streams.runtime.transform.EnrichmentTransformRuntime;
+import org.apache.storm.Config;
+import org.apache.storm.metric.api.CountMetric;
+import org.apache.storm.task.OutputCollector;
+import org.apache.storm.task.TopologyContext;
+import org.apache.storm.topology.OutputFieldsDeclarer;
+import org.apache.storm.topology.base.BaseRichBolt;
+import org.apache.storm.tuple.Fields;
+import org.apache.storm.tuple.Tuple;
+import org.apache.storm.tuple.Values;
+import org.apache.storm.utils.TupleUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * Enriches the events with an {@link EnrichmentTransform} using asynchronous lookups, so that the executor keeps
+ * receiving tuples while the values of earlier tuples are looked up in batches. It replaces the rules bolt of the
+ * processors, like enrichment stages, whose only action is an enrichment with asynchronous lookups.
+ * <p>
+ * The lookups complete on the lookup threads, the enriched events are emitted, anchored to their input tuple, by the
+ * thread completing the lookup in the order the lookups complete. The collector is only used while holding the lock
+ * of the bolt so that it is never used by the executor and a lookup thread at the same time. The input tuples are
+ * acked once their events are emitted, or failed if the lookup failed. When the maximum number of pending events is
+ * reached, the bolt flushes the lookups and waits for them before accepting another tuple.
+ * </p>
+ * The tick tuples flush the lookups waiting for more keys to batch.
+ */
+public class AsyncEnrichmentBolt extends BaseRichBolt {
+    private static final Logger LOG = LoggerFactory.getLogger(AsyncEnrichmentBolt.class);
+    private static final int TICK_FREQ_SECS = 1;
+    private static final int METRICS_BUCKET_SECS = 60;
+    public static final int DEFAULT_MAX_PENDING_EVENTS = 1000;
+
+    private final EnrichmentTransform enrichmentTransform;
+    private final String outputStream;
+    private final int maxPendingEvents;
+
+    private transient OutputCollector collector;
+    private transient EnrichmentTransformRuntime enrichmentTransformRuntime;
+    private transient Queue<Completion> completions;
+    // the events received by this task, to compare the load of the tasks with skewed keys
+    private transient CountMetric inputLoad;
+    // guarded by this
+    private transient int pendingEvents;
+
+    public AsyncEnrichmentBolt(EnrichmentTransform enrichmentTransform, String outputStream) {
+        this(enrichmentTransform, outputStream, DEFAULT_MAX_PENDING_EVENTS);
+    }
+
+    public AsyncEnrichmentBolt(String enrichmentTransformJson, String outputStream) {
+        this(Utils.createObjectFromJson(enrichmentTransformJson, EnrichmentTransform.class), outputStream);
+    }
+
+    public AsyncEnrichmentBolt(EnrichmentTransform enrichmentTransform, String outputStream, int maxPendingEvents) {
+        if (!enrichmentTransform.isAsyncLookups()) {
+            throw new IllegalArgumentException("Asynchronous lookups are not enabled for " + enrichmentTransform);
+        }
+        this.enrichmentTransform = enrichmentTransform;
+        this.outputStream = outputStream;
+        this.maxPendingEvents = maxPendingEvents;
+    }
+
+    @Override
+    public void prepare(Map stormConf, TopologyContext context, OutputCollector collector) {
+        this.collector = collector;
+        this.completions = new ConcurrentLinkedQueue<>();
+        this.inputLoad = new CountMetric();
+        context.registerMetric("inputLoad", inputLoad, METRICS_BUCKET_SECS);
+        this.enrichmentTransformRuntime = new EnrichmentTransformRuntime(enrichmentTransform);
+    }
+
+    @Override
+    public void execute(Tuple input) {
+        if (TupleUtils.isTick(input)) {
+            enrichmentTransformRuntime.flush();
+            emitCompleted();
+            return;
+        }
+        inputLoad.incr();
+        final Object event = input.getValueByField(StreamlineEvent.STREAMLINE_EVENT);
+        if (event instanceof StreamlineEvent) {
+            final Tuple tuple = input;
+            final ListenableFuture<List<StreamlineEvent>> result;
+            boolean full;
+            synchronized (this) {
+                full = ++pendingEvents >= maxPendingEvents;
+            }
+            try {
+                result = enrichmentTransformRuntime.executeAsync(
+                        StreamlineEventUtils.withSourceStream((StreamlineEvent) event, input.getSourceStreamId()));
+            } catch (Exception e) {
+                synchronized (this) {
+                    pendingEvents--;
+                }
+                fail(input, e);
+                return;
+            }
+            result.addListener(new Runnable() {
+                @Override
+                public void run() {
+                    completions.add(new Completion(tuple, result));
+                    // emits right away instead of waiting for the next tuple
+                    emitCompleted();
+                }
+            }, MoreExecutors.directExecutor());
+            if (full) {
+                enrichmentTransformRuntime.flush();
+                waitForCompletions();
+            }
+        } else {
+            LOG.debug("Invalid tuple received. Tuple disregarded.\n\tTuple [{}].\n\tStreamlineEvent [{}].", input, event);
+            synchronized (this) {
+                collector.ack(input);
+            }
+        }
+    }
+
+    private synchronized void waitForCompletions() {
+        while (pendingEvents >= maxPendingEvents) {
+            try {
+                wait();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new RuntimeException(e);
+            }
+        }
+    }
+
+    private synchronized void emitCompleted() {
+        Completion completion;
+        while ((completion = completions.poll()) != null) {
+            if (pendingEvents-- >= maxPendingEvents) {
+                notifyAll();
+            }
+            try {
+                for (StreamlineEvent enriched : completion.result.get()) {
+                    collector.emit(outputStream, completion.input, new Values(enriched));
+                }
+                collector.ack(completion.input);
+            } catch (ExecutionException e) {
+                fail(completion.input, e.getCause());
+            } catch (Exception e) {
+                fail(completion.input, e);
+            }
+        }
+    }
+
+    private synchronized void fail(Tuple input, Throwable error) {
+        LOG.debug("Enrichment of tuple [{}] failed", input, error);
+        collector.fail(input);
+        collector.reportError(error);
+    }
+
+    @Override
+    public void declareOutputFields(OutputFieldsDeclarer declarer) {
+        declarer.declareStream(outputStream, new Fields(StreamlineEvent.STREAMLINE_EVENT));
+    }
+
+    @Override
+    public Map<String, Object> getComponentConfiguration() {
+        Map<String, Object> conf = new HashMap<>();
+        conf.put(Config.TOPOLOGY_TICK_TUPLE_FREQ_SECS, TICK_FREQ_SECS);
+        return conf;
+    }
+
+    @Override
+    public void cleanup() {
+        if (enrichmentTransformRuntime != null) {
+            enrichmentTransformRuntime.cleanup();
+        }
+    }
+
+    private static final class Completion {
+        private final Tuple input;
+        private final ListenableFuture<List<StreamlineEvent>> result;
+
+        Completion(Tuple input, ListenableFuture<List<StreamlineEvent>> result) {
+            this.input = input;
+            this.result = result;
+        }
+    }
+}
@@ -0,0 +1,272 @@
+/**
+  * Copyright 2017 Hortonworks.
+  *
+  * Licensed under the Apache License, Version 2.0 (the "License");
+  * you may not use this file except in compliance with the License.
+  * You may obtain a copy of the License at
+
+  *   http://www.apache.org/licenses/LICENSE-2.0
+
+  * Unless required by applicable law or agreed to in writing, software
+  * distributed under the License is distributed on an "AS IS" BASIS,
+  * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  * See the License for the specific language governing permissions and
+  * limitations under the License.
+ **/
+package com.hortonworks.streamline.streams.runtime.storm.bolt.kafka;
+
+import com.hortonworks.streamline.streams.common.EventLayout;
+import com.hortonworks.streamline.streams.common.IndexedStreamlineEvent;
+import org.apache.avro.io.Encoder;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Writes the events of one shape, the field names in iteration order and the types of the values, in the Avro
+ * binary encoding of the schema {@link StreamlineEventSerializer} infers for that shape.
+ * <p>
+ * The writer is compiled once from a sample event. Events of the same shape are then written field by field from
+ * the event, without building a schema or a generic record. {@link #matches(Map)} checks that an event has the
+ * shape of the writer, an event with other fields, field order or value types needs another writer.
+ * </p>
+ */
+final class AvroEventWriter {
+    private final RecordNode root;
+
+    private AvroEventWriter(RecordNode root) {
+        this.root = root;
+    }
+
+    /**
+     * Compiles a writer for the shape of the given event.
+     *
+     * @throws IllegalArgumentException if the event has values that cannot be inferred as an Avro type
+     */
+    static AvroEventWriter compile(Map<String, Object> event) {
+        return new AvroEventWriter(new RecordNode(event));
+    }
+
+    boolean matches(Map<String, Object> event) {
+        return root.matches(event);
+    }
+
+    void write(Map<String, Object> event, Encoder encoder) throws IOException {
+        root.write(event, encoder);
+    }
+
+    private static Node compileNode(Object value) {
+        if (value instanceof Map && !((Map<?, ?>) value).isEmpty()) {
+            return new RecordNode((Map<String, Object>) value);
+        } else if (value instanceof List && !((List<?>) value).isEmpty()) {
+            return new ArrayNode(compileNode(((List<?>) value).get(0)));
+        }
+        for (PrimitiveNode node : PrimitiveNode.values()) {
+            if (node.matches(value)) {
+                return node;
+            }
+        }
+        throw new IllegalArgumentException("Cannot infer an Avro type for value " + value + " of "
+                + value.getClass());
+    }
+
+    private interface Node {
+        boolean matches(Object value);
+
+        void write(Object value, Encoder encoder) throws IOException;
+    }
+
+    private enum PrimitiveNode implements Node {
+        NULL {
+            @Override
+            public boolean matches(Object value) {
+                return value == null;
+            }
+
+            @Override
+            public void write(Object value, Encoder encoder) throws IOException {
+                encoder.writeNull();
+            }
+        },
+        BOOLEAN {
+            @Override
+            public boolean matches(Object value) {
+                return value instanceof Boolean;
+            }
+
+            @Override
+            public void write(Object value, Encoder encoder) throws IOException {
+                encoder.writeBoolean((Boolean) value);
+            }
+        },
+        INT {
+            @Override
+            public boolean matches(Object value) {
+                return value instanceof Integer || value instanceof Short || value instanceof Byte;
+            }
+
+            @Override
+            public void write(Object value, Encoder encoder) throws IOException {
+                encoder.writeInt(((Number) value).intValue());
+            }
+        },
+        LONG {
+            @Override
+            public boolean matches(Object value) {
+                return value instanceof Long;
+            }
+
+            @Override
+            public void write(Object value, Encoder encoder) throws IOException {
+                encoder.writeLong((Long) value);
+            }
+        },
+        FLOAT {
+            @Override
+            public boolean matches(Object value) {
+                return value instanceof Float;
+            }
+
+            @Override
+            public void write(Object value, Encoder encoder) throws IOException {
+                encoder.writeFloat((Float) value);
+            }
+        },
+        DOUBLE {
+            @Override
+            public boolean matches(Object value) {
+                return value instanceof Double;
+            }
+
+            @Override
+            public void write(Object value, Encoder encoder) throws IOException {
+                encoder.writeDouble((Double) value);
+            }
+        },
+        BYTES {
+            @Override
+            public boolean matches(Object value) {
+                return value instanceof ByteBuffer;
+            }
+
+            @Override
+            public void write(Object value, Encoder encoder) throws IOException {
+                encoder.writeBytes((ByteBuffer) value);
+            }
+        },
+        STRING {
+            @Override
+            public boolean matches(Object value) {
+                return value instanceof String;
+            }
+
+            @Override
+            public void write(Object value, Encoder encoder) throws IOException {
+                encoder.writeString((String) value);
+            }
+        }
+    }
+
+    /**
+     * A record with the fields of a map, in the iteration order of the map.
+     */
+    private static final class RecordNode implements Node {
+        private final String[] names;
+        private final Node[] fields;
+        // the layout of the sample event if it has a value for every field of its layout
+        private final EventLayout layout;
+
+        RecordNode(Map<String, Object> map) {
+            names = new String[map.size()];
+            fields = new Node[map.size()];
+            int i = 0;
+            for (Map.Entry<String, Object> entry : map.entrySet()) {
+                names[i] = entry.getKey();
+                fields[i] = compileNode(entry.getValue());
+                i++;
+            }
+            if (map instanceof IndexedStreamlineEvent
+                    && ((IndexedStreamlineEvent) map).getLayout().size() == names.length) {
+                layout = ((IndexedStreamlineEvent) map).getLayout();
+            } else {
+                layout = null;
+            }
+        }
+
+        @Override
+        public boolean matches(Object value) {
+            if (!(value instanceof Map) || ((Map<?, ?>) value).size() != names.length) {
+                return false;
+            }
+            if (layout != null && value instanceof IndexedStreamlineEvent
+                    && ((IndexedStreamlineEvent) value).getLayout() == layout) {
+                // same layout and no missing field, the values are in the order of the layout
+                IndexedStreamlineEvent event = (IndexedStreamlineEvent) value;
+                for (int i = 0; i < fields.length; i++) {
+                    if (!fields[i].matches(event.getValue(i))) {
+                        return false;
+                    }
+                }
+                return true;
+            }
+            int i = 0;
+            for (Map.Entry<?, ?> entry : ((Map<?, ?>) value).entrySet()) {
+                if (!names[i].equals(entry.getKey()) || !fields[i].matches(entry.getValue())) {
+                    return false;
+                }
+                i++;
+            }
+            return true;
+        }
+
+        @Override
+        public void write(Object value, Encoder encoder) throws IOException {
+            if (layout != null && value instanceof IndexedStreamlineEvent
+                    && ((IndexedStreamlineEvent) value).getLayout() == layout) {
+                IndexedStreamlineEvent event = (IndexedStreamlineEvent) value;
+                for (int i = 0; i < fields.length; i++) {
+                    fields[i].write(event.getValue(i), encoder);
+                }
+                return;
+            }
+            int i = 0;
+            for (Object fieldValue : ((Map<?, ?>) value).values()) {
+                fields[i++].write(fieldValue, encoder);
+            }
+        }
+    }
+
+    /**
+     * An array with the type of its first element, like the inferred schema.
+     */
+    private static final class ArrayNode implements Node {
+        private final Node element;
+
+        ArrayNode(Node element) {
+            this.element = element;
+        }
+
+        @Override
+        public boolean matches(Object value) {
+            return value instanceof List && !((List<?>) value).isEmpty() && element.matches(((List<?>) value).get(0));
+        }
+
+        @Override
+        public void write(Object value, Encoder encoder) throws IOException {
+            List<?> list = (List<?>) value;
+            encoder.writeArrayStart();
+            encoder.setItemCount(list.size());
+            for (Object item : list) {
+                encoder.startItem();
+                if (!element.matches(item)) {
+                    throw new IllegalArgumentException("Array elements must be of the same type, " + item
+                            + " does not match the first element of " + list);
+                }
+                element.write(item, encoder);
+            }
+            encoder.writeArrayEnd();
+        }
+    }
+}
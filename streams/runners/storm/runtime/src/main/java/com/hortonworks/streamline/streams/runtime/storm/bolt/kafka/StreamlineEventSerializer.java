@@ -18,34 +18,69 @@ package com.hortonworks.streamline.streams.runtime.storm.bolt.kafka;
 import org.apache.avro.Schema;
 import org.apache.avro.generic.GenericData;
 import org.apache.avro.generic.GenericRecord;
+import org.apache.avro.io.BinaryEncoder;
+import org.apache.avro.io.EncoderFactory;
 import org.apache.kafka.common.serialization.Serializer;
 import com.hortonworks.registries.schemaregistry.SchemaCompatibility;
+import com.hortonworks.registries.schemaregistry.SchemaIdVersion;
 import com.hortonworks.registries.schemaregistry.SchemaMetadata;
 import com.hortonworks.registries.schemaregistry.serdes.avro.AvroSnapshotSerializer;
 import com.hortonworks.registries.schemaregistry.serdes.avro.kafka.Utils;
 import com.hortonworks.streamline.streams.StreamlineEvent;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
 import java.nio.ByteBuffer;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
+/**
+ * Serializes the events in Avro with a schema inferred from the event and registered in the schema registry.
+ * <p>
+ * By default the schema is inferred and a generic record built for every event. With {@link #CACHED_SCHEMA} set,
+ * the serializer keeps an {@link AvroEventWriter} per topic and event shape. The schema of a shape is registered once
+ * with the first event of the shape, the following events of the shape are written directly from the event with a
+ * reused encoder and buffer, after the header the registry serializer writes for the registered schema version.
+ * </p>
+ */
 public class StreamlineEventSerializer implements Serializer<StreamlineEvent> {
+    private static final Logger LOG = LoggerFactory.getLogger(StreamlineEventSerializer.class);
+
+    public static final String CACHED_SCHEMA = "streamline.serializer.cached.schema";
+    // writers kept per topic, the least recently compiled ones are dropped beyond this
+    static final int MAX_WRITERS_PER_TOPIC = 16;
 
     private static final String SCHEMA_KEY = "schema";
     private static final String VALUE_KEY = "value";
     private static final String SCHEMA_NAMESPACE = "com.hortonworks.registries";
-    private final AvroSnapshotSerializer avroSnapshotSerializer;
+    private final RegistrySerializer avroSnapshotSerializer;
     private SchemaCompatibility compatibility;
+    private boolean cachedSchema;
+    private final Map<String, SchemaMetadata> schemaMetadataByTopic = new ConcurrentHashMap<>();
+    private final Map<String, List<CachedWriter>> writersByTopic = new HashMap<>();
+    private final ByteArrayOutputStream buffer = new ByteArrayOutputStream(1024);
+    private BinaryEncoder encoder;
 
     public StreamlineEventSerializer () {
-        this.avroSnapshotSerializer = new AvroSnapshotSerializer();
+        this(new RegistrySerializer());
     }
+
+    StreamlineEventSerializer(RegistrySerializer avroSnapshotSerializer) {
+        this.avroSnapshotSerializer = avroSnapshotSerializer;
+    }
+
     @Override
     public void configure(Map<String, ?> configs, boolean isKey) {
         // ignoring the isKey since this class is expected to be used only as a value serializer for now, value being StreamlineEvent
         compatibility = (SchemaCompatibility) configs.get("schema.compatibility");
+        cachedSchema = configs.get(CACHED_SCHEMA) != null && Boolean.parseBoolean(configs.get(CACHED_SCHEMA).toString());
         avroSnapshotSerializer.init(configs);
     }
 
@@ -53,11 +88,55 @@ public class StreamlineEventSerializer implements Serializer<StreamlineEvent> {
     public byte[] serialize(String topic, StreamlineEvent streamlineEvent) {
         if (streamlineEvent == null || streamlineEvent.isEmpty()) {
             return null;
+        } else if (cachedSchema) {
+            return serializeCached(topic, streamlineEvent);
         } else {
-            return avroSnapshotSerializer.serialize(getAvroGenericRecord(streamlineEvent, topic), createSchemaMetadata(topic));
+            return avroSnapshotSerializer.serialize(getAvroGenericRecord(streamlineEvent, topic), getSchemaMetadata(topic));
         }
     }
 
+    // the buffer and encoder are reused, the producer may call the serializer from several threads
+    private synchronized byte[] serializeCached(String topic, StreamlineEvent streamlineEvent) {
+        List<CachedWriter> writers = writersByTopic.get(topic);
+        if (writers == null) {
+            writers = new LinkedList<>();
+            writersByTopic.put(topic, writers);
+        }
+        CachedWriter cachedWriter = null;
+        for (CachedWriter writer : writers) {
+            if (writer.writer.matches(streamlineEvent)) {
+                cachedWriter = writer;
+                break;
+            }
+        }
+        if (cachedWriter == null) {
+            // registers the schema of the new shape and returns the bytes of the registry serializer
+            return addWriter(topic, streamlineEvent, writers);
+        }
+        try {
+            buffer.reset();
+            buffer.write(cachedWriter.header);
+            encoder = EncoderFactory.get().binaryEncoder(buffer, encoder);
+            cachedWriter.writer.write(streamlineEvent, encoder);
+            encoder.flush();
+            return buffer.toByteArray();
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private byte[] addWriter(String topic, StreamlineEvent streamlineEvent, List<CachedWriter> writers) {
+        AvroEventWriter writer = AvroEventWriter.compile(streamlineEvent);
+        byte[] serialized = avroSnapshotSerializer.serialize(getAvroGenericRecord(streamlineEvent, topic),
+                getSchemaMetadata(topic));
+        byte[] header = avroSnapshotSerializer.serializeHeader(avroSnapshotSerializer.getLastSchemaIdVersion());
+        writers.add(0, new CachedWriter(writer, header));
+        if (writers.size() > MAX_WRITERS_PER_TOPIC) {
+            writers.remove(writers.size() - 1);
+        }
+        LOG.debug("Compiled a writer for topic {}, {} writers", topic, writers.size());
+        return serialized;
+    }
     @Override
     public void close() {
         try {
@@ -67,6 +146,15 @@ public class StreamlineEventSerializer implements Serializer<StreamlineEvent> {
         }
     }
 
+    private SchemaMetadata getSchemaMetadata(String topic) {
+        SchemaMetadata schemaMetadata = schemaMetadataByTopic.get(topic);
+        if (schemaMetadata == null) {
+            schemaMetadata = createSchemaMetadata(topic);
+            schemaMetadataByTopic.put(topic, schemaMetadata);
+        }
+        return schemaMetadata;
+    }
+
     private SchemaMetadata createSchemaMetadata(String topic) {
         SchemaMetadata schemaMetadata = getSchemaKey(topic, false);
         String description = "Schema registered by KafkaAvroSerializer for topic: [" + topic + "] iskey: [" + false + "]";
@@ -77,7 +165,7 @@ public class StreamlineEventSerializer implements Serializer<StreamlineEvent> {
         return Utils.getSchemaKey(topic, isKey);
     }
 
-    private static GenericRecord getAvroGenericRecord (Map<String, Object> streamlineEvent, String topic) {
+    static GenericRecord getAvroGenericRecord (Map<String, Object> streamlineEvent, String topic) {
         GenericRecord result = null;
         if (streamlineEvent != null && !streamlineEvent.isEmpty()) {
             result = (GenericRecord) getAvroSchemaAndValue(streamlineEvent, SCHEMA_NAMESPACE, topic).get(VALUE_KEY);
@@ -150,4 +238,46 @@ public class StreamlineEventSerializer implements Serializer<StreamlineEvent> {
         }
         return result;
     }
+
+    /**
+     * The registry serializer, which keeps the schema version registered by the last {@link #serialize} call and
+     * writes the header of a schema version, the protocol id and the schema version id, without a payload.
+     */
+    static class RegistrySerializer extends AvroSnapshotSerializer {
+        private static final GenericRecord EMPTY_RECORD;
+
+        static {
+            Schema emptySchema = Schema.createRecord("empty", null, SCHEMA_NAMESPACE, false);
+            emptySchema.setFields(Collections.<Schema.Field>emptyList());
+            EMPTY_RECORD = new GenericData.Record(emptySchema);
+        }
+
+        private SchemaIdVersion lastSchemaIdVersion;
+
+        @Override
+        protected byte[] doSerialize(Object input, SchemaIdVersion schemaIdVersion) {
+            lastSchemaIdVersion = schemaIdVersion;
+            return super.doSerialize(input, schemaIdVersion);
+        }
+
+        SchemaIdVersion getLastSchemaIdVersion() {
+            return lastSchemaIdVersion;
+        }
+
+        // a record without fields has an empty binary encoding, the serializer only writes the header of the version
+        byte[] serializeHeader(SchemaIdVersion schemaIdVersion) {
+            return super.doSerialize(EMPTY_RECORD, schemaIdVersion);
+        }
+    }
+
+    private static final class CachedWriter {
+        private final AvroEventWriter writer;
+        // the header of the registry serializer for the schema version of the writer
+        private final byte[] header;
+
+        CachedWriter(AvroEventWriter writer, byte[] header) {
+            this.writer = writer;
+            this.header = header;
+        }
+    }
 }
@@ -19,11 +19,12 @@ package com.hortonworks.streamline.streams.runtime.storm.bolt.normalization;
 import com.hortonworks.streamline.common.util.Utils;
 import com.hortonworks.streamline.streams.StreamlineEvent;
 import com.hortonworks.streamline.streams.Result;
-import com.hortonworks.streamline.streams.common.StreamlineEventImpl;
+import com.hortonworks.streamline.streams.common.StreamlineEventUtils;
 import com.hortonworks.streamline.streams.layout.component.Stream;
 import com.hortonworks.streamline.streams.layout.component.impl.normalization.NormalizationProcessor;
 import com.hortonworks.streamline.streams.runtime.normalization.NormalizationProcessorRuntime;
 import com.hortonworks.streamline.streams.runtime.storm.bolt.AbstractProcessorBolt;
+import org.apache.storm.metric.api.CountMetric;
 import org.apache.storm.task.OutputCollector;
 import org.apache.storm.task.TopologyContext;
 import org.apache.storm.topology.OutputFieldsDeclarer;
@@ -42,9 +43,12 @@ import java.util.Map;
  */
 public class NormalizationBolt extends AbstractProcessorBolt {
     private static final Logger LOG = LoggerFactory.getLogger(NormalizationBolt.class);
+    private static final int METRICS_BUCKET_SECS = 60;
     private final NormalizationProcessor normalizationProcessor;
 
     private NormalizationProcessorRuntime normalizationProcessorRuntime;
+    // the events received by this task, to compare the load of the tasks with skewed keys
+    private CountMetric inputLoad;
 
     public NormalizationBolt(NormalizationProcessor normalizationProcessor) {
         this.normalizationProcessor = normalizationProcessor;
@@ -60,15 +64,17 @@ public class NormalizationBolt extends AbstractProcessorBolt {
         if (normalizationProcessor == null) {
             throw new RuntimeException("normalizationProcessor cannot be null");
         }
+        inputLoad = new CountMetric();
+        context.registerMetric("inputLoad", inputLoad, METRICS_BUCKET_SECS);
         normalizationProcessorRuntime = new NormalizationProcessorRuntime(normalizationProcessor);
         normalizationProcessorRuntime.initialize(Collections.<String, Object>emptyMap());
     }
 
     public void process(Tuple inputTuple, StreamlineEvent event) throws Exception {
+        inputLoad.incr();
         LOG.debug("Normalizing received StreamlineEvent: [{}] with tuple: [{}]", event, inputTuple);
         //todo this bolt will be replaced with custom baseprocessor bolt.
-        StreamlineEventImpl eventWithStream = new StreamlineEventImpl(event, event.getDataSourceId(),
-                event.getId(), event.getHeader(), inputTuple.getSourceStreamId());
+        StreamlineEvent eventWithStream = StreamlineEventUtils.withSourceStream(event, inputTuple.getSourceStreamId());
         List<Result> outputEvents = normalizationProcessorRuntime.process(eventWithStream);
         LOG.debug("Emitting events to collector: [{}]", outputEvents);
         for (Result outputEvent : outputEvents) {
@@ -29,6 +29,7 @@ import com.hortonworks.streamline.streams.layout.component.impl.NotificationSink
 import com.hortonworks.streamline.streams.notification.Notification;
 import com.hortonworks.streamline.streams.notification.NotifierConfig;
 import com.hortonworks.streamline.streams.notification.common.NotifierConfigImpl;
+import com.hortonworks.streamline.streams.notification.service.NotificationQueueFullException;
 import com.hortonworks.streamline.streams.notification.service.NotificationService;
 import com.hortonworks.streamline.streams.notification.service.NotificationServiceImpl;
 import com.hortonworks.streamline.streams.notification.store.NotificationStore;
@@ -142,7 +143,13 @@ public class NotificationBolt extends BaseRichBolt {
         Notification notification = new StreamlineEventAdapter((StreamlineEvent) tuple.getValueByField(StreamlineEvent.STREAMLINE_EVENT));
         notificationContext.track(notification.getId(), tuple);
         // send to notifier
-        notificationService.notify(notificationSink.getNotifierName(), notification);
+        try {
+            notificationService.notify(notificationSink.getNotifierName(), notification);
+        } catch (NotificationQueueFullException ex) {
+            // the notifier is not keeping up, fail the tuple so that it is replayed later
+            LOG.warn("Failing tuple {}: {}", tuple, ex.getMessage());
+            notificationContext.fail(notification.getId());
+        }
     }
 
     @Override
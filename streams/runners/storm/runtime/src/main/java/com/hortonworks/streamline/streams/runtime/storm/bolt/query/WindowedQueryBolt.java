@@ -30,10 +30,14 @@ import com.hortonworks.streamline.streams.runtime.storm.bolt.StreamlineWindowedB
 import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.IdentityHashMap;
 import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 
 public class WindowedQueryBolt extends StreamlineWindowedBolt {
@@ -50,6 +54,10 @@ public class WindowedQueryBolt extends StreamlineWindowedBolt {
     private boolean streamLineStyleProjection = false;
     private String outputStreamName;
 
+    // incremental mode: hash indexes of all the streams (including the first) kept across activations
+    private boolean incremental = false;
+    private HashMap<String, HashMap<Object, ArrayList<Tuple>>> streamIndexes;
+
     // Use streamId, source component name OR field in tuple to distinguish incoming tuple streams
     public enum  StreamSelector { STREAM, SOURCE }
     private final StreamSelector streamSelectorType;
@@ -103,6 +111,43 @@ public class WindowedQueryBolt extends StreamlineWindowedBolt {
         return join_common(newStream, key, priorStream, JoinType.LEFT);
     }
 
+    /**
+     * Performs right Join.
+     *  SQL    :   from stream1  right join stream2  on stream2.key = stream1.key1
+     *  same as:   new  WindowedQueryBolt(stream1, key1). rightJoin(stream2, key, stream1);
+     *
+     *  Note: priorStream must be previously joined
+     */
+    public WindowedQueryBolt rightJoin(String newStream, String key, String priorStream) {
+        return join_common(newStream, key, priorStream, JoinType.RIGHT);
+    }
+
+    /**
+     * Performs full outer Join.
+     *  SQL    :   from stream1  full outer join stream2  on stream2.key = stream1.key1
+     *  same as:   new  WindowedQueryBolt(stream1, key1). outerJoin(stream2, key, stream1);
+     *
+     *  Note: priorStream must be previously joined
+     */
+    public WindowedQueryBolt outerJoin(String newStream, String key, String priorStream) {
+        return join_common(newStream, key, priorStream, JoinType.OUTER);
+    }
+
+    /**
+     * Joins the windows incrementally. The hash indexes of the streams are kept across activations of the window,
+     * the tuples entering the window are inserted and the expired tuples are evicted, and only the join results
+     * that contain at least one new tuple are emitted.
+     *  Note: Since every stream is joined on its own key, the tuples of a result record all share the same key.
+     *    Only the keys of the new tuples are joined, so each activation costs O(new tuples + records of their keys)
+     *    instead of O(window).
+     *    Results are not retracted, e.g. a left join record emitted with a missing right side is not withdrawn
+     *    when a matching tuple arrives later.
+     */
+    public WindowedQueryBolt withIncrementalJoin() {
+        this.incremental = true;
+        return this;
+    }
+
     private WindowedQueryBolt join_common(String newStream, String key, String priorStream, JoinType joinType) {
         hashedInputs.put(newStream, new HashMap<Object, ArrayList<Tuple>>());
         JoinInfo joinInfo = joinCriteria.get(priorStream);
@@ -199,13 +244,24 @@ public class WindowedQueryBolt extends StreamlineWindowedBolt {
         if(outputKeys==null) {
             throw new IllegalArgumentException("Must specify output fields via .select() method.");
         }
+        if (incremental) {
+            streamIndexes = new HashMap<>();
+            for (String stream : joinCriteria.keySet()) {
+                streamIndexes.put(stream, new HashMap<Object, ArrayList<Tuple>>());
+            }
+        }
     }
 
     @Override
     public void execute(TupleWindow inputWindow) {
         // 1) Perform Join
-        List<Tuple> currentWindow = inputWindow.get();
-        JoinAccumulator joinResult = hashJoin(currentWindow);
+        JoinAccumulator joinResult;
+        if (incremental) {
+            joinResult = incrementalJoin(inputWindow.getNew(), inputWindow.getExpired());
+        } else {
+            List<Tuple> currentWindow = inputWindow.get();
+            joinResult = hashJoin(currentWindow);
+        }
 
         // 2) Emit results
         for (ResultRecord resultRecord : joinResult.getRecords()) {
@@ -262,8 +318,101 @@ public class WindowedQueryBolt extends StreamlineWindowedBolt {
         return probe;
     }
 
+    /**
+     * Evicts the expired tuples from the stream indexes, inserts the new tuples and joins the keys of the new tuples.
+     * Returns the records containing at least one new tuple.
+     */
+    protected JoinAccumulator incrementalJoin(List<Tuple> newTuples, List<Tuple> expiredTuples) {
+        // 1) Evict - the tuples of a key usually expire in the order they were inserted, but not when an event
+        //    time window is activated again with late tuples
+        if (expiredTuples != null) {
+            for (Tuple tuple : expiredTuples) {
+                String streamId = getStreamSelector(tuple);
+                HashMap<Object, ArrayList<Tuple>> index = streamIndexes.get(streamId);
+                if (index == null) {
+                    continue;
+                }
+                Object key = getKeyField(streamId, tuple);
+                ArrayList<Tuple> recs = index.get(key);
+                // tuples expiring before they were part of an activation were never inserted
+                int position = recs != null ? indexOf(recs, tuple) : -1;
+                if (position >= 0) {
+                    recs.remove(position);
+                    if (recs.isEmpty()) {
+                        index.remove(key);
+                    }
+                }
+            }
+        }
+
+        JoinAccumulator result = new JoinAccumulator();
+        if (newTuples == null || newTuples.isEmpty()) {
+            return result;
+        }
+
+        // 2) Insert the new tuples and collect their keys
+        Set<Tuple> inserted = Collections.newSetFromMap(new IdentityHashMap<Tuple, Boolean>());
+        LinkedHashSet<Object> newKeys = new LinkedHashSet<>();
+        for (Tuple tuple : newTuples) {
+            String streamId = getStreamSelector(tuple);
+            Object key = getKeyField(streamId, tuple);
+            ArrayList<Tuple> recs = streamIndexes.get(streamId).get(key);
+            if (recs == null) {
+                recs = new ArrayList<>();
+                streamIndexes.get(streamId).put(key, recs);
+            }
+            recs.add(tuple);
+            inserted.add(tuple);
+            newKeys.add(key);
+        }
+
+        // 3) Join the records of each new key and keep the ones containing a new tuple
+        String firstStream = joinCriteria.keySet().iterator().next();
+        for (Object key : newKeys) {
+            JoinAccumulator probe = new JoinAccumulator();
+            ArrayList<Tuple> firstStreamRecs = streamIndexes.get(firstStream).get(key);
+            if (firstStreamRecs != null) {
+                for (Tuple tuple : firstStreamRecs) {
+                    probe.insert(new ResultRecord(tuple, joinCriteria.size() == 1));
+                }
+            }
+            int i = 0;
+            for (String streamName : joinCriteria.keySet()) {
+                boolean finalJoin = (i == joinCriteria.size() - 1);
+                if (i > 0) {
+                    Map<Object, ArrayList<Tuple>> buildInput =
+                            Collections.singletonMap(key, streamIndexes.get(streamName).get(key));
+                    probe = doJoin(probe, buildInput, joinCriteria.get(streamName), finalJoin);
+                }
+                ++i;
+            }
+            for (ResultRecord rec : probe.getRecords()) {
+                if (rec.containsAny(inserted)) {
+                    result.insert(rec);
+                }
+            }
+        }
+        return result;
+    }
+
+    // the tuples of the expired list may be copies of the inserted ones, e.g. when the window is stored on disk.
+    // The same tuple is looked up first so that an equal tuple inserted earlier is not evicted in its place.
+    private static int indexOf(ArrayList<Tuple> recs, Tuple expired) {
+        for (int i = 0; i < recs.size(); i++) {
+            if (recs.get(i) == expired) {
+                return i;
+            }
+        }
+        for (int i = 0; i < recs.size(); i++) {
+            if (recs.get(i).getValues().equals(expired.getValues())) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
     // Dispatches to the right join method (inner/left/right/outer) based on the joinInfo.joinType
-    protected JoinAccumulator doJoin(JoinAccumulator probe, HashMap<Object, ArrayList<Tuple>> buildInput, JoinInfo joinInfo, boolean finalJoin) {
+    protected JoinAccumulator doJoin(JoinAccumulator probe, Map<Object, ArrayList<Tuple>> buildInput, JoinInfo joinInfo, boolean finalJoin) {
         final JoinType joinType = joinInfo.getJoinType();
         switch ( joinType ) {
             case INNER:
@@ -271,7 +420,9 @@ public class WindowedQueryBolt extends StreamlineWindowedBolt {
             case LEFT:
                 return doLeftJoin(probe, buildInput, joinInfo, finalJoin);
             case RIGHT:
+                return doRightJoin(probe, buildInput, joinInfo, finalJoin, false);
             case OUTER:
+                return doRightJoin(probe, buildInput, joinInfo, finalJoin, true);
             default:
                 throw new RuntimeException("Unsupported join type : " + joinType.name() );
         }
@@ -282,14 +433,11 @@ public class WindowedQueryBolt extends StreamlineWindowedBolt {
         String[] probeKeyName = joinInfo.getOtherKey();
         JoinAccumulator result = new JoinAccumulator();
         for (ResultRecord rec : probe.getRecords()) {
-            Object probeKey = rec.getField(joinInfo.otherStream, probeKeyName);
-            if (probeKey!=null) {
-                ArrayList<Tuple> matchingBuildRecs = buildInput.get(probeKey);
-                if(matchingBuildRecs!=null) {
-                    for (Tuple matchingRec : matchingBuildRecs) {
-                        ResultRecord mergedRecord = new ResultRecord(rec, matchingRec, finalJoin);
-                        result.insert(mergedRecord);
-                    }
+            ArrayList<Tuple> matchingBuildRecs = getMatchingBuildRecs(rec, buildInput, joinInfo.otherStream, probeKeyName);
+            if(matchingBuildRecs!=null) {
+                for (Tuple matchingRec : matchingBuildRecs) {
+                    ResultRecord mergedRecord = new ResultRecord(rec, matchingRec, finalJoin);
+                    result.insert(mergedRecord);
                 }
             }
         }
@@ -301,25 +449,66 @@ public class WindowedQueryBolt extends StreamlineWindowedBolt {
         String[] probeKeyName = joinInfo.getOtherKey();
         JoinAccumulator result = new JoinAccumulator();
         for (ResultRecord rec : probe.getRecords()) {
-            Object probeKey = rec.getField(joinInfo.otherStream, probeKeyName);
-            if (probeKey!=null) {
-                ArrayList<Tuple> matchingBuildRecs = buildInput.get(probeKey); // ok if its return null
-                if (matchingBuildRecs!=null && !matchingBuildRecs.isEmpty() ) {
-                    for (Tuple matchingRec : matchingBuildRecs) {
-                        ResultRecord mergedRecord = new ResultRecord(rec, matchingRec, finalJoin);
-                        result.insert(mergedRecord);
-                    }
-                } else {
-                    ResultRecord mergedRecord = new ResultRecord(rec, null, finalJoin);
+            ArrayList<Tuple> matchingBuildRecs = getMatchingBuildRecs(rec, buildInput, joinInfo.otherStream, probeKeyName);
+            if (matchingBuildRecs!=null && !matchingBuildRecs.isEmpty() ) {
+                for (Tuple matchingRec : matchingBuildRecs) {
+                    ResultRecord mergedRecord = new ResultRecord(rec, matchingRec, finalJoin);
                     result.insert(mergedRecord);
                 }
+            } else {
+                ResultRecord mergedRecord = new ResultRecord(rec, null, finalJoin);
+                result.insert(mergedRecord);
+            }
+        }
+        return result;
+    }
 
+    // right join and full outer join - core implementation. Build records not matched by any probe record are
+    // joined with an empty probe record, for outer joins so are the probe records without matching build records.
+    protected JoinAccumulator doRightJoin(JoinAccumulator probe, Map<Object, ArrayList<Tuple>> buildInput, JoinInfo joinInfo, boolean finalJoin, boolean outer) {
+        String[] probeKeyName = joinInfo.getOtherKey();
+        JoinAccumulator result = new JoinAccumulator();
+        Set<Tuple> matched = Collections.newSetFromMap(new IdentityHashMap<Tuple, Boolean>());
+        for (ResultRecord rec : probe.getRecords()) {
+            ArrayList<Tuple> matchingBuildRecs = getMatchingBuildRecs(rec, buildInput, joinInfo.otherStream, probeKeyName);
+            if (matchingBuildRecs!=null && !matchingBuildRecs.isEmpty() ) {
+                for (Tuple matchingRec : matchingBuildRecs) {
+                    ResultRecord mergedRecord = new ResultRecord(rec, matchingRec, finalJoin);
+                    result.insert(mergedRecord);
+                    matched.add(matchingRec);
+                }
+            } else if (outer) {
+                ResultRecord mergedRecord = new ResultRecord(rec, null, finalJoin);
+                result.insert(mergedRecord);
+            }
+        }
+        for (ArrayList<Tuple> buildRecs : buildInput.values()) {
+            if (buildRecs == null) {
+                continue;
+            }
+            for (Tuple buildRec : buildRecs) {
+                if (!matched.contains(buildRec)) {
+                    ResultRecord mergedRecord = new ResultRecord(null, buildRec, finalJoin);
+                    result.insert(mergedRecord);
+                }
             }
         }
         return result;
     }
 
 
+    // Returns the build records matching the key of the probe record, or null if there are none. A record produced by
+    // a right or outer join may lack the tuple of the stream this join is keyed on, like a record with a null key it
+    // does not match any build record and is kept as unmatched by left and outer joins.
+    private ArrayList<Tuple> getMatchingBuildRecs(ResultRecord rec, Map<Object, ArrayList<Tuple>> buildInput,
+                                                  String probeStream, String[] probeKeyName) {
+        if (!rec.hasStream(probeStream)) {
+            return null;
+        }
+        Object probeKey = rec.getField(probeStream, probeKeyName);
+        return probeKey == null ? null : buildInput.get(probeKey);
+    }
+
     // Identify the key for the stream, and look it up in 'tuple'. key can be nested key:  outerKey.innerKey
     private Object getKeyField(String streamId, Tuple tuple) {
         JoinInfo ji = joinCriteria.get(streamId);
@@ -438,6 +627,22 @@ public class WindowedQueryBolt extends StreamlineWindowedBolt {
             }
             return null;
         }
+
+        public boolean hasStream(String stream) {
+            for (Tuple tuple : tupleList) {
+                if(getStreamSelector(tuple).equals(stream))
+                    return true;
+            }
+            return false;
+        }
+
+        public boolean containsAny(Set<Tuple> tuples) {
+            for (Tuple tuple : tupleList) {
+                if (tuples.contains(tuple))
+                    return true;
+            }
+            return false;
+        }
     }
 
     protected class JoinAccumulator {
@@ -21,10 +21,15 @@ import com.hortonworks.streamline.common.Constants;
 import com.hortonworks.streamline.common.util.Utils;
 import com.hortonworks.streamline.streams.StreamlineEvent;
 import com.hortonworks.streamline.streams.Result;
-import com.hortonworks.streamline.streams.common.StreamlineEventImpl;
+import com.hortonworks.streamline.streams.common.StreamlineEventUtils;
 import com.hortonworks.streamline.streams.layout.component.Stream;
 import com.hortonworks.streamline.streams.layout.component.impl.RulesProcessor;
+import com.hortonworks.streamline.streams.layout.component.impl.splitjoin.JoinAction;
+import com.hortonworks.streamline.streams.layout.component.rule.Rule;
+import com.hortonworks.streamline.streams.layout.component.rule.action.Action;
 import com.hortonworks.streamline.streams.runtime.processor.RuleProcessorRuntime;
+import org.apache.storm.Config;
+import org.apache.storm.metric.api.CountMetric;
 import org.apache.storm.task.OutputCollector;
 import org.apache.storm.task.TopologyContext;
 import org.apache.storm.topology.OutputFieldsDeclarer;
@@ -32,6 +37,7 @@ import org.apache.storm.topology.base.BaseRichBolt;
 import org.apache.storm.tuple.Fields;
 import org.apache.storm.tuple.Tuple;
 import org.apache.storm.tuple.Values;
+import org.apache.storm.utils.TupleUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -42,12 +48,15 @@ import java.util.Map;
 
 public class RulesBolt extends BaseRichBolt {
     private static final Logger LOG = LoggerFactory.getLogger(RulesBolt.class);
+    private static final int METRICS_BUCKET_SECS = 60;
 
     private RuleProcessorRuntime ruleProcessorRuntime;
     private final RulesProcessor rulesProcessor;
     private final RuleProcessorRuntime.ScriptType scriptType;
 
     private OutputCollector collector;
+    // the events received by this task, to compare the load of the tasks with skewed keys
+    private CountMetric inputLoad;
 
     public RulesBolt(RulesProcessor rulesProcessor, RuleProcessorRuntime.ScriptType scriptType) {
         this.rulesProcessor = rulesProcessor;
@@ -64,6 +73,8 @@ public class RulesBolt extends BaseRichBolt {
             throw new RuntimeException("rulesProcessor cannot be null");
         }
         this.collector = collector;
+        inputLoad = new CountMetric();
+        context.registerMetric("inputLoad", inputLoad, METRICS_BUCKET_SECS);
         ruleProcessorRuntime = new RuleProcessorRuntime(rulesProcessor, scriptType);
 
         Map<String, Object> config = Collections.emptyMap();
@@ -77,6 +88,11 @@ public class RulesBolt extends BaseRichBolt {
 
     @Override
     public void execute(Tuple input) {  // Input tuple is expected to be an StreamlineEvent
+        if (TupleUtils.isTick(input)) {
+            expire();
+            return;
+        }
+        inputLoad.incr();
         try {
             final Object event = input.getValueByField(StreamlineEvent.STREAMLINE_EVENT);
             if (event instanceof StreamlineEvent) {
@@ -99,10 +115,46 @@ public class RulesBolt extends BaseRichBolt {
         }
     }
 
+    // the state expired without further input, e.g. the split groups of a join that did not complete in time
+    private void expire() {
+        try {
+            for (Result result : ruleProcessorRuntime.expire(System.currentTimeMillis())) {
+                for (StreamlineEvent e : result.events) {
+                    collector.emit(result.stream, new Values(e));
+                }
+            }
+        } catch (Exception e) {
+            collector.reportError(e);
+            LOG.debug("", e);
+        }
+    }
+
+    // joins are expired with tick tuples, at the shortest expiry interval of their groups and events
+    @Override
+    public Map<String, Object> getComponentConfiguration() {
+        long expiryIntervalMs = JoinAction.DEFAULT_EXPIRY_INTERVAL;
+        if (rulesProcessor != null && rulesProcessor.getRules() != null) {
+            for (Rule rule : rulesProcessor.getRules()) {
+                for (Action action : rule.getActions()) {
+                    if (action instanceof JoinAction) {
+                        expiryIntervalMs = Math.min(expiryIntervalMs, Math.min(
+                                ((JoinAction) action).getGroupExpiryInterval(),
+                                ((JoinAction) action).getEventExpiryInterval()));
+                    }
+                }
+            }
+        }
+        if (expiryIntervalMs == JoinAction.DEFAULT_EXPIRY_INTERVAL) {
+            return null;
+        }
+        Map<String, Object> conf = new HashMap<>();
+        conf.put(Config.TOPOLOGY_TICK_TUPLE_FREQ_SECS,
+                (int) Math.max(1, Math.min(Integer.MAX_VALUE, expiryIntervalMs / 1000)));
+        return conf;
+    }
+
     private StreamlineEvent getStreamlineEventWithStream(StreamlineEvent event, Tuple tuple) {
-        return new StreamlineEventImpl(event,
-                event.getDataSourceId(), event.getId(),
-                event.getHeader(), tuple.getSourceStreamId(), event.getAuxiliaryFieldsAndValues());
+        return StreamlineEventUtils.withSourceStream(event, tuple.getSourceStreamId());
     }
 
     @Override
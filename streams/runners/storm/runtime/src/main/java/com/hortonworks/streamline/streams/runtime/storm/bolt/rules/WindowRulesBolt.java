@@ -18,12 +18,14 @@ package com.hortonworks.streamline.streams.runtime.storm.bolt.rules;
 import com.hortonworks.streamline.common.util.Utils;
 import com.hortonworks.streamline.streams.StreamlineEvent;
 import com.hortonworks.streamline.streams.Result;
-import com.hortonworks.streamline.streams.common.StreamlineEventImpl;
+import com.hortonworks.streamline.streams.common.StreamlineEventUtils;
 import com.hortonworks.streamline.streams.exception.ProcessingException;
 import com.hortonworks.streamline.streams.layout.component.Stream;
 import com.hortonworks.streamline.streams.layout.component.impl.RulesProcessor;
 import com.hortonworks.streamline.streams.layout.component.rule.expression.Window;
 import com.hortonworks.streamline.streams.runtime.processor.RuleProcessorRuntime;
+import com.hortonworks.streamline.streams.runtime.processor.WindowedRuleProcessorRuntime;
+import org.apache.storm.metric.api.CountMetric;
 import org.apache.storm.task.OutputCollector;
 import org.apache.storm.task.TopologyContext;
 import org.apache.storm.topology.OutputFieldsDeclarer;
@@ -36,6 +38,7 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
@@ -48,16 +51,40 @@ import static com.hortonworks.streamline.streams.runtime.transform.AddHeaderTran
 import static com.hortonworks.streamline.streams.runtime.transform.AddHeaderTransformRuntime.HEADER_FIELD_EVENT_IDS;
 
 /**
- * A windowed rules bolt
+ * A windowed rules bolt.
+ * <p>
+ * With the {@link RuleProcessorRuntime.ScriptType#COMPILED} script type the groups and aggregates of the rules are
+ * maintained incrementally by a {@link WindowedRuleProcessorRuntime}: only the new and expired tuples of each window
+ * activation are processed, unless some aggregate cannot be retracted. Otherwise, or if a rule cannot be aggregated
+ * incrementally, all the tuples of the window are evaluated by the {@link RuleProcessorRuntime} on every activation.
+ * </p>
+ * <p>
+ * With two phase aggregation the rules are evaluated by two bolts. The bolt of the {@link AggregationPhase#PARTIAL}
+ * phase aggregates the tuples of its tumbling window and emits the partial aggregates of its groups on the partial
+ * aggregates stream, which is fields grouped by rule and group key to the bolt of the {@link AggregationPhase#FINAL}
+ * phase. The final bolt merges the partial aggregates of its window and evaluates the groups.
+ * </p>
+ * <p>
+ * When the rules are aggregated incrementally, the event and data source id headers of the results only hold the ids
+ * of the tuples that are new in the activation, not the ids of every tuple in the window.
+ * </p>
  */
 public class WindowRulesBolt extends StreamlineWindowedBolt {
     private static final Logger LOG = LoggerFactory.getLogger(WindowRulesBolt.class);
+    private static final int METRICS_BUCKET_SECS = 60;
+
+    public enum AggregationPhase {COMPLETE, PARTIAL, FINAL}
 
     private RuleProcessorRuntime ruleProcessorRuntime;
+    private WindowedRuleProcessorRuntime windowedRuleProcessorRuntime;
     private final RulesProcessor rulesProcessor;
     private final RuleProcessorRuntime.ScriptType scriptType;
+    private AggregationPhase aggregationPhase = AggregationPhase.COMPLETE;
+    private String partialAggregatesStream;
     private OutputCollector collector;
     private long windowId;
+    // the events received by this task, to compare the load of the tasks with skewed keys
+    private CountMetric inputLoad;
 
     public WindowRulesBolt(RulesProcessor rulesProcessor, RuleProcessorRuntime.ScriptType scriptType) {
         this.rulesProcessor = rulesProcessor;
@@ -67,14 +94,54 @@ public class WindowRulesBolt extends StreamlineWindowedBolt {
     public WindowRulesBolt(String rulesProcessorJson, RuleProcessorRuntime.ScriptType scriptType) {
         this(Utils.createObjectFromJson(rulesProcessorJson, RulesProcessor.class), scriptType);
     }
+
+    /**
+     * Makes the bolt compute one phase of a two phase aggregation.
+     *
+     * @param aggregationPhase the phase of the bolt
+     * @param partialAggregatesStream the stream of the partial aggregates, emitted by the partial phase
+     */
+    public void withAggregationPhase(AggregationPhase aggregationPhase, String partialAggregatesStream) {
+        this.aggregationPhase = aggregationPhase;
+        this.partialAggregatesStream = partialAggregatesStream;
+    }
+
     @Override
     public void prepare(Map stormConf, TopologyContext context, OutputCollector collector) {
         if (this.rulesProcessor == null) {
             throw new RuntimeException("rulesProcessor cannot be null");
         }
         this.collector = collector;
-        ruleProcessorRuntime = new RuleProcessorRuntime(rulesProcessor, scriptType);
+        inputLoad = new CountMetric();
+        context.registerMetric("inputLoad", inputLoad, METRICS_BUCKET_SECS);
         Map<String, Object> config = Collections.emptyMap();
+        if (aggregationPhase != AggregationPhase.COMPLETE) {
+            // the topology is wired for two phases, there is no fallback
+            WindowedRuleProcessorRuntime runtime = new WindowedRuleProcessorRuntime(rulesProcessor);
+            try {
+                runtime.initialize(config);
+            } catch (UnsupportedOperationException ex) {
+                throw new RuntimeException("Rules of " + rulesProcessor.getId() + " cannot be aggregated in two phases", ex);
+            }
+            if (!runtime.isMergeable()) {
+                throw new RuntimeException("Rules of " + rulesProcessor.getId()
+                        + " have aggregates that cannot be merged, disable two phase aggregation");
+            }
+            windowedRuleProcessorRuntime = runtime;
+            return;
+        }
+        if (RuleProcessorRuntime.ScriptType.COMPILED.equals(scriptType)) {
+            try {
+                WindowedRuleProcessorRuntime runtime = new WindowedRuleProcessorRuntime(rulesProcessor);
+                runtime.initialize(config);
+                windowedRuleProcessorRuntime = runtime;
+                return;
+            } catch (UnsupportedOperationException ex) {
+                LOG.info("Rules cannot be aggregated incrementally, evaluating all the tuples of each window. Reason: {}",
+                        ex.getMessage());
+            }
+        }
+        ruleProcessorRuntime = new RuleProcessorRuntime(rulesProcessor, scriptType);
         ruleProcessorRuntime.initialize(config);
     }
 
@@ -86,6 +153,17 @@ public class WindowRulesBolt extends StreamlineWindowedBolt {
     @Override
     public void execute(TupleWindow inputWindow) {
         ++windowId;
+        inputLoad.incrBy(inputWindow.getNew().size());
+        if (aggregationPhase == AggregationPhase.PARTIAL) {
+            executePartial(inputWindow);
+            return;
+        } else if (aggregationPhase == AggregationPhase.FINAL) {
+            executeFinal(inputWindow);
+            return;
+        } else if (windowedRuleProcessorRuntime != null) {
+            executeIncremental(inputWindow);
+            return;
+        }
         LOG.debug("Window activated, window id {}, number of tuples in window {}", windowId, inputWindow.get().size());
         List<Tuple> curGroup = new ArrayList<>();
         try {
@@ -105,6 +183,111 @@ public class WindowRulesBolt extends StreamlineWindowedBolt {
         }
     }
 
+    private void executeIncremental(TupleWindow inputWindow) {
+        LOG.debug("Window activated, window id {}, number of new tuples {}", windowId, inputWindow.getNew().size());
+        try {
+            StreamlineEvent event;
+            if (windowedRuleProcessorRuntime.isRetractable()) {
+                for (Tuple input : inputWindow.getExpired()) {
+                    if ((event = getStreamlineEventFromTuple(input)) != null) {
+                        windowedRuleProcessorRuntime.retract(event);
+                    }
+                }
+                for (Tuple input : inputWindow.getNew()) {
+                    addToWindow(input);
+                }
+            } else {
+                windowedRuleProcessorRuntime.clear();
+                for (Tuple input : inputWindow.get()) {
+                    addToWindow(input);
+                }
+            }
+            // only the events of this activation are attached, the ids of the whole window would cost O(window) per slide
+            emitResults(getEventIds(inputWindow.getNew()), getDataSourceIds(inputWindow.getNew()));
+        } catch (Exception e) {
+            collector.reportError(e);
+            LOG.debug("", e);
+        }
+    }
+
+    // the window of the partial phase is tumbling, its tuples are aggregated and emitted as partial aggregates
+    private void executePartial(TupleWindow inputWindow) {
+        LOG.debug("Window activated, window id {}, number of tuples to pre-aggregate {}", windowId, inputWindow.get().size());
+        try {
+            windowedRuleProcessorRuntime.clear();
+            for (Tuple input : inputWindow.get()) {
+                addToWindow(input);
+            }
+            // the window is tumbling, its tuples are the new tuples of this activation
+            List<String> eventIds = getEventIds(inputWindow.getNew());
+            List<String> dataSourceIds = getDataSourceIds(inputWindow.getNew());
+            for (StreamlineEvent partial : windowedRuleProcessorRuntime.getPartials()) {
+                collector.emit(partialAggregatesStream, new Values(updateHeaders(partial, eventIds, dataSourceIds)));
+                eventIds = Collections.emptyList();
+                dataSourceIds = Collections.emptyList();
+            }
+            // the emitted partial aggregates must not be modified
+            windowedRuleProcessorRuntime.clear();
+        } catch (Exception e) {
+            collector.reportError(e);
+            LOG.debug("", e);
+        }
+    }
+
+    // partial aggregates cannot be retracted, the partial aggregates in the window are merged on every activation
+    private void executeFinal(TupleWindow inputWindow) {
+        LOG.debug("Window activated, window id {}, number of partial aggregates {}", windowId, inputWindow.get().size());
+        try {
+            windowedRuleProcessorRuntime.clear();
+            Set<String> eventIds = new HashSet<>();
+            Set<String> dataSourceIds = new HashSet<>();
+            StreamlineEvent partial;
+            for (Tuple input : inputWindow.get()) {
+                if ((partial = getStreamlineEventFromTuple(input)) != null) {
+                    windowedRuleProcessorRuntime.merge(partial);
+                }
+            }
+            // like the incremental aggregation, only the ids of the new partial aggregates are attached
+            for (Tuple input : inputWindow.getNew()) {
+                if ((partial = getStreamlineEventFromTuple(input)) != null) {
+                    addHeaderIds(partial, HEADER_FIELD_EVENT_IDS, eventIds);
+                    addHeaderIds(partial, HEADER_FIELD_DATASOURCE_IDS, dataSourceIds);
+                }
+            }
+            emitResults(new ArrayList<>(eventIds), new ArrayList<>(dataSourceIds));
+        } catch (Exception e) {
+            collector.reportError(e);
+            LOG.debug("", e);
+        }
+    }
+
+    private void emitResults(List<String> eventIds, List<String> dataSourceIds) throws ProcessingException {
+        for (Result result : windowedRuleProcessorRuntime.process(windowId)) {
+            for (StreamlineEvent e : result.events) {
+                collector.emit(result.stream, new Values(updateHeaders(e, eventIds, dataSourceIds)));
+            }
+            // like the tuples of the current group, the ids are only added to the first result
+            eventIds = Collections.emptyList();
+            dataSourceIds = Collections.emptyList();
+        }
+    }
+
+    private void addHeaderIds(StreamlineEvent event, String header, Set<String> ids) {
+        Object headerIds = event.getHeader().get(header);
+        if (headerIds instanceof Collection) {
+            for (Object id : (Collection<?>) headerIds) {
+                ids.add(String.valueOf(id));
+            }
+        }
+    }
+
+    private void addToWindow(Tuple input) {
+        StreamlineEvent event;
+        if ((event = getStreamlineEventFromTuple(input)) != null) {
+            windowedRuleProcessorRuntime.add(event);
+        }
+    }
+
     private void processAndEmit(StreamlineEvent event, List<Tuple> curGroup) throws ProcessingException {
         for (Result result : ruleProcessorRuntime.process(eventWithWindowId(event))) {
             for (StreamlineEvent e : result.events) {
@@ -116,9 +299,13 @@ public class WindowRulesBolt extends StreamlineWindowedBolt {
     }
 
     private StreamlineEvent updateHeaders(StreamlineEvent event, List<Tuple> tuples) {
+        return updateHeaders(event, getEventIds(tuples), getDataSourceIds(tuples));
+    }
+
+    private StreamlineEvent updateHeaders(StreamlineEvent event, List<String> eventIds, List<String> dataSourceIds) {
         Map<String, Object> headers = new HashMap<>();
-        headers.put(HEADER_FIELD_EVENT_IDS, getEventIds(tuples));
-        headers.put(HEADER_FIELD_DATASOURCE_IDS, getDataSourceIds(tuples));
+        headers.put(HEADER_FIELD_EVENT_IDS, eventIds);
+        headers.put(HEADER_FIELD_DATASOURCE_IDS, dataSourceIds);
         event = event.addHeaders(headers);
         return event;
     }
@@ -157,9 +344,7 @@ public class WindowRulesBolt extends StreamlineWindowedBolt {
     }
 
     private StreamlineEvent getStreamlineEventWithStream(StreamlineEvent event, Tuple tuple) {
-        return new StreamlineEventImpl(event,
-                event.getDataSourceId(), event.getId(),
-                event.getHeader(), tuple.getSourceStreamId(), event.getAuxiliaryFieldsAndValues());
+        return StreamlineEventUtils.withSourceStream(event, tuple.getSourceStreamId());
     }
 
     @Override
@@ -167,6 +352,10 @@ public class WindowRulesBolt extends StreamlineWindowedBolt {
         if (this.rulesProcessor == null) {
             throw new RuntimeException("rulesProcessor cannot be null");
         }
+        if (aggregationPhase == AggregationPhase.PARTIAL) {
+            declarer.declareStream(partialAggregatesStream, new Fields(StreamlineEvent.STREAMLINE_EVENT));
+            return;
+        }
         for (Stream stream : rulesProcessor.getOutputStreams()) {
             declarer.declareStream(stream.getId(), new Fields(StreamlineEvent.STREAMLINE_EVENT));
         }
@@ -0,0 +1,223 @@
+/**
+  * Copyright 2017 Hortonworks.
+  *
+  * Licensed under the Apache License, Version 2.0 (the "License");
+  * you may not use this file except in compliance with the License.
+  * You may obtain a copy of the License at
+
+  *   http://www.apache.org/licenses/LICENSE-2.0
+
+  * Unless required by applicable law or agreed to in writing, software
+  * distributed under the License is distributed on an "AS IS" BASIS,
+  * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  * See the License for the specific language governing permissions and
+  * limitations under the License.
+ **/
+package com.hortonworks.streamline.streams.runtime.storm.bolt.window;
+
+import com.hortonworks.streamline.streams.StreamlineEvent;
+import com.hortonworks.streamline.streams.layout.component.rule.expression.Window;
+import com.hortonworks.streamline.streams.runtime.storm.bolt.StreamlineWindowedBolt;
+import org.apache.storm.Config;
+import org.apache.storm.metric.api.CountMetric;
+import org.apache.storm.metric.api.IMetric;
+import org.apache.storm.metric.api.MeanReducer;
+import org.apache.storm.metric.api.ReducedMetric;
+import org.apache.storm.task.OutputCollector;
+import org.apache.storm.task.TopologyContext;
+import org.apache.storm.topology.IRichBolt;
+import org.apache.storm.topology.OutputFieldsDeclarer;
+import org.apache.storm.tuple.Fields;
+import org.apache.storm.tuple.Tuple;
+import org.apache.storm.tuple.Values;
+import org.apache.storm.utils.TupleUtils;
+import org.apache.storm.windowing.TupleWindowImpl;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Executes a {@link StreamlineWindowedBolt} with an event time window that has a
+ * {@link Window#getWatermarkStrategy() watermark strategy}, an {@link Window#getAllowedLatenessMs() allowed lateness}
+ * or a {@link Window#getLateEventsStream() late events stream}.
+ * <p>
+ * The windows are managed by {@link EventTimeWindows}. Windows receiving late events within the allowed lateness are
+ * activated again on the next tick, so the bolt emits the updated results of the window. The events arriving after
+ * the allowed lateness are emitted on the late events stream instead of being dropped silently. Like with the storm
+ * windowed bolt executor, the tuples are acked once they leave the windows.
+ * </p>
+ * The executor registers the metrics {@code watermarkLagMs}, the processing time lag of the watermark,
+ * {@code windowActivationLagMs}, the mean lag of the first activation of the windows after their end,
+ * {@code lateEvents}, {@code droppedLateEvents} and {@code windowRefires}.
+ */
+public class EventTimeWindowedBoltExecutor implements IRichBolt {
+    private static final Logger LOG = LoggerFactory.getLogger(EventTimeWindowedBoltExecutor.class);
+
+    private static final int TICK_FREQ_SECS = 1;
+    private static final int METRICS_BUCKET_SECS = 60;
+
+    private final StreamlineWindowedBolt bolt;
+    private transient OutputCollector collector;
+    private transient EventTimeWindows<Tuple> windows;
+    private transient String tsField;
+    private transient String lateEventsStream;
+    private transient ReducedMetric windowActivationLag;
+    private transient CountMetric lateEvents;
+    private transient CountMetric droppedLateEvents;
+    private transient CountMetric windowRefires;
+
+    public EventTimeWindowedBoltExecutor(StreamlineWindowedBolt bolt) {
+        this.bolt = bolt;
+    }
+
+    @Override
+    public void prepare(Map stormConf, TopologyContext context, OutputCollector collector) {
+        Window window = bolt.getWindowConfig();
+        if (window == null) {
+            throw new IllegalArgumentException("Window config of the bolt is not set");
+        } else if (window.getTsField() == null) {
+            throw new IllegalArgumentException("Window has no timestamp field, it is not an event time window");
+        } else if (!(window.getWindowLength() instanceof Window.Duration)
+                || (window.getSlidingInterval() != null && !(window.getSlidingInterval() instanceof Window.Duration))) {
+            throw new IllegalArgumentException("Event time windows with lateness should have a duration length and "
+                    + "sliding interval, window: " + window);
+        }
+        this.collector = collector;
+        this.tsField = window.getTsField();
+        this.lateEventsStream = window.getLateEventsStream();
+        long lengthMs = ((Window.Duration) window.getWindowLength()).getDurationMs();
+        long slidingIntervalMs = window.getSlidingInterval() != null
+                ? ((Window.Duration) window.getSlidingInterval()).getDurationMs() : lengthMs;
+        windows = new EventTimeWindows<>(lengthMs, slidingIntervalMs, window.getLagMs(),
+                window.getAllowedLatenessMs(), window.getWatermarkStrategy(), context.getThisSources().size(),
+                new WindowListener());
+        windowActivationLag = context.registerMetric("windowActivationLagMs", new ReducedMetric(new MeanReducer()),
+                METRICS_BUCKET_SECS);
+        lateEvents = context.registerMetric("lateEvents", new CountMetric(), METRICS_BUCKET_SECS);
+        droppedLateEvents = context.registerMetric("droppedLateEvents", new CountMetric(), METRICS_BUCKET_SECS);
+        windowRefires = context.registerMetric("windowRefires", new CountMetric(), METRICS_BUCKET_SECS);
+        context.registerMetric("watermarkLagMs", new IMetric() {
+            @Override
+            public Object getValueAndReset() {
+                long watermark = windows.getWatermark();
+                return watermark == Long.MIN_VALUE ? null : System.currentTimeMillis() - watermark;
+            }
+        }, METRICS_BUCKET_SECS);
+        LOG.info("Event time window {} of {} task {}", window, context.getThisComponentId(), context.getThisTaskId());
+        bolt.prepare(stormConf, context, collector);
+    }
+
+    @Override
+    public void execute(Tuple input) {
+        if (TupleUtils.isTick(input)) {
+            windows.flush();
+            return;
+        }
+        Long timestamp = getTimestamp(input);
+        if (timestamp == null) {
+            LOG.warn("Tuple {} has no numeric timestamp field {}, dropping it", input, tsField);
+            collector.ack(input);
+            return;
+        }
+        windows.add(input.getSourceGlobalStreamId(), timestamp, input);
+    }
+
+    private Long getTimestamp(Tuple input) {
+        Object timestamp = null;
+        if (input.contains(tsField)) {
+            timestamp = input.getValueByField(tsField);
+        } else if (input.contains(StreamlineEvent.STREAMLINE_EVENT)) {
+            Object event = input.getValueByField(StreamlineEvent.STREAMLINE_EVENT);
+            if (event instanceof StreamlineEvent) {
+                timestamp = ((StreamlineEvent) event).get(tsField);
+            }
+        }
+        return timestamp instanceof Number ? ((Number) timestamp).longValue() : null;
+    }
+
+    @Override
+    public void cleanup() {
+        bolt.cleanup();
+    }
+
+    @Override
+    public void declareOutputFields(OutputFieldsDeclarer declarer) {
+        final Set<String> streams = new HashSet<>();
+        final OutputFieldsDeclarer boltDeclarer = declarer;
+        bolt.declareOutputFields(new OutputFieldsDeclarer() {
+            @Override
+            public void declare(Fields fields) {
+                boltDeclarer.declare(fields);
+            }
+
+            @Override
+            public void declare(boolean direct, Fields fields) {
+                boltDeclarer.declare(direct, fields);
+            }
+
+            @Override
+            public void declareStream(String streamId, Fields fields) {
+                streams.add(streamId);
+                boltDeclarer.declareStream(streamId, fields);
+            }
+
+            @Override
+            public void declareStream(String streamId, boolean direct, Fields fields) {
+                streams.add(streamId);
+                boltDeclarer.declareStream(streamId, direct, fields);
+            }
+        });
+        // the late events stream may also be an output stream of the component
+        String lateStream = bolt.getWindowConfig() != null ? bolt.getWindowConfig().getLateEventsStream() : null;
+        if (lateStream != null && !streams.contains(lateStream)) {
+            declarer.declareStream(lateStream, new Fields(StreamlineEvent.STREAMLINE_EVENT));
+        }
+    }
+
+    // the windows are activated by this executor, ticks activate the windows that received late events
+    @Override
+    public Map<String, Object> getComponentConfiguration() {
+        Map<String, Object> conf = new HashMap<>();
+        conf.put(Config.TOPOLOGY_TICK_TUPLE_FREQ_SECS, TICK_FREQ_SECS);
+        return conf;
+    }
+
+    private final class WindowListener implements EventTimeWindows.Listener<Tuple> {
+        @Override
+        public void onActivation(long windowStart, long windowEnd, List<Tuple> events, List<Tuple> newEvents,
+                                 List<Tuple> expiredEvents, boolean refire) {
+            LOG.debug("Activating window [{}, {}), refire {}", windowStart, windowEnd, refire);
+            if (refire) {
+                windowRefires.incr();
+            } else {
+                windowActivationLag.update(System.currentTimeMillis() - windowEnd);
+            }
+            bolt.execute(new TupleWindowImpl(events, newEvents, expiredEvents));
+        }
+
+        @Override
+        public void onLate(Tuple event, boolean dropped) {
+            if (!dropped) {
+                lateEvents.incr();
+                return;
+            }
+            droppedLateEvents.incr();
+            if (lateEventsStream != null) {
+                collector.emit(lateEventsStream, event, new Values(event.getValueByField(StreamlineEvent.STREAMLINE_EVENT)));
+            } else {
+                LOG.debug("Dropping late tuple {}", event);
+            }
+            collector.ack(event);
+        }
+
+        @Override
+        public void onPurge(Tuple event) {
+            collector.ack(event);
+        }
+    }
+}
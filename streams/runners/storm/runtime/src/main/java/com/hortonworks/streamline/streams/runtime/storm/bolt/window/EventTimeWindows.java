@@ -0,0 +1,315 @@
+/**
+  * Copyright 2017 Hortonworks.
+  *
+  * Licensed under the Apache License, Version 2.0 (the "License");
+  * you may not use this file except in compliance with the License.
+  * You may obtain a copy of the License at
+
+  *   http://www.apache.org/licenses/LICENSE-2.0
+
+  * Unless required by applicable law or agreed to in writing, software
+  * distributed under the License is distributed on an "AS IS" BASIS,
+  * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  * See the License for the specific language governing permissions and
+  * limitations under the License.
+ **/
+package com.hortonworks.streamline.streams.runtime.storm.bolt.window;
+
+import com.hortonworks.streamline.streams.layout.component.rule.expression.Window;
+
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+/**
+ * Sliding event time windows with watermarks and allowed lateness.
+ * <p>
+ * The windows have a duration length and sliding interval and are aligned to the epoch, a window ends at a multiple
+ * of the sliding interval and contains the events with a timestamp in {@code [end - length, end)}. The watermark is
+ * the maximum timestamp seen on the input streams, combined with the {@link Window.WatermarkStrategy}, minus the lag.
+ * A window is activated once the watermark passes its end.
+ * </p>
+ * <p>
+ * An event arriving with a timestamp behind the watermark is late. It is added to the windows containing it that
+ * have not been activated yet, and the activated windows that are still within the allowed lateness are activated
+ * again on the next {@link #flush()} or watermark update. Events that only belong to windows past the allowed
+ * lateness are dropped.
+ * </p>
+ * The new and expired events of an activation are relative to the previous activation, including activations of
+ * windows fired again, so listeners can maintain their aggregates incrementally.
+ *
+ * @param <T> the type of the events
+ */
+public class EventTimeWindows<T> {
+    private static final long NONE = Long.MIN_VALUE;
+
+    /**
+     * Receives the activations of the windows and the events leaving the windows.
+     */
+    public interface Listener<T> {
+        /**
+         * Activates a window. The lists of events are only valid during the call.
+         *
+         * @param refire true if the window was activated before and is activated again with late events
+         */
+        void onActivation(long windowStart, long windowEnd, List<T> events, List<T> newEvents, List<T> expiredEvents,
+                          boolean refire);
+
+        /**
+         * Called for a late event, dropped if all the windows of the event are past the allowed lateness.
+         */
+        void onLate(T event, boolean dropped);
+
+        /**
+         * Called once an event can no longer be part of any activation.
+         */
+        void onPurge(T event);
+    }
+
+    private final long lengthMs;
+    private final long slidingIntervalMs;
+    private final long lagMs;
+    private final long allowedLatenessMs;
+    private final Window.WatermarkStrategy watermarkStrategy;
+    private final int inputCount;
+    private final Listener<T> listener;
+
+    // the events of the windows by timestamp, in the order of arrival for a timestamp
+    private final TreeMap<Long, List<T>> events = new TreeMap<>();
+    private final Map<Object, Long> inputTimestamps = new HashMap<>();
+    private long watermark = NONE;
+    // end of the next window to activate, the windows ending before have been activated or were empty
+    private long nextWindowEnd = NONE;
+    // ends of the activated windows that received late events
+    private final TreeSet<Long> pendingRefires = new TreeSet<>();
+    // the window of the last activation and the late events added to it since then
+    private long activeStart = NONE;
+    private long activeEnd = NONE;
+    private final Map<T, Long> lateActiveEvents = new IdentityHashMap<>();
+
+    /**
+     * @param inputCount the number of input streams the {@link Window.WatermarkStrategy#MIN_OF_INPUTS} strategy
+     *                   waits for before computing a watermark
+     */
+    public EventTimeWindows(long lengthMs, long slidingIntervalMs, long lagMs, long allowedLatenessMs,
+                            Window.WatermarkStrategy watermarkStrategy, int inputCount, Listener<T> listener) {
+        if (lengthMs <= 0 || slidingIntervalMs <= 0 || slidingIntervalMs > lengthMs) {
+            throw new IllegalArgumentException("Invalid window length " + lengthMs + " and sliding interval "
+                    + slidingIntervalMs);
+        }
+        this.lengthMs = lengthMs;
+        this.slidingIntervalMs = slidingIntervalMs;
+        this.lagMs = lagMs;
+        this.allowedLatenessMs = allowedLatenessMs;
+        this.watermarkStrategy = watermarkStrategy != null ? watermarkStrategy : Window.WatermarkStrategy.MIN_OF_INPUTS;
+        this.inputCount = inputCount;
+        this.listener = listener;
+    }
+
+    /**
+     * Returns the current watermark, or {@link Long#MIN_VALUE} if there is no watermark yet.
+     */
+    public long getWatermark() {
+        return watermark;
+    }
+
+    /**
+     * Adds an event of the given input stream, activating the windows passed by the watermark.
+     */
+    public void add(Object input, long timestamp, T event) {
+        if (watermark != NONE && timestamp < watermark) {
+            addLate(timestamp, event);
+        } else {
+            insert(timestamp, event);
+        }
+        Long inputTimestamp = inputTimestamps.get(input);
+        if (inputTimestamp == null || timestamp > inputTimestamp) {
+            inputTimestamps.put(input, timestamp);
+            updateWatermark();
+        }
+    }
+
+    /**
+     * Activates again the windows that received late events.
+     */
+    public void flush() {
+        for (Long end : pendingRefires) {
+            if (end + allowedLatenessMs > watermark) {
+                activate(end - lengthMs, end, true);
+            }
+        }
+        pendingRefires.clear();
+    }
+
+    private void addLate(long timestamp, T event) {
+        long firstEnd = firstWindowEnd(timestamp);
+        long lastEnd = Math.floorDiv(timestamp + lengthMs, slidingIntervalMs) * slidingIntervalMs;
+        if (lastEnd + allowedLatenessMs <= watermark) {
+            listener.onLate(event, true);
+            return;
+        }
+        listener.onLate(event, false);
+        insert(timestamp, event);
+        if (timestamp >= activeStart && timestamp < activeEnd) {
+            lateActiveEvents.put(event, timestamp);
+        }
+        for (long end = firstEnd; end <= lastEnd && end < nextWindowEnd; end += slidingIntervalMs) {
+            if (end + allowedLatenessMs > watermark) {
+                pendingRefires.add(end);
+            }
+        }
+    }
+
+    private void insert(long timestamp, T event) {
+        List<T> list = events.get(timestamp);
+        if (list == null) {
+            list = new ArrayList<>(1);
+            events.put(timestamp, list);
+        }
+        list.add(event);
+    }
+
+    private void updateWatermark() {
+        if (watermarkStrategy == Window.WatermarkStrategy.MIN_OF_INPUTS && inputTimestamps.size() < inputCount) {
+            return;
+        }
+        long timestamp = watermarkStrategy == Window.WatermarkStrategy.MIN_OF_INPUTS
+                ? Collections.min(inputTimestamps.values()) : Collections.max(inputTimestamps.values());
+        if (timestamp - lagMs > watermark) {
+            watermark = timestamp - lagMs;
+            flush();
+            activateWindows();
+            purge();
+        }
+    }
+
+    private void activateWindows() {
+        while (nextWindowEnd == NONE || nextWindowEnd <= watermark) {
+            // skip the empty windows
+            Long first = nextWindowEnd == NONE
+                    ? (events.isEmpty() ? null : events.firstKey()) : events.ceilingKey(nextWindowEnd - lengthMs);
+            if (first == null) {
+                nextWindowEnd = firstWindowEnd(watermark);
+                return;
+            }
+            long end = Math.max(nextWindowEnd, firstWindowEnd(first));
+            if (end > watermark) {
+                nextWindowEnd = firstWindowEnd(watermark);
+                return;
+            }
+            nextWindowEnd = end;
+            activate(nextWindowEnd - lengthMs, nextWindowEnd, false);
+            nextWindowEnd += slidingIntervalMs;
+        }
+    }
+
+    private void activate(long start, long end, boolean refire) {
+        List<T> windowEvents = new Events(start, end, null);
+        List<T> newEvents;
+        List<T> expiredEvents;
+        if (activeEnd == NONE) {
+            newEvents = windowEvents;
+            expiredEvents = Collections.emptyList();
+        } else {
+            // the events of the previous activation not in this window, but not the late events added after it
+            expiredEvents = concat(new Events(activeStart, Math.min(activeEnd, start), lateActiveEvents),
+                    new Events(Math.max(activeStart, end), activeEnd, lateActiveEvents));
+            List<T> lateEvents = new ArrayList<>();
+            for (Map.Entry<T, Long> entry : lateActiveEvents.entrySet()) {
+                if (entry.getValue() >= start && entry.getValue() < end) {
+                    lateEvents.add(entry.getKey());
+                }
+            }
+            newEvents = concat(concat(new Events(start, Math.min(end, activeStart), null),
+                    new Events(Math.max(start, activeEnd), end, null)), lateEvents);
+        }
+        listener.onActivation(start, end, windowEvents, newEvents, expiredEvents, refire);
+        activeStart = start;
+        activeEnd = end;
+        lateActiveEvents.clear();
+    }
+
+    // the events of the last activation are kept until the next activation expires them
+    private void purge() {
+        long purgeBefore = watermark - lengthMs - allowedLatenessMs;
+        if (activeStart != NONE) {
+            purgeBefore = Math.min(purgeBefore, activeStart);
+        }
+        while (!events.isEmpty() && events.firstKey() < purgeBefore) {
+            for (T event : events.pollFirstEntry().getValue()) {
+                listener.onPurge(event);
+            }
+        }
+    }
+
+    private long firstWindowEnd(long timestamp) {
+        return Math.floorDiv(timestamp, slidingIntervalMs) * slidingIntervalMs + slidingIntervalMs;
+    }
+
+    private static <T> List<T> concat(List<T> first, List<T> second) {
+        if (first.isEmpty()) {
+            return second;
+        } else if (second.isEmpty()) {
+            return first;
+        }
+        List<T> result = new ArrayList<>(first);
+        result.addAll(second);
+        return result;
+    }
+
+    /**
+     * The events with a timestamp in {@code [from, to)}, collected when the list is first accessed.
+     */
+    private final class Events extends AbstractList<T> {
+        private final long from;
+        private final long to;
+        private final Map<T, Long> excluded;
+        private List<T> list;
+
+        Events(long from, long to, Map<T, Long> excluded) {
+            this.from = from;
+            this.to = to;
+            this.excluded = excluded;
+        }
+
+        @Override
+        public T get(int index) {
+            return getList().get(index);
+        }
+
+        @Override
+        public Iterator<T> iterator() {
+            return getList().iterator();
+        }
+
+        @Override
+        public int size() {
+            return getList().size();
+        }
+
+        private List<T> getList() {
+            if (list == null) {
+                list = new ArrayList<>();
+                if (from < to) {
+                    NavigableMap<Long, List<T>> range = events.subMap(from, true, to, false);
+                    for (List<T> timestampEvents : range.values()) {
+                        for (T event : timestampEvents) {
+                            if (excluded == null || !excluded.containsKey(event)) {
+                                list.add(event);
+                            }
+                        }
+                    }
+                }
+            }
+            return list;
+        }
+    }
+}
@@ -0,0 +1,269 @@
+/**
+  * Copyright 2017 Hortonworks.
+  *
+  * Licensed under the Apache License, Version 2.0 (the "License");
+  * you may not use this file except in compliance with the License.
+  * You may obtain a copy of the License at
+
+  *   http://www.apache.org/licenses/LICENSE-2.0
+
+  * Unless required by applicable law or agreed to in writing, software
+  * distributed under the License is distributed on an "AS IS" BASIS,
+  * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  * See the License for the specific language governing permissions and
+  * limitations under the License.
+ **/
+package com.hortonworks.streamline.streams.runtime.storm.bolt.window;
+
+import com.hortonworks.streamline.streams.layout.component.rule.expression.Window;
+import com.hortonworks.streamline.streams.runtime.storm.bolt.StreamlineWindowedBolt;
+import org.apache.storm.task.OutputCollector;
+import org.apache.storm.task.TopologyContext;
+import org.apache.storm.topology.IRichBolt;
+import org.apache.storm.topology.OutputFieldsDeclarer;
+import org.apache.storm.tuple.Tuple;
+import org.apache.storm.tuple.TupleImpl;
+import org.apache.storm.windowing.TupleWindowImpl;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Executes a {@link StreamlineWindowedBolt} whose window is configured to {@link Window#isSpillToDisk() spill to disk}.
+ * <p>
+ * Unlike the storm windowed bolt executor, which keeps the tuples of the window on the heap until they expire, the
+ * tuples are serialized into a {@link WindowSegmentStore} on local disk and acked as soon as they are stored, so the
+ * length of the window is bounded by the disk and does not hold back the spouts. The {@link TupleWindowImpl tuple
+ * windows} given to the bolt read their tuples back from the store while they are iterated, bolts that aggregate the
+ * new and expired tuples incrementally only keep their aggregates on the heap.
+ * </p>
+ * Only processing time windows are supported.
+ * <p>
+ * Spilling is an explicit opt out of at least once processing: the tuples are acked once stored and the results of
+ * the bolt are emitted unanchored, so the tuples of the window are lost if the worker fails. Keeping the tuples
+ * pending until they expire would keep them on the heap, which is what spilling avoids.
+ * </p>
+ */
+public class SpillableWindowedBoltExecutor implements IRichBolt {
+    private static final Logger LOG = LoggerFactory.getLogger(SpillableWindowedBoltExecutor.class);
+
+    public static final String CONFIG_KEY_SPILL_DIR = "topology.streamline.window.spill.dir";
+    public static final String CONFIG_KEY_SEGMENT_SIZE = "topology.streamline.window.segment.bytes";
+    private static final int DEFAULT_SEGMENT_SIZE = 64 * 1024 * 1024;
+
+    private final StreamlineWindowedBolt bolt;
+    private final Object lock = new Object();
+    private transient TopologyContext context;
+    private transient OutputCollector collector;
+    private transient WindowSegmentStore store;
+    private transient ScheduledExecutorService triggerExecutor;
+    // sequence of the first tuple added after the last activation
+    private long lastTriggerSequence;
+    private int countSinceLastTrigger;
+
+    public SpillableWindowedBoltExecutor(StreamlineWindowedBolt bolt) {
+        this.bolt = bolt;
+    }
+
+    @Override
+    public void prepare(Map stormConf, TopologyContext context, OutputCollector collector) {
+        Window window = bolt.getWindowConfig();
+        if (window == null) {
+            throw new IllegalArgumentException("Window config of the bolt is not set");
+        } else if (window.getTsField() != null) {
+            throw new IllegalArgumentException("Only processing time windows can spill to disk, the window has a timestamp field");
+        }
+        this.context = context;
+        this.collector = collector;
+        Object spillDir = stormConf.get(CONFIG_KEY_SPILL_DIR);
+        File directory = new File(spillDir != null ? spillDir.toString() : System.getProperty("java.io.tmpdir"),
+                "streamline-window" + File.separator + context.getStormId() + File.separator
+                        + context.getThisComponentId() + "-" + context.getThisTaskId());
+        Object segmentSize = stormConf.get(CONFIG_KEY_SEGMENT_SIZE);
+        try {
+            store = new WindowSegmentStore(directory,
+                    segmentSize != null ? ((Number) segmentSize).intValue() : DEFAULT_SEGMENT_SIZE);
+        } catch (IOException e) {
+            throw new RuntimeException("Unable to create the window store in " + directory, e);
+        }
+        LOG.info("Window of {} task {} spills to {}, tuples are acked once stored and are not replayed if the worker " +
+                "fails", context.getThisComponentId(), context.getThisTaskId(), directory);
+        bolt.prepare(stormConf, context, collector);
+        Window.WindowParam slidingInterval = getSlidingInterval(window);
+        if (slidingInterval instanceof Window.Duration) {
+            long intervalMs = ((Window.Duration) slidingInterval).getDurationMs();
+            triggerExecutor = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+                @Override
+                public Thread newThread(Runnable runnable) {
+                    Thread thread = new Thread(runnable, "window-trigger-" + SpillableWindowedBoltExecutor.this.context.getThisTaskId());
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+            triggerExecutor.scheduleAtFixedRate(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        synchronized (lock) {
+                            trigger();
+                        }
+                    } catch (Throwable t) {
+                        LOG.error("Error while activating the window", t);
+                        SpillableWindowedBoltExecutor.this.collector.reportError(t);
+                    }
+                }
+            }, intervalMs, intervalMs, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    @Override
+    public void execute(Tuple input) {
+        List<Object> values = new ArrayList<>(input.size() + 2);
+        values.add(input.getSourceTask());
+        values.add(input.getSourceStreamId());
+        values.addAll(input.getValues());
+        synchronized (lock) {
+            try {
+                store.append(System.currentTimeMillis(), WindowTupleCodec.encode(values));
+            } catch (IOException e) {
+                collector.reportError(e);
+                collector.fail(input);
+                return;
+            }
+            collector.ack(input);
+            Window.WindowParam slidingInterval = getSlidingInterval(bolt.getWindowConfig());
+            if (slidingInterval instanceof Window.Count
+                    && ++countSinceLastTrigger >= ((Window.Count) slidingInterval).getCount()) {
+                trigger();
+            }
+        }
+    }
+
+    /*
+     * Expires the tuples that left the window and executes the bolt with the current window. A tuple added and
+     * expired between two activations is neither new nor expired.
+     */
+    private void trigger() {
+        Window window = bolt.getWindowConfig();
+        long oldHead = store.getHeadSequence();
+        long tail = store.getNextSequence();
+        long newHead = oldHead;
+        if (window.getWindowLength() instanceof Window.Count) {
+            newHead = Math.max(oldHead, tail - ((Window.Count) window.getWindowLength()).getCount());
+        } else if (window.getWindowLength() instanceof Window.Duration) {
+            long startTs = System.currentTimeMillis() - ((Window.Duration) window.getWindowLength()).getDurationMs();
+            newHead = store.findSequence(startTs);
+        }
+        long newFrom = Math.max(lastTriggerSequence, newHead);
+        long expiredTo = Math.min(newHead, lastTriggerSequence);
+        LOG.debug("Window activated, tuples [{}, {}), new from {}, expired [{}, {})", newHead, tail, newFrom,
+                oldHead, expiredTo);
+        bolt.execute(new TupleWindowImpl(new StoredTuples(newHead, tail), new StoredTuples(newFrom, tail),
+                new StoredTuples(oldHead, Math.max(oldHead, expiredTo))));
+        try {
+            store.expire(newHead);
+        } catch (IOException e) {
+            collector.reportError(e);
+        }
+        lastTriggerSequence = tail;
+        countSinceLastTrigger = 0;
+    }
+
+    private static Window.WindowParam getSlidingInterval(Window window) {
+        return window.getSlidingInterval() != null ? window.getSlidingInterval() : window.getWindowLength();
+    }
+
+    @Override
+    public void cleanup() {
+        if (triggerExecutor != null) {
+            triggerExecutor.shutdownNow();
+        }
+        synchronized (lock) {
+            bolt.cleanup();
+            try {
+                store.close();
+            } catch (IOException e) {
+                LOG.warn("Unable to delete the window store", e);
+            }
+        }
+    }
+
+    @Override
+    public void declareOutputFields(OutputFieldsDeclarer declarer) {
+        bolt.declareOutputFields(declarer);
+    }
+
+    // the window configuration of the bolt is handled by this executor, storm does not window a plain bolt
+    @Override
+    public Map<String, Object> getComponentConfiguration() {
+        return bolt.getComponentConfiguration();
+    }
+
+    /**
+     * The tuples of a range of sequence numbers of the store, decoded when they are read.
+     */
+    private final class StoredTuples extends AbstractList<Tuple> {
+        private final long fromSequence;
+        private final long toSequence;
+
+        StoredTuples(long fromSequence, long toSequence) {
+            this.fromSequence = fromSequence;
+            this.toSequence = toSequence;
+        }
+
+        @Override
+        public Tuple get(int index) {
+            if (index < 0 || index >= size()) {
+                throw new IndexOutOfBoundsException("Index " + index + ", size " + size());
+            }
+            return toTuple(store.get(fromSequence + index));
+        }
+
+        @Override
+        public Iterator<Tuple> iterator() {
+            final Iterator<WindowSegmentStore.Record> records = store.iterator(fromSequence, toSequence);
+            return new Iterator<Tuple>() {
+                @Override
+                public boolean hasNext() {
+                    return records.hasNext();
+                }
+
+                @Override
+                public Tuple next() {
+                    return toTuple(records.next());
+                }
+
+                @Override
+                public void remove() {
+                    throw new UnsupportedOperationException();
+                }
+            };
+        }
+
+        @Override
+        public int size() {
+            return (int) (toSequence - fromSequence);
+        }
+
+        private Tuple toTuple(WindowSegmentStore.Record record) {
+            try {
+                List<Object> values = WindowTupleCodec.decode(record.getData());
+                return new TupleImpl(context, new ArrayList<>(values.subList(2, values.size())), (Integer) values.get(0),
+                        (String) values.get(1));
+            } catch (IOException e) {
+                throw new RuntimeException("Unable to decode tuple " + record.getSequence() + " of the window", e);
+            }
+        }
+    }
+}
@@ -0,0 +1,330 @@
+/**
+  * Copyright 2017 Hortonworks.
+  *
+  * Licensed under the Apache License, Version 2.0 (the "License");
+  * you may not use this file except in compliance with the License.
+  * You may obtain a copy of the License at
+
+  *   http://www.apache.org/licenses/LICENSE-2.0
+
+  * Unless required by applicable law or agreed to in writing, software
+  * distributed under the License is distributed on an "AS IS" BASIS,
+  * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  * See the License for the specific language governing permissions and
+  * limitations under the License.
+ **/
+package com.hortonworks.streamline.streams.runtime.storm.bolt.window;
+
+import com.hortonworks.streamline.common.util.FileUtil;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * An append only store of the records of a window, kept in memory mapped segment files on local disk.
+ * <p>
+ * Each record gets a sequence number and a timestamp. Records are appended at the tail and expired from the head
+ * of the store, a segment file is unmapped and deleted once all its records expired. Only the list of segments and
+ * the offsets of their records are kept on the heap, the records are read back from the mapped segments when they
+ * are read.
+ * </p>
+ * The store is not thread safe.
+ */
+public class WindowSegmentStore implements Closeable {
+    private static final Logger LOG = LoggerFactory.getLogger(WindowSegmentStore.class);
+    // length and timestamp of a record
+    private static final int RECORD_HEADER_SIZE = 4 + 8;
+
+    private final File directory;
+    private final int segmentSize;
+    private final Deque<Segment> segments = new ArrayDeque<>();
+    private long headSequence;
+    private long nextSequence;
+    private int segmentIndex;
+
+    /**
+     * Creates a store writing its segments in the given directory, which is emptied.
+     *
+     * @param directory the directory of the segment files
+     * @param segmentSize the size of a segment file in bytes, larger records get a segment of their own
+     */
+    public WindowSegmentStore(File directory, int segmentSize) throws IOException {
+        this.directory = directory;
+        this.segmentSize = segmentSize;
+        if (directory.exists()) {
+            deleteSegmentFiles();
+        } else if (!directory.mkdirs()) {
+            throw new IOException("Unable to create window store directory " + directory);
+        }
+    }
+
+    /**
+     * Appends a record and returns its sequence number.
+     */
+    public long append(long timestamp, byte[] record) throws IOException {
+        Segment segment = segments.peekLast();
+        if (segment == null || segment.remaining() < RECORD_HEADER_SIZE + record.length) {
+            segment = new Segment(new File(directory, "segment-" + segmentIndex++), nextSequence,
+                    Math.max(segmentSize, RECORD_HEADER_SIZE + record.length));
+            segments.addLast(segment);
+        }
+        segment.append(timestamp, record);
+        return nextSequence++;
+    }
+
+    /**
+     * Returns the sequence number of the oldest record that did not expire.
+     */
+    public long getHeadSequence() {
+        return headSequence;
+    }
+
+    /**
+     * Returns the sequence number of the next appended record.
+     */
+    public long getNextSequence() {
+        return nextSequence;
+    }
+
+    public long size() {
+        return nextSequence - headSequence;
+    }
+
+    /**
+     * Returns the sequence number of the first record, from the head, whose timestamp is not before the given
+     * timestamp or the next sequence number if there is no such record. Timestamps are expected to increase
+     * with the sequence numbers.
+     */
+    public long findSequence(long timestamp) {
+        for (Segment segment : segments) {
+            if (segment.lastTimestamp < timestamp) {
+                continue;
+            }
+            // binary search of the first record of the segment whose timestamp is not before the timestamp
+            long low = Math.max(headSequence, segment.firstSequence);
+            long high = segment.firstSequence + segment.count - 1;
+            while (low < high) {
+                long mid = (low + high) >>> 1;
+                if (segment.buffer.getLong(segment.offsetOf(mid) + 4) >= timestamp) {
+                    high = mid;
+                } else {
+                    low = mid + 1;
+                }
+            }
+            return low;
+        }
+        return nextSequence;
+    }
+
+    /**
+     * Expires the records before the given sequence number and deletes the segments of the expired records.
+     */
+    public void expire(long sequence) throws IOException {
+        headSequence = Math.max(headSequence, Math.min(sequence, nextSequence));
+        Segment segment;
+        while ((segment = segments.peekFirst()) != null && segment.firstSequence + segment.count <= headSequence) {
+            segments.removeFirst().delete();
+        }
+    }
+
+    /**
+     * Returns the record of the given sequence number, which must not have expired.
+     */
+    public Record get(long sequence) {
+        if (sequence < headSequence || sequence >= nextSequence) {
+            throw new IllegalArgumentException("Record " + sequence + " not in the store, head is " + headSequence
+                    + ", next is " + nextSequence);
+        }
+        for (Segment segment : segments) {
+            if (sequence < segment.firstSequence + segment.count) {
+                return segment.read(sequence, segment.offsetOf(sequence));
+            }
+        }
+        throw new IllegalStateException("Record " + sequence + " not found");
+    }
+
+    /**
+     * Returns an iterator over the records from the given sequence number, inclusive, to the given sequence number,
+     * exclusive. The records must not have expired and the store must not be modified while iterating.
+     */
+    public Iterator<Record> iterator(final long fromSequence, final long toSequence) {
+        if (fromSequence < headSequence) {
+            throw new IllegalArgumentException("Record " + fromSequence + " expired, head is " + headSequence);
+        }
+        return new RecordIterator(fromSequence, Math.min(toSequence, nextSequence));
+    }
+
+    /**
+     * Deletes the segment files of the store.
+     */
+    @Override
+    public void close() throws IOException {
+        while (!segments.isEmpty()) {
+            segments.removeFirst().delete();
+        }
+        headSequence = nextSequence;
+    }
+
+    private void deleteSegmentFiles() throws IOException {
+        File[] files = directory.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                if (!file.delete()) {
+                    throw new IOException("Unable to delete " + file);
+                }
+            }
+        }
+    }
+
+    /**
+     * A record of the store, the data is a copy of the record in the segment.
+     */
+    public static final class Record {
+        private final long sequence;
+        private final long timestamp;
+        private final byte[] data;
+
+        Record(long sequence, long timestamp, byte[] data) {
+            this.sequence = sequence;
+            this.timestamp = timestamp;
+            this.data = data;
+        }
+
+        public long getSequence() {
+            return sequence;
+        }
+
+        public long getTimestamp() {
+            return timestamp;
+        }
+
+        public byte[] getData() {
+            return data;
+        }
+    }
+
+    private static final class Segment {
+        private final File file;
+        private final long firstSequence;
+        private final MappedByteBuffer buffer;
+        // the offsets of the records in the buffer, indexed by sequence number from the first sequence
+        private int[] offsets = new int[16];
+        private int count;
+        private long lastTimestamp = Long.MIN_VALUE;
+
+        Segment(File file, long firstSequence, int size) throws IOException {
+            this.file = file;
+            this.firstSequence = firstSequence;
+            try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+                buffer = raf.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, size);
+            }
+        }
+
+        int remaining() {
+            return buffer.remaining();
+        }
+
+        void append(long timestamp, byte[] record) {
+            if (count == offsets.length) {
+                offsets = Arrays.copyOf(offsets, count * 2);
+            }
+            offsets[count] = buffer.position();
+            buffer.putInt(record.length);
+            buffer.putLong(timestamp);
+            buffer.put(record);
+            count++;
+            lastTimestamp = timestamp;
+        }
+
+        // the offset of the first record with a sequence number greater or equal to the given one
+        int offsetOf(long sequence) {
+            int index = (int) (sequence - firstSequence);
+            return index < count ? offsets[index] : buffer.position();
+        }
+
+        Record read(long sequence, int offset) {
+            int length = buffer.getInt(offset);
+            long timestamp = buffer.getLong(offset + 4);
+            byte[] data = new byte[length];
+            // absolute bulk gets are not available in java 8, read through a duplicate
+            ByteBuffer duplicate = buffer.duplicate();
+            duplicate.position(offset + RECORD_HEADER_SIZE);
+            duplicate.get(data);
+            return new Record(sequence, timestamp, data);
+        }
+
+        void delete() {
+            // the mapping would otherwise hold the disk space of the deleted file until the buffer is garbage collected
+            if (!FileUtil.unmap(buffer)) {
+                LOG.debug("Unable to unmap window segment {}, the mapping is released when the buffer is garbage collected", file);
+            }
+            if (!file.delete()) {
+                LOG.warn("Unable to delete window segment {}", file);
+            }
+        }
+    }
+
+    private final class RecordIterator implements Iterator<Record> {
+        private final Iterator<Segment> segmentIterator = segments.iterator();
+        private final long toSequence;
+        private long sequence;
+        private Segment segment;
+        private int offset;
+
+        RecordIterator(long fromSequence, long toSequence) {
+            this.sequence = fromSequence;
+            this.toSequence = toSequence;
+            if (sequence < toSequence) {
+                seek();
+            }
+        }
+
+        // moves to the segment and offset of the current sequence
+        private void seek() {
+            while (segmentIterator.hasNext()) {
+                segment = segmentIterator.next();
+                if (sequence < segment.firstSequence + segment.count) {
+                    offset = segment.offsetOf(sequence);
+                    return;
+                }
+            }
+            throw new IllegalStateException("Record " + sequence + " not found");
+        }
+
+        @Override
+        public boolean hasNext() {
+            return sequence < toSequence;
+        }
+
+        @Override
+        public Record next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            if (sequence >= segment.firstSequence + segment.count) {
+                seek();
+            }
+            Record record = segment.read(sequence, offset);
+            offset += RECORD_HEADER_SIZE + record.data.length;
+            sequence++;
+            return record;
+        }
+
+        @Override
+        public void remove() {
+            throw new UnsupportedOperationException();
+        }
+    }
+}
@@ -19,42 +19,58 @@ import org.apache.storm.generated.GlobalStreamId;
 import org.apache.storm.grouping.CustomStreamGrouping;
 import org.apache.storm.task.WorkerTopologyContext;
 import com.hortonworks.streamline.streams.StreamlineEvent;
-import com.hortonworks.streamline.streams.runtime.storm.StreamlineRuntimeUtil;
 
 import java.util.ArrayList;
-import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
-import java.util.Map;
 
 /**
  * This class is responsible for handling fields grouping for components connected in streamline topologies.
  * All components in streamline topologies pass around StreamlineEvent objects. To support fields grouping
  * in storm, we will use this class to inspect the streamline event and group by the fields and send it to
- * the same downstream task
+ * the same downstream task.
+ * <p>
+ * With the default {@link Mode#HASH} mode the task is the hash of the fields modulo the number of tasks. With
+ * {@link Mode#CONSISTENT_HASH} the task is chosen with a consistent hash, so that changing the parallelism of the
+ * downstream component from n to n + 1 tasks moves only 1 / (n + 1) of the keys.
+ * </p>
  */
 public class FieldsGroupingAsCustomGrouping implements CustomStreamGrouping {
+    public enum Mode {
+        HASH,
+        CONSISTENT_HASH
+    }
+
     private final List<String> groupingFields;
-    private List<Integer> targetTasks;
+    private final Mode mode;
+    private transient GroupingKeyHasher hasher;
+    // the singleton task lists returned for each target task
+    private transient List<List<Integer>> taskLists;
+
     public FieldsGroupingAsCustomGrouping(List<String> groupingFields) {
-        this.groupingFields = Collections.unmodifiableList(groupingFields);
+        this(groupingFields, Mode.HASH.name());
+    }
 
+    public FieldsGroupingAsCustomGrouping(List<String> groupingFields, String mode) {
+        this.groupingFields = Collections.unmodifiableList(groupingFields);
+        this.mode = Mode.valueOf(mode);
     }
+
     @Override
     public void prepare(WorkerTopologyContext context, GlobalStreamId stream, List<Integer> targetTasks) {
-        this.targetTasks = targetTasks;
+        hasher = new GroupingKeyHasher(groupingFields);
+        taskLists = new ArrayList<>(targetTasks.size());
+        for (Integer targetTask : targetTasks) {
+            taskLists.add(Collections.singletonList(targetTask));
+        }
     }
 
     @Override
     public List<Integer> chooseTasks(int taskId, List<Object> values) {
-        List<Integer> result = new ArrayList<>();
-        StreamlineEvent streamlineEvent = (StreamlineEvent) values.get(0);
-        List<Object> groupByObjects = new ArrayList<>(groupingFields.size());
-        for (String groupingField: groupingFields) {
-            groupByObjects.add(StreamlineRuntimeUtil.getFieldValue(streamlineEvent, groupingField));
-        }
-        int taskIndex = Arrays.deepHashCode(groupByObjects.toArray()) % targetTasks.size();
-        result.add(targetTasks.get(taskIndex));
-        return result;
+        long hash = hasher.hash((StreamlineEvent) values.get(0));
+        int taskIndex = mode == Mode.CONSISTENT_HASH
+                ? GroupingKeyHasher.consistentBucket(hash, taskLists.size())
+                : GroupingKeyHasher.bucket(hash, taskLists.size());
+        return taskLists.get(taskIndex);
     }
 }
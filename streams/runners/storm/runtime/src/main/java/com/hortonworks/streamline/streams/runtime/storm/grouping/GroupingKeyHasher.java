@@ -0,0 +1,92 @@
+/**
+  * Copyright 2017 Hortonworks.
+  *
+  * Licensed under the Apache License, Version 2.0 (the "License");
+  * you may not use this file except in compliance with the License.
+  * You may obtain a copy of the License at
+
+  *   http://www.apache.org/licenses/LICENSE-2.0
+
+  * Unless required by applicable law or agreed to in writing, software
+  * distributed under the License is distributed on an "AS IS" BASIS,
+  * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  * See the License for the specific language governing permissions and
+  * limitations under the License.
+ **/
+package com.hortonworks.streamline.streams.runtime.storm.grouping;
+
+import com.hortonworks.streamline.streams.StreamlineEvent;
+import com.hortonworks.streamline.streams.runtime.storm.StreamlineRuntimeUtil;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Computes the grouping key hash of streamline events from a list of (possibly nested) field names. The field names
+ * are split once when constructed and the hash is computed without allocating, from the hash codes of the values,
+ * which are stable across workers for the usual field types (strings, numbers, booleans and collections of those).
+ */
+final class GroupingKeyHasher {
+    private final String[][] nestedKeys;
+
+    GroupingKeyHasher(List<String> groupingFields) {
+        nestedKeys = new String[groupingFields.size()][];
+        for (int i = 0; i < nestedKeys.length; i++) {
+            nestedKeys[i] = StreamlineRuntimeUtil.getNestedKeys(groupingFields.get(i));
+        }
+    }
+
+    /**
+     * Returns the 64 bit hash of the grouping fields of the event, with all the bits well distributed.
+     */
+    long hash(StreamlineEvent event) {
+        long hash = 1;
+        for (String[] keys : nestedKeys) {
+            hash = 31 * hash + valueHash(StreamlineRuntimeUtil.getFieldValue(event, keys));
+        }
+        return mix(hash);
+    }
+
+    /**
+     * Returns the index in [0, buckets) of the hash, the modulo of the hash.
+     */
+    static int bucket(long hash, int buckets) {
+        return (int) Math.floorMod(hash, (long) buckets);
+    }
+
+    /**
+     * Returns the index in [0, buckets) of the hash using the jump consistent hash of Lamping and Veach. When the
+     * number of buckets changes from n to n + 1 only 1 / (n + 1) of the hashes move, all to the new bucket.
+     */
+    static int consistentBucket(long hash, int buckets) {
+        long bucket = -1;
+        long next = 0;
+        while (next < buckets) {
+            bucket = next;
+            hash = hash * 2862933555777941757L + 1;
+            next = (long) ((bucket + 1) * ((double) (1L << 31) / (double) ((hash >>> 33) + 1)));
+        }
+        return (int) bucket;
+    }
+
+    // the finalizer of murmur3, so that keys with close hash codes spread across the buckets
+    static long mix(long hash) {
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        hash *= 0xc4ceb9fe1a85ec53L;
+        hash ^= hash >>> 33;
+        return hash;
+    }
+
+    private static int valueHash(Object value) {
+        if (value == null) {
+            return 0;
+        } else if (value instanceof byte[]) {
+            return Arrays.hashCode((byte[]) value);
+        } else if (value instanceof Object[]) {
+            return Arrays.deepHashCode((Object[]) value);
+        }
+        return value.hashCode();
+    }
+}
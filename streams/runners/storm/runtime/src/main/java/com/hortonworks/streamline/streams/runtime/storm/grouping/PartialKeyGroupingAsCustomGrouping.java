@@ -0,0 +1,77 @@
+/**
+  * Copyright 2017 Hortonworks.
+  *
+  * Licensed under the Apache License, Version 2.0 (the "License");
+  * you may not use this file except in compliance with the License.
+  * You may obtain a copy of the License at
+
+  *   http://www.apache.org/licenses/LICENSE-2.0
+
+  * Unless required by applicable law or agreed to in writing, software
+  * distributed under the License is distributed on an "AS IS" BASIS,
+  * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  * See the License for the specific language governing permissions and
+  * limitations under the License.
+ **/
+package com.hortonworks.streamline.streams.runtime.storm.grouping;
+
+import org.apache.storm.generated.GlobalStreamId;
+import org.apache.storm.grouping.CustomStreamGrouping;
+import org.apache.storm.task.WorkerTopologyContext;
+import com.hortonworks.streamline.streams.StreamlineEvent;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Partial key grouping of streamline events, to balance the load of skewed keys across the downstream tasks.
+ * <p>
+ * Each key has two candidate tasks derived from the hash of the grouping fields, and every event is sent to the
+ * candidate that received the fewest events from this task so far (the power of two choices). A hot key is thus
+ * split across two tasks instead of saturating a single one, while each key still reaches at most two tasks.
+ * The downstream component must combine the results computed for a key by the two tasks, for instance by
+ * aggregating in two phases.
+ * </p>
+ */
+public class PartialKeyGroupingAsCustomGrouping implements CustomStreamGrouping {
+    private static final long SECOND_CHOICE_SEED = 0x9e3779b97f4a7c15L;
+
+    private final List<String> groupingFields;
+    private transient GroupingKeyHasher hasher;
+    private transient List<List<Integer>> taskLists;
+    // the number of events sent to each target task by this task
+    private transient long[] loads;
+
+    public PartialKeyGroupingAsCustomGrouping(List<String> groupingFields) {
+        this.groupingFields = Collections.unmodifiableList(groupingFields);
+    }
+
+    @Override
+    public void prepare(WorkerTopologyContext context, GlobalStreamId stream, List<Integer> targetTasks) {
+        hasher = new GroupingKeyHasher(groupingFields);
+        taskLists = new ArrayList<>(targetTasks.size());
+        for (Integer targetTask : targetTasks) {
+            taskLists.add(Collections.singletonList(targetTask));
+        }
+        loads = new long[targetTasks.size()];
+    }
+
+    @Override
+    public List<Integer> chooseTasks(int taskId, List<Object> values) {
+        int taskCount = taskLists.size();
+        long hash = hasher.hash((StreamlineEvent) values.get(0));
+        int taskIndex = GroupingKeyHasher.bucket(hash, taskCount);
+        if (taskCount > 1) {
+            // the second choice always differs from the first one
+            int second = (taskIndex + 1
+                    + GroupingKeyHasher.bucket(GroupingKeyHasher.mix(hash ^ SECOND_CHOICE_SEED), taskCount - 1))
+                    % taskCount;
+            if (loads[second] < loads[taskIndex]) {
+                taskIndex = second;
+            }
+        }
+        loads[taskIndex]++;
+        return taskLists.get(taskIndex);
+    }
+}
@@ -54,7 +54,7 @@ public class AvroKafkaSpoutScheme implements MultiScheme {
         if (avroStreamsSnapshotDeserializer == null) {
             synchronized (this) {
                 if (avroStreamsSnapshotDeserializer == null) {
-                    AvroStreamsSnapshotDeserializer deserializer = new AvroStreamsSnapshotDeserializer();
+                    AvroStreamsSnapshotDeserializer deserializer = new AvroStreamsSnapshotDeserializer(dataSourceId);
                     Map<String, Object> config = new HashMap<>();
                     config.put(SchemaRegistryClient.Configuration.SCHEMA_REGISTRY_URL.name(), schemaRegistryUrl);
                     deserializer.init(config);
@@ -67,12 +67,15 @@ public class AvroKafkaSpoutScheme implements MultiScheme {
 
     @Override
     public Iterable<List<Object>> deserialize(ByteBuffer byteBuffer) {
-        Map<String, Object> keyValues = (Map<String, Object>) deserializer()
-                .deserialize(new ByteBufferInputStream(byteBuffer),
-                             schemaMetadata,
-                             null);
-
-        return Collections.<List<Object>>singletonList(new Values(new StreamlineEventImpl(keyValues, dataSourceId)));
+        Object deserialized = deserializer().deserialize(new ByteBufferInputStream(byteBuffer),
+                                                         schemaMetadata,
+                                                         null);
+        // records are deserialized to events, other payloads to the map of fields and values of the event
+        StreamlineEvent event = deserialized instanceof StreamlineEvent
+                ? (StreamlineEvent) deserialized
+                : new StreamlineEventImpl((Map<String, Object>) deserialized, dataSourceId);
+
+        return Collections.<List<Object>>singletonList(new Values(event));
     }
 
     @Override
@@ -88,6 +91,13 @@ public class AvroKafkaSpoutScheme implements MultiScheme {
             this.buf = buf;
         }
 
+        /**
+         * Returns the buffer, positioned after the bytes read from the stream.
+         */
+        public ByteBuffer getByteBuffer() {
+            return buf;
+        }
+
         public int read() throws IOException {
             if (!buf.hasRemaining()) {
                 return -1;
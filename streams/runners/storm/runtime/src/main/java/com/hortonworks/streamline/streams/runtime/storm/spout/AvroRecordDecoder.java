@@ -0,0 +1,392 @@
+/**
+  * Copyright 2017 Hortonworks.
+  *
+  * Licensed under the Apache License, Version 2.0 (the "License");
+  * you may not use this file except in compliance with the License.
+  * You may obtain a copy of the License at
+
+  *   http://www.apache.org/licenses/LICENSE-2.0
+
+  * Unless required by applicable law or agreed to in writing, software
+  * distributed under the License is distributed on an "AS IS" BASIS,
+  * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  * See the License for the specific language governing permissions and
+  * limitations under the License.
+ **/
+package com.hortonworks.streamline.streams.runtime.storm.spout;
+
+import com.hortonworks.streamline.streams.common.EventLayout;
+import org.apache.avro.Schema;
+import org.apache.avro.io.BinaryDecoder;
+import org.apache.avro.io.Decoder;
+import org.apache.avro.io.DecoderFactory;
+import org.apache.avro.io.ResolvingDecoder;
+import org.apache.avro.util.Utf8;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Decodes Avro records of a writer schema into the values of the fields of a reader schema, in the form
+ * {@link AvroStreamsSnapshotDeserializer} converts the generic records to.
+ * <p>
+ * The decoder is compiled once per writer and reader schema into a tree of readers for the types of the reader
+ * schema. The fields of the top level record are decoded directly into the value array of the event, in the
+ * order of the {@link #getLayout() layout}, and a null value is an absent field of the event. Strings are decoded
+ * to {@link String}s, interned per field while the field has few distinct values. Bytes and fixed are decoded to
+ * byte arrays, read in one copy from the input.
+ * </p>
+ * The decoder keeps reusable state and is synchronized, it is meant to be used by a single spout.
+ */
+final class AvroRecordDecoder {
+    // distinct values of a string field beyond which the values of the field are no longer interned
+    static final int MAX_INTERNED_VALUES = 1024;
+
+    private final EventLayout layout;
+    private final RecordReader root;
+    // null if the writer and reader schemas are the same
+    private final ResolvingDecoder resolver;
+    private BinaryDecoder binaryDecoder;
+
+    private AvroRecordDecoder(EventLayout layout, RecordReader root, ResolvingDecoder resolver) {
+        this.layout = layout;
+        this.root = root;
+        this.resolver = resolver;
+    }
+
+    /**
+     * Compiles a decoder for records written with the writer schema and read with the reader schema.
+     *
+     * @throws IllegalArgumentException if the reader schema is not a record
+     */
+    static AvroRecordDecoder compile(Schema writerSchema, Schema readerSchema) throws IOException {
+        if (readerSchema.getType() != Schema.Type.RECORD) {
+            throw new IllegalArgumentException("Reader schema " + readerSchema.getFullName() + " is not a record");
+        }
+        ResolvingDecoder resolver = null;
+        if (!writerSchema.equals(readerSchema)) {
+            resolver = DecoderFactory.get().resolvingDecoder(Schema.applyAliases(writerSchema, readerSchema),
+                    readerSchema, null);
+        }
+        Compiler compiler = new Compiler(resolver == null);
+        RecordReader root = (RecordReader) compiler.compile(readerSchema);
+        List<String> fieldNames = new ArrayList<>();
+        for (Schema.Field field : readerSchema.getFields()) {
+            fieldNames.add(field.name());
+        }
+        return new AvroRecordDecoder(EventLayout.of(fieldNames), root, resolver);
+    }
+
+    EventLayout getLayout() {
+        return layout;
+    }
+
+    /**
+     * Decodes the values of the fields of a record from a byte array.
+     */
+    synchronized Object[] decode(byte[] bytes, int offset, int length) throws IOException {
+        binaryDecoder = DecoderFactory.get().binaryDecoder(bytes, offset, length, binaryDecoder);
+        return decode(binaryDecoder);
+    }
+
+    /**
+     * Decodes the values of the fields of a record from a stream.
+     */
+    synchronized Object[] decode(InputStream in) throws IOException {
+        binaryDecoder = DecoderFactory.get().binaryDecoder(in, binaryDecoder);
+        return decode(binaryDecoder);
+    }
+
+    private Object[] decode(Decoder in) throws IOException {
+        if (resolver == null) {
+            return root.readValues(in);
+        }
+        resolver.configure(in);
+        Object[] values = root.readValues(resolver);
+        resolver.drain();
+        return values;
+    }
+
+    private interface Reader {
+        Object read(Decoder in) throws IOException;
+    }
+
+    private static final class Compiler {
+        // direct if the input is read with the binary decoder instead of a resolving decoder
+        private final boolean direct;
+        // the records compiled so far, for the recursive schemas
+        private final Map<Schema, RecordReader> records = new IdentityHashMap<>();
+
+        Compiler(boolean direct) {
+            this.direct = direct;
+        }
+
+        Reader compile(Schema schema) {
+            switch (schema.getType()) {
+                case RECORD:
+                    RecordReader record = records.get(schema);
+                    if (record == null) {
+                        record = new RecordReader(schema.getFields().size());
+                        records.put(schema, record);
+                        for (Schema.Field field : schema.getFields()) {
+                            record.names[field.pos()] = field.name();
+                            record.fields[field.pos()] = compile(field.schema());
+                        }
+                    }
+                    return record;
+                case ENUM:
+                    return new EnumReader(schema.getEnumSymbols().toArray(new String[0]));
+                case ARRAY:
+                    return new ArrayReader(compile(schema.getElementType()));
+                case MAP:
+                    return new MapReader(new StringReader(), compile(schema.getValueType()));
+                case UNION:
+                    List<Schema> types = schema.getTypes();
+                    Reader[] branches = new Reader[types.size()];
+                    for (int i = 0; i < branches.length; i++) {
+                        branches[i] = compile(types.get(i));
+                    }
+                    return new UnionReader(branches);
+                case FIXED:
+                    return new FixedReader(schema.getFixedSize());
+                case STRING:
+                    return new StringReader();
+                case BYTES:
+                    return new BytesReader(direct);
+                case INT:
+                    return PrimitiveReader.INT;
+                case LONG:
+                    return PrimitiveReader.LONG;
+                case FLOAT:
+                    return PrimitiveReader.FLOAT;
+                case DOUBLE:
+                    return PrimitiveReader.DOUBLE;
+                case BOOLEAN:
+                    return PrimitiveReader.BOOLEAN;
+                case NULL:
+                    return PrimitiveReader.NULL;
+                default:
+                    throw new IllegalArgumentException("Unsupported type " + schema.getType());
+            }
+        }
+    }
+
+    private enum PrimitiveReader implements Reader {
+        NULL {
+            @Override
+            public Object read(Decoder in) throws IOException {
+                in.readNull();
+                return null;
+            }
+        },
+        BOOLEAN {
+            @Override
+            public Object read(Decoder in) throws IOException {
+                return in.readBoolean();
+            }
+        },
+        INT {
+            @Override
+            public Object read(Decoder in) throws IOException {
+                return in.readInt();
+            }
+        },
+        LONG {
+            @Override
+            public Object read(Decoder in) throws IOException {
+                return in.readLong();
+            }
+        },
+        FLOAT {
+            @Override
+            public Object read(Decoder in) throws IOException {
+                return in.readFloat();
+            }
+        },
+        DOUBLE {
+            @Override
+            public Object read(Decoder in) throws IOException {
+                return in.readDouble();
+            }
+        }
+    }
+
+    /**
+     * Reads a record as a map of the fields in the order of the reader schema, the top level record is read as
+     * the value array of the event.
+     */
+    private static final class RecordReader implements Reader {
+        private final String[] names;
+        private final Reader[] fields;
+
+        RecordReader(int size) {
+            names = new String[size];
+            fields = new Reader[size];
+        }
+
+        @Override
+        public Object read(Decoder in) throws IOException {
+            Object[] values = readValues(in);
+            Map<String, Object> keyValues = new LinkedHashMap<>();
+            for (int i = 0; i < names.length; i++) {
+                keyValues.put(names[i], values[i]);
+            }
+            return keyValues;
+        }
+
+        Object[] readValues(Decoder in) throws IOException {
+            Object[] values = new Object[fields.length];
+            if (in instanceof ResolvingDecoder) {
+                // the fields in the order of the writer, followed by the reader fields with a default value
+                for (Schema.Field field : ((ResolvingDecoder) in).readFieldOrder()) {
+                    values[field.pos()] = fields[field.pos()].read(in);
+                }
+            } else {
+                for (int i = 0; i < fields.length; i++) {
+                    values[i] = fields[i].read(in);
+                }
+            }
+            return values;
+        }
+    }
+
+    private static final class StringReader implements Reader {
+        private Utf8 utf8;
+        // null once the field has too many distinct values
+        private Map<Utf8, String> interned = new HashMap<>();
+
+        @Override
+        public Object read(Decoder in) throws IOException {
+            utf8 = in.readString(utf8);
+            if (interned == null) {
+                return utf8.toString();
+            }
+            String value = interned.get(utf8);
+            if (value == null) {
+                value = utf8.toString();
+                if (interned.size() < MAX_INTERNED_VALUES) {
+                    interned.put(new Utf8(value), value);
+                } else {
+                    interned = null;
+                }
+            }
+            return value;
+        }
+    }
+
+    private static final class BytesReader implements Reader {
+        private final boolean direct;
+        private ByteBuffer buffer;
+
+        BytesReader(boolean direct) {
+            this.direct = direct;
+        }
+
+        @Override
+        public Object read(Decoder in) throws IOException {
+            if (direct) {
+                // the binary encoding of bytes is the length followed by the bytes, read them in the result array
+                int length = in.readInt();
+                if (length < 0) {
+                    throw new IOException("Malformed data, negative length " + length);
+                }
+                byte[] bytes = new byte[length];
+                in.readFixed(bytes);
+                return bytes;
+            }
+            buffer = in.readBytes(buffer);
+            byte[] bytes = new byte[buffer.remaining()];
+            buffer.get(bytes);
+            return bytes;
+        }
+    }
+
+    private static final class FixedReader implements Reader {
+        private final int size;
+
+        FixedReader(int size) {
+            this.size = size;
+        }
+
+        @Override
+        public Object read(Decoder in) throws IOException {
+            byte[] bytes = new byte[size];
+            in.readFixed(bytes);
+            return bytes;
+        }
+    }
+
+    private static final class EnumReader implements Reader {
+        private final String[] symbols;
+
+        EnumReader(String[] symbols) {
+            this.symbols = symbols;
+        }
+
+        @Override
+        public Object read(Decoder in) throws IOException {
+            return symbols[in.readEnum()];
+        }
+    }
+
+    private static final class UnionReader implements Reader {
+        private final Reader[] branches;
+
+        UnionReader(Reader[] branches) {
+            this.branches = branches;
+        }
+
+        @Override
+        public Object read(Decoder in) throws IOException {
+            return branches[in.readIndex()].read(in);
+        }
+    }
+
+    private static final class ArrayReader implements Reader {
+        private final Reader element;
+
+        ArrayReader(Reader element) {
+            this.element = element;
+        }
+
+        @Override
+        public Object read(Decoder in) throws IOException {
+            long count = in.readArrayStart();
+            List<Object> values = new ArrayList<>((int) Math.min(count, 1024));
+            for (; count != 0; count = in.arrayNext()) {
+                for (long i = 0; i < count; i++) {
+                    values.add(element.read(in));
+                }
+            }
+            return values;
+        }
+    }
+
+    private static final class MapReader implements Reader {
+        private final StringReader key;
+        private final Reader value;
+
+        MapReader(StringReader key, Reader value) {
+            this.key = key;
+            this.value = value;
+        }
+
+        @Override
+        public Object read(Decoder in) throws IOException {
+            Map<String, Object> keyValues = new LinkedHashMap<>();
+            for (long count = in.readMapStart(); count != 0; count = in.mapNext()) {
+                for (long i = 0; i < count; i++) {
+                    keyValues.put((String) key.read(in), value.read(in));
+                }
+            }
+            return keyValues;
+        }
+    }
+}
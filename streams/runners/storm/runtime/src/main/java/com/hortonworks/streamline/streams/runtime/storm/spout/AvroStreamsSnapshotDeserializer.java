@@ -18,13 +18,16 @@ package com.hortonworks.streamline.streams.runtime.storm.spout;
 
 import com.hortonworks.streamline.streams.StreamlineEvent;
 import com.hortonworks.registries.schemaregistry.SchemaMetadata;
+import com.hortonworks.registries.schemaregistry.SchemaVersionKey;
 import com.hortonworks.registries.schemaregistry.serdes.avro.AvroSnapshotDeserializer;
 import com.hortonworks.registries.schemaregistry.serde.SerDesException;
+import com.hortonworks.streamline.streams.common.IndexedStreamlineEvent;
 import org.apache.avro.Schema;
 import org.apache.avro.generic.GenericEnumSymbol;
 import org.apache.avro.generic.GenericFixed;
 import org.apache.avro.generic.IndexedRecord;
 
+import java.io.IOException;
 import java.io.InputStream;
 import java.nio.ByteBuffer;
 import java.util.ArrayList;
@@ -32,15 +35,53 @@ import java.util.Collection;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 /**
- *
+ * Deserializes Avro payloads to the map of fields and values of a {@link StreamlineEvent}.
+ * <p>
+ * Records are decoded with an {@link AvroRecordDecoder} compiled once per writer and reader schema version, directly
+ * into the storage of an {@link IndexedStreamlineEvent} with the data source id of the deserializer. Other payloads
+ * are read as generic data and converted to a map.
+ * </p>
  */
 public class AvroStreamsSnapshotDeserializer extends AvroSnapshotDeserializer {
+    private final String dataSourceId;
+    // the decoders of the schema versions, empty for the schemas that are not records
+    private final ConcurrentMap<DecoderKey, Optional<AvroRecordDecoder>> recordDecoders = new ConcurrentHashMap<>();
+
+    public AvroStreamsSnapshotDeserializer() {
+        this(null);
+    }
+
+    public AvroStreamsSnapshotDeserializer(String dataSourceId) {
+        this.dataSourceId = dataSourceId;
+    }
 
     @Override
     protected Object doDeserialize(InputStream payloadInputStream, SchemaMetadata schemaMetadata,
                                    Integer writerSchemaVersion, Integer readerSchemaVersion) throws SerDesException {
+        AvroRecordDecoder recordDecoder = getRecordDecoder(schemaMetadata.getName(), writerSchemaVersion, readerSchemaVersion);
+        if (recordDecoder != null) {
+            try {
+                Object[] values;
+                ByteBuffer buffer = payloadInputStream instanceof AvroKafkaSpoutScheme.ByteBufferInputStream
+                        ? ((AvroKafkaSpoutScheme.ByteBufferInputStream) payloadInputStream).getByteBuffer() : null;
+                if (buffer != null && buffer.hasArray()) {
+                    values = recordDecoder.decode(buffer.array(), buffer.arrayOffset() + buffer.position(), buffer.remaining());
+                    buffer.position(buffer.limit());
+                } else {
+                    values = recordDecoder.decode(payloadInputStream);
+                }
+                return IndexedStreamlineEvent.of(recordDecoder.getLayout(), values, dataSourceId);
+            } catch (IOException e) {
+                throw new SerDesException(e);
+            }
+        }
+
         Object deserializedObj = super.doDeserialize(payloadInputStream, schemaMetadata, writerSchemaVersion, readerSchemaVersion);
 
         Map<String, Object> keyValues = new LinkedHashMap<>();
@@ -54,6 +95,37 @@ public class AvroStreamsSnapshotDeserializer extends AvroSnapshotDeserializer {
         return keyValues;
     }
 
+    /*
+     * Returns the decoder of the schema versions, or null if the schemas are not records.
+     */
+    AvroRecordDecoder getRecordDecoder(String schemaName, Integer writerSchemaVersion, Integer readerSchemaVersion) {
+        DecoderKey key = new DecoderKey(schemaName, writerSchemaVersion, readerSchemaVersion);
+        Optional<AvroRecordDecoder> recordDecoder = recordDecoders.get(key);
+        if (recordDecoder == null) {
+            recordDecoder = Optional.ofNullable(compileRecordDecoder(schemaName, writerSchemaVersion, readerSchemaVersion));
+            Optional<AvroRecordDecoder> existing = recordDecoders.putIfAbsent(key, recordDecoder);
+            if (existing != null) {
+                recordDecoder = existing;
+            }
+        }
+        return recordDecoder.orElse(null);
+    }
+
+    private AvroRecordDecoder compileRecordDecoder(String schemaName, Integer writerSchemaVersion, Integer readerSchemaVersion) {
+        Schema writerSchema = getSchema(new SchemaVersionKey(schemaName, writerSchemaVersion));
+        Schema readerSchema = readerSchemaVersion != null
+                ? getSchema(new SchemaVersionKey(schemaName, readerSchemaVersion)) : writerSchema;
+        if (writerSchema == null || readerSchema == null
+                || writerSchema.getType() != Schema.Type.RECORD || readerSchema.getType() != Schema.Type.RECORD) {
+            return null;
+        }
+        try {
+            return AvroRecordDecoder.compile(writerSchema, readerSchema);
+        } catch (IOException e) {
+            throw new SerDesException(e);
+        }
+    }
+
     private Object convertValue(Object deserializedObj) {
         Object value;
 
@@ -107,4 +179,30 @@ public class AvroStreamsSnapshotDeserializer extends AvroSnapshotDeserializer {
         return value;
     }
 
+    private static final class DecoderKey {
+        private final String schemaName;
+        private final Integer writerSchemaVersion;
+        private final Integer readerSchemaVersion;
+
+        DecoderKey(String schemaName, Integer writerSchemaVersion, Integer readerSchemaVersion) {
+            this.schemaName = schemaName;
+            this.writerSchemaVersion = writerSchemaVersion;
+            this.readerSchemaVersion = readerSchemaVersion;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (o == null || getClass() != o.getClass()) return false;
+            DecoderKey that = (DecoderKey) o;
+            return Objects.equals(schemaName, that.schemaName)
+                    && Objects.equals(writerSchemaVersion, that.writerSchemaVersion)
+                    && Objects.equals(readerSchemaVersion, that.readerSchemaVersion);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(schemaName, writerSchemaVersion, readerSchemaVersion);
+        }
+    }
 }
@@ -0,0 +1,124 @@
+/**
+  * Copyright 2017 Hortonworks.
+  *
+  * Licensed under the Apache License, Version 2.0 (the "License");
+  * you may not use this file except in compliance with the License.
+  * You may obtain a copy of the License at
+
+  *   http://www.apache.org/licenses/LICENSE-2.0
+
+  * Unless required by applicable law or agreed to in writing, software
+  * distributed under the License is distributed on an "AS IS" BASIS,
+  * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  * See the License for the specific language governing permissions and
+  * limitations under the License.
+ **/
+package com.hortonworks.streamline.streams.runtime.storm.spout;
+
+import java.util.HashSet;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * The offsets of the records of a partition polled by the {@link StreamlineKafkaSpout}, from the poll until the
+ * record is acked.
+ * <p>
+ * The committable offset is the smallest offset polled and not acked yet, or the offset following the last polled
+ * record if all the polled records were acked, so the gaps in the offsets of a compacted topic do not hold back the
+ * commits. A record polled again after a seek is only emitted again if it failed or was not emitted yet.
+ * </p>
+ */
+final class KafkaPartitionOffsets {
+    // the records polled and not acked, waiting to be emitted, in flight or failed
+    private final TreeSet<Long> outstanding = new TreeSet<>();
+    private final Set<Long> emitted = new HashSet<>();
+    private final TreeSet<Long> failed = new TreeSet<>();
+    private long retryAtMs = Long.MAX_VALUE;
+    // the offset following the last polled record
+    private long nextOffset;
+    private long committedOffset;
+
+    /**
+     * @param position the position of the consumer in the partition when it was assigned
+     */
+    KafkaPartitionOffsets(long position) {
+        this.nextOffset = position;
+        this.committedOffset = position;
+    }
+
+    /**
+     * Returns true if the polled record has to be emitted, false if the record is in flight or was acked.
+     */
+    boolean polled(long offset) {
+        if (offset >= nextOffset) {
+            outstanding.add(offset);
+            nextOffset = offset + 1;
+            return true;
+        } else if (!outstanding.contains(offset) || emitted.contains(offset)) {
+            return false;
+        }
+        failed.remove(offset);
+        return true;
+    }
+
+    void emitted(long offset) {
+        emitted.add(offset);
+    }
+
+    void acked(long offset) {
+        emitted.remove(offset);
+        failed.remove(offset);
+        outstanding.remove(offset);
+    }
+
+    void failed(long offset, long retryAtMs) {
+        if (emitted.remove(offset)) {
+            failed.add(offset);
+            this.retryAtMs = Math.min(this.retryAtMs, retryAtMs);
+        }
+    }
+
+    /**
+     * Returns true if failed records are due for a retry.
+     */
+    boolean isRetryDue(long nowMs) {
+        return !failed.isEmpty() && nowMs >= retryAtMs;
+    }
+
+    /**
+     * Returns the offset to seek to for emitting again the failed records and the polled records that were not
+     * emitted, and resets the retry time.
+     */
+    long retryOffset() {
+        retryAtMs = Long.MAX_VALUE;
+        for (Long offset : outstanding) {
+            if (!emitted.contains(offset)) {
+                return offset;
+            }
+        }
+        return nextOffset;
+    }
+
+    long getCommittableOffset() {
+        return outstanding.isEmpty() ? nextOffset : outstanding.first();
+    }
+
+    long getCommittedOffset() {
+        return committedOffset;
+    }
+
+    void committed(long offset) {
+        committedOffset = Math.max(committedOffset, offset);
+    }
+
+    /**
+     * Returns the number of records polled and not acked yet.
+     */
+    int getUncommittedCount() {
+        return outstanding.size();
+    }
+
+    long getNextOffset() {
+        return nextOffset;
+    }
+}
@@ -0,0 +1,449 @@
+/**
+  * Copyright 2017 Hortonworks.
+  *
+  * Licensed under the Apache License, Version 2.0 (the "License");
+  * you may not use this file except in compliance with the License.
+  * You may obtain a copy of the License at
+
+  *   http://www.apache.org/licenses/LICENSE-2.0
+
+  * Unless required by applicable law or agreed to in writing, software
+  * distributed under the License is distributed on an "AS IS" BASIS,
+  * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  * See the License for the specific language governing permissions and
+  * limitations under the License.
+ **/
+package com.hortonworks.streamline.streams.runtime.storm.spout;
+
+import org.apache.kafka.clients.consumer.ConsumerConfig;
+import org.apache.kafka.clients.consumer.ConsumerRebalanceListener;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.consumer.ConsumerRecords;
+import org.apache.kafka.clients.consumer.KafkaConsumer;
+import org.apache.kafka.clients.consumer.OffsetAndMetadata;
+import org.apache.kafka.clients.consumer.OffsetCommitCallback;
+import org.apache.kafka.common.TopicPartition;
+import org.apache.kafka.common.serialization.ByteArrayDeserializer;
+import org.apache.storm.metric.api.IMetric;
+import org.apache.storm.spout.MultiScheme;
+import org.apache.storm.spout.SpoutOutputCollector;
+import org.apache.storm.task.TopologyContext;
+import org.apache.storm.topology.OutputFieldsDeclarer;
+import org.apache.storm.topology.base.BaseRichSpout;
+import org.apache.storm.utils.Utils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * A Kafka spout based on the Kafka consumer API, with the offsets committed to Kafka.
+ * <p>
+ * The records of a poll are deserialized together with the {@link MultiScheme} before being emitted one record per
+ * {@link #nextTuple()}, with the number of records of a poll bounded by {@code max.poll.records}. The offsets of
+ * the acked records are committed asynchronously every offset commit period, and synchronously when partitions
+ * are revoked and when the spout is closed. Failed records are emitted again after the retry delay, by seeking the
+ * partition back to the first failed record.
+ * </p>
+ * The spout registers the {@code kafkaOffset} metric with the same names as the storm-kafka spout, the latest
+ * offset, the latest completed offset and the lag of every partition and the totals of the topic. The latest
+ * offsets are looked up with a second consumer without group, so that the metric does not move the position of
+ * the consumer of the spout.
+ */
+public class StreamlineKafkaSpout extends BaseRichSpout {
+    private static final Logger LOG = LoggerFactory.getLogger(StreamlineKafkaSpout.class);
+
+    public static final String KAFKA_OFFSET_METRIC = "kafkaOffset";
+    public static final int DEFAULT_MAX_POLL_RECORDS = 500;
+    public static final long DEFAULT_POLL_TIMEOUT_MS = 200;
+    public static final long DEFAULT_OFFSET_COMMIT_PERIOD_MS = 30000;
+    public static final int DEFAULT_MAX_UNCOMMITTED_OFFSETS = 100000;
+    public static final long DEFAULT_RETRY_DELAY_MS = 1000;
+    public static final int DEFAULT_METRICS_TIME_BUCKET_SIZE_IN_SECS = 60;
+
+    private final String bootstrapServers;
+    private final String topic;
+    private final String groupId;
+    private final MultiScheme scheme;
+    private final Map<String, Object> consumerProperties = new HashMap<>();
+    private String outputStreamId = Utils.DEFAULT_STREAM_ID;
+    private int maxPollRecords = DEFAULT_MAX_POLL_RECORDS;
+    private long pollTimeoutMs = DEFAULT_POLL_TIMEOUT_MS;
+    private long offsetCommitPeriodMs = DEFAULT_OFFSET_COMMIT_PERIOD_MS;
+    private int maxUncommittedOffsets = DEFAULT_MAX_UNCOMMITTED_OFFSETS;
+    private long retryDelayMs = DEFAULT_RETRY_DELAY_MS;
+    private int metricsTimeBucketSizeInSecs = DEFAULT_METRICS_TIME_BUCKET_SIZE_IN_SECS;
+
+    private transient SpoutOutputCollector collector;
+    private transient KafkaConsumer<byte[], byte[]> consumer;
+    // looks up the end offsets of the partitions for the kafkaOffset metric, created with the first metric
+    private transient KafkaConsumer<byte[], byte[]> offsetConsumer;
+    private transient Map<TopicPartition, KafkaPartitionOffsets> partitionOffsets;
+    // the deserialized records of the last poll waiting to be emitted
+    private transient Deque<PendingRecord> pendingRecords;
+    private transient long lastCommitMs;
+
+    public StreamlineKafkaSpout(String bootstrapServers, String topic, String groupId, MultiScheme scheme) {
+        this.bootstrapServers = bootstrapServers;
+        this.topic = topic;
+        this.groupId = groupId;
+        this.scheme = scheme;
+    }
+
+    public StreamlineKafkaSpout withOutputStreamId(String outputStreamId) {
+        this.outputStreamId = outputStreamId;
+        return this;
+    }
+
+    public StreamlineKafkaSpout withMaxPollRecords(int maxPollRecords) {
+        this.maxPollRecords = maxPollRecords;
+        return this;
+    }
+
+    public StreamlineKafkaSpout withPollTimeoutMs(long pollTimeoutMs) {
+        this.pollTimeoutMs = pollTimeoutMs;
+        return this;
+    }
+
+    public StreamlineKafkaSpout withOffsetCommitPeriodMs(long offsetCommitPeriodMs) {
+        this.offsetCommitPeriodMs = offsetCommitPeriodMs;
+        return this;
+    }
+
+    /**
+     * Sets the number of records polled and not acked yet beyond which the spout stops polling.
+     */
+    public StreamlineKafkaSpout withMaxUncommittedOffsets(int maxUncommittedOffsets) {
+        this.maxUncommittedOffsets = maxUncommittedOffsets;
+        return this;
+    }
+
+    public StreamlineKafkaSpout withRetryDelayMs(long retryDelayMs) {
+        this.retryDelayMs = retryDelayMs;
+        return this;
+    }
+
+    public StreamlineKafkaSpout withMetricsTimeBucketSizeInSecs(int metricsTimeBucketSizeInSecs) {
+        this.metricsTimeBucketSizeInSecs = metricsTimeBucketSizeInSecs;
+        return this;
+    }
+
+    /**
+     * Sets a property of the Kafka consumer, overriding the properties set by the spout.
+     */
+    public StreamlineKafkaSpout withConsumerProperty(String name, Object value) {
+        consumerProperties.put(name, value);
+        return this;
+    }
+
+    @Override
+    public void open(Map conf, TopologyContext context, SpoutOutputCollector collector) {
+        this.collector = collector;
+        this.partitionOffsets = new HashMap<>();
+        this.pendingRecords = new ArrayDeque<>();
+        this.lastCommitMs = System.currentTimeMillis();
+        this.consumer = new KafkaConsumer<>(getConsumerConfig(), new ByteArrayDeserializer(), new ByteArrayDeserializer());
+        consumer.subscribe(Collections.singletonList(topic), new RebalanceListener());
+        context.registerMetric(KAFKA_OFFSET_METRIC, new KafkaOffsetMetric(), metricsTimeBucketSizeInSecs);
+        LOG.info("Opened Kafka spout for topic {} with group id {}", topic, groupId);
+    }
+
+    Map<String, Object> getConsumerConfig() {
+        Map<String, Object> config = new HashMap<>();
+        config.put(ConsumerConfig.BOOTSTRAP_SERVERS_CONFIG, bootstrapServers);
+        config.put(ConsumerConfig.GROUP_ID_CONFIG, groupId);
+        config.put(ConsumerConfig.ENABLE_AUTO_COMMIT_CONFIG, false);
+        config.put(ConsumerConfig.AUTO_OFFSET_RESET_CONFIG, "earliest");
+        config.put(ConsumerConfig.MAX_POLL_RECORDS_CONFIG, maxPollRecords);
+        config.putAll(consumerProperties);
+        return config;
+    }
+
+    @Override
+    public void nextTuple() {
+        long now = System.currentTimeMillis();
+        if (now - lastCommitMs >= offsetCommitPeriodMs) {
+            commitAsync();
+            lastCommitMs = now;
+        }
+        if (pendingRecords.isEmpty()) {
+            boolean retry = seekToRetries(now);
+            if (retry || getUncommittedCount() < maxUncommittedOffsets) {
+                poll();
+            }
+        }
+        emitPending();
+    }
+
+    private void poll() {
+        ConsumerRecords<byte[], byte[]> records = consumer.poll(pollTimeoutMs);
+        // the records of the poll are deserialized in one go before being emitted
+        for (TopicPartition partition : records.partitions()) {
+            KafkaPartitionOffsets offsets = partitionOffsets.get(partition);
+            if (offsets == null) {
+                continue;
+            }
+            for (ConsumerRecord<byte[], byte[]> record : records.records(partition)) {
+                if (!offsets.polled(record.offset())) {
+                    continue;
+                }
+                Iterable<List<Object>> tuples = record.value() != null
+                        ? scheme.deserialize(ByteBuffer.wrap(record.value())) : null;
+                if (tuples == null) {
+                    // nothing to emit for the record
+                    offsets.acked(record.offset());
+                } else {
+                    pendingRecords.add(new PendingRecord(new KafkaMessageId(partition, record.offset()), tuples));
+                }
+            }
+        }
+    }
+
+    private void emitPending() {
+        PendingRecord record = pendingRecords.poll();
+        if (record != null) {
+            KafkaPartitionOffsets offsets = partitionOffsets.get(record.messageId.partition);
+            if (offsets != null) {
+                for (List<Object> tuple : record.tuples) {
+                    collector.emit(outputStreamId, tuple, record.messageId);
+                }
+                offsets.emitted(record.messageId.offset);
+            }
+        }
+    }
+
+    // seeks back the partitions with failed records due for a retry, returns true if a partition was seeked
+    private boolean seekToRetries(long now) {
+        boolean seeked = false;
+        for (Map.Entry<TopicPartition, KafkaPartitionOffsets> entry : partitionOffsets.entrySet()) {
+            if (entry.getValue().isRetryDue(now)) {
+                long offset = entry.getValue().retryOffset();
+                LOG.debug("Seeking partition {} to offset {} for retrying failed records", entry.getKey(), offset);
+                consumer.seek(entry.getKey(), offset);
+                seeked = true;
+            }
+        }
+        return seeked;
+    }
+
+    private int getUncommittedCount() {
+        int count = 0;
+        for (KafkaPartitionOffsets offsets : partitionOffsets.values()) {
+            count += offsets.getUncommittedCount();
+        }
+        return count;
+    }
+
+    @Override
+    public void ack(Object msgId) {
+        KafkaMessageId messageId = (KafkaMessageId) msgId;
+        KafkaPartitionOffsets offsets = partitionOffsets.get(messageId.partition);
+        // the partition may have been revoked since the record was emitted
+        if (offsets != null) {
+            offsets.acked(messageId.offset);
+        }
+    }
+
+    @Override
+    public void fail(Object msgId) {
+        KafkaMessageId messageId = (KafkaMessageId) msgId;
+        KafkaPartitionOffsets offsets = partitionOffsets.get(messageId.partition);
+        if (offsets != null) {
+            offsets.failed(messageId.offset, System.currentTimeMillis() + retryDelayMs);
+        }
+    }
+
+    @Override
+    public void deactivate() {
+        commitSync(partitionOffsets.keySet());
+    }
+
+    @Override
+    public void close() {
+        try {
+            commitSync(partitionOffsets.keySet());
+        } finally {
+            consumer.close();
+            if (offsetConsumer != null) {
+                offsetConsumer.close();
+            }
+        }
+    }
+
+    @Override
+    public void declareOutputFields(OutputFieldsDeclarer declarer) {
+        declarer.declareStream(outputStreamId, scheme.getOutputFields());
+    }
+
+    private Map<TopicPartition, OffsetAndMetadata> getOffsetsToCommit(Collection<TopicPartition> partitions) {
+        Map<TopicPartition, OffsetAndMetadata> offsetsToCommit = new HashMap<>();
+        for (TopicPartition partition : partitions) {
+            KafkaPartitionOffsets offsets = partitionOffsets.get(partition);
+            if (offsets != null && offsets.getCommittableOffset() > offsets.getCommittedOffset()) {
+                offsetsToCommit.put(partition, new OffsetAndMetadata(offsets.getCommittableOffset()));
+            }
+        }
+        return offsetsToCommit;
+    }
+
+    private void commitAsync() {
+        Map<TopicPartition, OffsetAndMetadata> offsetsToCommit = getOffsetsToCommit(partitionOffsets.keySet());
+        if (!offsetsToCommit.isEmpty()) {
+            // the callback is called by the consumer in the thread of the spout
+            consumer.commitAsync(offsetsToCommit, new OffsetCommitCallback() {
+                @Override
+                public void onComplete(Map<TopicPartition, OffsetAndMetadata> offsets, Exception exception) {
+                    if (exception != null) {
+                        LOG.warn("Failed to commit offsets {}, the offsets are committed again with the next commit",
+                                offsets, exception);
+                    } else {
+                        committed(offsets);
+                    }
+                }
+            });
+        }
+    }
+
+    private void commitSync(Collection<TopicPartition> partitions) {
+        Map<TopicPartition, OffsetAndMetadata> offsetsToCommit = getOffsetsToCommit(partitions);
+        if (!offsetsToCommit.isEmpty()) {
+            consumer.commitSync(offsetsToCommit);
+            committed(offsetsToCommit);
+        }
+    }
+
+    private void committed(Map<TopicPartition, OffsetAndMetadata> committedOffsets) {
+        for (Map.Entry<TopicPartition, OffsetAndMetadata> entry : committedOffsets.entrySet()) {
+            KafkaPartitionOffsets offsets = partitionOffsets.get(entry.getKey());
+            if (offsets != null) {
+                offsets.committed(entry.getValue().offset());
+            }
+        }
+    }
+
+    private final class RebalanceListener implements ConsumerRebalanceListener {
+        @Override
+        public void onPartitionsRevoked(Collection<TopicPartition> partitions) {
+            LOG.info("Partitions {} revoked", partitions);
+            try {
+                commitSync(partitions);
+            } catch (RuntimeException e) {
+                LOG.warn("Failed to commit offsets of the revoked partitions {}", partitions, e);
+            }
+            for (TopicPartition partition : partitions) {
+                partitionOffsets.remove(partition);
+            }
+            Iterator<PendingRecord> it = pendingRecords.iterator();
+            while (it.hasNext()) {
+                if (partitions.contains(it.next().messageId.partition)) {
+                    it.remove();
+                }
+            }
+        }
+
+        @Override
+        public void onPartitionsAssigned(Collection<TopicPartition> partitions) {
+            LOG.info("Partitions {} assigned", partitions);
+            for (TopicPartition partition : partitions) {
+                // the committed offset of the group or the offset of the reset policy
+                partitionOffsets.put(partition, new KafkaPartitionOffsets(consumer.position(partition)));
+            }
+        }
+    }
+
+    /**
+     * The offsets of the assigned partitions, with the names of the kafkaOffset metric of the storm-kafka spout.
+     */
+    private final class KafkaOffsetMetric implements IMetric {
+        @Override
+        public Object getValueAndReset() {
+            Set<TopicPartition> partitions = partitionOffsets.keySet();
+            if (partitions.isEmpty()) {
+                return null;
+            }
+            Map<TopicPartition, Long> latestOffsets;
+            try {
+                latestOffsets = getLatestOffsets(partitions);
+            } catch (RuntimeException e) {
+                LOG.warn("Failed to get the latest offsets of partitions {}", partitions, e);
+                return null;
+            }
+            Map<String, Object> values = new HashMap<>();
+            long totalSpoutLag = 0;
+            long totalLatestTimeOffset = 0;
+            long totalLatestCompletedOffset = 0;
+            for (Map.Entry<TopicPartition, KafkaPartitionOffsets> entry : partitionOffsets.entrySet()) {
+                long latestTimeOffset = latestOffsets.get(entry.getKey());
+                long latestCompletedOffset = entry.getValue().getCommittableOffset();
+                long spoutLag = Math.max(0, latestTimeOffset - latestCompletedOffset);
+                String prefix = topic + "/partition_" + entry.getKey().partition() + "/";
+                values.put(prefix + "spoutLag", spoutLag);
+                values.put(prefix + "latestTimeOffset", latestTimeOffset);
+                values.put(prefix + "latestCompletedOffset", latestCompletedOffset);
+                totalSpoutLag += spoutLag;
+                totalLatestTimeOffset += latestTimeOffset;
+                totalLatestCompletedOffset += latestCompletedOffset;
+            }
+            values.put(topic + "/totalSpoutLag", totalSpoutLag);
+            values.put(topic + "/totalLatestTimeOffset", totalLatestTimeOffset);
+            values.put(topic + "/totalLatestCompletedOffset", totalLatestCompletedOffset);
+            return values;
+        }
+
+        /*
+         * The 0.10.0 consumer has no call for the end offsets, the partitions are positioned at the end. Seeking
+         * the consumer of the spout to the end and back would discard the records it fetched ahead, so the offset
+         * consumer is assigned the partitions of the spout instead. The metrics are collected in the thread of
+         * the spout, which is the only user of the offset consumer.
+         */
+        private Map<TopicPartition, Long> getLatestOffsets(Set<TopicPartition> partitions) {
+            if (offsetConsumer == null) {
+                Map<String, Object> config = getConsumerConfig();
+                config.remove(ConsumerConfig.GROUP_ID_CONFIG);
+                offsetConsumer = new KafkaConsumer<>(config, new ByteArrayDeserializer(), new ByteArrayDeserializer());
+            }
+            offsetConsumer.assign(new ArrayList<>(partitions));
+            offsetConsumer.seekToEnd(partitions);
+            Map<TopicPartition, Long> latestOffsets = new HashMap<>();
+            for (TopicPartition partition : partitions) {
+                latestOffsets.put(partition, offsetConsumer.position(partition));
+            }
+            return latestOffsets;
+        }
+    }
+
+    private static final class PendingRecord {
+        private final KafkaMessageId messageId;
+        private final Iterable<List<Object>> tuples;
+
+        PendingRecord(KafkaMessageId messageId, Iterable<List<Object>> tuples) {
+            this.messageId = messageId;
+            this.tuples = tuples;
+        }
+    }
+
+    static final class KafkaMessageId {
+        private final TopicPartition partition;
+        private final long offset;
+
+        KafkaMessageId(TopicPartition partition, long offset) {
+            this.partition = partition;
+            this.offset = offset;
+        }
+
+        @Override
+        public String toString() {
+            return partition + "@" + offset;
+        }
+    }
+}
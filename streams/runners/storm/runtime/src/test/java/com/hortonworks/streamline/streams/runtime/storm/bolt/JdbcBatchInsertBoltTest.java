@@ -0,0 +1,193 @@
+/**
+  * Copyright 2017 Hortonworks.
+  *
+  * Licensed under the Apache License, Version 2.0 (the "License");
+  * you may not use this file except in compliance with the License.
+  * You may obtain a copy of the License at
+
+  *   http://www.apache.org/licenses/LICENSE-2.0
+
+  * Unless required by applicable law or agreed to in writing, software
+  * distributed under the License is distributed on an "AS IS" BASIS,
+  * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  * See the License for the specific language governing permissions and
+  * limitations under the License.
+ **/
+
+package com.hortonworks.streamline.streams.runtime.storm.bolt;
+
+import com.hortonworks.streamline.streams.StreamlineEvent;
+import com.hortonworks.streamline.streams.common.StreamlineEventImpl;
+import mockit.Expectations;
+import mockit.Injectable;
+import mockit.Verifications;
+import mockit.integration.junit4.JMockit;
+import org.apache.storm.Constants;
+import org.apache.storm.jdbc.common.ConnectionProvider;
+import org.apache.storm.task.OutputCollector;
+import org.apache.storm.tuple.Tuple;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+
+@RunWith(JMockit.class)
+public class JdbcBatchInsertBoltTest {
+    private static final String JDBC_URL = "jdbc:h2:mem:jdbcbatch;DB_CLOSE_DELAY=-1";
+    private static final String TABLE_NAME = "EVENTS";
+
+    @Injectable
+    private OutputCollector collector;
+    @Injectable
+    private Tuple tuple1;
+    @Injectable
+    private Tuple tuple2;
+    @Injectable
+    private Tuple tuple3;
+    @Injectable
+    private Tuple tickTuple;
+
+    private JdbcBatchInsertBolt bolt;
+
+    @Before
+    public void setUp() throws Exception {
+        execute("CREATE TABLE " + TABLE_NAME + " (ID INT, NAME VARCHAR(32))");
+        ConnectionProvider connectionProvider = new H2ConnectionProvider();
+        bolt = new JdbcBatchInsertBolt(connectionProvider,
+                new StreamlineJdbcMapper(TABLE_NAME, connectionProvider, Arrays.asList("id", "name")), TABLE_NAME)
+                .withBatchSize(2);
+        bolt.prepare(new HashMap(), null, collector);
+        new Expectations() {{
+            tuple1.getValueByField(StreamlineEvent.STREAMLINE_EVENT); result = event(1, "a"); minTimes = 0;
+            tuple2.getValueByField(StreamlineEvent.STREAMLINE_EVENT); result = event(2, "b"); minTimes = 0;
+            tuple3.getValueByField(StreamlineEvent.STREAMLINE_EVENT); result = event(3, null); minTimes = 0;
+            tickTuple.getSourceComponent(); result = Constants.SYSTEM_COMPONENT_ID; minTimes = 0;
+            tickTuple.getSourceStreamId(); result = Constants.SYSTEM_TICK_STREAM_ID; minTimes = 0;
+        }};
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        bolt.cleanup();
+        execute("DROP TABLE " + TABLE_NAME);
+    }
+
+    @Test
+    public void testFlushOnBatchSize() throws Exception {
+        bolt.execute(tuple1);
+        assertEquals(0, count());
+        new Verifications() {{
+            collector.ack(tuple1); times = 0;
+        }};
+
+        bolt.execute(tuple2);
+        assertEquals(Arrays.asList("1:a", "2:b"), rows());
+        new Verifications() {{
+            collector.ack(tuple1); times = 1;
+            collector.ack(tuple2); times = 1;
+        }};
+    }
+
+    @Test
+    public void testFlushOnTick() throws Exception {
+        bolt.execute(tuple1);
+        bolt.execute(tuple2);
+        bolt.execute(tuple3);
+        assertEquals(2, count());
+
+        bolt.execute(tickTuple);
+        // the field missing from the event is inserted as null
+        assertEquals(Arrays.asList("1:a", "2:b", "3:null"), rows());
+        new Verifications() {{
+            collector.ack(tuple3); times = 1;
+            collector.ack(tickTuple); times = 0;
+        }};
+    }
+
+    @Test
+    public void testBatchIsFailedIfNotCommitted() throws Exception {
+        bolt.execute(tuple1);
+        execute("DROP TABLE " + TABLE_NAME);
+        bolt.execute(tuple2);
+        new Verifications() {{
+            collector.fail(tuple1); times = 1;
+            collector.fail(tuple2); times = 1;
+            collector.ack((Tuple) any); times = 0;
+        }};
+
+        // the connection is opened again once the table is back
+        execute("CREATE TABLE " + TABLE_NAME + " (ID INT, NAME VARCHAR(32))");
+        bolt.execute(tuple1);
+        bolt.execute(tuple2);
+        assertEquals(2, count());
+    }
+
+    private static StreamlineEvent event(int id, String name) {
+        Map<String, Object> fields = new HashMap<>();
+        fields.put("id", id);
+        if (name != null) {
+            fields.put("name", name);
+        }
+        return new StreamlineEventImpl(fields, "1");
+    }
+
+    private static void execute(String sql) throws SQLException {
+        try (Connection connection = DriverManager.getConnection(JDBC_URL);
+             Statement statement = connection.createStatement()) {
+            statement.execute(sql);
+        }
+    }
+
+    private static int count() throws SQLException {
+        try (Connection connection = DriverManager.getConnection(JDBC_URL);
+             Statement statement = connection.createStatement();
+             ResultSet resultSet = statement.executeQuery("SELECT COUNT(*) FROM " + TABLE_NAME)) {
+            resultSet.next();
+            return resultSet.getInt(1);
+        }
+    }
+
+    private static List<String> rows() throws SQLException {
+        try (Connection connection = DriverManager.getConnection(JDBC_URL);
+             Statement statement = connection.createStatement();
+             ResultSet resultSet = statement.executeQuery("SELECT ID, NAME FROM " + TABLE_NAME + " ORDER BY ID")) {
+            List<String> rows = new ArrayList<>();
+            while (resultSet.next()) {
+                rows.add(resultSet.getInt(1) + ":" + resultSet.getString(2));
+            }
+            return rows;
+        }
+    }
+
+    private static class H2ConnectionProvider implements ConnectionProvider {
+        @Override
+        public void prepare() {
+        }
+
+        @Override
+        public Connection getConnection() {
+            try {
+                return DriverManager.getConnection(JDBC_URL);
+            } catch (SQLException e) {
+                throw new RuntimeException(e);
+            }
+        }
+
+        @Override
+        public void cleanup() {
+        }
+    }
+}
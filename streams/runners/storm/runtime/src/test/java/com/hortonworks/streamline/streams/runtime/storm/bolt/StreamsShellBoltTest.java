@@ -16,6 +16,7 @@
 package com.hortonworks.streamline.streams.runtime.storm.bolt;
 
 import com.google.common.collect.ImmutableMap;
+import mockit.Delegate;
 import mockit.Expectations;
 import mockit.Mocked;
 import mockit.Verifications;
@@ -42,6 +43,8 @@ import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Unit test for {@link StreamsShellBoltTest}
@@ -64,8 +67,20 @@ public class StreamsShellBoltTest {
         StreamsShellBolt streamsShellBolt = new StreamsShellBolt(command, 60000);
         streamsShellBolt = streamsShellBolt.withOutputStreams(Arrays.asList("stream1"));
 
+        final CountDownLatch acked = new CountDownLatch(1);
+        new Expectations() {{
+            mockCollector.ack((Tuple) any);
+            result = new Delegate() {
+                void ack(Tuple tuple) {
+                    acked.countDown();
+                }
+            };
+        }};
+
         streamsShellBolt.prepare(new HashMap(), mockContext, mockCollector);
         streamsShellBolt.execute(getNextTuple(1));
+        // the results are emitted when the subprocess completes them, without another tuple
+        Assert.assertTrue(acked.await(30, TimeUnit.SECONDS));
         new Verifications() {
             {
                 String streamId;
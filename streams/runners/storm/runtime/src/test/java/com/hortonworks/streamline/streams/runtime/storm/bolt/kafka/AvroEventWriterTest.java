@@ -0,0 +1,130 @@
+/**
+  * Copyright 2017 Hortonworks.
+  *
+  * Licensed under the Apache License, Version 2.0 (the "License");
+  * you may not use this file except in compliance with the License.
+  * You may obtain a copy of the License at
+
+  *   http://www.apache.org/licenses/LICENSE-2.0
+
+  * Unless required by applicable law or agreed to in writing, software
+  * distributed under the License is distributed on an "AS IS" BASIS,
+  * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  * See the License for the specific language governing permissions and
+  * limitations under the License.
+ **/
+
+package com.hortonworks.streamline.streams.runtime.storm.bolt.kafka;
+
+import com.hortonworks.registries.schemaregistry.SchemaIdVersion;
+import com.hortonworks.streamline.streams.common.IndexedStreamlineEvent;
+import com.hortonworks.streamline.streams.common.StreamlineEventImpl;
+import org.apache.avro.generic.GenericDatumWriter;
+import org.apache.avro.generic.GenericRecord;
+import org.apache.avro.io.BinaryEncoder;
+import org.apache.avro.io.EncoderFactory;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class AvroEventWriterTest {
+
+    @Test
+    public void testWritesInferredSchemaEncoding() throws Exception {
+        Map<String, Object> event = new StreamlineEventImpl(sample(1), "ds");
+        AvroEventWriter writer = AvroEventWriter.compile(event);
+        assertTrue(writer.matches(event));
+        assertArrayEquals(genericEncoding(event), writerEncoding(writer, event));
+
+        Map<String, Object> other = new StreamlineEventImpl(sample(2), "ds");
+        assertTrue(writer.matches(other));
+        assertArrayEquals(genericEncoding(other), writerEncoding(writer, other));
+    }
+
+    @Test
+    public void testIndexedEvents() throws Exception {
+        IndexedStreamlineEvent event = new IndexedStreamlineEvent(sample(1), "ds");
+        AvroEventWriter writer = AvroEventWriter.compile(event);
+        IndexedStreamlineEvent other = new IndexedStreamlineEvent(event.getLayout(), sample(2), "ds", "id",
+                Collections.<String, Object>emptyMap(), null, null);
+        assertTrue(writer.matches(other));
+        assertArrayEquals(genericEncoding(other), writerEncoding(writer, other));
+    }
+
+    @Test
+    public void testShapeChanges() throws Exception {
+        AvroEventWriter writer = AvroEventWriter.compile(new StreamlineEventImpl(sample(1), "ds"));
+
+        Map<String, Object> otherType = sample(1);
+        otherType.put("count", 1L);
+        assertFalse(writer.matches(new StreamlineEventImpl(otherType, "ds")));
+
+        Map<String, Object> otherField = sample(1);
+        otherField.put("extra", "x");
+        assertFalse(writer.matches(new StreamlineEventImpl(otherField, "ds")));
+
+        Map<String, Object> otherNested = sample(1);
+        otherNested.put("address", Collections.singletonMap("city", 1));
+        assertFalse(writer.matches(new StreamlineEventImpl(otherNested, "ds")));
+    }
+
+    @Test
+    public void testRegistryHeaderAndWriterEncoding() throws Exception {
+        StreamlineEventSerializer.RegistrySerializer serializer = new StreamlineEventSerializer.RegistrySerializer();
+        SchemaIdVersion schemaIdVersion = new SchemaIdVersion(3L, 2);
+        byte[] header = serializer.serializeHeader(schemaIdVersion);
+        for (int i = 1; i <= 2; i++) {
+            Map<String, Object> event = new StreamlineEventImpl(sample(i), "ds");
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            out.write(header);
+            out.write(writerEncoding(AvroEventWriter.compile(event), event));
+            byte[] expected = serializer.doSerialize(StreamlineEventSerializer.getAvroGenericRecord(event, "topic"),
+                    schemaIdVersion);
+            assertArrayEquals(expected, out.toByteArray());
+        }
+    }
+
+    private Map<String, Object> sample(int i) {
+        Map<String, Object> address = new LinkedHashMap<>();
+        address.put("city", "city-" + i);
+        address.put("zip", i);
+        Map<String, Object> values = new HashMap<>();
+        values.put("name", "name-" + i);
+        values.put("count", i);
+        values.put("timestamp", 1000L * i);
+        values.put("ratio", 0.5 * i);
+        values.put("weight", 1.5f * i);
+        values.put("valid", i % 2 == 0);
+        values.put("payload", ByteBuffer.wrap(new byte[]{(byte) i, 2, 3}));
+        values.put("tags", Arrays.asList("a" + i, "b", "c"));
+        values.put("address", address);
+        return values;
+    }
+
+    private byte[] genericEncoding(Map<String, Object> event) throws Exception {
+        GenericRecord record = StreamlineEventSerializer.getAvroGenericRecord(event, "topic");
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        BinaryEncoder encoder = EncoderFactory.get().binaryEncoder(out, null);
+        new GenericDatumWriter<GenericRecord>(record.getSchema()).write(record, encoder);
+        encoder.flush();
+        return out.toByteArray();
+    }
+
+    private byte[] writerEncoding(AvroEventWriter writer, Map<String, Object> event) throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        BinaryEncoder encoder = EncoderFactory.get().binaryEncoder(out, null);
+        writer.write(event, encoder);
+        encoder.flush();
+        return out.toByteArray();
+    }
+}
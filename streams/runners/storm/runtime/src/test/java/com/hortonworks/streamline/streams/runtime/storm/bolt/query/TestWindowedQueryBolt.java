@@ -223,7 +223,8 @@ public class TestWindowedQueryBolt {
         bolt.prepare(null, null, collector);
         bolt.execute(window);
         printResults(collector);
-        Assert.assertEquals(stores.length+1, collector.actualResults.size() ); // stores.length+1 as 2 users in Bengaluru
+        // the users without a store have no city name to join on, they are kept without a country
+        Assert.assertEquals(users.length, collector.actualResults.size() );
     }
 
 
@@ -248,6 +249,120 @@ public class TestWindowedQueryBolt {
         Assert.assertEquals(stores.length+1, collector.actualResults.size() ); // stores.length+1 as 2 users in Bengaluru
     }
 
+    @Test
+    public void testRightJoin() throws Exception {
+        ArrayList<Tuple> userStream = makeStream("users", userFields, users);
+        ArrayList<Tuple> cityStream = makeStream("cities", cityFields, cities);
+        TupleWindow window = makeTupleWindow(cityStream, userStream);
+
+        WindowedQueryBolt bolt = new WindowedQueryBolt(WindowedQueryBolt.StreamSelector.STREAM, "cities", "cityName")
+                .rightJoin("users", "city", "cities")
+                .select("name,city,country");
+
+        MockCollector collector = new MockCollector();
+        bolt.prepare(null, null, collector);
+        bolt.execute(window);
+        printResults(collector);
+        Assert.assertEquals(users.length, collector.actualResults.size() ); // seattle has no matching city
+    }
+
+    @Test
+    public void testOuterJoin() throws Exception {
+        ArrayList<Tuple> userStream = makeStream("users", userFields, users);
+        ArrayList<Tuple> cityStream = makeStream("cities", cityFields, cities);
+        TupleWindow window = makeTupleWindow(cityStream, userStream);
+
+        WindowedQueryBolt bolt = new WindowedQueryBolt(WindowedQueryBolt.StreamSelector.STREAM, "cities", "cityName")
+                .outerJoin("users", "city", "cities")
+                .select("name,cityName,country");
+
+        MockCollector collector = new MockCollector();
+        bolt.prepare(null, null, collector);
+        bolt.execute(window);
+        printResults(collector);
+        Assert.assertEquals(users.length+1, collector.actualResults.size() ); // chennai has no users
+    }
+
+    @Test
+    public void testJoinOnMissingSideOfOuterJoin() throws Exception {
+        ArrayList<Tuple> userStream = makeStream("users", userFields, users);
+        ArrayList<Tuple> cityStream = makeStream("cities", cityFields, cities);
+        ArrayList<Tuple> storesStream = makeStream("stores", storeFields, stores);
+        TupleWindow window = makeTupleWindow(cityStream, userStream, storesStream);
+
+        // the record of the user in seattle has no city to join the stores on
+        WindowedQueryBolt bolt = new WindowedQueryBolt(WindowedQueryBolt.StreamSelector.STREAM, "cities", "cityName")
+                .outerJoin("users", "city", "cities")
+                .leftJoin("stores", "city", "cities")
+                .select("name,cityName,storeName");
+
+        MockCollector collector = new MockCollector();
+        bolt.prepare(null, null, collector);
+        bolt.execute(window);
+        printResults(collector);
+        Assert.assertEquals(users.length+1, collector.actualResults.size() );
+        Assert.assertTrue(collector.actualResults.contains(Arrays.<Object>asList("priyank", null, null)));
+    }
+
+    @Test
+    public void testIncrementalJoin() throws Exception {
+        ArrayList<Tuple> userStream = makeStream("users", userFields, users);
+        ArrayList<Tuple> orderStream = makeStream("orders", orderFields, orders);
+
+        WindowedQueryBolt bolt = new WindowedQueryBolt(WindowedQueryBolt.StreamSelector.STREAM, "users", userFields[0])
+                .join("orders", "userId", "users")
+                .select("userId,name,orderId")
+                .withIncrementalJoin();
+        MockCollector collector = new MockCollector();
+        bolt.prepare(null, null, collector);
+
+        // 1st window: all users and the first 4 orders
+        ArrayList<Tuple> newTuples = new ArrayList<>(userStream);
+        newTuples.addAll(orderStream.subList(0, 4));
+        bolt.execute(new TupleWindowImpl(newTuples, newTuples, new ArrayList<Tuple>()));
+        Assert.assertEquals(4, collector.actualResults.size());
+
+        // 2nd window: the first 2 orders expire, only the remaining orders are joined
+        collector.actualResults.clear();
+        bolt.execute(new TupleWindowImpl(null, new ArrayList<>(orderStream.subList(4, orders.length)),
+                new ArrayList<>(orderStream.subList(0, 2))));
+        printResults(collector);
+        Assert.assertEquals(orders.length - 4, collector.actualResults.size());
+
+        // 3rd window: order 13 expires as a copy of the inserted tuple, a new user 3 only joins the new order
+        collector.actualResults.clear();
+        ArrayList<Tuple> expired = makeStream("orders", orderFields, new Object[][]{orders[2]});
+        ArrayList<Tuple> newUserAndOrder = makeStream("orders", orderFields, new Object[][]{{20, 3, 30, 1}});
+        newUserAndOrder.addAll(makeStream("users", userFields, new Object[][]{{3, "siva", "cork"}}));
+        bolt.execute(new TupleWindowImpl(null, newUserAndOrder, expired));
+        printResults(collector);
+        Assert.assertEquals(2, collector.actualResults.size());
+        Assert.assertEquals(Arrays.<Object>asList(3, "siva", 20), collector.actualResults.get(0));
+        Assert.assertEquals(Arrays.<Object>asList(3, "siva", 20), collector.actualResults.get(1));
+    }
+
+    @Test
+    public void testIncrementalOuterJoin() throws Exception {
+        ArrayList<Tuple> userStream = makeStream("users", userFields, users);
+        ArrayList<Tuple> cityStream = makeStream("cities", cityFields, cities);
+
+        WindowedQueryBolt bolt = new WindowedQueryBolt(WindowedQueryBolt.StreamSelector.STREAM, "cities", "cityName")
+                .outerJoin("users", "city", "cities")
+                .select("name,cityName,country")
+                .withIncrementalJoin();
+        MockCollector collector = new MockCollector();
+        bolt.prepare(null, null, collector);
+
+        bolt.execute(new TupleWindowImpl(null, cityStream, null));
+        Assert.assertEquals(cities.length, collector.actualResults.size());
+
+        // only the records of the new users are emitted
+        collector.actualResults.clear();
+        bolt.execute(new TupleWindowImpl(null, userStream, null));
+        printResults(collector);
+        Assert.assertEquals(users.length, collector.actualResults.size());
+    }
+
     private static void printResults(MockCollector collector) {
         int counter=0;
         for (List<Object> rec : collector.actualResults) {
@@ -31,6 +31,7 @@ import org.apache.storm.tuple.Tuple;
 import org.apache.storm.tuple.TupleImpl;
 import org.apache.storm.tuple.Values;
 import com.hortonworks.streamline.streams.runtime.processor.RuleProcessorRuntime;
+import org.junit.Assert;
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
@@ -156,8 +157,28 @@ public class RulesBoltConditionTest {
         };
     }
 
+    @Test
+    public void testRuleNotCompiledFallsBackToSql() throws Exception {
+        // the parenthesized literal is not supported by the compiler
+        doTest(readFile("/simple-rule-not-compiled.json"), getTuple(20), RuleProcessorRuntime.ScriptType.COMPILED);
+        doTest(readFile("/simple-rule-not-compiled.json"), getTuple(5), RuleProcessorRuntime.ScriptType.COMPILED);
+        new Verifications() {
+            {
+                List<Object> values;
+                mockCollector.emit("outputstream", (Tuple) any, values = withCapture());
+                times = 1;
+                StreamlineEvent event = (StreamlineEvent) values.get(0);
+                Assert.assertEquals(20, event.get("foo"));
+            }
+        };
+    }
+
     private void doTest(String rulesJson, Tuple tuple) throws Exception {
-        RulesBolt rulesBolt = new RulesBolt(rulesJson, RuleProcessorRuntime.ScriptType.SQL) {
+        doTest(rulesJson, tuple, RuleProcessorRuntime.ScriptType.SQL);
+    }
+
+    private void doTest(String rulesJson, Tuple tuple, RuleProcessorRuntime.ScriptType scriptType) throws Exception {
+        RulesBolt rulesBolt = new RulesBolt(rulesJson, scriptType) {
             @Override
             public void execute(Tuple input) {
                 super.execute(input);
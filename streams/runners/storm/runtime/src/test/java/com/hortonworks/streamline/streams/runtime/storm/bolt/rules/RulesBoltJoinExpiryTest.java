@@ -0,0 +1,118 @@
+/**
+  * Copyright 2017 Hortonworks.
+  *
+  * Licensed under the Apache License, Version 2.0 (the "License");
+  * you may not use this file except in compliance with the License.
+  * You may obtain a copy of the License at
+
+  *   http://www.apache.org/licenses/LICENSE-2.0
+
+  * Unless required by applicable law or agreed to in writing, software
+  * distributed under the License is distributed on an "AS IS" BASIS,
+  * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  * See the License for the specific language governing permissions and
+  * limitations under the License.
+ **/
+
+package com.hortonworks.streamline.streams.runtime.storm.bolt.rules;
+
+import com.hortonworks.streamline.common.Schema;
+import com.hortonworks.streamline.streams.StreamlineEvent;
+import com.hortonworks.streamline.streams.common.StreamlineEventImpl;
+import com.hortonworks.streamline.streams.layout.component.Stream;
+import com.hortonworks.streamline.streams.layout.component.impl.splitjoin.JoinAction;
+import com.hortonworks.streamline.streams.layout.component.impl.splitjoin.JoinProcessor;
+import com.hortonworks.streamline.streams.runtime.processor.RuleProcessorRuntime;
+import com.hortonworks.streamline.streams.runtime.splitjoin.SplitActionRuntime;
+import mockit.Expectations;
+import mockit.Injectable;
+import mockit.Verifications;
+import mockit.integration.junit4.JMockit;
+import org.apache.storm.Config;
+import org.apache.storm.Constants;
+import org.apache.storm.task.OutputCollector;
+import org.apache.storm.task.TopologyContext;
+import org.apache.storm.tuple.Tuple;
+import org.apache.storm.tuple.Values;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+@RunWith(JMockit.class)
+public class RulesBoltJoinExpiryTest {
+    private static final String EXPIRED_STREAM = "expired-stream";
+
+    @Injectable
+    private OutputCollector collector;
+    @Injectable
+    private TopologyContext context;
+    @Injectable
+    private Tuple tuple;
+    @Injectable
+    private Tuple tickTuple;
+
+    private RulesBolt rulesBolt;
+
+    @Before
+    public void setUp() throws Exception {
+        JoinAction joinAction = new JoinAction(null, null, 50L, 2000L, EXPIRED_STREAM);
+        joinAction.setOutputStreams(Collections.singleton("output-stream"));
+        JoinProcessor joinProcessor = new JoinProcessor();
+        Schema schema = Schema.of(Schema.Field.of("p1", Schema.Type.INTEGER));
+        joinProcessor.addOutputStreams(new HashSet<>(Arrays.asList(new Stream("output-stream", schema),
+                new Stream(EXPIRED_STREAM, schema))));
+        joinProcessor.setJoinAction(joinAction);
+        joinProcessor.setId(UUID.randomUUID().toString());
+        rulesBolt = new RulesBolt(joinProcessor, RuleProcessorRuntime.ScriptType.COMPILED);
+        rulesBolt.prepare(null, context, collector);
+        new Expectations() {{
+            tuple.getValueByField(StreamlineEvent.STREAMLINE_EVENT); result = createSplitEvent("g1"); minTimes = 0;
+            tuple.getSourceStreamId(); result = "default"; minTimes = 0;
+            tickTuple.getSourceComponent(); result = Constants.SYSTEM_COMPONENT_ID; minTimes = 0;
+            tickTuple.getSourceStreamId(); result = Constants.SYSTEM_TICK_STREAM_ID; minTimes = 0;
+        }};
+    }
+
+    @Test
+    public void testTickFrequency() throws Exception {
+        Assert.assertEquals(1, rulesBolt.getComponentConfiguration().get(Config.TOPOLOGY_TICK_TUPLE_FREQ_SECS));
+    }
+
+    @Test
+    public void testGroupsExpireWithoutFurtherInput() throws Exception {
+        rulesBolt.execute(tuple);
+        rulesBolt.execute(tickTuple);
+        new Verifications() {{
+            collector.ack(tuple); times = 1;
+            collector.emit(anyString, (List<Object>) any); times = 0;
+        }};
+
+        Thread.sleep(100);
+        rulesBolt.execute(tickTuple);
+        new Verifications() {{
+            List<Object> values;
+            collector.emit(EXPIRED_STREAM, values = withCapture()); times = 1;
+            StreamlineEvent expired = (StreamlineEvent) values.get(0);
+            Assert.assertEquals("g1", expired.getHeader().get(SplitActionRuntime.SPLIT_GROUP_ID));
+            collector.ack(tickTuple); times = 0;
+        }};
+    }
+
+    private static StreamlineEvent createSplitEvent(String groupId) {
+        Map<String, Object> header = new HashMap<>();
+        header.put(SplitActionRuntime.SPLIT_GROUP_ID, groupId);
+        header.put(SplitActionRuntime.SPLIT_PARTITION_ID, 1);
+        header.put(SplitActionRuntime.SPLIT_TOTAL_PARTITIONS_ID, 2);
+        return new StreamlineEventImpl(Collections.<String, Object>singletonMap("p1", 1), "ds-1",
+                UUID.randomUUID().toString(), header, "default");
+    }
+}
@@ -29,6 +29,7 @@ import mockit.Tested;
 import mockit.VerificationsInOrder;
 import mockit.integration.junit4.JMockit;
 import org.apache.storm.task.OutputCollector;
+import org.apache.storm.task.TopologyContext;
 import org.apache.storm.tuple.Tuple;
 import org.apache.storm.tuple.Values;
 import org.junit.Assert;
@@ -84,6 +85,7 @@ public abstract class RulesBoltTest extends RulesTopologyTest {
 
     protected  @Tested RulesBolt rulesBolt;
     protected  @Injectable OutputCollector mockOutputCollector;
+    protected  @Injectable TopologyContext mockContext;
     protected  @Injectable Tuple mockTuple;
     protected RulesProcessor rulesProcessor;
 
@@ -95,7 +97,7 @@ public abstract class RulesBoltTest extends RulesTopologyTest {
 
     private void createAndPrepareRulesBolt(RulesProcessor rulesProcessor, RuleProcessorRuntime.ScriptType scriptType) {
         rulesBolt = (RulesBolt)createRulesBolt(rulesProcessor, scriptType);
-        rulesBolt.prepare(null, null, mockOutputCollector);
+        rulesBolt.prepare(null, mockContext, mockOutputCollector);
     }
 
     //@Test
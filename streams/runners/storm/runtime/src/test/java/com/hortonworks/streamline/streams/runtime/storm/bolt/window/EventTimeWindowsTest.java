@@ -0,0 +1,137 @@
+/**
+  * Copyright 2017 Hortonworks.
+  *
+  * Licensed under the Apache License, Version 2.0 (the "License");
+  * you may not use this file except in compliance with the License.
+  * You may obtain a copy of the License at
+
+  *   http://www.apache.org/licenses/LICENSE-2.0
+
+  * Unless required by applicable law or agreed to in writing, software
+  * distributed under the License is distributed on an "AS IS" BASIS,
+  * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  * See the License for the specific language governing permissions and
+  * limitations under the License.
+ **/
+package com.hortonworks.streamline.streams.runtime.storm.bolt.window;
+
+import com.hortonworks.streamline.streams.layout.component.rule.expression.Window;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+
+public class EventTimeWindowsTest {
+    private final List<String> activations = new ArrayList<>();
+    private final List<String> late = new ArrayList<>();
+    private final List<String> dropped = new ArrayList<>();
+    private final List<String> purged = new ArrayList<>();
+
+    private EventTimeWindows<String> windows;
+
+    @Before
+    public void setUp() throws Exception {
+        // windows of 10 ms sliding every 5 ms, late events accepted for 10 ms
+        windows = new EventTimeWindows<>(10, 5, 0, 10, Window.WatermarkStrategy.MIN_OF_INPUTS, 1,
+                new EventTimeWindows.Listener<String>() {
+                    @Override
+                    public void onActivation(long windowStart, long windowEnd, List<String> events,
+                                             List<String> newEvents, List<String> expiredEvents, boolean refire) {
+                        activations.add((refire ? "refire " : "") + windowEnd + " " + events + " " + newEvents
+                                + " " + expiredEvents);
+                    }
+
+                    @Override
+                    public void onLate(String event, boolean isDropped) {
+                        (isDropped ? dropped : late).add(event);
+                    }
+
+                    @Override
+                    public void onPurge(String event) {
+                        purged.add(event);
+                    }
+                });
+    }
+
+    @Test
+    public void testActivation() throws Exception {
+        windows.add("s", 1, "a");
+        windows.add("s", 3, "b");
+        assertEquals(3, windows.getWatermark());
+        assertEquals(0, activations.size());
+
+        windows.add("s", 6, "c");
+        windows.add("s", 12, "d");
+        assertEquals(Arrays.asList("5 [a, b] [a, b] []", "10 [a, b, c] [c] []"), activations);
+
+        // empty windows are skipped
+        activations.clear();
+        windows.add("s", 30, "g");
+        assertEquals(Arrays.asList("15 [c, d] [d] [a, b]", "20 [d] [] [c]"), activations);
+        assertEquals(Arrays.asList("a", "b", "c"), purged);
+    }
+
+    @Test
+    public void testLateEvents() throws Exception {
+        windows.add("s", 1, "a");
+        windows.add("s", 3, "b");
+        windows.add("s", 6, "c");
+        windows.add("s", 12, "d");
+        activations.clear();
+
+        // late but within the allowed lateness, both windows of the event are activated again
+        windows.add("s", 4, "e");
+        assertEquals(Arrays.asList("e"), late);
+        assertEquals(0, activations.size());
+        windows.flush();
+        assertEquals(Arrays.asList("refire 5 [a, b, e] [e] [c]", "refire 10 [a, b, e, c] [c] []"), activations);
+
+        activations.clear();
+        windows.add("s", 30, "g");
+        assertEquals(Arrays.asList("15 [c, d] [d] [a, b, e]", "20 [d] [] [c]"), activations);
+
+        // past the allowed lateness
+        windows.add("s", 0, "f");
+        assertEquals(Arrays.asList("f"), dropped);
+    }
+
+    @Test
+    public void testWatermarkStrategy() throws Exception {
+        EventTimeWindows.Listener<String> listener = new EventTimeWindows.Listener<String>() {
+            @Override
+            public void onActivation(long windowStart, long windowEnd, List<String> events, List<String> newEvents,
+                                     List<String> expiredEvents, boolean refire) {
+                activations.add(windowEnd + " " + events);
+            }
+
+            @Override
+            public void onLate(String event, boolean isDropped) {
+            }
+
+            @Override
+            public void onPurge(String event) {
+            }
+        };
+        EventTimeWindows<String> minWindows = new EventTimeWindows<>(10, 10, 2, 0,
+                Window.WatermarkStrategy.MIN_OF_INPUTS, 2, listener);
+        minWindows.add("s1", 15, "a");
+        assertEquals(Long.MIN_VALUE, minWindows.getWatermark());
+        minWindows.add("s2", 5, "b");
+        assertEquals(3, minWindows.getWatermark());
+        minWindows.add("s2", 13, "c");
+        assertEquals(11, minWindows.getWatermark());
+        assertEquals(Arrays.asList("10 [b]"), activations);
+
+        activations.clear();
+        EventTimeWindows<String> maxWindows = new EventTimeWindows<>(10, 10, 2, 0,
+                Window.WatermarkStrategy.MAX_OF_INPUTS, 2, listener);
+        maxWindows.add("s1", 15, "a");
+        assertEquals(13, maxWindows.getWatermark());
+        maxWindows.add("s2", 5, "b");
+        assertEquals(0, activations.size());
+    }
+}
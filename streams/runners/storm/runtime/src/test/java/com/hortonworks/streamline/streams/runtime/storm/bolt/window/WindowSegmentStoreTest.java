@@ -0,0 +1,163 @@
+/**
+  * Copyright 2017 Hortonworks.
+  *
+  * Licensed under the Apache License, Version 2.0 (the "License");
+  * you may not use this file except in compliance with the License.
+  * You may obtain a copy of the License at
+
+  *   http://www.apache.org/licenses/LICENSE-2.0
+
+  * Unless required by applicable law or agreed to in writing, software
+  * distributed under the License is distributed on an "AS IS" BASIS,
+  * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  * See the License for the specific language governing permissions and
+  * limitations under the License.
+ **/
+package com.hortonworks.streamline.streams.runtime.storm.bolt.window;
+
+import com.hortonworks.streamline.streams.StreamlineEvent;
+import com.hortonworks.streamline.streams.common.StreamlineEventImpl;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+public class WindowSegmentStoreTest {
+    private File directory;
+    private WindowSegmentStore store;
+
+    @Before
+    public void setUp() throws Exception {
+        directory = Files.createTempDirectory("window-store").toFile();
+        // room for three 8 byte records per segment
+        store = new WindowSegmentStore(directory, 3 * (12 + 8));
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        store.close();
+        directory.delete();
+    }
+
+    @Test
+    public void testAppendIterateAndExpire() throws Exception {
+        for (int i = 0; i < 10; i++) {
+            assertEquals(i, store.append(100 + i, record(i)));
+        }
+        assertEquals(4, segmentFiles());
+        assertEquals(Arrays.asList(2L, 3L, 4L, 5L), read(2, 6));
+
+        assertEquals(5, store.findSequence(105));
+        store.expire(5);
+        assertEquals(5, store.getHeadSequence());
+        assertEquals(5, store.size());
+        // the segment of records 3 to 5 is still needed
+        assertEquals(3, segmentFiles());
+        assertEquals(Arrays.asList(5L, 6L, 7L, 8L, 9L), read(5, 10));
+
+        // a record larger than the segment size
+        byte[] large = new byte[100];
+        assertEquals(10, store.append(110, large));
+        assertArrayEquals(large, store.iterator(10, 11).next().getData());
+        assertEquals(11, store.findSequence(111));
+
+        store.expire(11);
+        assertEquals(0, store.size());
+        assertEquals(0, segmentFiles());
+        assertFalse(store.iterator(11, 11).hasNext());
+    }
+
+    @Test
+    public void testGet() throws Exception {
+        for (int i = 0; i < 10; i++) {
+            store.append(100 + i, record(i));
+        }
+        store.expire(4);
+        for (long sequence = 4; sequence < 10; sequence++) {
+            WindowSegmentStore.Record record = store.get(sequence);
+            assertEquals(sequence, record.getSequence());
+            assertEquals(100 + sequence, record.getTimestamp());
+            assertEquals(sequence, ByteBuffer.wrap(record.getData()).getLong());
+        }
+        assertEquals(4, store.findSequence(0));
+        assertEquals(7, store.findSequence(107));
+        assertEquals(10, store.findSequence(200));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testGetExpired() throws Exception {
+        store.append(100, record(0));
+        store.append(101, record(1));
+        store.expire(1);
+        store.get(0);
+    }
+
+    @Test
+    public void testCodec() throws Exception {
+        Map<String, Object> nested = new HashMap<>();
+        nested.put("b", Arrays.<Object>asList(1, 2L, "x"));
+        Map<String, Object> fieldsAndValues = new HashMap<>();
+        fieldsAndValues.put("s", "value");
+        fieldsAndValues.put("i", 1);
+        fieldsAndValues.put("d", 1.5);
+        fieldsAndValues.put("f", true);
+        fieldsAndValues.put("n", nested);
+        fieldsAndValues.put("bytes", new byte[]{1, 2});
+        StreamlineEvent event = new StreamlineEventImpl(fieldsAndValues, "ds", "id1",
+                Collections.<String, Object>singletonMap("h", "v"), "stream1", null);
+        List<Object> values = new ArrayList<>();
+        values.add(3);
+        values.add(event);
+        values.add(null);
+
+        List<Object> decoded = WindowTupleCodec.decode(WindowTupleCodec.encode(values));
+        assertEquals(3, decoded.size());
+        assertEquals(3, decoded.get(0));
+        StreamlineEvent decodedEvent = (StreamlineEvent) decoded.get(1);
+        assertEquals("id1", decodedEvent.getId());
+        assertEquals("ds", decodedEvent.getDataSourceId());
+        assertEquals("stream1", decodedEvent.getSourceStream());
+        assertEquals(event.getHeader(), decodedEvent.getHeader());
+        assertEquals(nested, decodedEvent.get("n"));
+        assertArrayEquals(new byte[]{1, 2}, (byte[]) decodedEvent.get("bytes"));
+        Map<String, Object> withoutBytes = new HashMap<>(decodedEvent);
+        withoutBytes.remove("bytes");
+        fieldsAndValues.remove("bytes");
+        assertEquals(fieldsAndValues, withoutBytes);
+        assertEquals(null, decoded.get(2));
+    }
+
+    private List<Long> read(long from, long to) {
+        List<Long> values = new ArrayList<>();
+        Iterator<WindowSegmentStore.Record> it = store.iterator(from, to);
+        while (it.hasNext()) {
+            WindowSegmentStore.Record record = it.next();
+            assertEquals(100 + record.getSequence(), record.getTimestamp());
+            values.add(ByteBuffer.wrap(record.getData()).getLong());
+        }
+        return values;
+    }
+
+    private byte[] record(long value) {
+        return ByteBuffer.allocate(8).putLong(value).array();
+    }
+
+    private int segmentFiles() {
+        String[] files = directory.list();
+        return files == null ? 0 : files.length;
+    }
+}
@@ -0,0 +1,110 @@
+/**
+  * Copyright 2017 Hortonworks.
+  *
+  * Licensed under the Apache License, Version 2.0 (the "License");
+  * you may not use this file except in compliance with the License.
+  * You may obtain a copy of the License at
+
+  *   http://www.apache.org/licenses/LICENSE-2.0
+
+  * Unless required by applicable law or agreed to in writing, software
+  * distributed under the License is distributed on an "AS IS" BASIS,
+  * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  * See the License for the specific language governing permissions and
+  * limitations under the License.
+ **/
+
+package com.hortonworks.streamline.streams.runtime.storm.grouping;
+
+import com.hortonworks.streamline.streams.StreamlineEvent;
+import com.hortonworks.streamline.streams.common.StreamlineEventImpl;
+import com.hortonworks.streamline.streams.layout.storm.StormTopologyLayoutConstants;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class FieldsGroupingAsCustomGroupingTest {
+
+    @Test
+    public void testSameKeysGoToSameTask() throws Exception {
+        FieldsGroupingAsCustomGrouping grouping = new FieldsGroupingAsCustomGrouping(Arrays.asList("a", "b.c"));
+        grouping.prepare(null, null, tasks(7));
+
+        int[] counts = new int[7];
+        for (int i = 0; i < 7000; i++) {
+            List<Integer> chosen = grouping.chooseTasks(0, Collections.singletonList(event(i, "x" + i)));
+            assertEquals(1, chosen.size());
+            assertSame(chosen, grouping.chooseTasks(0, Collections.singletonList(event(i, "x" + i))));
+            counts[chosen.get(0) - 100]++;
+        }
+        for (int count : counts) {
+            assertTrue("unbalanced tasks " + Arrays.toString(counts), count > 800 && count < 1200);
+        }
+    }
+
+    @Test
+    public void testModesValidatedByLayout() throws Exception {
+        List<String> modes = new ArrayList<>();
+        for (FieldsGroupingAsCustomGrouping.Mode mode : FieldsGroupingAsCustomGrouping.Mode.values()) {
+            modes.add(mode.name());
+        }
+        assertEquals(modes, StormTopologyLayoutConstants.FIELDS_GROUPING_MODES);
+    }
+
+    @Test
+    public void testConsistentHashMovesKeysToNewTasksOnly() throws Exception {
+        FieldsGroupingAsCustomGrouping before = new FieldsGroupingAsCustomGrouping(Collections.singletonList("a"),
+                FieldsGroupingAsCustomGrouping.Mode.CONSISTENT_HASH.name());
+        before.prepare(null, null, tasks(4));
+        FieldsGroupingAsCustomGrouping after = new FieldsGroupingAsCustomGrouping(Collections.singletonList("a"),
+                FieldsGroupingAsCustomGrouping.Mode.CONSISTENT_HASH.name());
+        after.prepare(null, null, tasks(5));
+
+        int moved = 0;
+        for (int i = 0; i < 10000; i++) {
+            List<Object> values = Collections.singletonList(event(i, "x"));
+            int oldTask = before.chooseTasks(0, values).get(0);
+            int newTask = after.chooseTasks(0, values).get(0);
+            if (oldTask != newTask) {
+                assertEquals(104, newTask);
+                moved++;
+            }
+        }
+        assertTrue("moved " + moved, moved > 1500 && moved < 2500);
+    }
+
+    @Test
+    public void testMissingFields() throws Exception {
+        FieldsGroupingAsCustomGrouping grouping = new FieldsGroupingAsCustomGrouping(Arrays.asList("x.y", "z"));
+        grouping.prepare(null, null, tasks(3));
+        List<Object> values = Collections.singletonList(event(1, "x"));
+
+        assertEquals(grouping.chooseTasks(0, values), grouping.chooseTasks(1, values));
+    }
+
+    private static List<Integer> tasks(int count) {
+        List<Integer> tasks = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            tasks.add(100 + i);
+        }
+        return tasks;
+    }
+
+    private static StreamlineEvent event(int a, String c) {
+        Map<String, Object> nested = new HashMap<>();
+        nested.put("c", c);
+        Map<String, Object> fields = new HashMap<>();
+        fields.put("a", a);
+        fields.put("b", nested);
+        return new StreamlineEventImpl(fields, "1");
+    }
+}
@@ -0,0 +1,112 @@
+/**
+  * Copyright 2017 Hortonworks.
+  *
+  * Licensed under the Apache License, Version 2.0 (the "License");
+  * you may not use this file except in compliance with the License.
+  * You may obtain a copy of the License at
+
+  *   http://www.apache.org/licenses/LICENSE-2.0
+
+  * Unless required by applicable law or agreed to in writing, software
+  * distributed under the License is distributed on an "AS IS" BASIS,
+  * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  * See the License for the specific language governing permissions and
+  * limitations under the License.
+ **/
+
+package com.hortonworks.streamline.streams.runtime.storm.grouping;
+
+import com.hortonworks.streamline.streams.StreamlineEvent;
+import com.hortonworks.streamline.streams.common.StreamlineEventImpl;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class PartialKeyGroupingAsCustomGroupingTest {
+
+    @Test
+    public void testHotKeyIsSplitAcrossTwoTasks() throws Exception {
+        PartialKeyGroupingAsCustomGrouping grouping = new PartialKeyGroupingAsCustomGrouping(
+                Collections.singletonList("device"));
+        FieldsGroupingAsCustomGrouping fieldsGrouping = new FieldsGroupingAsCustomGrouping(
+                Collections.singletonList("device"));
+        grouping.prepare(null, null, tasks(8));
+        fieldsGrouping.prepare(null, null, tasks(8));
+
+        int[] loads = new int[8];
+        int[] fieldsLoads = new int[8];
+        Set<Integer> hotKeyTasks = new HashSet<>();
+        for (int i = 0; i < 10000; i++) {
+            // half of the events are from the same device
+            List<Object> values = Collections.singletonList(event(i % 2 == 0 ? "hot" : "device" + i));
+            int task = grouping.chooseTasks(0, values).get(0);
+            loads[task - 100]++;
+            fieldsLoads[fieldsGrouping.chooseTasks(0, values).get(0) - 100]++;
+            if (i % 2 == 0) {
+                hotKeyTasks.add(task);
+            }
+        }
+        assertEquals(2, hotKeyTasks.size());
+        assertTrue(max(fieldsLoads) > 5000);
+        assertTrue(max(loads) < 3500);
+    }
+
+    @Test
+    public void testKeyGoesToAtMostTwoTasks() throws Exception {
+        PartialKeyGroupingAsCustomGrouping grouping = new PartialKeyGroupingAsCustomGrouping(
+                Collections.singletonList("device"));
+        grouping.prepare(null, null, tasks(5));
+
+        Map<String, Set<Integer>> keyTasks = new HashMap<>();
+        for (int i = 0; i < 5000; i++) {
+            String key = "device" + (i % 50);
+            Set<Integer> tasks = keyTasks.get(key);
+            if (tasks == null) {
+                tasks = new HashSet<>();
+                keyTasks.put(key, tasks);
+            }
+            tasks.addAll(grouping.chooseTasks(0, Collections.singletonList(event(key))));
+        }
+        for (Set<Integer> tasks : keyTasks.values()) {
+            assertTrue(tasks.size() <= 2);
+        }
+    }
+
+    @Test
+    public void testSingleTask() throws Exception {
+        PartialKeyGroupingAsCustomGrouping grouping = new PartialKeyGroupingAsCustomGrouping(
+                Collections.singletonList("device"));
+        grouping.prepare(null, null, tasks(1));
+
+        assertEquals(Collections.singletonList(100), grouping.chooseTasks(0, Collections.singletonList(event("a"))));
+    }
+
+    private static int max(int[] loads) {
+        int max = 0;
+        for (int load : loads) {
+            max = Math.max(max, load);
+        }
+        return max;
+    }
+
+    private static List<Integer> tasks(int count) {
+        List<Integer> tasks = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            tasks.add(100 + i);
+        }
+        return tasks;
+    }
+
+    private static StreamlineEvent event(String device) {
+        return new StreamlineEventImpl(Collections.<String, Object>singletonMap("device", device), "1");
+    }
+}
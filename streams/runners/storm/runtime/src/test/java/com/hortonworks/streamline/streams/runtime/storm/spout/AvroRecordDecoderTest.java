@@ -0,0 +1,141 @@
+/**
+  * Copyright 2017 Hortonworks.
+  *
+  * Licensed under the Apache License, Version 2.0 (the "License");
+  * you may not use this file except in compliance with the License.
+  * You may obtain a copy of the License at
+
+  *   http://www.apache.org/licenses/LICENSE-2.0
+
+  * Unless required by applicable law or agreed to in writing, software
+  * distributed under the License is distributed on an "AS IS" BASIS,
+  * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  * See the License for the specific language governing permissions and
+  * limitations under the License.
+ **/
+
+package com.hortonworks.streamline.streams.runtime.storm.spout;
+
+import com.hortonworks.streamline.streams.common.EventLayout;
+import org.apache.avro.Schema;
+import org.apache.avro.generic.GenericData;
+import org.apache.avro.generic.GenericDatumWriter;
+import org.apache.avro.generic.GenericRecord;
+import org.apache.avro.io.BinaryEncoder;
+import org.apache.avro.io.EncoderFactory;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+public class AvroRecordDecoderTest {
+    private static final String WRITER_SCHEMA = "{\"type\": \"record\", \"name\": \"device\", \"fields\": ["
+            + "{\"name\": \"id\", \"type\": \"int\"},"
+            + "{\"name\": \"name\", \"type\": [\"null\", \"string\"]},"
+            + "{\"name\": \"payload\", \"type\": \"bytes\"},"
+            + "{\"name\": \"suit\", \"type\": {\"type\": \"enum\", \"name\": \"suit\", \"symbols\": [\"SPADES\", \"HEARTS\"]}},"
+            + "{\"name\": \"tags\", \"type\": {\"type\": \"array\", \"items\": \"string\"}},"
+            + "{\"name\": \"attributes\", \"type\": {\"type\": \"map\", \"values\": \"long\"}},"
+            + "{\"name\": \"address\", \"type\": {\"type\": \"record\", \"name\": \"address\", \"fields\": ["
+            + "{\"name\": \"city\", \"type\": \"string\"}, {\"name\": \"zip\", \"type\": \"int\"}]}}]}";
+
+    // drops the payload, promotes the id to long and adds a field with a default value
+    private static final String READER_SCHEMA = "{\"type\": \"record\", \"name\": \"device\", \"fields\": ["
+            + "{\"name\": \"id\", \"type\": \"long\"},"
+            + "{\"name\": \"name\", \"type\": [\"null\", \"string\"]},"
+            + "{\"name\": \"region\", \"type\": \"string\", \"default\": \"unknown\"},"
+            + "{\"name\": \"suit\", \"type\": {\"type\": \"enum\", \"name\": \"suit\", \"symbols\": [\"SPADES\", \"HEARTS\"]}},"
+            + "{\"name\": \"tags\", \"type\": {\"type\": \"array\", \"items\": \"string\"}},"
+            + "{\"name\": \"attributes\", \"type\": {\"type\": \"map\", \"values\": \"long\"}},"
+            + "{\"name\": \"address\", \"type\": {\"type\": \"record\", \"name\": \"address\", \"fields\": ["
+            + "{\"name\": \"city\", \"type\": \"string\"}, {\"name\": \"zip\", \"type\": \"int\"}]}}]}";
+
+    private final Schema writerSchema = new Schema.Parser().parse(WRITER_SCHEMA);
+
+    @Test
+    public void testDecode() throws Exception {
+        AvroRecordDecoder decoder = AvroRecordDecoder.compile(writerSchema, writerSchema);
+        assertEquals(EventLayout.of(Arrays.asList("id", "name", "payload", "suit", "tags", "attributes", "address")),
+                decoder.getLayout());
+
+        byte[] bytes = serialize(record(1, "device-1"));
+        Object[] values = decoder.decode(bytes, 0, bytes.length);
+        assertEquals(1, values[0]);
+        assertEquals("device-1", values[1]);
+        assertArrayEquals(new byte[]{1, 2, 3}, (byte[]) values[2]);
+        assertEquals("HEARTS", values[3]);
+        assertEquals(Arrays.asList("a", "b"), values[4]);
+        assertEquals(Collections.singletonMap("count", 10L), values[5]);
+        Map<String, Object> address = new LinkedHashMap<>();
+        address.put("city", "city-1");
+        address.put("zip", 1);
+        assertEquals(address, values[6]);
+
+        // a null value is an absent field of the event
+        bytes = serialize(record(2, null));
+        values = decoder.decode(new ByteArrayInputStream(bytes));
+        assertEquals(2, values[0]);
+        assertNull(values[1]);
+    }
+
+    @Test
+    public void testDecodeWithReaderSchema() throws Exception {
+        AvroRecordDecoder decoder = AvroRecordDecoder.compile(writerSchema, new Schema.Parser().parse(READER_SCHEMA));
+        assertEquals(EventLayout.of(Arrays.asList("id", "name", "region", "suit", "tags", "attributes", "address")),
+                decoder.getLayout());
+
+        byte[] bytes = serialize(record(1, "device-1"));
+        Object[] values = decoder.decode(bytes, 0, bytes.length);
+        assertEquals(1L, values[0]);
+        assertEquals("device-1", values[1]);
+        assertEquals("unknown", values[2]);
+        assertEquals("HEARTS", values[3]);
+        assertEquals(Arrays.asList("a", "b"), values[4]);
+        assertEquals(Collections.singletonMap("count", 10L), values[5]);
+        assertEquals("city-1", ((Map<?, ?>) values[6]).get("city"));
+    }
+
+    @Test
+    public void testStringsAreInterned() throws Exception {
+        AvroRecordDecoder decoder = AvroRecordDecoder.compile(writerSchema, writerSchema);
+        byte[] bytes = serialize(record(1, "device-1"));
+        Object[] first = decoder.decode(bytes, 0, bytes.length);
+        Object[] second = decoder.decode(bytes, 0, bytes.length);
+        assertEquals("device-1", second[1]);
+        assertSame(first[1], second[1]);
+        assertSame(((Map<?, ?>) first[6]).get("city"), ((Map<?, ?>) second[6]).get("city"));
+    }
+
+    private GenericRecord record(int id, String name) {
+        GenericRecord address = new GenericData.Record(writerSchema.getField("address").schema());
+        address.put("city", "city-" + id);
+        address.put("zip", id);
+        GenericRecord record = new GenericData.Record(writerSchema);
+        record.put("id", id);
+        record.put("name", name);
+        record.put("payload", ByteBuffer.wrap(new byte[]{1, 2, 3}));
+        record.put("suit", new GenericData.EnumSymbol(writerSchema.getField("suit").schema(), "HEARTS"));
+        record.put("tags", Arrays.asList("a", "b"));
+        record.put("attributes", Collections.singletonMap("count", 10L));
+        record.put("address", address);
+        return record;
+    }
+
+    private byte[] serialize(GenericRecord record) throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        BinaryEncoder encoder = EncoderFactory.get().binaryEncoder(out, null);
+        new GenericDatumWriter<GenericRecord>(writerSchema).write(record, encoder);
+        encoder.flush();
+        return out.toByteArray();
+    }
+}
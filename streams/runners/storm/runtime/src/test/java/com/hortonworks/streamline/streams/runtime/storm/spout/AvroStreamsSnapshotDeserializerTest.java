@@ -0,0 +1,66 @@
+/**
+  * Copyright 2017 Hortonworks.
+  *
+  * Licensed under the Apache License, Version 2.0 (the "License");
+  * you may not use this file except in compliance with the License.
+  * You may obtain a copy of the License at
+
+  *   http://www.apache.org/licenses/LICENSE-2.0
+
+  * Unless required by applicable law or agreed to in writing, software
+  * distributed under the License is distributed on an "AS IS" BASIS,
+  * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  * See the License for the specific language governing permissions and
+  * limitations under the License.
+ **/
+
+package com.hortonworks.streamline.streams.runtime.storm.spout;
+
+import com.hortonworks.registries.schemaregistry.SchemaVersionKey;
+import org.apache.avro.Schema;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+public class AvroStreamsSnapshotDeserializerTest {
+    private static final String RECORD_SCHEMA = "{\"type\": \"record\", \"name\": \"device\", \"fields\": ["
+            + "{\"name\": \"id\", \"type\": \"int\"}]}";
+
+    @Test
+    public void testRecordDecoderCompiledOnce() throws Exception {
+        SchemaCountingDeserializer deserializer = new SchemaCountingDeserializer(RECORD_SCHEMA);
+        AvroRecordDecoder decoder = deserializer.getRecordDecoder("device", 1, null);
+        assertNotNull(decoder);
+        assertSame(decoder, deserializer.getRecordDecoder("device", 1, null));
+        assertEquals(1, deserializer.schemaLookups);
+    }
+
+    @Test
+    public void testNoDecoderForNonRecordSchemaLookedUpOnce() throws Exception {
+        SchemaCountingDeserializer deserializer = new SchemaCountingDeserializer("\"string\"");
+        assertNull(deserializer.getRecordDecoder("device", 1, null));
+        assertNull(deserializer.getRecordDecoder("device", 1, null));
+        assertEquals(1, deserializer.schemaLookups);
+    }
+
+    /**
+     * Returns the same schema for every version and counts the lookups.
+     */
+    private static final class SchemaCountingDeserializer extends AvroStreamsSnapshotDeserializer {
+        private final Schema schema;
+        private int schemaLookups;
+
+        SchemaCountingDeserializer(String schema) {
+            this.schema = new Schema.Parser().parse(schema);
+        }
+
+        @Override
+        protected Schema getSchema(SchemaVersionKey schemaVersionKey) {
+            ++schemaLookups;
+            return schema;
+        }
+    }
+}
@@ -0,0 +1,83 @@
+/**
+  * Copyright 2017 Hortonworks.
+  *
+  * Licensed under the Apache License, Version 2.0 (the "License");
+  * you may not use this file except in compliance with the License.
+  * You may obtain a copy of the License at
+
+  *   http://www.apache.org/licenses/LICENSE-2.0
+
+  * Unless required by applicable law or agreed to in writing, software
+  * distributed under the License is distributed on an "AS IS" BASIS,
+  * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  * See the License for the specific language governing permissions and
+  * limitations under the License.
+ **/
+
+package com.hortonworks.streamline.streams.runtime.storm.spout;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class KafkaPartitionOffsetsTest {
+
+    @Test
+    public void testCommittableOffset() throws Exception {
+        KafkaPartitionOffsets offsets = new KafkaPartitionOffsets(10);
+        assertEquals(10, offsets.getCommittableOffset());
+        for (long offset = 10; offset < 13; offset++) {
+            assertTrue(offsets.polled(offset));
+            offsets.emitted(offset);
+        }
+        // a gap in the offsets of a compacted topic
+        assertTrue(offsets.polled(15));
+        offsets.emitted(15);
+        assertEquals(4, offsets.getUncommittedCount());
+
+        offsets.acked(11);
+        assertEquals(10, offsets.getCommittableOffset());
+        offsets.acked(10);
+        assertEquals(12, offsets.getCommittableOffset());
+        offsets.acked(12);
+        assertEquals(15, offsets.getCommittableOffset());
+        offsets.acked(15);
+        assertEquals(16, offsets.getCommittableOffset());
+        assertEquals(0, offsets.getUncommittedCount());
+
+        offsets.committed(16);
+        offsets.committed(12);
+        assertEquals(16, offsets.getCommittedOffset());
+    }
+
+    @Test
+    public void testRetry() throws Exception {
+        KafkaPartitionOffsets offsets = new KafkaPartitionOffsets(0);
+        for (long offset = 0; offset < 4; offset++) {
+            offsets.polled(offset);
+        }
+        offsets.emitted(0);
+        offsets.emitted(1);
+        offsets.emitted(2);
+        // 3 was polled but not emitted yet
+        offsets.acked(0);
+        offsets.failed(1, 100);
+        assertFalse(offsets.isRetryDue(99));
+        assertTrue(offsets.isRetryDue(100));
+        assertEquals(1, offsets.retryOffset());
+        assertFalse(offsets.isRetryDue(100));
+
+        // polled again after the seek, only the failed record and the record not emitted are emitted
+        assertTrue(offsets.polled(1));
+        assertFalse(offsets.polled(2));
+        assertTrue(offsets.polled(3));
+        assertTrue(offsets.polled(4));
+        assertEquals(1, offsets.getCommittableOffset());
+
+        // an acked record cannot fail
+        offsets.failed(0, 0);
+        assertFalse(offsets.isRetryDue(Long.MAX_VALUE));
+    }
+}
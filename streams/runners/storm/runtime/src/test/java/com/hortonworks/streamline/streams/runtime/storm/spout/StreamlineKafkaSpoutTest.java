@@ -0,0 +1,252 @@
+/**
+  * Copyright 2017 Hortonworks.
+  *
+  * Licensed under the Apache License, Version 2.0 (the "License");
+  * you may not use this file except in compliance with the License.
+  * You may obtain a copy of the License at
+
+  *   http://www.apache.org/licenses/LICENSE-2.0
+
+  * Unless required by applicable law or agreed to in writing, software
+  * distributed under the License is distributed on an "AS IS" BASIS,
+  * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  * See the License for the specific language governing permissions and
+  * limitations under the License.
+ **/
+
+package com.hortonworks.streamline.streams.runtime.storm.spout;
+
+import kafka.server.KafkaConfig;
+import kafka.server.KafkaServerStartable;
+import mockit.Mocked;
+import mockit.Verifications;
+import mockit.integration.junit4.JMockit;
+import org.apache.curator.test.TestingServer;
+import org.apache.kafka.clients.consumer.ConsumerConfig;
+import org.apache.kafka.clients.consumer.KafkaConsumer;
+import org.apache.kafka.clients.consumer.OffsetAndMetadata;
+import org.apache.kafka.clients.producer.KafkaProducer;
+import org.apache.kafka.clients.producer.ProducerConfig;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.apache.kafka.common.TopicPartition;
+import org.apache.kafka.common.serialization.ByteArrayDeserializer;
+import org.apache.kafka.common.serialization.ByteArraySerializer;
+import org.apache.storm.metric.api.IMetric;
+import org.apache.storm.spout.ISpoutOutputCollector;
+import org.apache.storm.spout.MultiScheme;
+import org.apache.storm.spout.SpoutOutputCollector;
+import org.apache.storm.task.TopologyContext;
+import org.apache.storm.tuple.Fields;
+import org.apache.storm.tuple.Values;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.io.File;
+import java.net.ServerSocket;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Runs the spout against an embedded Kafka broker.
+ */
+@RunWith(JMockit.class)
+public class StreamlineKafkaSpoutTest {
+    private static final String TOPIC = "test-topic";
+    private static final String GROUP_ID = "test-group";
+    private static final int RECORDS = 10;
+
+    @Mocked
+    private TopologyContext context;
+
+    private TestingServer zookeeper;
+    private KafkaServerStartable broker;
+    private File logDir;
+    private String bootstrapServers;
+    private final List<Object> emittedValues = new ArrayList<>();
+    private final List<Object> emittedMessageIds = new ArrayList<>();
+
+    @Before
+    public void setUp() throws Exception {
+        zookeeper = new TestingServer();
+        logDir = Files.createTempDirectory("kafka-logs").toFile();
+        int port;
+        try (ServerSocket socket = new ServerSocket(0)) {
+            port = socket.getLocalPort();
+        }
+        bootstrapServers = "localhost:" + port;
+        Properties props = new Properties();
+        props.put("broker.id", "0");
+        props.put("zookeeper.connect", zookeeper.getConnectString());
+        props.put("listeners", "PLAINTEXT://" + bootstrapServers);
+        props.put("log.dirs", logDir.getAbsolutePath());
+        props.put("num.partitions", "1");
+        props.put("offsets.topic.replication.factor", "1");
+        props.put("offsets.topic.num.partitions", "1");
+        broker = new KafkaServerStartable(new KafkaConfig(props));
+        broker.startup();
+
+        Map<String, Object> producerConfig = new HashMap<>();
+        producerConfig.put(ProducerConfig.BOOTSTRAP_SERVERS_CONFIG, bootstrapServers);
+        try (KafkaProducer<byte[], byte[]> producer = new KafkaProducer<>(producerConfig, new ByteArraySerializer(),
+                new ByteArraySerializer())) {
+            for (int i = 0; i < RECORDS; i++) {
+                producer.send(new ProducerRecord<byte[], byte[]>(TOPIC, ("message-" + i).getBytes(StandardCharsets.UTF_8))).get();
+            }
+        }
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        broker.shutdown();
+        broker.awaitShutdown();
+        zookeeper.close();
+        deleteRecursively(logDir);
+    }
+
+    @Test
+    public void testEmitAndCommit() throws Exception {
+        StreamlineKafkaSpout spout = new StreamlineKafkaSpout(bootstrapServers, TOPIC, GROUP_ID, new StringScheme())
+                .withMaxPollRecords(3);
+        spout.open(new HashMap<>(), context, collector());
+        emit(spout, RECORDS);
+
+        for (int i = 0; i < RECORDS; i++) {
+            assertEquals("message-" + i, emittedValues.get(i));
+        }
+        for (Object messageId : emittedMessageIds) {
+            spout.ack(messageId);
+        }
+        spout.close();
+        assertEquals(RECORDS, getCommittedOffset());
+    }
+
+    @Test
+    public void testFailedRecordsAreEmittedAgain() throws Exception {
+        StreamlineKafkaSpout spout = new StreamlineKafkaSpout(bootstrapServers, TOPIC, GROUP_ID, new StringScheme())
+                .withRetryDelayMs(0);
+        spout.open(new HashMap<>(), context, collector());
+        emit(spout, RECORDS);
+
+        for (int i = 0; i < RECORDS; i++) {
+            if (i == 3) {
+                spout.fail(emittedMessageIds.get(i));
+            } else {
+                spout.ack(emittedMessageIds.get(i));
+            }
+        }
+        emit(spout, RECORDS + 1);
+        assertEquals("message-3", emittedValues.get(RECORDS));
+
+        spout.deactivate();
+        assertEquals(3, getCommittedOffset());
+        spout.ack(emittedMessageIds.get(RECORDS));
+        spout.close();
+        assertEquals(RECORDS, getCommittedOffset());
+    }
+
+    @Test
+    public void testOffsetMetric() throws Exception {
+        StreamlineKafkaSpout spout = new StreamlineKafkaSpout(bootstrapServers, TOPIC, GROUP_ID, new StringScheme())
+                .withMaxPollRecords(3);
+        spout.open(new HashMap<>(), context, collector());
+        final List<IMetric> metrics = new ArrayList<>();
+        new Verifications() {{
+            context.registerMetric(StreamlineKafkaSpout.KAFKA_OFFSET_METRIC, withCapture(metrics), anyInt);
+        }};
+        emit(spout, 5);
+        for (Object messageId : emittedMessageIds) {
+            spout.ack(messageId);
+        }
+
+        Map<String, Object> values = (Map<String, Object>) metrics.get(0).getValueAndReset();
+        assertEquals((long) RECORDS, values.get(TOPIC + "/partition_0/latestTimeOffset"));
+        assertEquals(5L, values.get(TOPIC + "/partition_0/latestCompletedOffset"));
+        assertEquals(5L, values.get(TOPIC + "/totalSpoutLag"));
+
+        // the metric does not move the position of the spout
+        emit(spout, RECORDS);
+        for (int i = 0; i < RECORDS; i++) {
+            assertEquals("message-" + i, emittedValues.get(i));
+        }
+        spout.close();
+    }
+
+    private void emit(StreamlineKafkaSpout spout, int count) {
+        long deadline = System.currentTimeMillis() + 60000;
+        while (emittedValues.size() < count && System.currentTimeMillis() < deadline) {
+            spout.nextTuple();
+        }
+        assertEquals(count, emittedValues.size());
+    }
+
+    private long getCommittedOffset() {
+        Map<String, Object> consumerConfig = new HashMap<>();
+        consumerConfig.put(ConsumerConfig.BOOTSTRAP_SERVERS_CONFIG, bootstrapServers);
+        consumerConfig.put(ConsumerConfig.GROUP_ID_CONFIG, GROUP_ID);
+        try (KafkaConsumer<byte[], byte[]> consumer = new KafkaConsumer<>(consumerConfig, new ByteArrayDeserializer(),
+                new ByteArrayDeserializer())) {
+            OffsetAndMetadata committed = consumer.committed(new TopicPartition(TOPIC, 0));
+            return committed != null ? committed.offset() : -1;
+        }
+    }
+
+    private SpoutOutputCollector collector() {
+        return new SpoutOutputCollector(new ISpoutOutputCollector() {
+            @Override
+            public List<Integer> emit(String streamId, List<Object> tuple, Object messageId) {
+                emittedValues.add(tuple.get(0));
+                emittedMessageIds.add(messageId);
+                return Collections.emptyList();
+            }
+
+            @Override
+            public void emitDirect(int taskId, String streamId, List<Object> tuple, Object messageId) {
+                throw new UnsupportedOperationException();
+            }
+
+            @Override
+            public long getPendingCount() {
+                return 0;
+            }
+
+            @Override
+            public void reportError(Throwable error) {
+            }
+        });
+    }
+
+    private static void deleteRecursively(File file) {
+        File[] children = file.listFiles();
+        if (children != null) {
+            for (File child : children) {
+                deleteRecursively(child);
+            }
+        }
+        file.delete();
+    }
+
+    private static class StringScheme implements MultiScheme {
+        @Override
+        public Iterable<List<Object>> deserialize(ByteBuffer byteBuffer) {
+            byte[] bytes = new byte[byteBuffer.remaining()];
+            byteBuffer.get(bytes);
+            return Collections.<List<Object>>singletonList(new Values(new String(bytes, StandardCharsets.UTF_8)));
+        }
+
+        @Override
+        public Fields getOutputFields() {
+            return new Fields("str");
+        }
+    }
+}
@@ -0,0 +1,349 @@
+/**
+  * Copyright 2017 Hortonworks.
+  *
+  * Licensed under the Apache License, Version 2.0 (the "License");
+  * you may not use this file except in compliance with the License.
+  * You may obtain a copy of the License at
+
+  *   http://www.apache.org/licenses/LICENSE-2.0
+
+  * Unless required by applicable law or agreed to in writing, software
+  * distributed under the License is distributed on an "AS IS" BASIS,
+  * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  * See the License for the specific language governing permissions and
+  * limitations under the License.
+ **/
+
+package com.hortonworks.streamline.streams.runtime.normalization;
+
+import com.hortonworks.streamline.common.Schema;
+import com.hortonworks.streamline.streams.StreamlineEvent;
+import com.hortonworks.streamline.streams.layout.component.impl.normalization.FieldBasedNormalizationConfig;
+import com.hortonworks.streamline.streams.layout.component.impl.normalization.FieldValueGenerator;
+import com.hortonworks.streamline.streams.layout.component.impl.normalization.Transformer;
+import groovy.lang.Binding;
+import groovy.lang.GroovyClassLoader;
+import groovy.lang.MissingPropertyException;
+import org.codehaus.groovy.control.CompilationFailedException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Runtime of a {@link FieldBasedNormalizationConfig} compiled into one function over the fields of the declared output
+ * schema, instead of running a {@link TransformerRuntime} and a {@link FieldValueGeneratorRuntime} per field.
+ * <p>
+ * Each output field is resolved at initialization to a transformer, a copy of the input field or a value generator,
+ * the filtered and transformed input fields are left out. The scripts of all the transformers and value generators are
+ * compiled into methods of one Groovy class, evaluated with one binding per event which reads the fields of the event
+ * without copying them.
+ * </p>
+ * The types are checked at initialization when they are known from the input schema or the static values, only the
+ * values computed by scripts and the values of fields missing in the input schema are checked per event. The fields of
+ * the event which are not in the output schema are not emitted, so the output does not need to be validated against
+ * the output schema again.
+ */
+public class CompiledNormalizationRuntime extends NormalizationRuntime {
+    private static final Logger LOG = LoggerFactory.getLogger(CompiledNormalizationRuntime.class);
+
+    private final FieldBasedNormalizationConfig normalizationConfig;
+    // the input fields which must be in the event
+    private final String[] requiredFields;
+    private final String[] outputFields;
+    // the input field copied to each output field, or null
+    private final String[] sourceFields;
+    // the script computing each output field, or -1
+    private final int[] scripts;
+    // the static value of each output field, used when the field has no value
+    private final Object[] defaultValues;
+    // the script generating the value of each output field when it has no value, or -1
+    private final int[] defaultScripts;
+    private final Schema.Type[] outputTypes;
+    // whether the values of each output field are checked, false if the type is known at initialization
+    private final boolean[] checkValues;
+    private final ThreadLocal<Functions> functions;
+
+    /**
+     * The compiled scripts, each script is evaluated by a method of the generated subclass.
+     */
+    public abstract static class Functions extends groovy.lang.Script {
+        public abstract Object evaluate(int index);
+
+        @Override
+        public Object run() {
+            return null;
+        }
+    }
+
+    public CompiledNormalizationRuntime(FieldBasedNormalizationConfig normalizationConfig, Schema declaredOutputSchema) {
+        super(normalizationConfig);
+        this.normalizationConfig = normalizationConfig;
+
+        Map<String, Schema.Type> inputTypes = new HashMap<>();
+        for (Schema.Field field : normalizationConfig.getInputSchema().getFields()) {
+            inputTypes.put(field.getName(), field.getType());
+        }
+        Map<String, Integer> outputIndexes = new LinkedHashMap<>();
+        List<Schema.Field> fields = declaredOutputSchema.getFields();
+        outputFields = new String[fields.size()];
+        sourceFields = new String[fields.size()];
+        scripts = new int[fields.size()];
+        defaultValues = new Object[fields.size()];
+        defaultScripts = new int[fields.size()];
+        outputTypes = new Schema.Type[fields.size()];
+        checkValues = new boolean[fields.size()];
+        for (int i = 0; i < fields.size(); i++) {
+            outputFields[i] = fields.get(i).getName();
+            outputTypes[i] = fields.get(i).getType();
+            outputIndexes.put(outputFields[i], i);
+            scripts[i] = -1;
+            defaultScripts[i] = -1;
+        }
+
+        Set<String> excludedFields = new HashSet<>();
+        List<String> fieldsToBeFiltered = normalizationConfig.getFieldsToBeFiltered();
+        if (fieldsToBeFiltered == null || fieldsToBeFiltered.isEmpty()) {
+            for (Schema.Field inputField : normalizationConfig.getInputSchema().getFields()) {
+                if (!fields.contains(inputField)) {
+                    excludedFields.add(inputField.getName());
+                }
+            }
+        } else {
+            excludedFields.addAll(fieldsToBeFiltered);
+        }
+
+        List<String> scriptTexts = new ArrayList<>();
+        List<String> required = new ArrayList<>();
+        Set<Integer> transformed = new HashSet<>();
+        if (normalizationConfig.getTransformers() != null) {
+            for (Transformer transformer : normalizationConfig.getTransformers()) {
+                if (transformer.getInputField() == null) {
+                    throw new IllegalArgumentException("input field should always be set for transformer");
+                }
+                String inputField = transformer.getInputField().getName();
+                int index = outputIndex(outputIndexes, transformer.getOutputField());
+                required.add(inputField);
+                excludedFields.add(inputField);
+                transformed.add(index);
+                if (transformer.getConverterScript() != null) {
+                    scripts[index] = scriptTexts.size();
+                    scriptTexts.add(transformer.getConverterScript());
+                    checkValues[index] = true;
+                } else {
+                    sourceFields[index] = inputField;
+                    checkValues[index] = needsCheck(inputField, inputTypes.get(inputField), fields.get(index));
+                }
+            }
+        }
+        for (int i = 0; i < outputFields.length; i++) {
+            if (!transformed.contains(i) && !excludedFields.contains(outputFields[i])) {
+                sourceFields[i] = outputFields[i];
+                checkValues[i] = needsCheck(outputFields[i], inputTypes.get(outputFields[i]), fields.get(i));
+            }
+        }
+        if (normalizationConfig.getNewFieldValueGenerators() != null) {
+            for (FieldValueGenerator generator : normalizationConfig.getNewFieldValueGenerators()) {
+                int index = outputIndex(outputIndexes, generator.getField());
+                if (generator.getValue() != null) {
+                    if (!fields.get(index).getType().getJavaType().isInstance(generator.getValue())) {
+                        throw new IllegalArgumentException("Value [" + generator.getValue() + "] is not of the type of output field " + fields.get(index));
+                    }
+                    defaultValues[index] = generator.getValue();
+                } else if (generator.getScript() != null) {
+                    defaultScripts[index] = scriptTexts.size();
+                    scriptTexts.add(generator.getScript());
+                } else {
+                    throw new IllegalArgumentException("Either value or script must exist.");
+                }
+            }
+        }
+        requiredFields = required.toArray(new String[required.size()]);
+        functions = compile(scriptTexts);
+        LOG.debug("Compiled normalization of output fields {} with {} scripts", outputIndexes.keySet(), scriptTexts.size());
+    }
+
+    @Override
+    protected Map<String, Object> normalize(StreamlineEvent event) throws NormalizationException {
+        for (String requiredField : requiredFields) {
+            if (!event.containsKey(requiredField)) {
+                throw new IllegalArgumentException("StreamlineEvent does not have input field: " + requiredField);
+            }
+        }
+        Functions eventFunctions = null;
+        Map<String, Object> result = new HashMap<>(outputFields.length * 2);
+        for (int i = 0; i < outputFields.length; i++) {
+            Object value = null;
+            boolean present = false;
+            if (scripts[i] >= 0) {
+                eventFunctions = bind(eventFunctions, event);
+                value = evaluate(eventFunctions, scripts[i]);
+                present = true;
+            } else if (sourceFields[i] != null) {
+                value = event.get(sourceFields[i]);
+                present = value != null || event.containsKey(sourceFields[i]);
+            }
+            if (present) {
+                if (checkValues[i]) {
+                    check(i, value);
+                }
+                result.put(outputFields[i], value);
+            } else if (defaultValues[i] != null) {
+                result.put(outputFields[i], defaultValues[i]);
+            } else if (defaultScripts[i] >= 0) {
+                eventFunctions = bind(eventFunctions, event);
+                value = evaluate(eventFunctions, defaultScripts[i]);
+                check(i, value);
+                result.put(outputFields[i], value);
+            }
+        }
+        return result;
+    }
+
+    @Override
+    public boolean isOutputValidated() {
+        return true;
+    }
+
+    // the scripts of an event share the binding of the event
+    private Functions bind(Functions eventFunctions, StreamlineEvent event) {
+        if (eventFunctions != null) {
+            return eventFunctions;
+        }
+        Functions threadFunctions = functions.get();
+        threadFunctions.setBinding(new EventBinding(event));
+        return threadFunctions;
+    }
+
+    private Object evaluate(Functions eventFunctions, int script) throws NormalizationException {
+        ((EventBinding) eventFunctions.getBinding()).clearLocals();
+        try {
+            return eventFunctions.evaluate(script);
+        } catch (MissingPropertyException e) {
+            throw new NormalizationException("Error occurred while converting input fields in a normalization", e);
+        }
+    }
+
+    private void check(int index, Object value) throws NormalizationException {
+        if (value != null && !outputTypes[index].getJavaType().isInstance(value)) {
+            throw new NormalizationException("Computed value of field " + outputFields[index] + " is not of expected type: "
+                    + outputTypes[index]);
+        }
+    }
+
+    private static int outputIndex(Map<String, Integer> outputIndexes, Schema.Field field) {
+        Integer index = field != null ? outputIndexes.get(field.getName()) : null;
+        if (index == null) {
+            throw new IllegalArgumentException("Field " + field + " is not in the declared output schema");
+        }
+        return index;
+    }
+
+    // the values are not checked if the input schema declares the same type
+    private static boolean needsCheck(String inputField, Schema.Type inputType, Schema.Field outputField) {
+        if (inputType == null) {
+            return true;
+        }
+        if (inputType != outputField.getType()) {
+            throw new IllegalArgumentException("Input field " + inputField + " of type " + inputType
+                    + " does not conform to output field " + outputField);
+        }
+        return false;
+    }
+
+    private static ThreadLocal<Functions> compile(List<String> scriptTexts) {
+        StringBuilder source = new StringBuilder();
+        source.append("class CompiledNormalizationFunctions extends ").append(Functions.class.getCanonicalName()).append(" {\n");
+        source.append("    Object evaluate(int index) {\n        switch (index) {\n");
+        for (int i = 0; i < scriptTexts.size(); i++) {
+            source.append("            case ").append(i).append(": return f").append(i).append("()\n");
+        }
+        source.append("            default: throw new IllegalArgumentException(\"Unknown script \" + index)\n        }\n    }\n");
+        for (int i = 0; i < scriptTexts.size(); i++) {
+            source.append("    def f").append(i).append("() {\n").append(scriptTexts.get(i)).append("\n    }\n");
+        }
+        source.append("}\n");
+
+        final Class<?> functionsClass;
+        try {
+            functionsClass = new GroovyClassLoader(CompiledNormalizationRuntime.class.getClassLoader()).parseClass(source.toString());
+        } catch (CompilationFailedException e) {
+            throw new IllegalArgumentException("Failed to compile the normalization scripts " + scriptTexts, e);
+        }
+        // the binding of a script instance is set per event
+        return new ThreadLocal<Functions>() {
+            @Override
+            protected Functions initialValue() {
+                try {
+                    return (Functions) functionsClass.newInstance();
+                } catch (InstantiationException | IllegalAccessException e) {
+                    throw new RuntimeException(e);
+                }
+            }
+        };
+    }
+
+    /**
+     * Binding resolving the variables to the fields of the event, the variables assigned by a script are kept apart
+     * and cleared before the next script.
+     */
+    private static final class EventBinding extends Binding {
+        private final StreamlineEvent event;
+        private Map<String, Object> locals;
+
+        EventBinding(StreamlineEvent event) {
+            this.event = event;
+        }
+
+        void clearLocals() {
+            locals = null;
+        }
+
+        @Override
+        public Object getVariable(String name) {
+            if (locals != null && locals.containsKey(name)) {
+                return locals.get(name);
+            }
+            Object value = event.get(name);
+            if (value == null && !event.containsKey(name)) {
+                throw new MissingPropertyException(name, getClass());
+            }
+            return value;
+        }
+
+        @Override
+        public void setVariable(String name, Object value) {
+            if (locals == null) {
+                locals = new HashMap<>();
+            }
+            locals.put(name, value);
+        }
+
+        @Override
+        public boolean hasVariable(String name) {
+            return (locals != null && locals.containsKey(name)) || event.containsKey(name);
+        }
+
+        @Override
+        public Map getVariables() {
+            Map<String, Object> variables = new HashMap<>(event);
+            if (locals != null) {
+                variables.putAll(locals);
+            }
+            return variables;
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "CompiledNormalizationRuntime{" +
+                "normalizationConfig=" + normalizationConfig +
+                '}';
+    }
+}
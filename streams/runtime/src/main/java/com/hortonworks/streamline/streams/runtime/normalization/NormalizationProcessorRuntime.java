@@ -63,7 +63,9 @@ public class NormalizationProcessorRuntime implements ProcessorRuntime {
         if (normalizationRuntime != null) {
             try {
                 outputEvent =  normalizationRuntime.execute(event);
-                schemaValidator.validate(outputEvent);
+                if (!normalizationRuntime.isOutputValidated()) {
+                    schemaValidator.validate(outputEvent);
+                }
             } catch (NormalizationException e) {
                 throw new RuntimeException(e);
             }
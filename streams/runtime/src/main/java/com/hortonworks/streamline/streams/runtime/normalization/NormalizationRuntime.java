@@ -46,6 +46,14 @@ public abstract class NormalizationRuntime {
 
     protected abstract Map<String, Object> normalize(StreamlineEvent event) throws NormalizationException;
 
+    /**
+     * Returns true if the normalized events are known to conform to the declared output schema, so that they do not
+     * need to be validated against it.
+     */
+    public boolean isOutputValidated() {
+        return false;
+    }
+
     public static class Factory {
         public NormalizationRuntime create(NormalizationConfig normalizationConfig, Schema declaredOutputSchema, NormalizationProcessor.Type type) {
             NormalizationRuntime normalizationProcessorRuntime = null;
@@ -53,6 +61,9 @@ public abstract class NormalizationRuntime {
                 case fineGrained:
                     normalizationProcessorRuntime = new FieldBasedNormalizationRuntime.Builder((FieldBasedNormalizationConfig) normalizationConfig, declaredOutputSchema).build();
                     break;
+                case compiled:
+                    normalizationProcessorRuntime = new CompiledNormalizationRuntime((FieldBasedNormalizationConfig) normalizationConfig, declaredOutputSchema);
+                    break;
                 case bulk:
                     normalizationProcessorRuntime = new BulkNormalizationRuntime((BulkNormalizationConfig) normalizationConfig, declaredOutputSchema);
                     break;
@@ -15,9 +15,12 @@
  **/
 
 
+
 package com.hortonworks.streamline.streams.runtime.processor;
 
+import com.google.common.util.concurrent.ListenableFuture;
 import com.google.common.util.concurrent.MoreExecutors;
+import com.google.common.util.concurrent.SettableFuture;
 import com.hortonworks.streamline.streams.Result;
 import com.hortonworks.streamline.streams.StreamlineEvent;
 import com.hortonworks.streamline.streams.common.StreamlineEventImpl;
@@ -31,17 +34,46 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.Serializable;
-import java.util.HashMap;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
+import java.util.Queue;
 import java.util.TimerTask;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.Semaphore;
 import java.util.concurrent.TimeUnit;
-import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicLong;
 
+/**
+ * Runs a multilang processor in a pool of subprocesses.
+ * <p>
+ * The events are pipelined to the subprocesses: {@link #processAsync(StreamlineEvent)} queues an event and returns
+ * immediately. For each subprocess, a writer thread sends the queued events in batches of up to
+ * {@link #MULTILANG_BATCH_SIZE} events and a reader thread collects the emits of each event until its sync and
+ * completes its future. The number of events sent to a subprocess and not synced yet is bounded by
+ * {@link #MULTILANG_MAX_IN_FLIGHT}, {@link #processAsync(StreamlineEvent)} blocks when the window is full. Reading
+ * and writing on separate threads keeps the pipes from deadlocking when both directions fill up.
+ * </p>
+ * <p>
+ * With a {@link #MULTILANG_POOL_SIZE} above one, the events go to the least loaded subprocess, or with
+ * {@link #MULTILANG_KEY_FIELDS} to the subprocess owning the values of the key fields, so that the events of a key
+ * are processed by the same subprocess. The results are completed in the order the events were submitted, whichever
+ * subprocess processed them. Every subprocess is supervised by the heartbeat check, and like a heartbeat timeout,
+ * a failure of the pipes of any subprocess halts the worker so that the events are replayed on a new pool.
+ * </p>
+ */
 public class MultiLangProcessorRuntime implements Serializable, ProcessorRuntime {
 
     public static final Logger LOG = LoggerFactory.getLogger(MultiLangProcessorRuntime.class);
@@ -53,16 +85,29 @@ public class MultiLangProcessorRuntime implements Serializable, ProcessorRuntime
     public static final String OUTPUT_STREAMS = "outputStreams";
     public static final String SHELL_ENVIRONMENT = "environment";
     public static final String MULTILANG_SERIALIZER = "serializer";
+    public static final String MULTILANG_BATCH_SIZE = "batchSize";
+    public static final String MULTILANG_MAX_IN_FLIGHT = "maxInFlight";
+    public static final String MULTILANG_POOL_SIZE = "poolSize";
+    public static final String MULTILANG_KEY_FIELDS = "keyFields";
+
+    public static final int DEFAULT_BATCH_SIZE = 100;
+    public static final int DEFAULT_MAX_IN_FLIGHT = 1000;
+    public static final int DEFAULT_POOL_SIZE = 1;
 
-    private ShellProcess shellProcess;
     private String[]  command;
     private volatile boolean running = true;
     private volatile Throwable exception;
 
     private int processTimeoutMills;
+    private int batchSize;
+    private int maxInFlight;
+    private List<String> keyFields;
     private ScheduledExecutorService heartBeatExecutorService;
-    private AtomicLong lastHeartbeatTimestamp = new AtomicLong();
-    private AtomicBoolean waitingOnSubprocess = new AtomicBoolean(false);
+
+    private transient List<Subprocess> subprocesses;
+    private transient int nextSubprocess;
+    // the results not completed yet in the order of submission, when there is more than one subprocess
+    private transient Queue<OrderedResult> orderedResults;
 
     @Override
     public void initialize(Map<String, Object> config) {
@@ -74,113 +119,153 @@ public class MultiLangProcessorRuntime implements Serializable, ProcessorRuntime
         List<String> outputStreams = (List<String>) config.get(OUTPUT_STREAMS);
         Map<String, String> envMap = (Map<String, String>) config.get(SHELL_ENVIRONMENT);
         String className = (String) config.get(MULTILANG_SERIALIZER);
-
-        shellProcess = new ShellProcess(command);
-        if(className != null)
-            shellProcess.setSerializerClassName(className);
-        shellProcess.setEnv(envMap);
-
-        //subprocesses must send their pid first thing
-        Long subpid = shellProcess.launch(processorConfig, shellContext, outputStreams);
-        LOG.info("Launched subprocess with pid " + subpid);
+        batchSize = getInt(config, MULTILANG_BATCH_SIZE, DEFAULT_BATCH_SIZE);
+        maxInFlight = getInt(config, MULTILANG_MAX_IN_FLIGHT, DEFAULT_MAX_IN_FLIGHT);
+        int poolSize = getInt(config, MULTILANG_POOL_SIZE, DEFAULT_POOL_SIZE);
+        if (batchSize <= 0 || maxInFlight <= 0 || poolSize <= 0) {
+            throw new IllegalArgumentException("Invalid batch size " + batchSize + ", max in flight " + maxInFlight
+                    + " or pool size " + poolSize);
+        }
+        keyFields = getKeyFields(config.get(MULTILANG_KEY_FIELDS));
+
+        subprocesses = new ArrayList<>(poolSize);
+        orderedResults = new ArrayDeque<>();
+        for (int i = 0; i < poolSize; i++) {
+            Subprocess subprocess = new Subprocess();
+            subprocesses.add(subprocess);
+            //subprocesses must send their pid first thing
+            subprocess.launch(className, envMap, processorConfig, shellContext, outputStreams);
+        }
+        LOG.info("Launched {} subprocesses, batch size {}, max in flight {}, key fields {}", poolSize, batchSize,
+                maxInFlight, keyFields);
 
         LOG.info("Start checking heartbeat...");
-        setHeartbeat();
-
         heartBeatExecutorService = MoreExecutors.getExitingScheduledExecutorService(new ScheduledThreadPoolExecutor(1));
         heartBeatExecutorService.scheduleAtFixedRate(new HeartbeatTimerTask(this), 1, 1, TimeUnit.SECONDS);
     }
 
-
-    @Override
-    public List<Result> process(StreamlineEvent inputEvent) throws ProcessingException {
-        if (exception != null) {
-            throw new RuntimeException(exception);
-        }
-
-        return processEvent(inputEvent);
-    }
-
-    @Override
-    public void cleanup() {
-        heartBeatExecutorService.shutdownNow();
-        shellProcess.destroy();
-        running = false;
+    private static int getInt(Map<String, Object> config, String key, int defaultValue) {
+        Object value = config.get(key);
+        return value != null ? Integer.parseInt(value.toString()) : defaultValue;
     }
 
-    private void setHeartbeat() {
-        lastHeartbeatTimestamp.set(System.currentTimeMillis());
+    private static List<String> getKeyFields(Object value) {
+        if (value == null) {
+            return Collections.emptyList();
+        } else if (value instanceof List) {
+            return (List<String>) value;
+        }
+        List<String> fields = new ArrayList<>();
+        for (String field : value.toString().split(",")) {
+            if (!field.trim().isEmpty()) {
+                fields.add(field.trim());
+            }
+        }
+        return fields;
     }
 
-    private long getLastHeartbeat() {
-        return lastHeartbeatTimestamp.get();
+    private static Thread newThread(Runnable runnable, String name) {
+        Thread thread = new Thread(runnable, name);
+        thread.setDaemon(true);
+        return thread;
     }
 
-    private void markWaitingSubprocess() {
-        if(!waitingOnSubprocess.get())
-            setHeartbeat();
-        
-        waitingOnSubprocess.compareAndSet(false, true);
+    @Override
+    public List<Result> process(StreamlineEvent inputEvent) throws ProcessingException {
+        try {
+            return processAsync(inputEvent).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException(e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof ProcessingException) {
+                throw (ProcessingException) e.getCause();
+            }
+            throw new RuntimeException(e.getCause());
+        }
     }
 
-    private void completedWaitingSubprocess() {
-        waitingOnSubprocess.compareAndSet(true, false);
+    /**
+     * Queues an event to be sent to a subprocess, blocking while the maximum number of events are in flight on that
+     * subprocess. The returned future completes with the results of the event once the subprocess synced it and the
+     * results of the events submitted before are completed, or fails with a {@link ProcessingException} if the
+     * subprocess reported an error for the event.
+     */
+    public ListenableFuture<List<Result>> processAsync(StreamlineEvent inputEvent) {
+        checkNotFailed();
+        Subprocess subprocess = selectSubprocess(inputEvent);
+        if (subprocesses.size() == 1) {
+            return subprocess.processAsync(inputEvent);
+        }
+        final OrderedResult orderedResult = new OrderedResult();
+        synchronized (orderedResults) {
+            orderedResults.add(orderedResult);
+        }
+        orderedResult.result = subprocess.processAsync(inputEvent);
+        orderedResult.result.addListener(new Runnable() {
+            @Override
+            public void run() {
+                completeOrderedResults();
+            }
+        }, MoreExecutors.directExecutor());
+        return orderedResult.orderedResult;
     }
 
-    private List<Result> processEvent(StreamlineEvent inputEvent) {
-        List<Result> results = new LinkedList<>();
-
-        try {
-            markWaitingSubprocess();
-            ProcessorMsg processorMsg = createProcessorMessage(inputEvent);
-            shellProcess.writeProcessorMsg(processorMsg);
-
-            ShellMsg errorMsg = null;
-            Map<String, List<ShellMsg>> emitMsgMap =  new HashMap<>();
-            while (true) {
-                ShellMsg shellMsg = shellProcess.readShellMsg();
-                String command = shellMsg.getCommand();
-                if (command == null) {
-                    throw new IllegalArgumentException("Command not found in shell message: " + shellMsg);
-                }
-                setHeartbeat();
-
-                if (command.equals("sync")) {
-                    break;
-                } else if (command.equals("error")) {
-                    errorMsg = shellMsg;
-                } else if (command.equals("emit")) {
-                    String stream = shellMsg.getOutputStream();
-                    List<ShellMsg> eventList = emitMsgMap.get(stream);
-                    if(eventList == null) {
-                        eventList = new LinkedList<>();
-                        emitMsgMap.put(stream, eventList);
-                    }
-                    eventList.add(shellMsg);
-                } else {
-                    throw new RuntimeException("Unknown command received: " + command);
-                }
+    private Subprocess selectSubprocess(StreamlineEvent event) {
+        int size = subprocesses.size();
+        if (size == 1) {
+            return subprocesses.get(0);
+        } else if (!keyFields.isEmpty()) {
+            int hash = 1;
+            for (String keyField : keyFields) {
+                hash = 31 * hash + Objects.hashCode(event.get(keyField));
             }
-
-            if (errorMsg != null) {
-                LOG.error(errorMsg.getMsg());
-                throw new ProcessingException(errorMsg.getMsg());
+            return subprocesses.get(Math.floorMod(hash, size));
+        }
+        // the least loaded subprocess, starting from the next one to spread the ties
+        Subprocess selected = null;
+        int start = nextSubprocess;
+        nextSubprocess = (nextSubprocess + 1) % size;
+        for (int i = 0; i < size; i++) {
+            Subprocess subprocess = subprocesses.get((start + i) % size);
+            if (selected == null || subprocess.inFlight.get() < selected.inFlight.get()) {
+                selected = subprocess;
             }
+        }
+        return selected;
+    }
 
-            for (Map.Entry<String, List<ShellMsg>> entry : emitMsgMap.entrySet())
-            {
-                results.add(convertShellMsg(entry.getKey(), entry.getValue(), inputEvent));
+    // completes the results at the head of the submission order that are done, holding the lock to keep the order
+    private void completeOrderedResults() {
+        synchronized (orderedResults) {
+            OrderedResult head;
+            while ((head = orderedResults.peek()) != null && head.result != null && head.result.isDone()) {
+                orderedResults.poll();
+                try {
+                    head.orderedResult.set(head.result.get());
+                } catch (ExecutionException e) {
+                    head.orderedResult.setException(e.getCause());
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    head.orderedResult.setException(e);
+                }
             }
+        }
+    }
 
-
-        } catch (Exception e) {
-            String processInfo = shellProcess.getProcessInfoString() + shellProcess.getProcessTerminationInfoString();
-            throw new RuntimeException(processInfo, e);
-        } finally {
-            completedWaitingSubprocess();
+    private void checkNotFailed() {
+        if (exception != null) {
+            throw new RuntimeException(exception);
         }
+    }
 
-        return results;
+    @Override
+    public void cleanup() {
+        running = false;
+        heartBeatExecutorService.shutdownNow();
+        for (Subprocess subprocess : subprocesses) {
+            subprocess.destroy();
+        }
     }
 
     private ProcessorMsg createProcessorMessage(StreamlineEvent event) {
@@ -207,15 +292,234 @@ public class MultiLangProcessorRuntime implements Serializable, ProcessorRuntime
         return streamlineEvent;
     }
 
-    private void die(Throwable exception) {
-        String processInfo = shellProcess.getProcessInfoString() + shellProcess.getProcessTerminationInfoString();
+    private void die(Subprocess subprocess, Throwable exception) {
+        String processInfo = subprocess.getProcessInfo();
         this.exception = new RuntimeException(processInfo, exception);
         String message = String.format("Halting process: Processor died. Command: %s, ProcessInfo %s",
-                command,
+                Arrays.toString(command),
                 processInfo);
         LOG.error(message, exception);
         if (running || (exception instanceof Error)) { //don't exit if not running, unless it is an Error
-            System.exit(11);
+            halt(11);
+        }
+    }
+
+    // exits the worker, overridden by the tests
+    void halt(int status) {
+        System.exit(status);
+    }
+
+    /**
+     * The result of an event, completed once the results of the events submitted before it are completed.
+     */
+    private static final class OrderedResult {
+        private final SettableFuture<List<Result>> orderedResult = SettableFuture.create();
+        private volatile ListenableFuture<List<Result>> result;
+    }
+
+    /**
+     * A subprocess of the pool, with the events sent to it and the threads writing and reading its pipes.
+     */
+    private final class Subprocess {
+        private ShellProcess shellProcess;
+        private final AtomicLong lastHeartbeatTimestamp = new AtomicLong();
+        private final Semaphore inFlightPermits = new Semaphore(maxInFlight);
+        // the events sent or being sent to the subprocess and not synced yet
+        private final AtomicInteger inFlight = new AtomicInteger();
+        // the events waiting for the writer thread
+        private final BlockingQueue<PendingEvent> pendingEvents = new LinkedBlockingQueue<>();
+        // the events written to the subprocess, in the order of the replies
+        private final Queue<PendingEvent> sentEvents = new ConcurrentLinkedQueue<>();
+        private Thread writerThread;
+        private Thread readerThread;
+
+        void launch(String className, Map<String, String> envMap, Map<String, Object> processorConfig,
+                    ShellContext shellContext, List<String> outputStreams) {
+            shellProcess = new ShellProcess(command);
+            if(className != null)
+                shellProcess.setSerializerClassName(className);
+            shellProcess.setEnv(envMap);
+
+            Long subpid = shellProcess.launch(processorConfig, shellContext, outputStreams);
+            LOG.info("Launched subprocess with pid " + subpid);
+
+            String threadSuffix = "-" + shellContext.getComponentId() + "-" + subpid;
+            writerThread = newThread(new Writer(), "multilang-writer" + threadSuffix);
+            readerThread = newThread(new Reader(), "multilang-reader" + threadSuffix);
+            writerThread.start();
+            readerThread.start();
+            setHeartbeat();
+        }
+
+        ListenableFuture<List<Result>> processAsync(StreamlineEvent inputEvent) {
+            try {
+                inFlightPermits.acquire();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new RuntimeException(e);
+            }
+            if (inFlight.getAndIncrement() == 0) {
+                // start the timeout when the subprocess has something to do
+                setHeartbeat();
+            }
+            PendingEvent pending = new PendingEvent(inputEvent);
+            pendingEvents.add(pending);
+            if (exception != null) {
+                // the pipes failed while the event was queued
+                failPending();
+            }
+            return pending.result;
+        }
+
+        void destroy() {
+            writerThread.interrupt();
+            shellProcess.destroy();
+            readerThread.interrupt();
+            failPending();
+        }
+
+        private void setHeartbeat() {
+            lastHeartbeatTimestamp.set(System.currentTimeMillis());
+        }
+
+        long getLastHeartbeat() {
+            return lastHeartbeatTimestamp.get();
+        }
+
+        boolean isWaitingOnSubprocess() {
+            return inFlight.get() > 0;
+        }
+
+        String getProcessInfo() {
+            return shellProcess.getProcessInfoString() + shellProcess.getProcessTerminationInfoString();
+        }
+
+        private void onShellMsg(ShellMsg shellMsg) {
+            String command = shellMsg.getCommand();
+            if (command == null) {
+                throw new IllegalArgumentException("Command not found in shell message: " + shellMsg);
+            }
+            setHeartbeat();
+
+            PendingEvent pending = sentEvents.peek();
+            if (pending == null) {
+                throw new IllegalStateException("Received shell message " + shellMsg + " with no event in flight");
+            }
+            if (command.equals("sync")) {
+                sentEvents.poll();
+                inFlight.decrementAndGet();
+                inFlightPermits.release();
+                pending.complete();
+            } else if (command.equals("error")) {
+                pending.errorMsg = shellMsg;
+            } else if (command.equals("emit")) {
+                String stream = shellMsg.getOutputStream();
+                List<ShellMsg> eventList = pending.emitMsgMap.get(stream);
+                if(eventList == null) {
+                    eventList = new LinkedList<>();
+                    pending.emitMsgMap.put(stream, eventList);
+                }
+                eventList.add(shellMsg);
+            } else {
+                throw new RuntimeException("Unknown command received: " + command);
+            }
+        }
+
+        private void onPipeFailure(Throwable error) {
+            if (running) {
+                // handled like a heartbeat timeout, the heartbeat check cannot notice a subprocess whose in flight
+                // events were failed, and the other subprocesses of the pool would keep running without it
+                die(this, new RuntimeException("Communication with subprocess failed", error));
+            }
+            failPending();
+        }
+
+        // fails the queued and sent events once the pipes have failed or the runtime was cleaned up
+        private synchronized void failPending() {
+            Throwable error = exception != null ? exception : new IllegalStateException("Processor runtime was closed");
+            PendingEvent pending;
+            while ((pending = sentEvents.poll()) != null || (pending = pendingEvents.poll()) != null) {
+                pending.result.setException(error);
+                inFlight.decrementAndGet();
+                inFlightPermits.release();
+            }
+        }
+
+        /**
+         * Sends the queued events to the subprocess, in batches of the events queued while the previous batch was
+         * sent.
+         */
+        private final class Writer implements Runnable {
+            @Override
+            public void run() {
+                List<PendingEvent> batch = new ArrayList<>(batchSize);
+                List<ProcessorMsg> msgs = new ArrayList<>(batchSize);
+                try {
+                    while (running) {
+                        batch.add(pendingEvents.take());
+                        pendingEvents.drainTo(batch, batchSize - 1);
+                        for (PendingEvent pending : batch) {
+                            msgs.add(createProcessorMessage(pending.event));
+                            // queued before writing so that the reader always finds the event of a reply
+                            sentEvents.add(pending);
+                        }
+                        if (batch.size() == 1) {
+                            shellProcess.writeProcessorMsg(msgs.get(0));
+                        } else {
+                            shellProcess.writeProcessorMsgs(msgs);
+                        }
+                        batch.clear();
+                        msgs.clear();
+                    }
+                } catch (InterruptedException e) {
+                    LOG.debug("Multilang writer interrupted");
+                } catch (Throwable e) {
+                    onPipeFailure(e);
+                }
+            }
+        }
+
+        /**
+         * Reads the replies of the subprocess and completes the events as they are synced.
+         */
+        private final class Reader implements Runnable {
+            @Override
+            public void run() {
+                try {
+                    while (running) {
+                        onShellMsg(shellProcess.readShellMsg());
+                    }
+                } catch (Throwable e) {
+                    onPipeFailure(e);
+                }
+            }
+        }
+    }
+
+    /**
+     * An event sent to a subprocess and the emits received for it so far.
+     */
+    private final class PendingEvent {
+        private final StreamlineEvent event;
+        private final SettableFuture<List<Result>> result = SettableFuture.create();
+        private final Map<String, List<ShellMsg>> emitMsgMap = new LinkedHashMap<>();
+        private ShellMsg errorMsg;
+
+        PendingEvent(StreamlineEvent event) {
+            this.event = event;
+        }
+
+        void complete() {
+            if (errorMsg != null) {
+                LOG.error(errorMsg.getMsg());
+                result.setException(new ProcessingException(errorMsg.getMsg()));
+                return;
+            }
+            List<Result> results = new ArrayList<>(emitMsgMap.size());
+            for (Map.Entry<String, List<ShellMsg>> entry : emitMsgMap.entrySet()) {
+                results.add(convertShellMsg(entry.getKey(), entry.getValue(), event));
+            }
+            result.set(results);
         }
     }
 
@@ -228,15 +532,18 @@ public class MultiLangProcessorRuntime implements Serializable, ProcessorRuntime
 
         @Override
         public void run() {
-            long lastHeartbeat = getLastHeartbeat();
             long currentTimestamp = System.currentTimeMillis();
-            boolean isWaitingOnSubprocess = waitingOnSubprocess.get();
+            for (Subprocess subprocess : subprocesses) {
+                long lastHeartbeat = subprocess.getLastHeartbeat();
+                boolean isWaitingOnSubprocess = subprocess.isWaitingOnSubprocess();
 
-            LOG.debug("last heartbeat : {}, waiting subprocess now : {}, worker timeout (ms) : {}",
-                    lastHeartbeat, isWaitingOnSubprocess, processTimeoutMills);
+                LOG.debug("last heartbeat : {}, waiting subprocess now : {}, worker timeout (ms) : {}",
+                        lastHeartbeat, isWaitingOnSubprocess, processTimeoutMills);
 
-            if (isWaitingOnSubprocess && currentTimestamp - lastHeartbeat > processTimeoutMills) {
-                processorRuntime.die(new RuntimeException("subprocess heartbeat timeout"));
+                if (isWaitingOnSubprocess && currentTimestamp - lastHeartbeat > processTimeoutMills) {
+                    processorRuntime.die(subprocess, new RuntimeException("subprocess heartbeat timeout"));
+                    return;
+                }
             }
         }
     }
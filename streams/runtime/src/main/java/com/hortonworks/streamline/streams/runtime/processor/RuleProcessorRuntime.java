@@ -34,6 +34,9 @@ import com.hortonworks.streamline.streams.runtime.rule.RuleRuntime;
 import org.apache.commons.lang3.StringUtils;
 import com.hortonworks.streamline.streams.runtime.rule.action.ActionRuntime;
 import com.hortonworks.streamline.streams.runtime.rule.action.ActionRuntimeContext;
+import com.hortonworks.streamline.streams.runtime.rule.compiled.CompiledScript;
+import com.hortonworks.streamline.streams.runtime.rule.compiled.ExpressionCompiler;
+import com.hortonworks.streamline.streams.runtime.rule.compiled.PredicateIndex;
 import com.hortonworks.streamline.streams.runtime.rule.condition.expression.GroovyExpression;
 import com.hortonworks.streamline.streams.runtime.rule.condition.expression.StormSqlExpression;
 import com.hortonworks.streamline.streams.runtime.rule.sql.SqlEngine;
@@ -64,12 +67,18 @@ public class RuleProcessorRuntime implements Serializable, ProcessorRuntime {
     protected static final Logger LOG = LoggerFactory.getLogger(RuleProcessorRuntime.class);
     private static final GroupBy GROUP_BY_WINDOWID = new GroupBy(new FieldExpression(Schema.Field.of(WINDOW_ID, Schema.Type.LONG)));
 
-    public enum ScriptType {GROOVY, SQL}
+    /**
+     * The way rule conditions are evaluated. {@code COMPILED} evaluates the rules with expressions compiled by the
+     * {@link ExpressionCompiler} and falls back to {@code SQL} for the rules it cannot compile, e.g. rules with
+     * windows, group by or aggregate functions.
+     */
+    public enum ScriptType {GROOVY, SQL, COMPILED}
 
     private final RulesProcessor rulesProcessor;
     private final ScriptType scriptType;
     private List<RuleRuntime> rulesRuntime = new ArrayList<>();
     private Map<String, List<RuleRuntime>> streamToRuleRuntimes;
+    private Map<String, PredicateIndex> streamToPredicateIndex;
     private List<RuleRuntime> allRuleRuntimes;
     private boolean processAll = true;
 
@@ -118,6 +127,21 @@ public class RuleProcessorRuntime implements Serializable, ProcessorRuntime {
         return results;
     }
 
+    /**
+     * Expires the state the actions of the rules keep over time, e.g. the split groups of a join which did not
+     * complete in time.
+     *
+     * @param nowMs the current time in milliseconds
+     * @return the results of the expired state
+     */
+    public List<Result> expire(long nowMs) {
+        List<Result> results = new ArrayList<>();
+        for (RuleRuntime rr : rulesRuntime) {
+            results.addAll(rr.expire(nowMs));
+        }
+        return results;
+    }
+
     @Override
     public String toString() {
         return "RuleProcessorRuntime{" + rulesProcessor + ", " + rulesRuntime + '}';
@@ -136,6 +160,10 @@ public class RuleProcessorRuntime implements Serializable, ProcessorRuntime {
         if (StringUtils.isEmpty(inputStream)) {
             throw new ProcessingException("Event SourceStream is empty");
         }
+        PredicateIndex predicateIndex = streamToPredicateIndex.get(inputStream);
+        if (predicateIndex != null) {
+            return predicateIndex.getCandidates(event);
+        }
         List<RuleRuntime> result = streamToRuleRuntimes.get(inputStream);
         if (result == null) {
             LOG.debug("Could not find matching rules for input stream {}. Will not process event.", inputStream);
@@ -154,6 +182,8 @@ public class RuleProcessorRuntime implements Serializable, ProcessorRuntime {
                     script = createGroovyScript(rule);
                 } else if (ScriptType.SQL.equals(scriptType)) {
                     script = createSqlScript(rule);
+                } else if (ScriptType.COMPILED.equals(scriptType)) {
+                    script = createCompiledScript(rule);
                 } else {
                     throw new RuntimeException("Ruleruntime scriptType unsupported: " + scriptType );
                 }
@@ -178,6 +208,7 @@ public class RuleProcessorRuntime implements Serializable, ProcessorRuntime {
             }
         }
         streamToRuleRuntimes = ImmutableMap.copyOf(map);
+        buildStreamToPredicateIndex();
         ImmutableSet.Builder<RuleRuntime> builder = ImmutableSet.builder();
         for(List<RuleRuntime> ruleRuntimes: streamToRuleRuntimes.values()) {
             builder.addAll(ruleRuntimes);
@@ -185,7 +216,26 @@ public class RuleProcessorRuntime implements Serializable, ProcessorRuntime {
         allRuleRuntimes = builder.build().asList();
     }
 
-    private List<ActionRuntime> createActionRuntimes(Rule rule) {
+    /*
+     * With compiled rules, index the rules of each stream by their conditions so that an event
+     * is only evaluated against the rules that can match it.
+     */
+    private void buildStreamToPredicateIndex() {
+        Map<String, PredicateIndex> map = new HashMap<>();
+        if (ScriptType.COMPILED.equals(scriptType)) {
+            for (Map.Entry<String, List<RuleRuntime>> entry : streamToRuleRuntimes.entrySet()) {
+                PredicateIndex predicateIndex = new PredicateIndex(entry.getValue());
+                if (predicateIndex.getUnindexedCount() < entry.getValue().size()) {
+                    LOG.info("Built predicate index for stream {}, {} of {} rules are not indexed", entry.getKey(),
+                            predicateIndex.getUnindexedCount(), entry.getValue().size());
+                    map.put(entry.getKey(), predicateIndex);
+                }
+            }
+        }
+        streamToPredicateIndex = ImmutableMap.copyOf(map);
+    }
+
+    static List<ActionRuntime> createActionRuntimes(Rule rule) {
         List<ActionRuntime> runtimeActions = new ArrayList<>();
         for (Action action : rule.getActions()) {
             final ActionRuntime actionRuntime = ActionRuntimeService.get().get(action);
@@ -250,6 +300,24 @@ public class RuleProcessorRuntime implements Serializable, ProcessorRuntime {
         return sqlScript;
     }
 
+    private Script createCompiledScript(Rule rule) {
+        if (rule.getWindow() == null && rule.getGroupBy() == null) {
+            try {
+                CompiledScript compiledScript = new CompiledScript(createSqlExpression(rule), new ExpressionCompiler());
+                LOG.info("Built CompiledScript {}", compiledScript);
+                return compiledScript;
+            } catch (UnsupportedOperationException ex) {
+                LOG.info("Could not compile rule {}, falling back to sql script. Reason: {}", rule, ex.getMessage());
+            } catch (RuntimeException ex) {
+                // e.g. a literal or function call the compiler cannot handle, which the sql engine may still evaluate
+                LOG.warn("Failed to compile rule {}, falling back to sql script", rule, ex);
+            }
+        } else {
+            LOG.info("Rule {} has a window or group by, falling back to sql script", rule);
+        }
+        return createSqlScript(rule);
+    }
+
     private StormSqlExpression createSqlExpression(Rule rule) {
         List<Expression> groupByExpressions = new ArrayList<>();
         if (rule.getWindow() != null) {
@@ -0,0 +1,175 @@
+/**
+  * Copyright 2017 Hortonworks.
+  *
+  * Licensed under the Apache License, Version 2.0 (the "License");
+  * you may not use this file except in compliance with the License.
+  * You may obtain a copy of the License at
+
+  *   http://www.apache.org/licenses/LICENSE-2.0
+
+  * Unless required by applicable law or agreed to in writing, software
+  * distributed under the License is distributed on an "AS IS" BASIS,
+  * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  * See the License for the specific language governing permissions and
+  * limitations under the License.
+ **/
+package com.hortonworks.streamline.streams.runtime.processor;
+
+import com.hortonworks.streamline.streams.Result;
+import com.hortonworks.streamline.streams.StreamlineEvent;
+import com.hortonworks.streamline.streams.exception.ProcessingException;
+import com.hortonworks.streamline.streams.layout.component.impl.RulesProcessor;
+import com.hortonworks.streamline.streams.layout.component.rule.Rule;
+import com.hortonworks.streamline.streams.runtime.rule.RuleRuntime;
+import com.hortonworks.streamline.streams.runtime.rule.compiled.WindowAggregator;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Runtime of a windowed rules processor that maintains the groups and aggregates of its rules incrementally with
+ * {@link WindowAggregator}s. The events entering the window are {@link #add(StreamlineEvent) added}, the events
+ * leaving the window are {@link #retract(StreamlineEvent) retracted} and {@link #process(long)} evaluates the
+ * current groups of each rule and applies the actions of the rule to the results.
+ * <p>
+ * With two phase aggregation, the runtime of the partial phase emits the {@link #getPartials() partial aggregates}
+ * of its groups instead of evaluating them, and the runtime of the final phase {@link #merge(StreamlineEvent) merges}
+ * the partial aggregates of a group before evaluating it.
+ * </p>
+ */
+public class WindowedRuleProcessorRuntime {
+    private static final Logger LOG = LoggerFactory.getLogger(WindowedRuleProcessorRuntime.class);
+
+    private final RulesProcessor rulesProcessor;
+    private final List<WindowAggregator> aggregators = new ArrayList<>();
+    private final Map<Long, WindowAggregator> ruleIdToAggregator = new HashMap<>();
+    // runtimes used to apply the actions of the rules to the aggregated results
+    private final List<RuleRuntime> ruleRuntimes = new ArrayList<>();
+    private boolean retractable = true;
+    private boolean mergeable = true;
+
+    public WindowedRuleProcessorRuntime(RulesProcessor rulesProcessor) {
+        this.rulesProcessor = rulesProcessor;
+    }
+
+    /**
+     * Compiles the rules of the processor.
+     *
+     * @throws UnsupportedOperationException if a rule cannot be aggregated incrementally
+     */
+    public void initialize(Map<String, Object> config) {
+        List<Rule> rules = rulesProcessor.getRules();
+        if (rules != null) {
+            for (Rule rule : rules) {
+                WindowAggregator aggregator = new WindowAggregator(rule);
+                retractable &= aggregator.isRetractable();
+                mergeable &= aggregator.isMergeable();
+                aggregators.add(aggregator);
+                ruleIdToAggregator.put(rule.getId(), aggregator);
+                RuleRuntime ruleRuntime = new RuleRuntime(rule, null, RuleProcessorRuntime.createActionRuntimes(rule));
+                ruleRuntime.initialize(config);
+                ruleRuntimes.add(ruleRuntime);
+            }
+        }
+        LOG.info("Initialized incremental aggregation for rules processor {}, retractable {}, mergeable {}",
+                rulesProcessor.getId(), retractable, mergeable);
+    }
+
+    /**
+     * Returns true if the events leaving the window can be {@link #retract(StreamlineEvent) retracted}, otherwise
+     * the runtime has to be {@link #clear() cleared} and the events of the window added again.
+     */
+    public boolean isRetractable() {
+        return retractable;
+    }
+
+    /**
+     * Returns true if the rules can be aggregated in two phases.
+     */
+    public boolean isMergeable() {
+        return mergeable;
+    }
+
+    public void add(StreamlineEvent event) {
+        for (WindowAggregator aggregator : aggregators) {
+            if (accepts(aggregator, event)) {
+                aggregator.add(event);
+            }
+        }
+    }
+
+    public void retract(StreamlineEvent event) {
+        for (WindowAggregator aggregator : aggregators) {
+            if (accepts(aggregator, event)) {
+                aggregator.retract(event);
+            }
+        }
+    }
+
+    public void clear() {
+        for (WindowAggregator aggregator : aggregators) {
+            aggregator.clear();
+        }
+    }
+
+    /**
+     * Returns the partial aggregates of the groups of all the rules.
+     */
+    public List<StreamlineEvent> getPartials() {
+        List<StreamlineEvent> partials = new ArrayList<>();
+        for (WindowAggregator aggregator : aggregators) {
+            partials.addAll(aggregator.getPartials());
+        }
+        return partials;
+    }
+
+    /**
+     * Merges a partial aggregate into the groups of its rule.
+     */
+    public void merge(StreamlineEvent partial) {
+        WindowAggregator aggregator = ruleIdToAggregator.get(partial.get(RulesProcessor.PARTIAL_AGGREGATE_RULE_ID));
+        if (aggregator != null) {
+            aggregator.merge(partial);
+        } else {
+            LOG.debug("Ignoring partial aggregate {} of unknown rule", partial);
+        }
+    }
+
+    /**
+     * Evaluates the groups of the current window and returns the results of the actions of the rules.
+     */
+    public List<Result> process(long windowId) throws ProcessingException {
+        List<Result> results = new ArrayList<>();
+        for (int i = 0; i < aggregators.size(); i++) {
+            boolean succeeded = false;
+            for (StreamlineEvent event : aggregators.get(i).getResults(windowId)) {
+                results.addAll(ruleRuntimes.get(i).process(event));
+                succeeded = true;
+            }
+            if (!rulesProcessor.getProcessAll() && succeeded) {
+                break;
+            }
+        }
+        return results;
+    }
+
+    public void cleanup() {
+        for (RuleRuntime ruleRuntime : ruleRuntimes) {
+            ruleRuntime.cleanup();
+        }
+    }
+
+    private boolean accepts(WindowAggregator aggregator, StreamlineEvent event) {
+        return aggregator.getRule().getStreams().contains(event.getSourceStream());
+    }
+
+    @Override
+    public String toString() {
+        return "WindowedRuleProcessorRuntime{" + rulesProcessor + ", retractable=" + retractable
+                + ", mergeable=" + mergeable + '}';
+    }
+}
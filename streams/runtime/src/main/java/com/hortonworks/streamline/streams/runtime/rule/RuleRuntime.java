@@ -86,6 +86,23 @@ public class RuleRuntime implements Serializable, ProcessorRuntime {
         return allResults;
     }
 
+    /**
+     * Expires the state the actions of the rule keep over time.
+     *
+     * @param nowMs the current time in milliseconds
+     * @return the results of the expired state
+     */
+    public List<Result> expire(long nowMs) {
+        List<Result> allResults = new ArrayList<>();
+        for (ActionRuntime action : actions) {
+            List<Result> actionResults = action.expire(nowMs);
+            if (actionResults != null) {
+                allResults.addAll(actionResults);
+            }
+        }
+        return allResults;
+    }
+
     @Override
     public void initialize(Map<String, Object> config) {
         for (ActionRuntime action : actions) {
@@ -102,6 +119,10 @@ public class RuleRuntime implements Serializable, ProcessorRuntime {
         return rule;
     }
 
+    public Script<StreamlineEvent, Collection<StreamlineEvent>, ?> getScript() {
+        return script;
+    }
+
     @Override
     public String toString() {
         return "RuleRuntime{" +
@@ -54,6 +54,15 @@ public interface ActionRuntime extends Serializable {
      */
     List<Result> execute(StreamlineEvent input);
 
+    /**
+     * Expires the state the action keeps over time, this is invoked periodically also when no events arrive.
+     *
+     * @param nowMs the current time in milliseconds
+     * @return the results of the expired state, or null if there are none
+     */
+    default List<Result> expire(long nowMs) {
+        return null;
+    }
 
     /**
      * The streams where the result of this action are sent out
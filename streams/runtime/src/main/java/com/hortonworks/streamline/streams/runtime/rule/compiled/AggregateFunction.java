@@ -0,0 +1,63 @@
+/**
+  * Copyright 2017 Hortonworks.
+  *
+  * Licensed under the Apache License, Version 2.0 (the "License");
+  * you may not use this file except in compliance with the License.
+  * You may obtain a copy of the License at
+
+  *   http://www.apache.org/licenses/LICENSE-2.0
+
+  * Unless required by applicable law or agreed to in writing, software
+  * distributed under the License is distributed on an "AS IS" BASIS,
+  * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  * See the License for the specific language governing permissions and
+  * limitations under the License.
+ **/
+package com.hortonworks.streamline.streams.runtime.rule.compiled;
+
+/**
+ * An aggregate function that is maintained incrementally as the values of a group are added and, for retractable
+ * functions, removed. The aggregate returned by {@link #init()} may be mutated in place, the value returned by
+ * {@link #add(Object, Object[])}, {@link #retract(Object, Object[])} and {@link #merge(Object, Object)} is the
+ * aggregate to use from then on.
+ */
+public interface AggregateFunction {
+    /**
+     * Returns the aggregate of an empty group.
+     */
+    Object init();
+
+    /**
+     * Adds the given argument values to the aggregate.
+     */
+    Object add(Object aggregate, Object[] values);
+
+    /**
+     * Returns true if values can be removed from the aggregate with {@link #retract(Object, Object[])}.
+     */
+    boolean isRetractable();
+
+    /**
+     * Removes the given argument values, previously added with {@link #add(Object, Object[])}, from the aggregate.
+     *
+     * @throws UnsupportedOperationException if the function is not retractable
+     */
+    Object retract(Object aggregate, Object[] values);
+
+    /**
+     * Returns true if partial aggregates can be combined with {@link #merge(Object, Object)}.
+     */
+    boolean isMergeable();
+
+    /**
+     * Adds the values of the second aggregate to the first aggregate. The second aggregate is not modified.
+     *
+     * @throws UnsupportedOperationException if the function is not mergeable
+     */
+    Object merge(Object aggregate1, Object aggregate2);
+
+    /**
+     * Returns the result of the aggregate or null if the result is unknown, e.g. the sum of no values.
+     */
+    Object result(Object aggregate);
+}
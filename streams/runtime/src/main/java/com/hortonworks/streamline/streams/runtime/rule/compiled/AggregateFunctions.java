@@ -0,0 +1,408 @@
+/**
+  * Copyright 2017 Hortonworks.
+  *
+  * Licensed under the Apache License, Version 2.0 (the "License");
+  * you may not use this file except in compliance with the License.
+  * You may obtain a copy of the License at
+
+  *   http://www.apache.org/licenses/LICENSE-2.0
+
+  * Unless required by applicable law or agreed to in writing, software
+  * distributed under the License is distributed on an "AS IS" BASIS,
+  * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  * See the License for the specific language governing permissions and
+  * limitations under the License.
+ **/
+package com.hortonworks.streamline.streams.runtime.rule.compiled;
+
+import com.hortonworks.streamline.streams.layout.component.rule.exception.ConditionEvaluationException;
+import com.hortonworks.streamline.streams.rule.UDAF;
+import com.hortonworks.streamline.streams.rule.UDAF2;
+
+import java.io.Serializable;
+import java.lang.reflect.Method;
+import java.util.Comparator;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * The {@link AggregateFunction}s for the SQL built-in aggregates and the adapters for {@link UDAF}s.
+ */
+public final class AggregateFunctions {
+    private static final Comparator<Object> VALUE_COMPARATOR = new ValueComparator();
+
+    private AggregateFunctions() {
+    }
+
+    /**
+     * Returns the built-in aggregate function with the given name, or null if there is no such function.
+     * {@code COUNT} without arguments counts the rows.
+     */
+    public static AggregateFunction builtin(String name) {
+        switch (name.toUpperCase()) {
+            case "COUNT":
+                return new Count();
+            case "SUM":
+                return new Sum(false);
+            case "AVG":
+                return new Sum(true);
+            case "MIN":
+                return new MinMax(false);
+            case "MAX":
+                return new MinMax(true);
+            default:
+                return null;
+        }
+    }
+
+    /**
+     * Returns the aggregate function for the given {@link UDAF} or {@link UDAF2} instance.
+     *
+     * @throws UnsupportedOperationException if the instance does not implement a UDAF interface with the given arity
+     */
+    @SuppressWarnings("unchecked")
+    public static AggregateFunction udaf(Object udaf, int arity) {
+        if (arity == 1 && udaf instanceof UDAF) {
+            return new UdafFunction((UDAF<Object, Object, Object>) udaf);
+        } else if (arity == 2 && udaf instanceof UDAF2) {
+            return new Udaf2Function((UDAF2<Object, Object, Object, Object>) udaf);
+        }
+        throw new UnsupportedOperationException("UDAF " + udaf.getClass().getName()
+                + " does not implement a UDAF interface taking " + arity + " arguments");
+    }
+
+    /**
+     * Returns true if the class of the given UDAF instance implements the optional operation with the given name
+     * instead of inheriting the default method of the UDAF interface.
+     */
+    static boolean overrides(Object udaf, Class<?> udafInterface, String operation) {
+        for (Method method : udaf.getClass().getMethods()) {
+            if (method.getName().equals(operation) && method.getDeclaringClass() != udafInterface) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static final class Count implements AggregateFunction {
+        @Override
+        public Object init() {
+            return new long[1];
+        }
+
+        @Override
+        public Object add(Object aggregate, Object[] values) {
+            ((long[]) aggregate)[0]++;
+            return aggregate;
+        }
+
+        @Override
+        public boolean isRetractable() {
+            return true;
+        }
+
+        @Override
+        public Object retract(Object aggregate, Object[] values) {
+            ((long[]) aggregate)[0]--;
+            return aggregate;
+        }
+
+        @Override
+        public boolean isMergeable() {
+            return true;
+        }
+
+        @Override
+        public Object merge(Object aggregate1, Object aggregate2) {
+            ((long[]) aggregate1)[0] += ((long[]) aggregate2)[0];
+            return aggregate1;
+        }
+
+        @Override
+        public Object result(Object aggregate) {
+            return ((long[]) aggregate)[0];
+        }
+    }
+
+    /**
+     * SUM and AVG. Integral values are summed as longs and floating point values as doubles, the result is a double
+     * while the aggregated values include a floating point value.
+     */
+    private static final class Sum implements AggregateFunction {
+        private final boolean average;
+
+        Sum(boolean average) {
+            this.average = average;
+        }
+
+        @Override
+        public Object init() {
+            return new SumState();
+        }
+
+        @Override
+        public Object add(Object aggregate, Object[] values) {
+            ((SumState) aggregate).add(toNumber(values[0]), 1);
+            return aggregate;
+        }
+
+        @Override
+        public boolean isRetractable() {
+            return true;
+        }
+
+        @Override
+        public Object retract(Object aggregate, Object[] values) {
+            ((SumState) aggregate).add(toNumber(values[0]), -1);
+            return aggregate;
+        }
+
+        @Override
+        public boolean isMergeable() {
+            return true;
+        }
+
+        @Override
+        public Object merge(Object aggregate1, Object aggregate2) {
+            ((SumState) aggregate1).merge((SumState) aggregate2);
+            return aggregate1;
+        }
+
+        @Override
+        public Object result(Object aggregate) {
+            SumState state = (SumState) aggregate;
+            if (state.count == 0) {
+                return null;
+            } else if (state.floatingCount > 0) {
+                double sum = state.longSum + state.doubleSum + state.doubleCompensation;
+                return average ? sum / state.count : sum;
+            }
+            return average ? state.longSum / state.count : state.longSum;
+        }
+
+        private static Number toNumber(Object value) {
+            if (value instanceof Number) {
+                return (Number) value;
+            }
+            throw new ConditionEvaluationException("Expected a numeric value but got " + value);
+        }
+    }
+
+    private static final class SumState implements Serializable {
+        private long count;
+        private long longSum;
+        // the floating point values are summed with the compensated (Neumaier) summation, so that retracting them
+        // does not accumulate rounding errors
+        private long floatingCount;
+        private double doubleSum;
+        private double doubleCompensation;
+
+        void add(Number value, int sign) {
+            count += sign;
+            if (ExpressionCompiler.isIntegral(value)) {
+                longSum += sign * value.longValue();
+            } else {
+                floatingCount += sign;
+                addDouble(sign * value.doubleValue());
+                resetIfNoFloating();
+            }
+        }
+
+        void merge(SumState other) {
+            count += other.count;
+            longSum += other.longSum;
+            floatingCount += other.floatingCount;
+            doubleCompensation += other.doubleCompensation;
+            addDouble(other.doubleSum);
+            resetIfNoFloating();
+        }
+
+        private void addDouble(double value) {
+            double sum = doubleSum + value;
+            if (Math.abs(doubleSum) >= Math.abs(value)) {
+                doubleCompensation += (doubleSum - sum) + value;
+            } else {
+                doubleCompensation += (value - sum) + doubleSum;
+            }
+            doubleSum = sum;
+        }
+
+        private void resetIfNoFloating() {
+            if (floatingCount == 0) {
+                doubleSum = 0;
+                doubleCompensation = 0;
+            }
+        }
+    }
+
+    /**
+     * MIN and MAX, the values are kept in a sorted multiset so that they can be retracted.
+     */
+    @SuppressWarnings("unchecked")
+    private static final class MinMax implements AggregateFunction {
+        private final boolean max;
+
+        MinMax(boolean max) {
+            this.max = max;
+        }
+
+        @Override
+        public Object init() {
+            return new TreeMap<Object, Integer>(VALUE_COMPARATOR);
+        }
+
+        @Override
+        public Object add(Object aggregate, Object[] values) {
+            TreeMap<Object, Integer> counts = (TreeMap<Object, Integer>) aggregate;
+            Integer count = counts.get(values[0]);
+            counts.put(values[0], count == null ? 1 : count + 1);
+            return aggregate;
+        }
+
+        @Override
+        public boolean isRetractable() {
+            return true;
+        }
+
+        @Override
+        public Object retract(Object aggregate, Object[] values) {
+            TreeMap<Object, Integer> counts = (TreeMap<Object, Integer>) aggregate;
+            Integer count = counts.get(values[0]);
+            if (count != null) {
+                if (count == 1) {
+                    counts.remove(values[0]);
+                } else {
+                    counts.put(values[0], count - 1);
+                }
+            }
+            return aggregate;
+        }
+
+        @Override
+        public boolean isMergeable() {
+            return true;
+        }
+
+        @Override
+        public Object merge(Object aggregate1, Object aggregate2) {
+            TreeMap<Object, Integer> counts = (TreeMap<Object, Integer>) aggregate1;
+            for (Map.Entry<Object, Integer> entry : ((TreeMap<Object, Integer>) aggregate2).entrySet()) {
+                Integer count = counts.get(entry.getKey());
+                counts.put(entry.getKey(), count == null ? entry.getValue() : count + entry.getValue());
+            }
+            return aggregate1;
+        }
+
+        @Override
+        public Object result(Object aggregate) {
+            TreeMap<Object, Integer> counts = (TreeMap<Object, Integer>) aggregate;
+            if (counts.isEmpty()) {
+                return null;
+            }
+            Map.Entry<Object, Integer> entry = max ? counts.lastEntry() : counts.firstEntry();
+            return entry.getKey();
+        }
+    }
+
+    // serializable, since the sorted values of MIN and MAX are sent as partial aggregates
+    private static final class ValueComparator implements Comparator<Object>, Serializable {
+        @Override
+        public int compare(Object o1, Object o2) {
+            return ExpressionCompiler.compare(o1, o2);
+        }
+    }
+
+    private static final class UdafFunction implements AggregateFunction {
+        private final UDAF<Object, Object, Object> udaf;
+        private final boolean retractable;
+        private final boolean mergeable;
+
+        UdafFunction(UDAF<Object, Object, Object> udaf) {
+            this.udaf = udaf;
+            this.retractable = overrides(udaf, UDAF.class, "retract");
+            this.mergeable = overrides(udaf, UDAF.class, "merge");
+        }
+
+        @Override
+        public Object init() {
+            return udaf.init();
+        }
+
+        @Override
+        public Object add(Object aggregate, Object[] values) {
+            return udaf.add(aggregate, values[0]);
+        }
+
+        @Override
+        public boolean isRetractable() {
+            return retractable;
+        }
+
+        @Override
+        public Object retract(Object aggregate, Object[] values) {
+            return udaf.retract(aggregate, values[0]);
+        }
+
+        @Override
+        public boolean isMergeable() {
+            return mergeable;
+        }
+
+        @Override
+        public Object merge(Object aggregate1, Object aggregate2) {
+            return udaf.merge(aggregate1, aggregate2);
+        }
+
+        @Override
+        public Object result(Object aggregate) {
+            return udaf.result(aggregate);
+        }
+    }
+
+    private static final class Udaf2Function implements AggregateFunction {
+        private final UDAF2<Object, Object, Object, Object> udaf;
+        private final boolean retractable;
+        private final boolean mergeable;
+
+        Udaf2Function(UDAF2<Object, Object, Object, Object> udaf) {
+            this.udaf = udaf;
+            this.retractable = overrides(udaf, UDAF2.class, "retract");
+            this.mergeable = overrides(udaf, UDAF2.class, "merge");
+        }
+
+        @Override
+        public Object init() {
+            return udaf.init();
+        }
+
+        @Override
+        public Object add(Object aggregate, Object[] values) {
+            return udaf.add(aggregate, values[0], values[1]);
+        }
+
+        @Override
+        public boolean isRetractable() {
+            return retractable;
+        }
+
+        @Override
+        public Object retract(Object aggregate, Object[] values) {
+            return udaf.retract(aggregate, values[0], values[1]);
+        }
+
+        @Override
+        public boolean isMergeable() {
+            return mergeable;
+        }
+
+        @Override
+        public Object merge(Object aggregate1, Object aggregate2) {
+            return udaf.merge(aggregate1, aggregate2);
+        }
+
+        @Override
+        public Object result(Object aggregate) {
+            return udaf.result(aggregate);
+        }
+    }
+}
@@ -0,0 +1,125 @@
+/**
+  * Copyright 2017 Hortonworks.
+  *
+  * Licensed under the Apache License, Version 2.0 (the "License");
+  * you may not use this file except in compliance with the License.
+  * You may obtain a copy of the License at
+
+  *   http://www.apache.org/licenses/LICENSE-2.0
+
+  * Unless required by applicable law or agreed to in writing, software
+  * distributed under the License is distributed on an "AS IS" BASIS,
+  * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  * See the License for the specific language governing permissions and
+  * limitations under the License.
+ **/
+package com.hortonworks.streamline.streams.runtime.rule.compiled;
+
+import com.hortonworks.streamline.common.Schema;
+import com.hortonworks.streamline.streams.StreamlineEvent;
+import com.hortonworks.streamline.streams.common.StreamlineEventImpl;
+import com.hortonworks.streamline.streams.layout.component.rule.exception.ConditionEvaluationException;
+import com.hortonworks.streamline.streams.layout.component.rule.expression.Expression;
+import com.hortonworks.streamline.streams.runtime.rule.condition.expression.StormSqlExpression;
+import com.hortonworks.streamline.streams.runtime.script.Script;
+import com.hortonworks.streamline.streams.runtime.script.engine.ScriptEngine;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.script.ScriptException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static com.hortonworks.streamline.streams.common.StreamlineEventImpl.GROUP_BY_TRIGGER_EVENT;
+
+/**
+ * Evaluates the condition and projection of a {@link StormSqlExpression} with expressions compiled by the
+ * {@link ExpressionCompiler}. Produces the same results as the {@link com.hortonworks.streamline.streams.runtime.rule.sql.SqlScript}
+ * for rules without windows, group by or aggregate functions, which are rejected with an
+ * {@link UnsupportedOperationException} when the script is created.
+ */
+public class CompiledScript extends Script<StreamlineEvent, Collection<StreamlineEvent>, ExpressionCompiler> {
+    private static final Logger LOG = LoggerFactory.getLogger(CompiledScript.class);
+    private final List<String> requiredFields = new ArrayList<>();
+    private final CompiledExpression condition;
+    private final List<CompiledExpression> projections = new ArrayList<>();
+    private final List<String> outputFields;
+
+    public CompiledScript(StormSqlExpression expression, ScriptEngine<ExpressionCompiler> scriptEngine) {
+        super(expression.asString(), scriptEngine);
+        if (expression.getGroupBy() != null || expression.getHaving() != null) {
+            throw new UnsupportedOperationException("Group by and having are not supported");
+        }
+        for (Schema.Field field : expression.getStormSqlFields()) {
+            requiredFields.add(field.getName());
+        }
+        condition = expression.getCondition() != null
+                ? this.scriptEngine.compile(expression.getCondition().getExpression()) : null;
+        if (expression.getProjection() != null) {
+            for (Expression projected : expression.getProjection().getExpressions()) {
+                projections.add(this.scriptEngine.compile(projected));
+            }
+        }
+        outputFields = expression.getOutputFields();
+    }
+
+    @Override
+    public Collection<StreamlineEvent> evaluate(StreamlineEvent event) throws ScriptException {
+        LOG.debug("Evaluating [{}] with compiled expression [{}]", event, expression);
+        if (event == GROUP_BY_TRIGGER_EVENT) {
+            return Collections.emptyList();
+        } else if (requiredFields.isEmpty()) {
+            return Collections.singletonList(event);
+        } else if (event == null) {
+            LOG.error("Cannot evaluate null event");
+            return Collections.emptyList();
+        }
+        for (String field : requiredFields) {
+            if (event.get(field) == null) {
+                LOG.debug("Missing property {} required to evaluate expression", field);
+                return Collections.emptyList();
+            }
+        }
+        try {
+            if (condition != null && !Boolean.TRUE.equals(condition.evaluate(event))) {
+                return Collections.emptyList();
+            }
+            return Collections.singletonList(project(event));
+        } catch (ConditionEvaluationException | ClassCastException ex) {
+            LOG.error("Got exception {} while processing StreamlineEvent {}", ex, event);
+            return Collections.emptyList();
+        }
+    }
+
+    private StreamlineEvent project(StreamlineEvent event) {
+        if (projections.isEmpty()) {
+            return event;
+        }
+        Map<String, Object> fieldsAndValues = new HashMap<>();
+        for (int i = 0; i < projections.size(); i++) {
+            Object value = projections.get(i).evaluate(event);
+            // events do not hold null values, an unknown value is left out of the projected event
+            if (value != null) {
+                fieldsAndValues.put(outputFields.get(i), value);
+            }
+        }
+        return new StreamlineEventImpl(fieldsAndValues, event.getDataSourceId(), event.getId(),
+                event.getHeader(), event.getSourceStream());
+    }
+
+    public List<String> getOutputFields() {
+        return outputFields;
+    }
+
+    @Override
+    public String toString() {
+        return "CompiledScript{" +
+                "requiredFields=" + requiredFields +
+                ", outputFields=" + outputFields +
+                "} " + super.toString();
+    }
+}
@@ -0,0 +1,553 @@
+/**
+  * Copyright 2017 Hortonworks.
+  *
+  * Licensed under the Apache License, Version 2.0 (the "License");
+  * you may not use this file except in compliance with the License.
+  * You may obtain a copy of the License at
+
+  *   http://www.apache.org/licenses/LICENSE-2.0
+
+  * Unless required by applicable law or agreed to in writing, software
+  * distributed under the License is distributed on an "AS IS" BASIS,
+  * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  * See the License for the specific language governing permissions and
+  * limitations under the License.
+ **/
+package com.hortonworks.streamline.streams.runtime.rule.compiled;
+
+import com.hortonworks.streamline.streams.StreamlineEvent;
+import com.hortonworks.streamline.streams.common.EventLayout;
+import com.hortonworks.streamline.streams.common.IndexedStreamlineEvent;
+import com.hortonworks.streamline.streams.layout.component.rule.exception.ConditionEvaluationException;
+import com.hortonworks.streamline.streams.layout.component.rule.expression.AggregateFunctionExpression;
+import com.hortonworks.streamline.streams.layout.component.rule.expression.ArrayFieldExpression;
+import com.hortonworks.streamline.streams.layout.component.rule.expression.AsExpression;
+import com.hortonworks.streamline.streams.layout.component.rule.expression.BinaryExpression;
+import com.hortonworks.streamline.streams.layout.component.rule.expression.Expression;
+import com.hortonworks.streamline.streams.layout.component.rule.expression.FieldExpression;
+import com.hortonworks.streamline.streams.layout.component.rule.expression.FunctionExpression;
+import com.hortonworks.streamline.streams.layout.component.rule.expression.Literal;
+import com.hortonworks.streamline.streams.layout.component.rule.expression.MapFieldExpression;
+import com.hortonworks.streamline.streams.layout.component.rule.expression.Operator;
+import com.hortonworks.streamline.streams.rule.UDF;
+import com.hortonworks.streamline.streams.rule.UDF2;
+import com.hortonworks.streamline.streams.rule.UDF3;
+import com.hortonworks.streamline.streams.rule.UDF4;
+import com.hortonworks.streamline.streams.rule.UDF5;
+import com.hortonworks.streamline.streams.rule.UDF6;
+import com.hortonworks.streamline.streams.rule.UDF7;
+import com.hortonworks.streamline.streams.runtime.script.engine.ScriptEngine;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Compiles rule {@link Expression}s into {@link CompiledExpression}s that are evaluated directly against a
+ * {@link StreamlineEvent}, without going through the Groovy interpreter or an embedded Storm SQL topology.
+ * <p>
+ * All the work that does not depend on the event, i.e. parsing literals, resolving operators, built-in functions
+ * and instantiating UDFs, is done once at compile time. The evaluation follows the SQL semantics of the
+ * Storm SQL engine: comparisons are numeric across the different number types and the logical operators use
+ * three valued logic where a null value stands for unknown.
+ * </p>
+ * {@code *} projections and, unless handled by {@link #compileAggregate(AggregateFunctionExpression)},
+ * aggregate functions are not supported and cause an {@link UnsupportedOperationException} to be thrown at
+ * compile time.
+ */
+public class ExpressionCompiler implements ScriptEngine<ExpressionCompiler> {
+    // UDF and UDAF instances by class name, so that a function used multiple times in a rule is instantiated once
+    private final Map<String, Object> udfs = new HashMap<>();
+
+    @Override
+    public ExpressionCompiler getEngine() {
+        return this;
+    }
+
+    /**
+     * Compiles the given expression.
+     *
+     * @throws UnsupportedOperationException if the expression cannot be compiled
+     * @throws IllegalArgumentException if the expression is invalid, e.g. has a malformed literal
+     */
+    public CompiledExpression compile(Expression expression) {
+        if (expression instanceof AsExpression) {
+            return compile(((AsExpression) expression).getExpression());
+        } else if (expression instanceof BinaryExpression) {
+            return compileBinary((BinaryExpression) expression);
+        } else if (expression instanceof FieldExpression) {
+            if (expression == FieldExpression.STAR) {
+                throw new UnsupportedOperationException("Projection of all fields is not supported");
+            }
+            return new FieldEvaluator(((FieldExpression) expression).getValue().getName());
+        } else if (expression instanceof MapFieldExpression) {
+            MapFieldExpression mapFieldExpression = (MapFieldExpression) expression;
+            return new MapItemEvaluator(compile(mapFieldExpression.getExpression()), mapFieldExpression.getKey());
+        } else if (expression instanceof ArrayFieldExpression) {
+            ArrayFieldExpression arrayFieldExpression = (ArrayFieldExpression) expression;
+            return new ArrayItemEvaluator(compile(arrayFieldExpression.getExpression()), arrayFieldExpression.getIndex());
+        } else if (expression instanceof Literal) {
+            return new LiteralEvaluator(parseLiteral(((Literal) expression).getValue()));
+        } else if (expression instanceof AggregateFunctionExpression) {
+            return compileAggregate((AggregateFunctionExpression) expression);
+        } else if (expression instanceof FunctionExpression) {
+            return compileFunction((FunctionExpression) expression);
+        }
+        throw new UnsupportedOperationException("Expression " + expression + " is not supported");
+    }
+
+    /**
+     * Compiles an aggregate function call. Aggregates are not supported by default, subclasses that evaluate
+     * expressions over aggregated groups return an expression that reads the result of the aggregate.
+     */
+    protected CompiledExpression compileAggregate(AggregateFunctionExpression expression) {
+        throw new UnsupportedOperationException("Aggregate function " + expression.getFunction().getName()
+                + " is not supported");
+    }
+
+    private CompiledExpression compileBinary(BinaryExpression expression) {
+        CompiledExpression first = compile(expression.getFirst());
+        CompiledExpression second = compile(expression.getSecond());
+        Operator operator = expression.getOperator();
+        switch (operator) {
+            case AND:
+                return new AndEvaluator(first, second);
+            case OR:
+                return new OrEvaluator(first, second);
+            case EQUALS:
+            case NOT_EQUAL:
+            case GREATER_THAN:
+            case LESS_THAN:
+            case GREATER_THAN_EQUALS_TO:
+            case LESS_THAN_EQUALS_TO:
+                return new ComparisonEvaluator(operator, first, second);
+            default:
+                throw new UnsupportedOperationException("Operator " + operator + " is not supported");
+        }
+    }
+
+    private CompiledExpression compileFunction(FunctionExpression expression) {
+        FunctionExpression.Function function = expression.getFunction();
+        List<Expression> operands = expression.getOperands();
+        CompiledExpression[] compiledOperands = new CompiledExpression[operands.size()];
+        for (int i = 0; i < compiledOperands.length; i++) {
+            compiledOperands[i] = compile(operands.get(i));
+        }
+        if (function.isUdf()) {
+            return new UdfEvaluator(function.getName(), getUdf(function.getClassName(), compiledOperands.length),
+                    compiledOperands);
+        }
+        BuiltinFunction builtin = BuiltinFunction.forName(function.getName());
+        if (builtin == null) {
+            throw new UnsupportedOperationException("Built-in function " + function.getName() + " is not supported");
+        }
+        if (compiledOperands.length != 1) {
+            throw new IllegalArgumentException("Function " + function.getName() + " expects one argument but got "
+                    + compiledOperands.length);
+        }
+        return new BuiltinEvaluator(builtin, compiledOperands[0]);
+    }
+
+    private Object getUdf(String className, int arity) {
+        Object udf = getFunctionInstance(className);
+        Class<?> udfInterface = UdfEvaluator.INTERFACES[Math.min(arity, UdfEvaluator.INTERFACES.length - 1)];
+        if (udfInterface == null || !udfInterface.isInstance(udf)) {
+            throw new UnsupportedOperationException("UDF " + className + " does not implement a UDF interface taking "
+                    + arity + " arguments");
+        }
+        return udf;
+    }
+
+    /**
+     * Returns the instance of the given UDF or UDAF class, instantiating it on first use.
+     */
+    protected Object getFunctionInstance(String className) {
+        Object udf = udfs.get(className);
+        if (udf == null) {
+            try {
+                udf = Class.forName(className).newInstance();
+            } catch (ClassNotFoundException | InstantiationException | IllegalAccessException e) {
+                throw new IllegalArgumentException("Could not instantiate function " + className, e);
+            }
+            udfs.put(className, udf);
+        }
+        return udf;
+    }
+
+    /**
+     * Parses the SQL text of a literal, e.g. {@code 'abc'}, {@code 100}, {@code 1.5} or {@code TRUE}.
+     */
+    static Object parseLiteral(String literal) {
+        if (literal == null) {
+            return null;
+        }
+        String value = literal.trim();
+        int quote = value.indexOf('\'');
+        // character literals may be prefixed with the character set, e.g. _ISO-8859-1'abc'
+        if (quote >= 0 && (quote == 0 || value.charAt(0) == '_')
+                && value.length() - quote >= 2 && value.charAt(value.length() - 1) == '\'') {
+            return value.substring(quote + 1, value.length() - 1).replace("''", "'");
+        }
+        if (value.equalsIgnoreCase("TRUE")) {
+            return Boolean.TRUE;
+        } else if (value.equalsIgnoreCase("FALSE")) {
+            return Boolean.FALSE;
+        } else if (value.equalsIgnoreCase("NULL") || value.equalsIgnoreCase("UNKNOWN")) {
+            return null;
+        }
+        try {
+            BigDecimal decimal = new BigDecimal(value);
+            if (value.indexOf('.') < 0 && value.indexOf('e') < 0 && value.indexOf('E') < 0) {
+                BigInteger integer = decimal.toBigInteger();
+                if (integer.bitLength() < 64) {
+                    return integer.longValue();
+                }
+                return decimal;
+            }
+            return decimal.doubleValue();
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Unsupported literal " + literal, e);
+        }
+    }
+
+    static Boolean toBoolean(Object value) {
+        if (value == null || value instanceof Boolean) {
+            return (Boolean) value;
+        }
+        throw new ConditionEvaluationException("Expected a boolean value but got " + value);
+    }
+
+    static boolean isIntegral(Object number) {
+        return number instanceof Long || number instanceof Integer || number instanceof Short || number instanceof Byte;
+    }
+
+    static int compare(Object left, Object right) {
+        if (left instanceof Number && right instanceof Number) {
+            if (isIntegral(left) && isIntegral(right)) {
+                return Long.compare(((Number) left).longValue(), ((Number) right).longValue());
+            } else if (left instanceof BigDecimal || right instanceof BigDecimal
+                    || left instanceof BigInteger || right instanceof BigInteger) {
+                return new BigDecimal(left.toString()).compareTo(new BigDecimal(right.toString()));
+            }
+            return Double.compare(((Number) left).doubleValue(), ((Number) right).doubleValue());
+        } else if (left instanceof Comparable && left.getClass() == right.getClass()) {
+            @SuppressWarnings("unchecked")
+            Comparable<Object> comparable = (Comparable<Object>) left;
+            return comparable.compareTo(right);
+        }
+        throw new ConditionEvaluationException("Cannot compare " + left + " with " + right);
+    }
+
+    static boolean equal(Object left, Object right) {
+        if (left instanceof Number || right instanceof Number) {
+            return compare(left, right) == 0;
+        }
+        return left.equals(right);
+    }
+
+    private static final class LiteralEvaluator implements CompiledExpression {
+        private final Object value;
+
+        LiteralEvaluator(Object value) {
+            this.value = value;
+        }
+
+        @Override
+        public Object evaluate(StreamlineEvent event) {
+            return value;
+        }
+    }
+
+    /**
+     * Reads a top level field. For {@link IndexedStreamlineEvent}s the slot of the field is cached per
+     * {@link EventLayout}, so that events of the same layout are read without a hash lookup.
+     */
+    private static final class FieldEvaluator implements CompiledExpression {
+        private final String name;
+        // replaced as a whole, so that a racing reader never sees a layout with the index of another layout
+        private Slot slot;
+
+        FieldEvaluator(String name) {
+            this.name = name;
+        }
+
+        @Override
+        public Object evaluate(StreamlineEvent event) {
+            if (event instanceof IndexedStreamlineEvent) {
+                IndexedStreamlineEvent indexedEvent = (IndexedStreamlineEvent) event;
+                EventLayout layout = indexedEvent.getLayout();
+                Slot current = slot;
+                if (current == null || current.layout != layout) {
+                    current = new Slot(layout, layout.indexOf(name));
+                    slot = current;
+                }
+                return current.index >= 0 ? indexedEvent.getValue(current.index) : null;
+            }
+            return event.get(name);
+        }
+
+        private static final class Slot {
+            private final EventLayout layout;
+            private final int index;
+
+            Slot(EventLayout layout, int index) {
+                this.layout = layout;
+                this.index = index;
+            }
+        }
+    }
+
+    private static final class MapItemEvaluator implements CompiledExpression {
+        private final CompiledExpression map;
+        private final String key;
+
+        MapItemEvaluator(CompiledExpression map, String key) {
+            this.map = map;
+            this.key = key;
+        }
+
+        @Override
+        public Object evaluate(StreamlineEvent event) {
+            Object value = map.evaluate(event);
+            if (value == null) {
+                return null;
+            } else if (value instanceof Map) {
+                return ((Map<?, ?>) value).get(key);
+            }
+            throw new ConditionEvaluationException("Expected a map value but got " + value);
+        }
+    }
+
+    private static final class ArrayItemEvaluator implements CompiledExpression {
+        private final CompiledExpression array;
+        private final int index;
+
+        ArrayItemEvaluator(CompiledExpression array, int index) {
+            this.array = array;
+            this.index = index;
+        }
+
+        @Override
+        public Object evaluate(StreamlineEvent event) {
+            Object value = array.evaluate(event);
+            if (value == null) {
+                return null;
+            } else if (value instanceof List) {
+                List<?> list = (List<?>) value;
+                return index >= 0 && index < list.size() ? list.get(index) : null;
+            }
+            throw new ConditionEvaluationException("Expected a list value but got " + value);
+        }
+    }
+
+    private static final class AndEvaluator implements CompiledExpression {
+        private final CompiledExpression first;
+        private final CompiledExpression second;
+
+        AndEvaluator(CompiledExpression first, CompiledExpression second) {
+            this.first = first;
+            this.second = second;
+        }
+
+        @Override
+        public Object evaluate(StreamlineEvent event) {
+            Boolean left = toBoolean(first.evaluate(event));
+            if (Boolean.FALSE.equals(left)) {
+                return Boolean.FALSE;
+            }
+            Boolean right = toBoolean(second.evaluate(event));
+            if (Boolean.FALSE.equals(right)) {
+                return Boolean.FALSE;
+            }
+            return left == null || right == null ? null : Boolean.TRUE;
+        }
+    }
+
+    private static final class OrEvaluator implements CompiledExpression {
+        private final CompiledExpression first;
+        private final CompiledExpression second;
+
+        OrEvaluator(CompiledExpression first, CompiledExpression second) {
+            this.first = first;
+            this.second = second;
+        }
+
+        @Override
+        public Object evaluate(StreamlineEvent event) {
+            Boolean left = toBoolean(first.evaluate(event));
+            if (Boolean.TRUE.equals(left)) {
+                return Boolean.TRUE;
+            }
+            Boolean right = toBoolean(second.evaluate(event));
+            if (Boolean.TRUE.equals(right)) {
+                return Boolean.TRUE;
+            }
+            return left == null || right == null ? null : Boolean.FALSE;
+        }
+    }
+
+    private static final class ComparisonEvaluator implements CompiledExpression {
+        private final Operator operator;
+        private final CompiledExpression first;
+        private final CompiledExpression second;
+
+        ComparisonEvaluator(Operator operator, CompiledExpression first, CompiledExpression second) {
+            this.operator = operator;
+            this.first = first;
+            this.second = second;
+        }
+
+        @Override
+        public Object evaluate(StreamlineEvent event) {
+            Object left = first.evaluate(event);
+            Object right = second.evaluate(event);
+            if (left == null || right == null) {
+                return null;
+            }
+            switch (operator) {
+                case EQUALS:
+                    return equal(left, right);
+                case NOT_EQUAL:
+                    return !equal(left, right);
+                case GREATER_THAN:
+                    return compare(left, right) > 0;
+                case LESS_THAN:
+                    return compare(left, right) < 0;
+                case GREATER_THAN_EQUALS_TO:
+                    return compare(left, right) >= 0;
+                case LESS_THAN_EQUALS_TO:
+                    return compare(left, right) <= 0;
+                default:
+                    throw new IllegalStateException("Unexpected operator " + operator);
+            }
+        }
+    }
+
+    private enum BuiltinFunction {
+        UPPER, LOWER, CHAR_LENGTH, CHARACTER_LENGTH, ABS;
+
+        static BuiltinFunction forName(String name) {
+            for (BuiltinFunction function : values()) {
+                if (function.name().equalsIgnoreCase(name)) {
+                    return function;
+                }
+            }
+            return null;
+        }
+
+        Object apply(Object value) {
+            switch (this) {
+                case UPPER:
+                    return toString(value).toUpperCase(Locale.ROOT);
+                case LOWER:
+                    return toString(value).toLowerCase(Locale.ROOT);
+                case CHAR_LENGTH:
+                case CHARACTER_LENGTH:
+                    return toString(value).length();
+                case ABS:
+                    return abs(value);
+                default:
+                    throw new IllegalStateException("Unexpected function " + this);
+            }
+        }
+
+        private static String toString(Object value) {
+            if (value instanceof String) {
+                return (String) value;
+            }
+            throw new ConditionEvaluationException("Expected a string value but got " + value);
+        }
+
+        private static Object abs(Object value) {
+            if (value instanceof Integer) {
+                return Math.abs((Integer) value);
+            } else if (value instanceof Long) {
+                return Math.abs((Long) value);
+            } else if (value instanceof Short) {
+                return (short) Math.abs((Short) value);
+            } else if (value instanceof Byte) {
+                return (byte) Math.abs((Byte) value);
+            } else if (value instanceof Float) {
+                return Math.abs((Float) value);
+            } else if (value instanceof Double) {
+                return Math.abs((Double) value);
+            } else if (value instanceof BigDecimal) {
+                return ((BigDecimal) value).abs();
+            } else if (value instanceof BigInteger) {
+                return ((BigInteger) value).abs();
+            }
+            throw new ConditionEvaluationException("Expected a numeric value but got " + value);
+        }
+    }
+
+    private static final class BuiltinEvaluator implements CompiledExpression {
+        private final BuiltinFunction function;
+        private final CompiledExpression operand;
+
+        BuiltinEvaluator(BuiltinFunction function, CompiledExpression operand) {
+            this.function = function;
+            this.operand = operand;
+        }
+
+        @Override
+        public Object evaluate(StreamlineEvent event) {
+            Object value = operand.evaluate(event);
+            return value == null ? null : function.apply(value);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static final class UdfEvaluator implements CompiledExpression {
+        // the UDF interface for each number of arguments
+        private static final Class<?>[] INTERFACES = {
+                null, UDF.class, UDF2.class, UDF3.class, UDF4.class, UDF5.class, UDF6.class, UDF7.class, null
+        };
+
+        private final String name;
+        private final Object udf;
+        private final CompiledExpression[] operands;
+
+        UdfEvaluator(String name, Object udf, CompiledExpression[] operands) {
+            this.name = name;
+            this.udf = udf;
+            this.operands = operands;
+        }
+
+        @Override
+        public Object evaluate(StreamlineEvent event) {
+            Object[] args = new Object[operands.length];
+            for (int i = 0; i < args.length; i++) {
+                args[i] = operands[i].evaluate(event);
+            }
+            try {
+                switch (args.length) {
+                    case 1:
+                        return ((UDF<Object, Object>) udf).evaluate(args[0]);
+                    case 2:
+                        return ((UDF2<Object, Object, Object>) udf).evaluate(args[0], args[1]);
+                    case 3:
+                        return ((UDF3<Object, Object, Object, Object>) udf).evaluate(args[0], args[1], args[2]);
+                    case 4:
+                        return ((UDF4<Object, Object, Object, Object, Object>) udf)
+                                .evaluate(args[0], args[1], args[2], args[3]);
+                    case 5:
+                        return ((UDF5<Object, Object, Object, Object, Object, Object>) udf)
+                                .evaluate(args[0], args[1], args[2], args[3], args[4]);
+                    case 6:
+                        return ((UDF6<Object, Object, Object, Object, Object, Object, Object>) udf)
+                                .evaluate(args[0], args[1], args[2], args[3], args[4], args[5]);
+                    case 7:
+                        return ((UDF7<Object, Object, Object, Object, Object, Object, Object, Object>) udf)
+                                .evaluate(args[0], args[1], args[2], args[3], args[4], args[5], args[6]);
+                    default:
+                        throw new IllegalStateException("Unexpected number of arguments " + args.length);
+                }
+            } catch (ClassCastException e) {
+                throw new ConditionEvaluationException("Invalid arguments for function " + name, e);
+            }
+        }
+    }
+}
@@ -0,0 +1,365 @@
+/**
+  * Copyright 2017 Hortonworks.
+  *
+  * Licensed under the Apache License, Version 2.0 (the "License");
+  * you may not use this file except in compliance with the License.
+  * You may obtain a copy of the License at
+
+  *   http://www.apache.org/licenses/LICENSE-2.0
+
+  * Unless required by applicable law or agreed to in writing, software
+  * distributed under the License is distributed on an "AS IS" BASIS,
+  * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  * See the License for the specific language governing permissions and
+  * limitations under the License.
+ **/
+package com.hortonworks.streamline.streams.runtime.rule.compiled;
+
+import com.hortonworks.streamline.streams.StreamlineEvent;
+import com.hortonworks.streamline.streams.layout.component.rule.expression.BinaryExpression;
+import com.hortonworks.streamline.streams.layout.component.rule.expression.Expression;
+import com.hortonworks.streamline.streams.layout.component.rule.expression.FieldExpression;
+import com.hortonworks.streamline.streams.layout.component.rule.expression.Literal;
+import com.hortonworks.streamline.streams.layout.component.rule.expression.Operator;
+import com.hortonworks.streamline.streams.runtime.rule.RuleRuntime;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * An index over the conditions of the rules of a stream that returns, for an event, the rules that can match it.
+ * <p>
+ * For each rule evaluated with a {@link CompiledScript}, one conjunct of the condition of the form
+ * {@code field op literal} is picked as the access predicate, equality being preferred to ranges. The rules are
+ * indexed by the field of their access predicate in a hash table for equality and in sorted arrays of bounds for
+ * ranges, so that an event is only evaluated against the rules whose access predicate it satisfies, plus the rules
+ * that could not be indexed. The index only narrows down the candidates, the full condition of each candidate is
+ * still evaluated, hence the numeric bounds are compared inclusively as doubles, which never drops a rule that matches.
+ * </p>
+ * The candidates are returned in the order of the given rules.
+ */
+public class PredicateIndex {
+    private final List<RuleRuntime> ruleRuntimes;
+    private final BitSet unindexed = new BitSet();
+    private final Map<String, FieldIndex> fieldIndexes = new HashMap<>();
+
+    public PredicateIndex(List<RuleRuntime> ruleRuntimes) {
+        this.ruleRuntimes = ruleRuntimes;
+        Map<String, FieldIndex.Builder> builders = new HashMap<>();
+        for (int i = 0; i < ruleRuntimes.size(); i++) {
+            AccessPredicate predicate = getAccessPredicate(ruleRuntimes.get(i));
+            if (predicate == null) {
+                unindexed.set(i);
+            } else {
+                FieldIndex.Builder builder = builders.get(predicate.field);
+                if (builder == null) {
+                    builder = new FieldIndex.Builder(predicate.field);
+                    builders.put(predicate.field, builder);
+                }
+                builder.add(predicate, i);
+            }
+        }
+        for (FieldIndex.Builder builder : builders.values()) {
+            fieldIndexes.put(builder.field, builder.build());
+        }
+    }
+
+    /**
+     * Returns the rules that may match the given event, in the order of the indexed rules.
+     */
+    public List<RuleRuntime> getCandidates(StreamlineEvent event) {
+        if (fieldIndexes.isEmpty()) {
+            return ruleRuntimes;
+        }
+        BitSet candidates = (BitSet) unindexed.clone();
+        for (FieldIndex fieldIndex : fieldIndexes.values()) {
+            Object value = event.get(fieldIndex.field);
+            if (value != null) {
+                fieldIndex.addCandidates(value, candidates);
+            }
+        }
+        if (candidates.isEmpty()) {
+            return Collections.emptyList();
+        }
+        List<RuleRuntime> result = new ArrayList<>(candidates.cardinality());
+        for (int i = candidates.nextSetBit(0); i >= 0; i = candidates.nextSetBit(i + 1)) {
+            result.add(ruleRuntimes.get(i));
+        }
+        return result;
+    }
+
+    /**
+     * Returns the number of rules that are evaluated for every event.
+     */
+    public int getUnindexedCount() {
+        return unindexed.cardinality();
+    }
+
+    private static AccessPredicate getAccessPredicate(RuleRuntime ruleRuntime) {
+        if (!(ruleRuntime.getScript() instanceof CompiledScript) || ruleRuntime.getRule().getCondition() == null) {
+            return null;
+        }
+        List<Expression> conjuncts = new ArrayList<>();
+        addConjuncts(ruleRuntime.getRule().getCondition().getExpression(), conjuncts);
+        AccessPredicate result = null;
+        for (Expression conjunct : conjuncts) {
+            AccessPredicate predicate = AccessPredicate.of(conjunct);
+            if (predicate != null && (result == null || predicate.operator == Operator.EQUALS)) {
+                result = predicate;
+                if (predicate.operator == Operator.EQUALS) {
+                    break;
+                }
+            }
+        }
+        return result;
+    }
+
+    private static void addConjuncts(Expression expression, List<Expression> conjuncts) {
+        if (expression instanceof BinaryExpression && ((BinaryExpression) expression).getOperator() == Operator.AND) {
+            addConjuncts(((BinaryExpression) expression).getFirst(), conjuncts);
+            addConjuncts(((BinaryExpression) expression).getSecond(), conjuncts);
+        } else {
+            conjuncts.add(expression);
+        }
+    }
+
+    // the equality key of a value, numbers of different types that compare equal have the same key
+    private static Object key(Object value) {
+        if (value instanceof Number) {
+            return ((Number) value).doubleValue() + 0.0d;
+        } else if (value instanceof String || value instanceof Boolean) {
+            return value;
+        }
+        return null;
+    }
+
+    /**
+     * A predicate {@code field op literal}, with the operator flipped if the literal is the first operand.
+     */
+    private static final class AccessPredicate {
+        private final String field;
+        private final Operator operator;
+        private final Object value;
+
+        private AccessPredicate(String field, Operator operator, Object value) {
+            this.field = field;
+            this.operator = operator;
+            this.value = value;
+        }
+
+        static AccessPredicate of(Expression expression) {
+            if (!(expression instanceof BinaryExpression)) {
+                return null;
+            }
+            BinaryExpression binary = (BinaryExpression) expression;
+            Operator operator = binary.getOperator();
+            if (binary.getFirst() instanceof FieldExpression && binary.getSecond() instanceof Literal) {
+                return of((FieldExpression) binary.getFirst(), operator, (Literal) binary.getSecond());
+            } else if (binary.getFirst() instanceof Literal && binary.getSecond() instanceof FieldExpression) {
+                return of((FieldExpression) binary.getSecond(), flip(operator), (Literal) binary.getFirst());
+            }
+            return null;
+        }
+
+        private static AccessPredicate of(FieldExpression field, Operator operator, Literal literal) {
+            if (operator == null || field == FieldExpression.STAR) {
+                return null;
+            }
+            Object value;
+            try {
+                value = ExpressionCompiler.parseLiteral(literal.getValue());
+            } catch (IllegalArgumentException e) {
+                return null;
+            }
+            if (value == null || (operator != Operator.EQUALS && !(value instanceof Number))) {
+                return null;
+            }
+            switch (operator) {
+                case EQUALS:
+                case GREATER_THAN:
+                case GREATER_THAN_EQUALS_TO:
+                case LESS_THAN:
+                case LESS_THAN_EQUALS_TO:
+                    return new AccessPredicate(field.getValue().getName(), operator, value);
+                default:
+                    return null;
+            }
+        }
+
+        private static Operator flip(Operator operator) {
+            switch (operator) {
+                case GREATER_THAN:
+                    return Operator.LESS_THAN;
+                case LESS_THAN:
+                    return Operator.GREATER_THAN;
+                case GREATER_THAN_EQUALS_TO:
+                    return Operator.LESS_THAN_EQUALS_TO;
+                case LESS_THAN_EQUALS_TO:
+                    return Operator.GREATER_THAN_EQUALS_TO;
+                case EQUALS:
+                    return Operator.EQUALS;
+                default:
+                    return null;
+            }
+        }
+    }
+
+    /**
+     * The rules whose access predicate is on a given field.
+     */
+    private static final class FieldIndex {
+        private final String field;
+        private final Map<Object, int[]> equals;
+        // rules with a predicate field > bound or field >= bound, sorted by bound
+        private final double[] lowerBounds;
+        private final int[] lowerBoundRules;
+        // rules with a predicate field < bound or field <= bound, sorted by bound
+        private final double[] upperBounds;
+        private final int[] upperBoundRules;
+
+        private FieldIndex(String field, Map<Object, int[]> equals, double[] lowerBounds, int[] lowerBoundRules,
+                           double[] upperBounds, int[] upperBoundRules) {
+            this.field = field;
+            this.equals = equals;
+            this.lowerBounds = lowerBounds;
+            this.lowerBoundRules = lowerBoundRules;
+            this.upperBounds = upperBounds;
+            this.upperBoundRules = upperBoundRules;
+        }
+
+        void addCandidates(Object value, BitSet candidates) {
+            Object key = key(value);
+            if (key != null) {
+                int[] rules = equals.get(key);
+                if (rules != null) {
+                    for (int rule : rules) {
+                        candidates.set(rule);
+                    }
+                }
+            }
+            if (value instanceof Number) {
+                double doubleValue = ((Number) value).doubleValue();
+                // bounds <= value
+                int end = upperBoundIndex(lowerBounds, doubleValue);
+                for (int i = 0; i < end; i++) {
+                    candidates.set(lowerBoundRules[i]);
+                }
+                // bounds >= value
+                for (int i = lowerBoundIndex(upperBounds, doubleValue); i < upperBounds.length; i++) {
+                    candidates.set(upperBoundRules[i]);
+                }
+            }
+        }
+
+        // index of the first bound > value
+        private static int upperBoundIndex(double[] bounds, double value) {
+            int low = 0;
+            int high = bounds.length;
+            while (low < high) {
+                int mid = (low + high) >>> 1;
+                if (Double.compare(bounds[mid], value) <= 0) {
+                    low = mid + 1;
+                } else {
+                    high = mid;
+                }
+            }
+            return low;
+        }
+
+        // index of the first bound >= value
+        private static int lowerBoundIndex(double[] bounds, double value) {
+            int low = 0;
+            int high = bounds.length;
+            while (low < high) {
+                int mid = (low + high) >>> 1;
+                if (Double.compare(bounds[mid], value) < 0) {
+                    low = mid + 1;
+                } else {
+                    high = mid;
+                }
+            }
+            return low;
+        }
+
+        private static final class Builder {
+            private final String field;
+            private final Map<Object, List<Integer>> equals = new HashMap<>();
+            private final List<Bound> lowerBounds = new ArrayList<>();
+            private final List<Bound> upperBounds = new ArrayList<>();
+
+            Builder(String field) {
+                this.field = field;
+            }
+
+            void add(AccessPredicate predicate, int rule) {
+                switch (predicate.operator) {
+                    case EQUALS:
+                        Object key = key(predicate.value);
+                        List<Integer> rules = equals.get(key);
+                        if (rules == null) {
+                            rules = new ArrayList<>();
+                            equals.put(key, rules);
+                        }
+                        rules.add(rule);
+                        break;
+                    case GREATER_THAN:
+                    case GREATER_THAN_EQUALS_TO:
+                        lowerBounds.add(new Bound(((Number) predicate.value).doubleValue(), rule));
+                        break;
+                    default:
+                        upperBounds.add(new Bound(((Number) predicate.value).doubleValue(), rule));
+                }
+            }
+
+            FieldIndex build() {
+                Map<Object, int[]> equalsIndex = new HashMap<>();
+                for (Map.Entry<Object, List<Integer>> entry : equals.entrySet()) {
+                    int[] rules = new int[entry.getValue().size()];
+                    for (int i = 0; i < rules.length; i++) {
+                        rules[i] = entry.getValue().get(i);
+                    }
+                    equalsIndex.put(entry.getKey(), rules);
+                }
+                Collections.sort(lowerBounds);
+                Collections.sort(upperBounds);
+                return new FieldIndex(field, equalsIndex, values(lowerBounds), rules(lowerBounds),
+                        values(upperBounds), rules(upperBounds));
+            }
+
+            private static double[] values(List<Bound> bounds) {
+                double[] result = new double[bounds.size()];
+                for (int i = 0; i < result.length; i++) {
+                    result[i] = bounds.get(i).value;
+                }
+                return result;
+            }
+
+            private static int[] rules(List<Bound> bounds) {
+                int[] result = new int[bounds.size()];
+                for (int i = 0; i < result.length; i++) {
+                    result[i] = bounds.get(i).rule;
+                }
+                return result;
+            }
+        }
+
+        private static final class Bound implements Comparable<Bound> {
+            private final double value;
+            private final int rule;
+
+            Bound(double value, int rule) {
+                this.value = value;
+                this.rule = rule;
+            }
+
+            @Override
+            public int compareTo(Bound other) {
+                return Double.compare(value, other.value);
+            }
+        }
+    }
+}
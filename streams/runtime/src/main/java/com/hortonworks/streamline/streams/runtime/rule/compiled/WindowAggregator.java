@@ -0,0 +1,406 @@
+/**
+  * Copyright 2017 Hortonworks.
+  *
+  * Licensed under the Apache License, Version 2.0 (the "License");
+  * you may not use this file except in compliance with the License.
+  * You may obtain a copy of the License at
+
+  *   http://www.apache.org/licenses/LICENSE-2.0
+
+  * Unless required by applicable law or agreed to in writing, software
+  * distributed under the License is distributed on an "AS IS" BASIS,
+  * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  * See the License for the specific language governing permissions and
+  * limitations under the License.
+ **/
+package com.hortonworks.streamline.streams.runtime.rule.compiled;
+
+import com.hortonworks.streamline.common.Schema;
+import com.hortonworks.streamline.streams.StreamlineEvent;
+import com.hortonworks.streamline.streams.common.StreamlineEventImpl;
+import com.hortonworks.streamline.streams.layout.component.impl.RulesProcessor;
+import com.hortonworks.streamline.streams.layout.component.rule.Rule;
+import com.hortonworks.streamline.streams.layout.component.rule.exception.ConditionEvaluationException;
+import com.hortonworks.streamline.streams.layout.component.rule.expression.AggregateFunctionExpression;
+import com.hortonworks.streamline.streams.layout.component.rule.expression.Expression;
+import com.hortonworks.streamline.streams.layout.component.rule.expression.FieldExpression;
+import com.hortonworks.streamline.streams.layout.component.rule.expression.FunctionExpression;
+import com.hortonworks.streamline.streams.layout.component.rule.expression.GroupBy;
+import com.hortonworks.streamline.streams.layout.component.rule.expression.Window;
+import com.hortonworks.streamline.streams.runtime.rule.condition.expression.StormSqlExpression;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Maintains the groups and aggregates of a windowed {@link Rule} incrementally, as events enter and leave
+ * the window, instead of evaluating all the events of the window on every activation.
+ * <p>
+ * The events that satisfy the condition of the rule are grouped by the group by expressions of the rule and each
+ * group keeps one aggregate per aggregate function call of the projection and having clause. The first event of
+ * a group is kept to evaluate the non aggregated expressions of the projection, which only depend on the group by
+ * expressions. {@link #getResults(long)} evaluates the having clause and the projection for each group.
+ * </p>
+ * The events that leave the window can only be removed with {@link #retract(StreamlineEvent)} if all the aggregate
+ * functions are {@link AggregateFunction#isRetractable() retractable}, otherwise the aggregator has to be
+ * {@link #clear() cleared} and the events of the window added again.
+ * <p>
+ * For two phase aggregation, {@link #getPartials()} returns the groups as partial aggregate events which another
+ * aggregator of the same rule combines with {@link #merge(StreamlineEvent)}, if all the aggregate functions are
+ * {@link AggregateFunction#isMergeable() mergeable}.
+ * </p>
+ */
+public class WindowAggregator {
+    private static final Logger LOG = LoggerFactory.getLogger(WindowAggregator.class);
+    private static final String AGGREGATE_FIELD_PREFIX = "__aggregate";
+    private static final String PARTIAL_AGGREGATE_VALUES = "__aggregates";
+    private static final String PARTIAL_AGGREGATE_COUNT = "__count";
+
+    private final Rule rule;
+    private final List<String> requiredFields = new ArrayList<>();
+    private final CompiledExpression condition;
+    private final List<CompiledExpression> groupBy = new ArrayList<>();
+    private final List<AggregateCall> aggregates = new ArrayList<>();
+    private final List<CompiledExpression> projections = new ArrayList<>();
+    private final List<String> outputFields;
+    private final CompiledExpression having;
+    private final boolean retractable;
+    private final boolean mergeable;
+    private final Map<List<Object>, Group> groups = new LinkedHashMap<>();
+
+    /**
+     * Compiles the given rule.
+     *
+     * @throws UnsupportedOperationException if the rule cannot be aggregated incrementally
+     */
+    public WindowAggregator(Rule rule) {
+        this.rule = rule;
+        if (rule.getProjection() == null) {
+            throw new UnsupportedOperationException("Rule without projection");
+        }
+        StormSqlExpression expression = new StormSqlExpression(rule.getCondition(), rule.getProjection(),
+                rule.getGroupBy() != null ? rule.getGroupBy() : new GroupBy(Collections.<Expression>emptyList()),
+                rule.getHaving());
+        for (Schema.Field field : expression.getStormSqlFields()) {
+            // the * of COUNT(*) is not a field
+            if (!field.equals(FieldExpression.STAR.getValue())) {
+                requiredFields.add(field.getName());
+            }
+        }
+        AggregatingCompiler compiler = new AggregatingCompiler();
+        condition = rule.getCondition() != null ? compiler.compileRow(rule.getCondition().getExpression()) : null;
+        if (rule.getGroupBy() != null) {
+            for (Expression groupByExpression : rule.getGroupBy().getExpressions()) {
+                groupBy.add(compiler.compileRow(groupByExpression));
+            }
+        }
+        for (Expression projected : rule.getProjection().getExpressions()) {
+            projections.add(compiler.compile(projected));
+        }
+        outputFields = expression.getOutputFields();
+        having = rule.getHaving() != null ? compiler.compile(rule.getHaving().getExpression()) : null;
+        boolean allRetractable = true;
+        boolean allMergeable = true;
+        for (AggregateCall aggregate : aggregates) {
+            allRetractable &= aggregate.function.isRetractable();
+            allMergeable &= aggregate.function.isMergeable();
+        }
+        retractable = allRetractable;
+        mergeable = allMergeable;
+    }
+
+    public Rule getRule() {
+        return rule;
+    }
+
+    /**
+     * Returns true if the events leaving the window can be removed with {@link #retract(StreamlineEvent)}.
+     */
+    public boolean isRetractable() {
+        return retractable;
+    }
+
+    /**
+     * Returns true if the partial aggregates of the groups can be combined with {@link #merge(StreamlineEvent)}.
+     */
+    public boolean isMergeable() {
+        return mergeable;
+    }
+
+    public void add(StreamlineEvent event) {
+        List<Object> key = evaluateKey(event);
+        if (key == null) {
+            return;
+        }
+        Group group = groups.get(key);
+        if (group == null) {
+            group = new Group(event, aggregates);
+            groups.put(key, group);
+        }
+        group.count++;
+        for (int i = 0; i < aggregates.size(); i++) {
+            AggregateCall aggregate = aggregates.get(i);
+            Object[] values = aggregate.evaluateArguments(event);
+            if (values != null) {
+                group.aggregates[i] = aggregate.function.add(group.aggregates[i], values);
+            }
+        }
+    }
+
+    /**
+     * Removes an event that was previously added.
+     *
+     * @throws UnsupportedOperationException if the aggregator is not retractable
+     */
+    public void retract(StreamlineEvent event) {
+        if (!retractable) {
+            throw new UnsupportedOperationException("Rule " + rule.getId() + " has aggregates that are not retractable");
+        }
+        List<Object> key = evaluateKey(event);
+        if (key == null) {
+            return;
+        }
+        Group group = groups.get(key);
+        if (group == null) {
+            LOG.debug("Retracting event {} of unknown group {}", event, key);
+            return;
+        }
+        if (--group.count == 0) {
+            groups.remove(key);
+            return;
+        }
+        for (int i = 0; i < aggregates.size(); i++) {
+            AggregateCall aggregate = aggregates.get(i);
+            Object[] values = aggregate.evaluateArguments(event);
+            if (values != null) {
+                group.aggregates[i] = aggregate.function.retract(group.aggregates[i], values);
+            }
+        }
+    }
+
+    public void clear() {
+        groups.clear();
+    }
+
+    /**
+     * Returns one partial aggregate event per group. The events carry the fields of the first event of the group, the
+     * id of the rule and the group key, in the {@link RulesProcessor#PARTIAL_AGGREGATE_RULE_ID} and
+     * {@link RulesProcessor#PARTIAL_AGGREGATE_GROUP_KEY} fields, and the aggregates of the group which must not be
+     * modified afterwards, so the aggregator is usually {@link #clear() cleared} once the partials are emitted.
+     */
+    public List<StreamlineEvent> getPartials() {
+        List<StreamlineEvent> partials = new ArrayList<>(groups.size());
+        for (Map.Entry<List<Object>, Group> entry : groups.entrySet()) {
+            Group group = entry.getValue();
+            Map<String, Object> fieldsAndValues = new HashMap<>();
+            fieldsAndValues.put(RulesProcessor.PARTIAL_AGGREGATE_RULE_ID, rule.getId());
+            fieldsAndValues.put(RulesProcessor.PARTIAL_AGGREGATE_GROUP_KEY, new ArrayList<>(entry.getKey()));
+            fieldsAndValues.put(PARTIAL_AGGREGATE_VALUES, new ArrayList<>(Arrays.asList(group.aggregates)));
+            fieldsAndValues.put(PARTIAL_AGGREGATE_COUNT, group.count);
+            partials.add(group.first.addFieldsAndValues(fieldsAndValues));
+        }
+        return partials;
+    }
+
+    /**
+     * Combines a partial aggregate event returned by {@link #getPartials()} of an aggregator of the same rule with the
+     * group of the partial. The partial aggregates are not modified.
+     *
+     * @throws UnsupportedOperationException if the aggregator is not mergeable
+     */
+    @SuppressWarnings("unchecked")
+    public void merge(StreamlineEvent partial) {
+        if (!mergeable) {
+            throw new UnsupportedOperationException("Rule " + rule.getId() + " has aggregates that are not mergeable");
+        }
+        List<Object> key = (List<Object>) partial.get(RulesProcessor.PARTIAL_AGGREGATE_GROUP_KEY);
+        List<Object> partialAggregates = (List<Object>) partial.get(PARTIAL_AGGREGATE_VALUES);
+        if (key == null || partialAggregates == null || partialAggregates.size() != aggregates.size()) {
+            LOG.error("Invalid partial aggregate {} for rule {}", partial, rule.getId());
+            return;
+        }
+        Group group = groups.get(key);
+        if (group == null) {
+            group = new Group(partial, aggregates);
+            groups.put(key, group);
+        }
+        group.count += ((Number) partial.get(PARTIAL_AGGREGATE_COUNT)).longValue();
+        for (int i = 0; i < aggregates.size(); i++) {
+            group.aggregates[i] = aggregates.get(i).function.merge(group.aggregates[i], partialAggregates.get(i));
+        }
+    }
+
+    /**
+     * Returns one event per group that satisfies the having clause, with the projected fields of the rule.
+     */
+    public List<StreamlineEvent> getResults(long windowId) {
+        List<StreamlineEvent> results = new ArrayList<>(groups.size());
+        for (Group group : groups.values()) {
+            try {
+                StreamlineEvent groupEvent = group.toEvent(aggregates, windowId);
+                if (having != null && !Boolean.TRUE.equals(having.evaluate(groupEvent))) {
+                    continue;
+                }
+                Map<String, Object> fieldsAndValues = new HashMap<>();
+                for (int i = 0; i < projections.size(); i++) {
+                    Object value = projections.get(i).evaluate(groupEvent);
+                    if (value != null) {
+                        fieldsAndValues.put(outputFields.get(i), value);
+                    }
+                }
+                results.add(new StreamlineEventImpl(fieldsAndValues, ""));
+            } catch (ConditionEvaluationException | ClassCastException ex) {
+                LOG.error("Got exception {} while evaluating group of rule {}", ex, rule.getId());
+            }
+        }
+        return results;
+    }
+
+    // returns the group key of the event or null if the event does not satisfy the rule condition
+    private List<Object> evaluateKey(StreamlineEvent event) {
+        for (String field : requiredFields) {
+            if (event.get(field) == null) {
+                return null;
+            }
+        }
+        try {
+            if (condition != null && !Boolean.TRUE.equals(condition.evaluate(event))) {
+                return null;
+            }
+            if (groupBy.isEmpty()) {
+                return Collections.emptyList();
+            }
+            Object[] key = new Object[groupBy.size()];
+            for (int i = 0; i < key.length; i++) {
+                key[i] = groupBy.get(i).evaluate(event);
+            }
+            return Arrays.asList(key);
+        } catch (ConditionEvaluationException | ClassCastException ex) {
+            LOG.error("Got exception {} while processing StreamlineEvent {}", ex, event);
+            return null;
+        }
+    }
+
+    private static final class Group {
+        private final StreamlineEvent first;
+        private final Object[] aggregates;
+        private long count;
+
+        Group(StreamlineEvent first, List<AggregateCall> aggregateCalls) {
+            this.first = first;
+            this.aggregates = new Object[aggregateCalls.size()];
+            for (int i = 0; i < aggregates.length; i++) {
+                aggregates[i] = aggregateCalls.get(i).function.init();
+            }
+        }
+
+        // the first event of the group with the results of the aggregates and the window id
+        StreamlineEvent toEvent(List<AggregateCall> aggregateCalls, long windowId) {
+            Map<String, Object> fieldsAndValues = new HashMap<>();
+            for (int i = 0; i < aggregates.length; i++) {
+                Object result = aggregateCalls.get(i).function.result(aggregates[i]);
+                if (result != null) {
+                    fieldsAndValues.put(aggregateCalls.get(i).field, result);
+                }
+            }
+            fieldsAndValues.put(Window.WINDOW_ID, windowId);
+            return first.addFieldsAndValues(fieldsAndValues);
+        }
+    }
+
+    private static final class AggregateCall {
+        private final String field;
+        private final AggregateFunction function;
+        private final CompiledExpression[] arguments;
+
+        AggregateCall(String field, AggregateFunction function, CompiledExpression[] arguments) {
+            this.field = field;
+            this.function = function;
+            this.arguments = arguments;
+        }
+
+        // aggregates ignore the rows where an argument is null
+        Object[] evaluateArguments(StreamlineEvent event) {
+            Object[] values = new Object[arguments.length];
+            for (int i = 0; i < values.length; i++) {
+                values[i] = arguments[i].evaluate(event);
+                if (values[i] == null) {
+                    return null;
+                }
+            }
+            return values;
+        }
+    }
+
+    private static final class AggregateResult implements CompiledExpression {
+        private final String field;
+
+        AggregateResult(String field) {
+            this.field = field;
+        }
+
+        @Override
+        public Object evaluate(StreamlineEvent event) {
+            return event.get(field);
+        }
+    }
+
+    /**
+     * Compiles the aggregate function calls into reads of the aggregate results of the group.
+     */
+    private final class AggregatingCompiler extends ExpressionCompiler {
+        private boolean row;
+
+        // compiles an expression evaluated on the input events, that must not contain aggregates
+        CompiledExpression compileRow(Expression expression) {
+            row = true;
+            try {
+                return compile(expression);
+            } finally {
+                row = false;
+            }
+        }
+
+        @Override
+        protected CompiledExpression compileAggregate(AggregateFunctionExpression expression) {
+            if (row) {
+                throw new UnsupportedOperationException("Aggregate function " + expression.getFunction().getName()
+                        + " is not allowed here");
+            }
+            FunctionExpression.Function function = expression.getFunction();
+            List<CompiledExpression> arguments = new ArrayList<>();
+            row = true;
+            try {
+                for (Expression operand : expression.getOperands()) {
+                    if (operand != FieldExpression.STAR) {
+                        arguments.add(compile(operand));
+                    }
+                }
+            } finally {
+                row = false;
+            }
+            AggregateFunction aggregateFunction;
+            if (function.isUdf()) {
+                aggregateFunction = AggregateFunctions.udaf(getFunctionInstance(function.getClassName()),
+                        arguments.size());
+            } else {
+                aggregateFunction = AggregateFunctions.builtin(function.getName());
+                if (aggregateFunction == null) {
+                    throw new UnsupportedOperationException("Aggregate function " + function.getName()
+                            + " is not supported");
+                }
+            }
+            String field = AGGREGATE_FIELD_PREFIX + aggregates.size();
+            aggregates.add(new AggregateCall(field, aggregateFunction,
+                    arguments.toArray(new CompiledExpression[arguments.size()])));
+            return new AggregateResult(field);
+        }
+    }
+}
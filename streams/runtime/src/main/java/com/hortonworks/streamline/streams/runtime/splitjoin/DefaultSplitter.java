@@ -19,6 +19,7 @@ package com.hortonworks.streamline.streams.runtime.splitjoin;
 import com.hortonworks.streamline.streams.StreamlineEvent;
 import com.hortonworks.streamline.streams.Result;
 import com.hortonworks.streamline.streams.common.StreamlineEventImpl;
+import com.hortonworks.streamline.streams.common.id.EventIdGenerators;
 
 import java.util.ArrayList;
 import java.util.Collections;
@@ -26,7 +27,6 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
-import java.util.UUID;
 
 /**
  * This class broadcasts the received event to all the output streams. This can be extended to customize split logic.
@@ -59,14 +59,14 @@ public class DefaultSplitter implements Splitter {
         headers.put(SplitActionRuntime.SPLIT_PARTITION_ID, partNo);
         headers.put(SplitActionRuntime.SPLIT_TOTAL_PARTITIONS_ID, totalParts);
         return new StreamlineEventImpl(event, event.getDataSourceId(),
-                UUID.randomUUID().toString(), headers, stream, event.getAuxiliaryFieldsAndValues());
+                EventIdGenerators.next(), headers, stream, event.getAuxiliaryFieldsAndValues());
     }
 
     /**
      * @return groupid for a given {@code event}
      */
     protected String getGroupId(StreamlineEvent event) {
-        return UUID.randomUUID().toString();
+        return EventIdGenerators.next().toString();
     }
 
 }
@@ -16,33 +16,43 @@
 
 package com.hortonworks.streamline.streams.runtime.splitjoin;
 
-import com.google.common.cache.Cache;
-import com.google.common.cache.CacheBuilder;
 import com.hortonworks.streamline.streams.StreamlineEvent;
 
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
-import java.util.concurrent.TimeUnit;
 
 /**
  * This class stores all split events of a specific split group.
+ * <p>
+ * The events are kept in a slot array indexed by their partition id, partition ids outside of the slot range are kept
+ * in a map. The group is complete when it received an event for as many distinct partitions as the total number of
+ * partitions of the split.
+ * </p>
  */
 public class EventGroup {
-    private final Cache<Integer, StreamlineEvent> splitEvents;
+    // partition ids of split events are small consecutive numbers
+    private static final int MAX_SLOTS = 1024;
+
     private final String groupId;
     private final String dataSourceId;
     private final long eventExpiryInterval;
 
+    private StreamlineEvent[] slots = new StreamlineEvent[4];
+    private Map<Integer, StreamlineEvent> otherPartitions;
+    private int receivedPartitions;
     private int totalPartitionEvents = -1;
 
+    // expiry of the group in the store holding it
+    HashedTimerWheel.Timeout<EventGroup> timeout;
+
     public EventGroup(String groupId, String dataSourceId, long eventExpiryInterval) {
         this.groupId = groupId;
         this.dataSourceId = dataSourceId;
         this.eventExpiryInterval = eventExpiryInterval;
-
-        splitEvents =
-                CacheBuilder.newBuilder()
-                .expireAfterWrite(eventExpiryInterval, TimeUnit.MILLISECONDS).build();
     }
 
     public void addPartitionEvent(StreamlineEvent partitionedEvent) {
@@ -51,7 +61,24 @@ public class EventGroup {
             throw new IllegalArgumentException("Received event is not of partition event as it doe not contain header  with name: "+SplitActionRuntime.SPLIT_PARTITION_ID);
         }
 
-        splitEvents.put((Integer) header.get(SplitActionRuntime.SPLIT_PARTITION_ID), partitionedEvent);
+        final int partitionId = (Integer) header.get(SplitActionRuntime.SPLIT_PARTITION_ID);
+        final StreamlineEvent previous;
+        if (partitionId >= 0 && partitionId < MAX_SLOTS) {
+            if (partitionId >= slots.length) {
+                slots = Arrays.copyOf(slots, Math.min(MAX_SLOTS, Math.max(partitionId + 1, slots.length * 2)));
+            }
+            previous = slots[partitionId];
+            slots[partitionId] = partitionedEvent;
+        } else {
+            if (otherPartitions == null) {
+                otherPartitions = new HashMap<>();
+            }
+            previous = otherPartitions.put(partitionId, partitionedEvent);
+        }
+        if (previous == null) {
+            receivedPartitions++;
+        }
+
         if(header.get(SplitActionRuntime.SPLIT_TOTAL_PARTITIONS_ID) != null) {
             int x = (Integer) header.get(SplitActionRuntime.SPLIT_TOTAL_PARTITIONS_ID);
             if(totalPartitionEvents < x) {
@@ -62,7 +89,7 @@ public class EventGroup {
     }
 
     public boolean isComplete() {
-        return splitEvents.size() == totalPartitionEvents;
+        return receivedPartitions == totalPartitionEvents;
     }
 
     public String getDataSourceId() {
@@ -73,16 +100,29 @@ public class EventGroup {
         return groupId;
     }
 
+    /**
+     * @return the split events of the group, ordered by partition id for the partitions in the slot range.
+     */
     public Iterable<StreamlineEvent> getSplitEvents() {
-        return Collections.unmodifiableCollection(splitEvents.asMap().values());
+        List<StreamlineEvent> splitEvents = new ArrayList<>(receivedPartitions);
+        for (StreamlineEvent event : slots) {
+            if (event != null) {
+                splitEvents.add(event);
+            }
+        }
+        if (otherPartitions != null) {
+            splitEvents.addAll(otherPartitions.values());
+        }
+        return Collections.unmodifiableCollection(splitEvents);
     }
 
     @Override
     public String toString() {
         return "EventGroup{" +
-                "partitionedEvents=" + splitEvents +
+                "partitionedEvents=" + getSplitEvents() +
                 ", groupId='" + groupId + '\'' +
                 ", dataSourceId='" + dataSourceId + '\'' +
+                ", eventExpiryInterval=" + eventExpiryInterval +
                 ", totalPartitionEvents=" + totalPartitionEvents +
                 '}';
     }
@@ -0,0 +1,114 @@
+/**
+  * Copyright 2017 Hortonworks.
+  *
+  * Licensed under the Apache License, Version 2.0 (the "License");
+  * you may not use this file except in compliance with the License.
+  * You may obtain a copy of the License at
+
+  *   http://www.apache.org/licenses/LICENSE-2.0
+
+  * Unless required by applicable law or agreed to in writing, software
+  * distributed under the License is distributed on an "AS IS" BASIS,
+  * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  * See the License for the specific language governing permissions and
+  * limitations under the License.
+ **/
+
+package com.hortonworks.streamline.streams.runtime.splitjoin;
+
+import com.hortonworks.streamline.streams.StreamlineEvent;
+import com.hortonworks.streamline.streams.layout.component.impl.splitjoin.JoinAction;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Join state of the split groups in flight. The groups are kept by group id and their expiry is tracked by a single
+ * {@link HashedTimerWheel}.
+ * <p>
+ * A group expires once the group expiry interval has passed since it was created, or the event expiry interval has
+ * passed since its first event was received, as the group can no longer complete after its first event expired.
+ * </p>
+ * This class is not thread safe.
+ */
+public class EventGroupStore {
+    private static final int WHEEL_SIZE = 512;
+    // number of ticks of the wheel within the expiry interval
+    private static final int TICKS_PER_EXPIRY_INTERVAL = 128;
+
+    private final long expiryInterval;
+    private final long eventExpiryInterval;
+    private final Map<String, EventGroup> groups = new HashMap<>();
+    private final HashedTimerWheel<EventGroup> timerWheel;
+
+    /**
+     * @param groupExpiryInterval expiry interval in milli seconds of a split group
+     * @param eventExpiryInterval expiry interval in milli seconds of an event of a split group
+     * @param nowMs current time in milli seconds
+     */
+    public EventGroupStore(long groupExpiryInterval, long eventExpiryInterval, long nowMs) {
+        this.expiryInterval = Math.min(groupExpiryInterval, eventExpiryInterval);
+        this.eventExpiryInterval = eventExpiryInterval;
+        this.timerWheel = expires() ? new HashedTimerWheel<EventGroup>(
+                Math.max(1, expiryInterval / TICKS_PER_EXPIRY_INTERVAL), WHEEL_SIZE, nowMs) : null;
+    }
+
+    /**
+     * Adds a split event to its group, creating the group if needed.
+     *
+     * @return the group of the event
+     */
+    public EventGroup add(String groupId, StreamlineEvent event, long nowMs) {
+        EventGroup eventGroup = groups.get(groupId);
+        if (eventGroup == null) {
+            eventGroup = new EventGroup(groupId, event.getDataSourceId(), eventExpiryInterval);
+            groups.put(groupId, eventGroup);
+            if (expires()) {
+                long deadline = nowMs > Long.MAX_VALUE - expiryInterval ? Long.MAX_VALUE : nowMs + expiryInterval;
+                eventGroup.timeout = timerWheel.schedule(eventGroup, deadline);
+            }
+        }
+        eventGroup.addPartitionEvent(event);
+        return eventGroup;
+    }
+
+    /**
+     * Removes the group with the given id, for example once it is complete and joined.
+     */
+    public EventGroup remove(String groupId) {
+        EventGroup eventGroup = groups.remove(groupId);
+        if (eventGroup != null && eventGroup.timeout != null) {
+            timerWheel.cancel(eventGroup.timeout);
+            eventGroup.timeout = null;
+        }
+        return eventGroup;
+    }
+
+    /**
+     * Removes and returns the groups which expired before the given time.
+     */
+    public List<EventGroup> expire(long nowMs) {
+        if (!expires() || groups.isEmpty()) {
+            return Collections.emptyList();
+        }
+        List<EventGroup> expired = new ArrayList<>();
+        timerWheel.advance(nowMs, expired);
+        for (EventGroup eventGroup : expired) {
+            eventGroup.timeout = null;
+            groups.remove(eventGroup.getGroupId());
+        }
+        return expired;
+    }
+
+    public int size() {
+        return groups.size();
+    }
+
+    // the default intervals never expire
+    private boolean expires() {
+        return expiryInterval < JoinAction.DEFAULT_EXPIRY_INTERVAL;
+    }
+}
@@ -0,0 +1,157 @@
+/**
+  * Copyright 2017 Hortonworks.
+  *
+  * Licensed under the Apache License, Version 2.0 (the "License");
+  * you may not use this file except in compliance with the License.
+  * You may obtain a copy of the License at
+
+  *   http://www.apache.org/licenses/LICENSE-2.0
+
+  * Unless required by applicable law or agreed to in writing, software
+  * distributed under the License is distributed on an "AS IS" BASIS,
+  * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  * See the License for the specific language governing permissions and
+  * limitations under the License.
+ **/
+
+package com.hortonworks.streamline.streams.runtime.splitjoin;
+
+import java.util.List;
+
+/**
+ * Hashed timer wheel tracking the deadlines of many items with constant time scheduling and cancellation.
+ * <p>
+ * The wheel is a ring of buckets, each covering a tick of time. An item is added to the bucket of the tick of its
+ * deadline and each {@link #advance(long, List)} visits the buckets of the ticks passed since the previous one,
+ * expiring the items whose deadline has passed. The items of a bucket with a deadline in a later revolution of the
+ * wheel stay in the bucket.
+ * </p>
+ * This class is not thread safe.
+ *
+ * @param <T> the type of the items
+ */
+public class HashedTimerWheel<T> {
+
+    /**
+     * An item scheduled in the wheel, linked into the list of its bucket.
+     */
+    public static final class Timeout<T> {
+        private final T item;
+        private final long deadline;
+        private int bucket = -1;
+        private Timeout<T> prev;
+        private Timeout<T> next;
+
+        private Timeout(T item, long deadline) {
+            this.item = item;
+            this.deadline = deadline;
+        }
+
+        public T getItem() {
+            return item;
+        }
+
+        public long getDeadline() {
+            return deadline;
+        }
+    }
+
+    private final long tickMs;
+    private final long startMs;
+    private final Timeout<T>[] buckets;
+    private final int mask;
+    private long currentTick;
+    private int size;
+
+    /**
+     * @param tickMs duration of a tick in milliseconds, the precision of the deadlines
+     * @param wheelSize number of buckets, rounded up to a power of two
+     * @param startMs current time in milliseconds
+     */
+    public HashedTimerWheel(long tickMs, int wheelSize, long startMs) {
+        if (tickMs <= 0 || wheelSize <= 0) {
+            throw new IllegalArgumentException("tickMs and wheelSize must be positive");
+        }
+        int capacity = Integer.highestOneBit(wheelSize - 1) << 1;
+        this.tickMs = tickMs;
+        this.startMs = startMs;
+        this.buckets = (Timeout<T>[]) new Timeout[Math.max(1, capacity)];
+        this.mask = buckets.length - 1;
+    }
+
+    /**
+     * Schedules the item to expire at the given deadline.
+     */
+    public Timeout<T> schedule(T item, long deadlineMs) {
+        Timeout<T> timeout = new Timeout<>(item, deadlineMs);
+        // the first tick ending at or after the deadline, at least the next tick
+        long tick = Math.max(currentTick + 1, ceilDiv(deadlineMs - startMs, tickMs));
+        int bucket = (int) (tick & mask);
+        timeout.bucket = bucket;
+        timeout.next = buckets[bucket];
+        if (timeout.next != null) {
+            timeout.next.prev = timeout;
+        }
+        buckets[bucket] = timeout;
+        size++;
+        return timeout;
+    }
+
+    /**
+     * Removes the item of the given timeout from the wheel, does nothing if it is already expired or cancelled.
+     */
+    public void cancel(Timeout<T> timeout) {
+        if (timeout.bucket < 0) {
+            return;
+        }
+        if (timeout.prev != null) {
+            timeout.prev.next = timeout.next;
+        } else {
+            buckets[timeout.bucket] = timeout.next;
+        }
+        if (timeout.next != null) {
+            timeout.next.prev = timeout.prev;
+        }
+        timeout.prev = null;
+        timeout.next = null;
+        timeout.bucket = -1;
+        size--;
+    }
+
+    /**
+     * Advances the wheel to the given time, removes the items whose deadline has passed and adds them to
+     * {@code expired}.
+     *
+     * @return the number of expired items
+     */
+    public int advance(long nowMs, List<T> expired) {
+        long nowTick = Math.floorDiv(nowMs - startMs, tickMs);
+        int count = 0;
+        // a full revolution visits every bucket
+        long ticks = Math.min(nowTick - currentTick, buckets.length);
+        for (long i = 1; i <= ticks; i++) {
+            Timeout<T> timeout = buckets[(int) ((currentTick + i) & mask)];
+            while (timeout != null) {
+                Timeout<T> next = timeout.next;
+                if (timeout.deadline <= nowMs) {
+                    cancel(timeout);
+                    expired.add(timeout.item);
+                    count++;
+                }
+                timeout = next;
+            }
+        }
+        if (nowTick > currentTick) {
+            currentTick = nowTick;
+        }
+        return count;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    private static long ceilDiv(long x, long y) {
+        return -Math.floorDiv(-x, y);
+    }
+}
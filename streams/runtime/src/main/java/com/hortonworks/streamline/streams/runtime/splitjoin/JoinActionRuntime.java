@@ -16,11 +16,9 @@
 
 package com.hortonworks.streamline.streams.runtime.splitjoin;
 
-import com.google.common.cache.Cache;
-import com.google.common.cache.CacheBuilder;
 import com.hortonworks.streamline.streams.StreamlineEvent;
 import com.hortonworks.streamline.streams.Result;
-import com.hortonworks.streamline.streams.common.StreamlineEventImpl;
+import com.hortonworks.streamline.streams.common.StreamlineEventUtils;
 import com.hortonworks.streamline.streams.layout.component.impl.splitjoin.JoinAction;
 import com.hortonworks.streamline.streams.layout.component.rule.action.Action;
 import com.hortonworks.streamline.streams.runtime.RuntimeService;
@@ -28,16 +26,21 @@ import com.hortonworks.streamline.streams.runtime.rule.action.ActionRuntime;
 
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
-import java.util.concurrent.TimeUnit;
 
 /**
  * {@link ActionRuntime} implementation for {@link JoinAction}
+ * <p>
+ * The split groups in flight are kept in an {@link EventGroupStore}. The groups which expired before they were complete
+ * are removed when the next event is executed or when the action is {@link #expire(long) expired} periodically, their
+ * events are sent to the {@link JoinAction#getExpiredGroupsStream() expired groups stream} if it is configured.
+ * </p>
  */
 public class JoinActionRuntime extends AbstractSplitJoinActionRuntime {
-    private Cache<String, EventGroup> groupedEvents;
+    private EventGroupStore groupedEvents;
     private final JoinAction joinAction;
     private Joiner joiner;
 
@@ -56,22 +59,51 @@ public class JoinActionRuntime extends AbstractSplitJoinActionRuntime {
             joiner = new DefaultJoiner();
         }
 
-        groupedEvents = CacheBuilder.newBuilder()
-                .expireAfterWrite(joinAction.getGroupExpiryInterval(), TimeUnit.MILLISECONDS)
-                .build();
+        groupedEvents = new EventGroupStore(joinAction.getGroupExpiryInterval(), joinAction.getEventExpiryInterval(),
+                System.currentTimeMillis());
     }
 
     @Override
     public List<Result> execute(StreamlineEvent event) {
+        final List<Result> expiredResults = expire(System.currentTimeMillis());
+
         // group received event if possible
         final EventGroup eventGroup = groupEvents(event);
 
         // join them if group is complete
         if (eventGroup != null && eventGroup.isComplete()) {
-            return joinEvents(eventGroup);
+            List<Result> results = joinEvents(eventGroup);
+            if (expiredResults != null) {
+                results.addAll(expiredResults);
+            }
+            return results;
         }
 
-        return null;
+        return expiredResults;
+    }
+
+    /**
+     * Removes the split groups which expired before the given time.
+     *
+     * @return the events of the expired groups for the expired groups stream, or null if there are none
+     */
+    @Override
+    public List<Result> expire(long nowMs) {
+        final List<EventGroup> expiredGroups = groupedEvents.expire(nowMs);
+        final String expiredGroupsStream = joinAction.getExpiredGroupsStream();
+        if (expiredGroups.isEmpty() || expiredGroupsStream == null) {
+            return null;
+        }
+
+        List<StreamlineEvent> events = new ArrayList<>();
+        for (EventGroup expiredGroup : expiredGroups) {
+            for (StreamlineEvent splitEvent : expiredGroup.getSplitEvents()) {
+                events.add(getStreamlineEvent(splitEvent, expiredGroupsStream));
+            }
+        }
+        List<Result> results = new ArrayList<>();
+        results.add(new Result(expiredGroupsStream, events));
+        return results;
     }
 
     /**
@@ -83,16 +115,16 @@ public class JoinActionRuntime extends AbstractSplitJoinActionRuntime {
         StreamlineEvent joinedEvent = joiner.join(eventGroup);
 
         List<Result> results = new ArrayList<>();
-        for (String stream : getOutputStreams()) {
+        for (String stream : joinAction.getOutputStreams()) {
             results.add(new Result(stream, Collections.singletonList(getStreamlineEvent(joinedEvent, stream))));
         }
-        groupedEvents.invalidate(eventGroup.getGroupId());
+        groupedEvents.remove(eventGroup.getGroupId());
 
         return results;
     }
 
     private StreamlineEvent getStreamlineEvent(StreamlineEvent event, String stream) {
-        return new StreamlineEventImpl(event, event.getDataSourceId(), event.getId(), event.getHeader(), stream, event.getAuxiliaryFieldsAndValues());
+        return StreamlineEventUtils.withSourceStream(event, stream);
     }
 
     protected EventGroup groupEvents(StreamlineEvent event) {
@@ -100,28 +132,20 @@ public class JoinActionRuntime extends AbstractSplitJoinActionRuntime {
         final Map<String, Object> header = event.getHeader();
         if (header != null && header.containsKey(SplitActionRuntime.SPLIT_GROUP_ID)) {
             final String groupId = (String) header.get(SplitActionRuntime.SPLIT_GROUP_ID);
-            final String dataSourceId = event.getDataSourceId();
-            final EventGroup eventGroup = getEventGroup(groupId, dataSourceId);
-            eventGroup.addPartitionEvent(event);
-
-            return eventGroup;
+            return groupedEvents.add(groupId, event, System.currentTimeMillis());
         }
 
         return null;
     }
 
-    private EventGroup getEventGroup(String groupId, String dataSourceId) {
-        EventGroup eventGroup = groupedEvents.getIfPresent(groupId);
-        if (eventGroup == null) {
-            eventGroup = new EventGroup(groupId, dataSourceId, joinAction.getEventExpiryInterval());
-            groupedEvents.put(groupId, eventGroup);
-        }
-        return eventGroup;
-    }
-
     @Override
     public Set<String> getOutputStreams() {
-        return joinAction.getOutputStreams();
+        if (joinAction.getExpiredGroupsStream() == null) {
+            return joinAction.getOutputStreams();
+        }
+        Set<String> outputStreams = new HashSet<>(joinAction.getOutputStreams());
+        outputStreams.add(joinAction.getExpiredGroupsStream());
+        return outputStreams;
     }
 
     public static class Factory implements RuntimeService.Factory<ActionRuntime, Action> {
@@ -0,0 +1,317 @@
+/**
+  * Copyright 2017 Hortonworks.
+  *
+  * Licensed under the Apache License, Version 2.0 (the "License");
+  * you may not use this file except in compliance with the License.
+  * You may obtain a copy of the License at
+
+  *   http://www.apache.org/licenses/LICENSE-2.0
+
+  * Unless required by applicable law or agreed to in writing, software
+  * distributed under the License is distributed on an "AS IS" BASIS,
+  * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  * See the License for the specific language governing permissions and
+  * limitations under the License.
+ **/
+
+package com.hortonworks.streamline.streams.runtime.transform;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.MoreExecutors;
+import com.google.common.util.concurrent.SettableFuture;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Looks up values of a {@link TransformDataProviderRuntime} asynchronously, with a cache in front of it.
+ * <p>
+ * The keys missing in the cache are collected in a batch, which is looked up with one
+ * {@link BatchedTransformDataProviderRuntime#getAll(Collection)} request when it is full, when it has waited for the
+ * linger time or when it is {@link #flush() flushed}. Requests for a key which is already being looked up wait for
+ * the same lookup. The number of batches being looked up is bounded, flushing a batch blocks until a lookup completes.
+ * </p>
+ * <p>
+ * Like {@link CachedTransformDataProviderRuntime}, a cached value older than the refresh interval is returned as is
+ * and its key is added to the next batch, the value is replaced once the lookup completes and kept if it fails.
+ * </p>
+ * Data providers which do not implement {@link BatchedTransformDataProviderRuntime} are asked for each key of the
+ * batch.
+ */
+public class AsyncTransformDataProviderRuntime {
+    private static final Logger LOG = LoggerFactory.getLogger(AsyncTransformDataProviderRuntime.class);
+
+    // the cache does not hold nulls, keys without value are cached with this marker
+    private static final Object NO_VALUE = new Object();
+    // future of the keys looked up to refresh their cached value, nobody waits for them
+    private static final SettableFuture<Object> REFRESH = SettableFuture.create();
+
+    private final TransformDataProviderRuntime dataProvider;
+    private final long maxCacheSize;
+    private final long entryExpirationInterval;
+    private final long refreshIntervalNanos;
+    private final int maxBatchSize;
+    private final long lingerMs;
+    private final int maxInFlightBatches;
+    private final Semaphore inFlightBatches;
+    private final Object lock = new Object();
+    // futures of the keys in the current batch or in batches being looked up
+    private final Map<Object, SettableFuture<Object>> pendingKeys = new HashMap<>();
+    private List<Object> batch = new ArrayList<>();
+
+    private Cache<Object, CachedValue> cache;
+    private ExecutorService lookupExecutor;
+    private ScheduledExecutorService lingerExecutor;
+
+    /**
+     * @param dataProvider data provider to look up the values from
+     * @param maxCacheSize maximum cache size
+     * @param entryExpirationInterval expiration interval in seconds for each entry
+     * @param entryRefreshInterval refresh interval in seconds for an entry
+     * @param maxBatchSize maximum number of keys looked up in a batch
+     * @param lingerMs time in milliseconds a batch waits for more keys
+     * @param maxInFlightBatches maximum number of batches being looked up concurrently
+     */
+    public AsyncTransformDataProviderRuntime(TransformDataProviderRuntime dataProvider, long maxCacheSize,
+                                             long entryExpirationInterval, long entryRefreshInterval,
+                                             int maxBatchSize, long lingerMs, int maxInFlightBatches) {
+        this.dataProvider = dataProvider;
+        this.maxCacheSize = maxCacheSize;
+        this.entryExpirationInterval = entryExpirationInterval;
+        this.refreshIntervalNanos = TimeUnit.SECONDS.toNanos(entryRefreshInterval);
+        this.maxBatchSize = maxBatchSize;
+        this.lingerMs = lingerMs;
+        this.maxInFlightBatches = maxInFlightBatches;
+        this.inFlightBatches = new Semaphore(maxInFlightBatches);
+    }
+
+    public void prepare() {
+        dataProvider.prepare();
+        cache = CacheBuilder.newBuilder()
+                .maximumSize(maxCacheSize)
+                .expireAfterWrite(entryExpirationInterval, TimeUnit.SECONDS)
+                .build();
+        lookupExecutor = Executors.newFixedThreadPool(maxInFlightBatches, new DaemonThreadFactory("enrichment-lookup"));
+        if (lingerMs > 0) {
+            lingerExecutor = Executors.newSingleThreadScheduledExecutor(new DaemonThreadFactory("enrichment-linger"));
+            lingerExecutor.scheduleWithFixedDelay(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        flush();
+                    } catch (Throwable t) {
+                        LOG.error("Error while flushing the lookup batch", t);
+                    }
+                }
+            }, lingerMs, lingerMs, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Returns the values of the given keys, keys without a value are mapped to null.
+     */
+    public ListenableFuture<Map<Object, Object>> getAll(Collection<?> keys) {
+        final Map<Object, Object> values = new HashMap<>();
+        Map<Object, SettableFuture<Object>> lookups = new HashMap<>();
+        boolean full;
+        synchronized (lock) {
+            long now = System.nanoTime();
+            for (Object key : keys) {
+                CachedValue cached = cache.getIfPresent(key);
+                if (cached != null) {
+                    values.put(key, cached.value == NO_VALUE ? null : cached.value);
+                    if (now - cached.loadedNanos >= refreshIntervalNanos && !pendingKeys.containsKey(key)) {
+                        pendingKeys.put(key, REFRESH);
+                        batch.add(key);
+                    }
+                } else {
+                    SettableFuture<Object> future = pendingKeys.get(key);
+                    if (future == null) {
+                        future = SettableFuture.create();
+                        pendingKeys.put(key, future);
+                        batch.add(key);
+                    }
+                    lookups.put(key, future);
+                }
+            }
+            full = batch.size() >= maxBatchSize;
+        }
+        if (full) {
+            flush();
+        }
+        if (lookups.isEmpty()) {
+            return Futures.immediateFuture(values);
+        }
+        final SettableFuture<Map<Object, Object>> result = SettableFuture.create();
+        final AtomicInteger remaining = new AtomicInteger(lookups.size());
+        for (Map.Entry<Object, SettableFuture<Object>> entry : lookups.entrySet()) {
+            final Object key = entry.getKey();
+            final SettableFuture<Object> future = entry.getValue();
+            future.addListener(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        Object value = future.get();
+                        synchronized (values) {
+                            values.put(key, value);
+                        }
+                    } catch (InterruptedException | ExecutionException e) {
+                        result.setException(e instanceof ExecutionException ? e.getCause() : e);
+                        return;
+                    }
+                    if (remaining.decrementAndGet() == 0) {
+                        synchronized (values) {
+                            result.set(values);
+                        }
+                    }
+                }
+            }, MoreExecutors.directExecutor());
+        }
+        return result;
+    }
+
+    /**
+     * Looks up the keys of the current batch, blocks while the maximum number of batches are being looked up.
+     */
+    public void flush() {
+        List<Object> keys;
+        synchronized (lock) {
+            if (batch.isEmpty()) {
+                return;
+            }
+            keys = batch;
+            batch = new ArrayList<>();
+        }
+        inFlightBatches.acquireUninterruptibly();
+        try {
+            lookupExecutor.execute(new Lookup(keys));
+        } catch (RuntimeException e) {
+            inFlightBatches.release();
+            complete(keys, null, e);
+        }
+    }
+
+    public void cleanup() {
+        if (lingerExecutor != null) {
+            lingerExecutor.shutdownNow();
+        }
+        lookupExecutor.shutdownNow();
+        cache.cleanUp();
+        dataProvider.cleanup();
+    }
+
+    private Map<Object, Object> lookup(List<Object> keys) {
+        if (dataProvider instanceof BatchedTransformDataProviderRuntime) {
+            return ((BatchedTransformDataProviderRuntime) dataProvider).getAll(keys);
+        }
+        Map<Object, Object> values = new HashMap<>();
+        for (Object key : keys) {
+            values.put(key, dataProvider.get(key));
+        }
+        return values;
+    }
+
+    private void complete(List<Object> keys, Map<Object, Object> values, Throwable error) {
+        List<SettableFuture<Object>> futures = new ArrayList<>(keys.size());
+        synchronized (lock) {
+            long now = System.nanoTime();
+            for (Object key : keys) {
+                futures.add(pendingKeys.remove(key));
+                if (error == null) {
+                    Object value = values.get(key);
+                    cache.put(key, new CachedValue(value == null ? NO_VALUE : value, now));
+                }
+            }
+        }
+        for (int i = 0; i < keys.size(); i++) {
+            if (futures.get(i) == REFRESH) {
+                // a failed refresh keeps the cached value until it expires
+                if (error != null) {
+                    LOG.debug("Unable to refresh the value of key {}", keys.get(i), error);
+                }
+            } else if (error == null) {
+                futures.get(i).set(values.get(keys.get(i)));
+            } else {
+                futures.get(i).setException(error);
+            }
+        }
+    }
+
+    private static final class CachedValue {
+        private final Object value;
+        private final long loadedNanos;
+
+        CachedValue(Object value, long loadedNanos) {
+            this.value = value;
+            this.loadedNanos = loadedNanos;
+        }
+    }
+
+    private final class Lookup implements Runnable {
+        private final List<Object> keys;
+
+        Lookup(List<Object> keys) {
+            this.keys = keys;
+        }
+
+        @Override
+        public void run() {
+            Map<Object, Object> values = null;
+            Throwable error = null;
+            try {
+                LOG.debug("Looking up {} keys", keys.size());
+                values = lookup(keys);
+                if (values == null) {
+                    values = new HashMap<>();
+                }
+            } catch (Throwable t) {
+                error = t;
+            } finally {
+                inFlightBatches.release();
+            }
+            complete(keys, values, error);
+        }
+    }
+
+    private static final class DaemonThreadFactory implements ThreadFactory {
+        private final String name;
+        private final AtomicInteger count = new AtomicInteger();
+
+        DaemonThreadFactory(String name) {
+            this.name = name;
+        }
+
+        @Override
+        public Thread newThread(Runnable runnable) {
+            Thread thread = new Thread(runnable, name + "-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "AsyncTransformDataProviderRuntime{" +
+                "dataProvider=" + dataProvider +
+                ", maxBatchSize=" + maxBatchSize +
+                ", lingerMs=" + lingerMs +
+                ", maxInFlightBatches=" + maxInFlightBatches +
+                '}';
+    }
+}
@@ -0,0 +1,35 @@
+/**
+  * Copyright 2017 Hortonworks.
+  *
+  * Licensed under the Apache License, Version 2.0 (the "License");
+  * you may not use this file except in compliance with the License.
+  * You may obtain a copy of the License at
+
+  *   http://www.apache.org/licenses/LICENSE-2.0
+
+  * Unless required by applicable law or agreed to in writing, software
+  * distributed under the License is distributed on an "AS IS" BASIS,
+  * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  * See the License for the specific language governing permissions and
+  * limitations under the License.
+ **/
+
+package com.hortonworks.streamline.streams.runtime.transform;
+
+import java.util.Collection;
+import java.util.Map;
+
+/**
+ * {@link TransformDataProviderRuntime} which can retrieve the values of many keys with one request to the data store.
+ */
+public interface BatchedTransformDataProviderRuntime extends TransformDataProviderRuntime {
+
+    /**
+     * Retrieves the values for the given keys from a data store. Keys without a value may be missing in the
+     * returned map. Implementations should be thread safe, batches of keys may be retrieved concurrently.
+     *
+     * @param keys
+     */
+    Map<Object, Object> getAll(Collection<Object> keys);
+
+}
@@ -16,42 +16,153 @@
 
 package com.hortonworks.streamline.streams.runtime.transform;
 
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.MoreExecutors;
+import com.google.common.util.concurrent.SettableFuture;
 import com.hortonworks.streamline.streams.StreamlineEvent;
 import com.hortonworks.streamline.streams.layout.Transform;
 import com.hortonworks.streamline.streams.layout.component.rule.action.transform.EnrichmentTransform;
+import com.hortonworks.streamline.streams.layout.component.rule.action.transform.SnapshotTransformDataProvider;
 import com.hortonworks.streamline.streams.layout.component.rule.action.transform.TransformDataProvider;
 import com.hortonworks.streamline.streams.runtime.RuntimeService;
 import com.hortonworks.streamline.streams.runtime.TransformRuntime;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ExecutionException;
 
 /**
  * Enrichment adds an extra enriched message of original message's fields.
+ * <p>
+ * With {@link EnrichmentTransform#isAsyncLookups() asynchronous lookups}, the values are looked up in batches with
+ * {@link AsyncTransformDataProviderRuntime} and events can be enriched without blocking with
+ * {@link #executeAsync(StreamlineEvent)}.
+ * </p>
  */
 public class EnrichmentTransformRuntime implements TransformRuntime {
     private static final Logger log = LoggerFactory.getLogger(EnrichmentTransformRuntime.class);
 
     private final EnrichmentTransform enrichmentTransform;
 
-    private final CachedTransformDataProviderRuntime cachedDataProvider;
+    private final TransformDataProviderRuntime dataProvider;
+
+    private final AsyncTransformDataProviderRuntime asyncDataProvider;
 
     public EnrichmentTransformRuntime(EnrichmentTransform enrichmentTransform) {
         this.enrichmentTransform = enrichmentTransform;
         final TransformDataProvider transformDataProvider = enrichmentTransform.getTransformDataProvider();
 
-        cachedDataProvider = new CachedTransformDataProviderRuntime(TransformDataProviderRuntimeService.get().get(transformDataProvider), enrichmentTransform.getMaxCacheSize(),
-                enrichmentTransform.getEntryExpirationInterval(), enrichmentTransform.getEntryRefreshInterval());
-        cachedDataProvider.prepare();
+        if (enrichmentTransform.isAsyncLookups()) {
+            dataProvider = null;
+            asyncDataProvider = new AsyncTransformDataProviderRuntime(TransformDataProviderRuntimeService.get().get(transformDataProvider),
+                    enrichmentTransform.getMaxCacheSize(), enrichmentTransform.getEntryExpirationInterval(),
+                    enrichmentTransform.getEntryRefreshInterval(), enrichmentTransform.getMaxLookupBatchSize(), enrichmentTransform.getLookupBatchLingerMs(),
+                    enrichmentTransform.getMaxInFlightLookups());
+            asyncDataProvider.prepare();
+        } else if (transformDataProvider instanceof SnapshotTransformDataProvider) {
+            // the whole table is in memory and refreshed as a snapshot, a cache would only delay the refreshes
+            asyncDataProvider = null;
+            dataProvider = TransformDataProviderRuntimeService.get().get(transformDataProvider);
+            dataProvider.prepare();
+        } else {
+            asyncDataProvider = null;
+            dataProvider = new CachedTransformDataProviderRuntime(TransformDataProviderRuntimeService.get().get(transformDataProvider), enrichmentTransform.getMaxCacheSize(),
+                    enrichmentTransform.getEntryExpirationInterval(), enrichmentTransform.getEntryRefreshInterval());
+            dataProvider.prepare();
+        }
     }
 
     @Override
     public List<StreamlineEvent> execute(StreamlineEvent event) {
-        List<String> fieldsToBeEnriched = enrichmentTransform.getFieldsToBeEnriched();
+        if (asyncDataProvider != null) {
+            // the lookups of the event are not batched with other events, enrichment stages run in an async bolt
+            ListenableFuture<List<StreamlineEvent>> result = executeAsync(event);
+            flush();
+            try {
+                return result.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new RuntimeException(e);
+            } catch (ExecutionException e) {
+                throw new RuntimeException(e.getCause());
+            }
+        }
+
+        Map<String, Object> values = new HashMap<>();
+        for (String fieldName : enrichmentTransform.getFieldsToBeEnriched()) {
+            Object value = event.get(fieldName);
+            if (value != null) {
+                values.put(fieldName, dataProvider.get(value));
+            }
+        }
+        return enrich(event, values);
+    }
+
+    /**
+     * Enriches the event once the values of its fields are looked up. The lookups of the event are batched with the
+     * lookups of other events, a batch is looked up when it is full, after the linger time or on {@link #flush()}.
+     *
+     * @throws IllegalStateException if the enrichment does not use asynchronous lookups
+     */
+    public ListenableFuture<List<StreamlineEvent>> executeAsync(final StreamlineEvent event) {
+        if (asyncDataProvider == null) {
+            throw new IllegalStateException("Asynchronous lookups are not enabled for " + enrichmentTransform);
+        }
+        List<Object> keys = new ArrayList<>();
+        for (String fieldName : enrichmentTransform.getFieldsToBeEnriched()) {
+            Object value = event.get(fieldName);
+            if (value != null) {
+                keys.add(value);
+            }
+        }
+        final ListenableFuture<Map<Object, Object>> lookup = asyncDataProvider.getAll(keys);
+        final SettableFuture<List<StreamlineEvent>> result = SettableFuture.create();
+        lookup.addListener(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    Map<Object, Object> enrichedValues = lookup.get();
+                    Map<String, Object> values = new HashMap<>();
+                    for (String fieldName : enrichmentTransform.getFieldsToBeEnriched()) {
+                        Object value = event.get(fieldName);
+                        if (value != null) {
+                            values.put(fieldName, enrichedValues.get(value));
+                        }
+                    }
+                    result.set(enrich(event, values));
+                } catch (ExecutionException e) {
+                    result.setException(e.getCause());
+                } catch (Throwable t) {
+                    result.setException(t);
+                }
+            }
+        }, MoreExecutors.directExecutor());
+        return result;
+    }
+
+    /**
+     * Looks up the pending batch of keys of asynchronous lookups.
+     */
+    public void flush() {
+        if (asyncDataProvider != null) {
+            asyncDataProvider.flush();
+        }
+    }
+
+    public void cleanup() {
+        if (asyncDataProvider != null) {
+            asyncDataProvider.cleanup();
+        } else {
+            dataProvider.cleanup();
+        }
+    }
+
+    private List<StreamlineEvent> enrich(StreamlineEvent event, Map<String, Object> values) {
         Map<String, Object> auxiliaryFieldsAndValues = event.getAuxiliaryFieldsAndValues();
         Map<String, Object> enrichments = (Map<String, Object>) auxiliaryFieldsAndValues.get(EnrichmentTransform.ENRICHMENTS_FIELD_NAME);
         if (enrichments == null) {
@@ -59,11 +170,10 @@ public class EnrichmentTransformRuntime implements TransformRuntime {
             event.addAuxiliaryFieldAndValue(EnrichmentTransform.ENRICHMENTS_FIELD_NAME, enrichments);
         }
 
-        for (String fieldName : fieldsToBeEnriched) {
-            Object value = event.get(fieldName);
-            if (value != null) {
-                Object enrichedValue = cachedDataProvider.get(value);
-                log.debug("Enriched value [{}] for key [{}] with value [{}]", enrichedValue, fieldName, value);
+        for (String fieldName : enrichmentTransform.getFieldsToBeEnriched()) {
+            if (values.containsKey(fieldName)) {
+                Object enrichedValue = values.get(fieldName);
+                log.debug("Enriched value [{}] for key [{}] with value [{}]", enrichedValue, fieldName, event.get(fieldName));
                 enrichments.put(fieldName, enrichedValue);
             } else {
                 log.warn("Value in input event for key [{}] is null", fieldName);
@@ -84,7 +194,8 @@ public class EnrichmentTransformRuntime implements TransformRuntime {
     public String toString() {
         return "EnrichmentTransformRuntime{" +
                 "enrichmentTransform=" + enrichmentTransform +
-                ", cachedDataProvider=" + cachedDataProvider +
+                ", dataProvider=" + dataProvider +
+                ", asyncDataProvider=" + asyncDataProvider +
                 '}';
     }
 }
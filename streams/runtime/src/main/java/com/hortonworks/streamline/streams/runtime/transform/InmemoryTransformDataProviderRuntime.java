@@ -20,10 +20,14 @@ import com.hortonworks.streamline.streams.layout.component.rule.action.transform
 import com.hortonworks.streamline.streams.layout.component.rule.action.transform.TransformDataProvider;
 import com.hortonworks.streamline.streams.runtime.RuntimeService;
 
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+
 /**
  *
  */
-public class InmemoryTransformDataProviderRuntime implements TransformDataProviderRuntime {
+public class InmemoryTransformDataProviderRuntime implements BatchedTransformDataProviderRuntime {
     private final InmemoryTransformDataProvider inmemoryTransformDataProvider;
 
     public InmemoryTransformDataProviderRuntime(InmemoryTransformDataProvider inmemoryTransformDataProvider) {
@@ -39,6 +43,15 @@ public class InmemoryTransformDataProviderRuntime implements TransformDataProvid
         return inmemoryTransformDataProvider.getData().get(key);
     }
 
+    @Override
+    public Map<Object, Object> getAll(Collection<Object> keys) {
+        Map<Object, Object> values = new HashMap<>();
+        for (Object key : keys) {
+            values.put(key, get(key));
+        }
+        return values;
+    }
+
     @Override
     public void cleanup() {
     }
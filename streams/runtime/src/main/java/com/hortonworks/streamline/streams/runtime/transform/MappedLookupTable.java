@@ -0,0 +1,397 @@
+/**
+  * Copyright 2017 Hortonworks.
+  *
+  * Licensed under the Apache License, Version 2.0 (the "License");
+  * you may not use this file except in compliance with the License.
+  * You may obtain a copy of the License at
+
+  *   http://www.apache.org/licenses/LICENSE-2.0
+
+  * Unless required by applicable law or agreed to in writing, software
+  * distributed under the License is distributed on an "AS IS" BASIS,
+  * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  * See the License for the specific language governing permissions and
+  * limitations under the License.
+ **/
+
+package com.hortonworks.streamline.streams.runtime.transform;
+
+import com.hortonworks.streamline.common.util.FileUtil;
+import com.hortonworks.streamline.streams.layout.component.rule.action.transform.SnapshotTransformDataProvider;
+
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.LongBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Immutable lookup table kept outside of the heap. The entries are written to a temporary file which is memory mapped
+ * and deleted, the index over the entries is kept in direct buffers. Lookups only use absolute reads of the buffers,
+ * so a table can be shared by many threads.
+ * <p>
+ * The table is reference counted, the loader holds the first reference and each lookup acquires one for the duration
+ * of its reads. The mapping is released as soon as the last reference is released.
+ * </p>
+ */
+abstract class MappedLookupTable {
+    private static final int MAX_FILE_SIZE = Integer.MAX_VALUE;
+    // keeps the slots of a hash table within a direct buffer
+    private static final int MAX_HASH_ENTRIES = 1 << 26;
+
+    protected final MappedByteBuffer data;
+    protected final int size;
+    private final AtomicInteger references = new AtomicInteger(1);
+
+    private MappedLookupTable(MappedByteBuffer data, int size) {
+        this.data = data;
+        this.size = size;
+    }
+
+    /**
+     * Returns the value of the given key, or null if the table has no value for the key.
+     */
+    abstract Object get(Object key);
+
+    int size() {
+        return size;
+    }
+
+    /**
+     * Acquires a reference to the table, returns false if the table was already released by its last reference.
+     */
+    boolean acquire() {
+        while (true) {
+            int count = references.get();
+            if (count == 0) {
+                return false;
+            }
+            if (references.compareAndSet(count, count + 1)) {
+                return true;
+            }
+        }
+    }
+
+    /**
+     * Releases a reference to the table, the table is unmapped when the last reference is released and must not be
+     * read afterwards.
+     */
+    void release() {
+        if (references.decrementAndGet() == 0) {
+            FileUtil.unmap(data);
+        }
+    }
+
+    /**
+     * Loads the table of the given data provider from its file.
+     */
+    static MappedLookupTable load(SnapshotTransformDataProvider dataProvider) throws IOException {
+        File dataFile = File.createTempFile("streamline-snapshot", ".dat");
+        try {
+            int size = dataProvider.getIndexType() == SnapshotTransformDataProvider.IndexType.RANGE
+                    ? writeRanges(dataProvider, dataFile) : writeEntries(dataProvider, dataFile);
+            MappedByteBuffer data = map(dataFile);
+            return dataProvider.getIndexType() == SnapshotTransformDataProvider.IndexType.RANGE
+                    ? new RangeTable(data, size) : new HashTable(data, size);
+        } finally {
+            if (!dataFile.delete()) {
+                dataFile.deleteOnExit();
+            }
+        }
+    }
+
+    // entries of key length, key, value length and value
+    private static int writeEntries(SnapshotTransformDataProvider dataProvider, File dataFile) throws IOException {
+        String delimiter = dataProvider.getDelimiter();
+        int size = 0;
+        try (BufferedReader reader = newReader(dataProvider); DataOutputStream out = newOutput(dataFile)) {
+            String line;
+            int lineNumber = 0;
+            while ((line = reader.readLine()) != null) {
+                lineNumber++;
+                if (skip(line)) {
+                    continue;
+                }
+                int index = line.indexOf(delimiter);
+                if (index < 0) {
+                    throw new IllegalArgumentException("Missing value at line " + lineNumber + " of " + dataProvider.getPath());
+                }
+                writeBytes(out, line.substring(0, index).getBytes(StandardCharsets.UTF_8));
+                writeBytes(out, line.substring(index + delimiter.length()).getBytes(StandardCharsets.UTF_8));
+                size++;
+                checkSize(out, dataProvider);
+            }
+        }
+        return size;
+    }
+
+    // entries of range start, range end, value length and value
+    private static int writeRanges(SnapshotTransformDataProvider dataProvider, File dataFile) throws IOException {
+        String delimiter = dataProvider.getDelimiter();
+        int size = 0;
+        long previousEnd = Long.MIN_VALUE;
+        try (BufferedReader reader = newReader(dataProvider); DataOutputStream out = newOutput(dataFile)) {
+            String line;
+            int lineNumber = 0;
+            while ((line = reader.readLine()) != null) {
+                lineNumber++;
+                if (skip(line)) {
+                    continue;
+                }
+                int first = line.indexOf(delimiter);
+                int second = first < 0 ? -1 : line.indexOf(delimiter, first + delimiter.length());
+                if (second < 0) {
+                    throw new IllegalArgumentException("Expected start, end and value at line " + lineNumber + " of "
+                            + dataProvider.getPath());
+                }
+                Long start = toLong(line.substring(0, first).trim());
+                Long end = toLong(line.substring(first + delimiter.length(), second).trim());
+                if (start == null || end == null || start > end || (size > 0 && start <= previousEnd)) {
+                    throw new IllegalArgumentException("Invalid range at line " + lineNumber + " of "
+                            + dataProvider.getPath() + ", ranges must be sorted by start and not overlap");
+                }
+                out.writeLong(start);
+                out.writeLong(end);
+                writeBytes(out, line.substring(second + delimiter.length()).getBytes(StandardCharsets.UTF_8));
+                previousEnd = end;
+                size++;
+                checkSize(out, dataProvider);
+            }
+        }
+        return size;
+    }
+
+    private static boolean skip(String line) {
+        return line.isEmpty() || line.startsWith("#");
+    }
+
+    private static BufferedReader newReader(SnapshotTransformDataProvider dataProvider) throws IOException {
+        return new BufferedReader(new InputStreamReader(new FileInputStream(dataProvider.getPath()), StandardCharsets.UTF_8));
+    }
+
+    private static DataOutputStream newOutput(File dataFile) throws IOException {
+        return new DataOutputStream(new BufferedOutputStream(new FileOutputStream(dataFile), 64 * 1024));
+    }
+
+    private static void writeBytes(DataOutputStream out, byte[] bytes) throws IOException {
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static void checkSize(DataOutputStream out, SnapshotTransformDataProvider dataProvider) {
+        // DataOutputStream#size saturates at Integer.MAX_VALUE
+        if (out.size() == MAX_FILE_SIZE) {
+            throw new IllegalArgumentException("Table " + dataProvider.getPath() + " exceeds " + MAX_FILE_SIZE + " bytes");
+        }
+    }
+
+    private static MappedByteBuffer map(File dataFile) throws IOException {
+        try (RandomAccessFile file = new RandomAccessFile(dataFile, "r"); FileChannel channel = file.getChannel()) {
+            // the mapping stays valid after the channel is closed and the file deleted
+            return channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+    }
+
+    /**
+     * Converts a key or range bound to a long, IPv4 addresses are converted to their unsigned 32 bit value.
+     * Returns null if the value is not a number or address.
+     */
+    static Long toLong(Object value) {
+        if (value instanceof Number) {
+            return ((Number) value).longValue();
+        }
+        String str = value.toString();
+        try {
+            if (str.indexOf('.') < 0) {
+                return Long.parseLong(str);
+            }
+            String[] octets = str.split("\\.");
+            if (octets.length != 4) {
+                return null;
+            }
+            long result = 0;
+            for (String octet : octets) {
+                int octetValue = Integer.parseInt(octet);
+                if (octetValue < 0 || octetValue > 255) {
+                    return null;
+                }
+                result = (result << 8) | octetValue;
+            }
+            return result;
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    protected String readString(int offset) {
+        int length = data.getInt(offset);
+        byte[] bytes = new byte[length];
+        for (int i = 0; i < length; i++) {
+            bytes[i] = data.get(offset + 4 + i);
+        }
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Open addressing hash index of the entry offsets. A slot holds the hash of the key in the upper 32 bits and the
+     * offset of the entry plus one in the lower 32 bits, an empty slot is 0.
+     */
+    private static final class HashTable extends MappedLookupTable {
+        private final LongBuffer slots;
+        private final int mask;
+
+        HashTable(MappedByteBuffer data, int size) {
+            super(data, size);
+            if (size > MAX_HASH_ENTRIES) {
+                throw new IllegalArgumentException("Hash table of " + size + " entries exceeds " + MAX_HASH_ENTRIES + " entries");
+            }
+            // at most half full
+            int capacity = Integer.highestOneBit(Math.max(16, size) * 2 - 1) << 1;
+            this.mask = capacity - 1;
+            this.slots = ByteBuffer.allocateDirect(capacity * 8).asLongBuffer();
+            int offset = 0;
+            int limit = data.limit();
+            while (offset < limit) {
+                int keyLength = data.getInt(offset);
+                insert(hash(offset + 4, keyLength), offset);
+                offset += 4 + keyLength;
+                offset += 4 + data.getInt(offset);
+            }
+        }
+
+        // a later entry with the same key replaces the earlier one
+        private void insert(int hash, int offset) {
+            int index = hash & mask;
+            while (true) {
+                long slot = slots.get(index);
+                if (slot == 0 || ((int) (slot >>> 32) == hash && keyEquals((int) slot - 1, offset))) {
+                    slots.put(index, ((long) hash << 32) | (offset + 1L));
+                    return;
+                }
+                index = (index + 1) & mask;
+            }
+        }
+
+        @Override
+        Object get(Object key) {
+            byte[] bytes = key.toString().getBytes(StandardCharsets.UTF_8);
+            int hash = hash(bytes);
+            int index = hash & mask;
+            while (true) {
+                long slot = slots.get(index);
+                if (slot == 0) {
+                    return null;
+                }
+                if ((int) (slot >>> 32) == hash) {
+                    int offset = (int) slot - 1;
+                    if (keyEquals(offset, bytes)) {
+                        return readString(offset + 4 + bytes.length);
+                    }
+                }
+                index = (index + 1) & mask;
+            }
+        }
+
+        private boolean keyEquals(int offset, int otherOffset) {
+            int length = data.getInt(offset);
+            if (length != data.getInt(otherOffset)) {
+                return false;
+            }
+            for (int i = 4; i < length + 4; i++) {
+                if (data.get(offset + i) != data.get(otherOffset + i)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        private boolean keyEquals(int offset, byte[] key) {
+            if (data.getInt(offset) != key.length) {
+                return false;
+            }
+            for (int i = 0; i < key.length; i++) {
+                if (data.get(offset + 4 + i) != key[i]) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        private int hash(int offset, int length) {
+            int hash = 1;
+            for (int i = 0; i < length; i++) {
+                hash = 31 * hash + data.get(offset + i);
+            }
+            return spread(hash);
+        }
+
+        private static int hash(byte[] bytes) {
+            int hash = 1;
+            for (byte b : bytes) {
+                hash = 31 * hash + b;
+            }
+            return spread(hash);
+        }
+
+        private static int spread(int hash) {
+            hash *= 0x9E3779B9;
+            return hash ^ (hash >>> 16);
+        }
+    }
+
+    /**
+     * Sorted, non overlapping ranges searched by binary search on their start.
+     */
+    private static final class RangeTable extends MappedLookupTable {
+        private final LongBuffer starts;
+        private final LongBuffer ends;
+        private final IntBuffer valueOffsets;
+
+        RangeTable(MappedByteBuffer data, int size) {
+            super(data, size);
+            this.starts = ByteBuffer.allocateDirect(size * 8).asLongBuffer();
+            this.ends = ByteBuffer.allocateDirect(size * 8).asLongBuffer();
+            this.valueOffsets = ByteBuffer.allocateDirect(size * 4).asIntBuffer();
+            int offset = 0;
+            for (int i = 0; i < size; i++) {
+                starts.put(i, data.getLong(offset));
+                ends.put(i, data.getLong(offset + 8));
+                valueOffsets.put(i, offset + 16);
+                offset += 20 + data.getInt(offset + 16);
+            }
+        }
+
+        @Override
+        Object get(Object key) {
+            Long value = toLong(key);
+            if (value == null) {
+                return null;
+            }
+            int low = 0;
+            int high = size - 1;
+            // the last range starting at or before the value
+            int found = -1;
+            while (low <= high) {
+                int mid = (low + high) >>> 1;
+                if (starts.get(mid) <= value) {
+                    found = mid;
+                    low = mid + 1;
+                } else {
+                    high = mid - 1;
+                }
+            }
+            return found >= 0 && ends.get(found) >= value ? readString(valueOffsets.get(found)) : null;
+        }
+    }
+}
@@ -0,0 +1,215 @@
+/**
+  * Copyright 2017 Hortonworks.
+  *
+  * Licensed under the Apache License, Version 2.0 (the "License");
+  * you may not use this file except in compliance with the License.
+  * You may obtain a copy of the License at
+
+  *   http://www.apache.org/licenses/LICENSE-2.0
+
+  * Unless required by applicable law or agreed to in writing, software
+  * distributed under the License is distributed on an "AS IS" BASIS,
+  * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  * See the License for the specific language governing permissions and
+  * limitations under the License.
+ **/
+
+package com.hortonworks.streamline.streams.runtime.transform;
+
+import com.hortonworks.streamline.streams.layout.component.rule.action.transform.SnapshotTransformDataProvider;
+import com.hortonworks.streamline.streams.layout.component.rule.action.transform.TransformDataProvider;
+import com.hortonworks.streamline.streams.runtime.RuntimeService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runtime of {@link SnapshotTransformDataProvider}. The table is loaded once per JVM and shared by all the runtimes of
+ * the same data provider, a background thread loads a new snapshot when the file is modified and swaps it in, the
+ * lookups in progress complete on the previous snapshot which is unmapped once they are done.
+ */
+public class SnapshotTransformDataProviderRuntime implements BatchedTransformDataProviderRuntime {
+    private static final Logger LOG = LoggerFactory.getLogger(SnapshotTransformDataProviderRuntime.class);
+
+    // the tables shared by the runtimes in this JVM
+    private static final Map<SnapshotTransformDataProvider, SharedTable> sharedTables = new HashMap<>();
+
+    private final SnapshotTransformDataProvider dataProvider;
+    private SharedTable sharedTable;
+
+    public SnapshotTransformDataProviderRuntime(SnapshotTransformDataProvider dataProvider) {
+        this.dataProvider = dataProvider;
+    }
+
+    @Override
+    public void prepare() {
+        synchronized (sharedTables) {
+            SharedTable table = sharedTables.get(dataProvider);
+            if (table == null) {
+                table = new SharedTable(dataProvider);
+                table.load();
+                table.scheduleRefresh();
+                sharedTables.put(dataProvider, table);
+            }
+            table.references++;
+            sharedTable = table;
+        }
+    }
+
+    @Override
+    public Object get(Object key) {
+        MappedLookupTable table = sharedTable.acquire();
+        try {
+            return table.get(key);
+        } finally {
+            table.release();
+        }
+    }
+
+    @Override
+    public Map<Object, Object> getAll(Collection<Object> keys) {
+        // all the keys are looked up in the same snapshot
+        MappedLookupTable table = sharedTable.acquire();
+        try {
+            Map<Object, Object> values = new HashMap<>();
+            for (Object key : keys) {
+                values.put(key, table.get(key));
+            }
+            return values;
+        } finally {
+            table.release();
+        }
+    }
+
+    @Override
+    public void cleanup() {
+        synchronized (sharedTables) {
+            if (sharedTable != null && --sharedTable.references == 0) {
+                sharedTable.close();
+                sharedTables.remove(dataProvider);
+            }
+            sharedTable = null;
+        }
+    }
+
+    private static final class SharedTable {
+        private final SnapshotTransformDataProvider dataProvider;
+        private volatile MappedLookupTable table;
+        private long lastModified;
+        private int references;
+        private ScheduledExecutorService refresher;
+        private boolean closed;
+
+        SharedTable(SnapshotTransformDataProvider dataProvider) {
+            this.dataProvider = dataProvider;
+        }
+
+        // returns the current table with a reference acquired, which the caller must release
+        MappedLookupTable acquire() {
+            while (true) {
+                MappedLookupTable current = table;
+                if (current == null) {
+                    throw new IllegalStateException("The table " + dataProvider.getPath() + " is closed");
+                }
+                if (current.acquire()) {
+                    return current;
+                }
+                // released after it was replaced, read the new table
+            }
+        }
+
+        synchronized void load() {
+            if (closed) {
+                return;
+            }
+            long modified = new File(dataProvider.getPath()).lastModified();
+            long startMs = System.currentTimeMillis();
+            MappedLookupTable loaded;
+            try {
+                loaded = MappedLookupTable.load(dataProvider);
+            } catch (IOException e) {
+                throw new RuntimeException("Failed to load the table " + dataProvider.getPath(), e);
+            }
+            MappedLookupTable previous = table;
+            table = loaded;
+            lastModified = modified;
+            if (previous != null) {
+                // unmapped once the lookups in progress on the previous snapshot complete
+                previous.release();
+            }
+            LOG.info("Loaded {} entries from {} in {} ms", loaded.size(), dataProvider.getPath(),
+                    System.currentTimeMillis() - startMs);
+        }
+
+        void scheduleRefresh() {
+            long interval = dataProvider.getRefreshInterval();
+            if (interval <= 0) {
+                return;
+            }
+            refresher = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+                @Override
+                public Thread newThread(Runnable runnable) {
+                    Thread thread = new Thread(runnable, "snapshot-refresh-" + dataProvider.getPath());
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+            refresher.scheduleWithFixedDelay(new Runnable() {
+                @Override
+                public void run() {
+                    refresh();
+                }
+            }, interval, interval, TimeUnit.SECONDS);
+        }
+
+        // keeps serving the current snapshot if the new one cannot be loaded
+        void refresh() {
+            try {
+                if (new File(dataProvider.getPath()).lastModified() != lastModified) {
+                    load();
+                }
+            } catch (Exception e) {
+                LOG.error("Failed to refresh the table {}, keeping the current snapshot", dataProvider.getPath(), e);
+            }
+        }
+
+        void close() {
+            if (refresher != null) {
+                refresher.shutdownNow();
+            }
+            // waits for a refresh in progress
+            synchronized (this) {
+                closed = true;
+                MappedLookupTable previous = table;
+                table = null;
+                if (previous != null) {
+                    previous.release();
+                }
+            }
+        }
+    }
+
+    public static class Factory implements RuntimeService.Factory<TransformDataProviderRuntime, TransformDataProvider> {
+
+        @Override
+        public TransformDataProviderRuntime create(TransformDataProvider transformDataProvider) {
+            return new SnapshotTransformDataProviderRuntime((SnapshotTransformDataProvider) transformDataProvider);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "SnapshotTransformDataProviderRuntime{" +
+                "dataProvider=" + dataProvider +
+                '}';
+    }
+}
@@ -17,6 +17,7 @@
 package com.hortonworks.streamline.streams.runtime.transform;
 
 import com.hortonworks.streamline.streams.layout.component.rule.action.transform.InmemoryTransformDataProvider;
+import com.hortonworks.streamline.streams.layout.component.rule.action.transform.SnapshotTransformDataProvider;
 import com.hortonworks.streamline.streams.layout.component.rule.action.transform.TransformDataProvider;
 import com.hortonworks.streamline.streams.runtime.RuntimeService;
 import org.slf4j.Logger;
@@ -39,6 +40,7 @@ public class TransformDataProviderRuntimeService extends RuntimeService<Transfor
         // todo this can be moved to startup listener to add all supported DataProviders.
         // factories instance can be taken as an argument
         transformFactories.put(InmemoryTransformDataProvider.class, new InmemoryTransformDataProviderRuntime.Factory());
+        transformFactories.put(SnapshotTransformDataProvider.class, new SnapshotTransformDataProviderRuntime.Factory());
 
         log.info("Registered factories : [{}]", transformFactories);
     }
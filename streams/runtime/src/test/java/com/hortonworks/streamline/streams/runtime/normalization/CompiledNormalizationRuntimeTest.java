@@ -0,0 +1,144 @@
+/**
+  * Copyright 2017 Hortonworks.
+  *
+  * Licensed under the Apache License, Version 2.0 (the "License");
+  * you may not use this file except in compliance with the License.
+  * You may obtain a copy of the License at
+
+  *   http://www.apache.org/licenses/LICENSE-2.0
+
+  * Unless required by applicable law or agreed to in writing, software
+  * distributed under the License is distributed on an "AS IS" BASIS,
+  * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  * See the License for the specific language governing permissions and
+  * limitations under the License.
+ **/
+package com.hortonworks.streamline.streams.runtime.normalization;
+
+import com.hortonworks.streamline.common.Schema;
+import com.hortonworks.streamline.streams.StreamlineEvent;
+import com.hortonworks.streamline.streams.common.StreamlineEventImpl;
+import com.hortonworks.streamline.streams.layout.component.impl.normalization.FieldBasedNormalizationConfig;
+import com.hortonworks.streamline.streams.layout.component.impl.normalization.FieldValueGenerator;
+import com.hortonworks.streamline.streams.layout.component.impl.normalization.Transformer;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Unit tests for {@link CompiledNormalizationRuntime}
+ */
+public class CompiledNormalizationRuntimeTest {
+    private static final Schema.Field TEMP = new Schema.Field("temp", Schema.Type.INTEGER);
+    private static final Schema INPUT_SCHEMA = Schema.of(TEMP, new Schema.Field("foo", Schema.Type.STRING));
+    private static final Schema OUTPUT_SCHEMA = Schema.of(
+            new Schema.Field("temperature", Schema.Type.FLOAT),
+            new Schema.Field("humidity", Schema.Type.STRING),
+            new Schema.Field("illuminance", Schema.Type.INTEGER),
+            new Schema.Field("new-field", Schema.Type.STRING),
+            new Schema.Field("generated", Schema.Type.STRING));
+
+    @Test
+    public void testNormalize() throws Exception {
+        NormalizationRuntime runtime = new CompiledNormalizationRuntime(createConfig("new Float((temp-32)*5/9f)"), OUTPUT_SCHEMA);
+        assertTrue(runtime.isOutputValidated());
+
+        StreamlineEvent output = runtime.execute(event(104, "40h"));
+        Map<String, Object> expected = new HashMap<>();
+        expected.put("temperature", 40f);
+        expected.put("humidity", "40h");
+        expected.put("illuminance", 70);
+        expected.put("new-field", "new value");
+        expected.put("generated", "40h-104");
+        assertEquals(expected, new HashMap<>(output));
+
+        // the scripts of the next event see the fields of that event
+        output = runtime.execute(event(32, "10h"));
+        assertEquals(0f, output.get("temperature"));
+        assertEquals("10h-32", output.get("generated"));
+    }
+
+    @Test
+    public void testInvalidValues() throws Exception {
+        NormalizationRuntime runtime = new CompiledNormalizationRuntime(createConfig("temp"), OUTPUT_SCHEMA);
+        try {
+            runtime.execute(event(104, "40h"));
+            fail("Integer value of a float field should be rejected");
+        } catch (NormalizationException e) {
+            // expected
+        }
+
+        runtime = new CompiledNormalizationRuntime(createConfig("new Float(temp)"), OUTPUT_SCHEMA);
+        Map<String, Object> fields = new HashMap<>();
+        fields.put("illuminance", 70);
+        fields.put("humidity", "40h");
+        try {
+            runtime.execute(new StreamlineEventImpl(fields, "ds"));
+            fail("Missing input field of a transformer should be rejected");
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+
+        fields.put("temp", 10);
+        fields.put("humidity", 40);
+        try {
+            runtime.execute(new StreamlineEventImpl(fields, "ds"));
+            fail("Integer value of a string field should be rejected");
+        } catch (NormalizationException e) {
+            // expected
+        }
+    }
+
+    @Test
+    public void testTypesResolvedAtInitialization() throws Exception {
+        Schema inputSchema = Schema.of(TEMP, new Schema.Field("humidity", Schema.Type.INTEGER));
+        FieldBasedNormalizationConfig config = new FieldBasedNormalizationConfig(inputSchema,
+                Collections.<Transformer>emptyList(), Collections.singletonList("temp"),
+                Collections.<FieldValueGenerator>emptyList());
+        try {
+            new CompiledNormalizationRuntime(config, OUTPUT_SCHEMA);
+            fail("Input field of a different type than the output field should be rejected");
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+
+        config = new FieldBasedNormalizationConfig(INPUT_SCHEMA, Collections.<Transformer>emptyList(),
+                Collections.<String>emptyList(), Collections.singletonList(
+                        new FieldValueGenerator(new Schema.Field("unknown", Schema.Type.STRING), "value")));
+        try {
+            new CompiledNormalizationRuntime(config, OUTPUT_SCHEMA);
+            fail("Generated field missing in the output schema should be rejected");
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+    }
+
+    private static FieldBasedNormalizationConfig createConfig(String converterScript) {
+        Transformer transformer = new Transformer(TEMP, new Schema.Field("temperature", Schema.Type.FLOAT));
+        transformer.setConverterScript(converterScript);
+        FieldValueGenerator scriptGenerator = new FieldValueGenerator();
+        scriptGenerator.setField(new Schema.Field("generated", Schema.Type.STRING));
+        scriptGenerator.setScript("suffix = '-' + temp; humidity + suffix");
+        List<FieldValueGenerator> generators = Arrays.asList(
+                new FieldValueGenerator(new Schema.Field("new-field", Schema.Type.STRING), "new value"), scriptGenerator);
+        return new FieldBasedNormalizationConfig(INPUT_SCHEMA, Collections.singletonList(transformer),
+                Collections.singletonList("foo"), generators);
+    }
+
+    private static StreamlineEvent event(int temp, String humidity) {
+        Map<String, Object> fields = new HashMap<>();
+        fields.put("illuminance", 70);
+        fields.put("temp", temp);
+        fields.put("foo", 100);
+        fields.put("humidity", humidity);
+        return new StreamlineEventImpl(fields, "ds");
+    }
+}
@@ -0,0 +1,175 @@
+/**
+  * Copyright 2017 Hortonworks.
+  *
+  * Licensed under the Apache License, Version 2.0 (the "License");
+  * you may not use this file except in compliance with the License.
+  * You may obtain a copy of the License at
+
+  *   http://www.apache.org/licenses/LICENSE-2.0
+
+  * Unless required by applicable law or agreed to in writing, software
+  * distributed under the License is distributed on an "AS IS" BASIS,
+  * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  * See the License for the specific language governing permissions and
+  * limitations under the License.
+ **/
+
+package com.hortonworks.streamline.streams.runtime.processor;
+
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.MoreExecutors;
+import com.hortonworks.streamline.streams.Result;
+import com.hortonworks.streamline.streams.StreamlineEvent;
+import com.hortonworks.streamline.streams.common.StreamlineEventImpl;
+import com.hortonworks.streamline.streams.common.utils.ShellContext;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Unit tests for {@link MultiLangProcessorRuntime} with a pool of python subprocesses
+ */
+public class MultiLangProcessorRuntimeTest {
+    private static final String SCRIPT = "pool_processor.py";
+
+    private File codeDir;
+    private HaltRecordingRuntime runtime;
+
+    @Before
+    public void setUp() throws Exception {
+        codeDir = Files.createTempDirectory("multilang-test").toFile();
+        try (InputStream script = getClass().getResourceAsStream("/multilang/" + SCRIPT)) {
+            Files.copy(script, new File(codeDir, SCRIPT).toPath());
+        }
+        runtime = new HaltRecordingRuntime();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        runtime.cleanup();
+        for (File file : codeDir.listFiles()) {
+            file.delete();
+        }
+        codeDir.delete();
+    }
+
+    @Test
+    public void testResultsCompleteInSubmissionOrderAcrossSubprocesses() throws Exception {
+        initialize(2, null);
+        final List<Integer> completed = new CopyOnWriteArrayList<>();
+        final CountDownLatch allCompleted = new CountDownLatch(10);
+        List<ListenableFuture<List<Result>>> results = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            // the first event is still processed by one subprocess when the others complete on the other
+            ListenableFuture<List<Result>> result = runtime.processAsync(event(i, i == 0 ? 500 : 0, false));
+            final int n = i;
+            result.addListener(new Runnable() {
+                @Override
+                public void run() {
+                    completed.add(n);
+                    allCompleted.countDown();
+                }
+            }, MoreExecutors.directExecutor());
+            results.add(result);
+        }
+        Set<Object> pids = new HashSet<>();
+        for (int i = 0; i < results.size(); i++) {
+            StreamlineEvent emitted = results.get(i).get(30, TimeUnit.SECONDS).get(0).events.get(0);
+            assertEquals(i, ((Number) emitted.get("n")).intValue());
+            pids.add(emitted.get("pid"));
+        }
+        assertTrue(allCompleted.await(30, TimeUnit.SECONDS));
+        assertEquals(Arrays.asList(0, 1, 2, 3, 4, 5, 6, 7, 8, 9), completed);
+        assertEquals(2, pids.size());
+    }
+
+    @Test
+    public void testPipeFailureMidBatch() throws Exception {
+        initialize(2, Collections.singletonList("key"));
+        // the events of the key go to the same subprocess, which exits at the second event
+        ListenableFuture<List<Result>> first = runtime.processAsync(event(0, 0, false));
+        ListenableFuture<List<Result>> second = runtime.processAsync(event(1, 0, true));
+        ListenableFuture<List<Result>> third = runtime.processAsync(event(2, 0, false));
+
+        assertEquals(0, ((Number) first.get(30, TimeUnit.SECONDS).get(0).events.get(0).get("n")).intValue());
+        assertFailed(second);
+        assertFailed(third);
+        assertTrue(runtime.halted.await(30, TimeUnit.SECONDS));
+        assertEquals(11, runtime.status);
+        try {
+            runtime.processAsync(event(3, 0, false));
+            fail("Expected the runtime to reject events once a subprocess died");
+        } catch (RuntimeException e) {
+            // expected
+        }
+    }
+
+    private void initialize(int poolSize, List<String> keyFields) {
+        ShellContext shellContext = new ShellContext();
+        shellContext.setCodeDir(codeDir.getPath());
+        shellContext.setPidDir(codeDir.getPath());
+        shellContext.setComponentId("multilang-test");
+        Map<String, Object> config = new HashMap<>();
+        config.put(MultiLangProcessorRuntime.COMMAND, new String[]{"python", SCRIPT});
+        config.put(MultiLangProcessorRuntime.PROCESS_TIMEOUT_MILLS, 60000);
+        config.put(MultiLangProcessorRuntime.PROCESS_CONFIG, new HashMap<String, Object>());
+        config.put(MultiLangProcessorRuntime.SHELL_CONTEXT, shellContext);
+        config.put(MultiLangProcessorRuntime.OUTPUT_STREAMS, Collections.singletonList("out"));
+        config.put(MultiLangProcessorRuntime.SHELL_ENVIRONMENT, new HashMap<String, String>());
+        config.put(MultiLangProcessorRuntime.MULTILANG_POOL_SIZE, poolSize);
+        config.put(MultiLangProcessorRuntime.MULTILANG_KEY_FIELDS, keyFields);
+        runtime.initialize(config);
+    }
+
+    private static StreamlineEvent event(int n, int delayMs, boolean exit) {
+        Map<String, Object> fieldsAndValues = new HashMap<>();
+        fieldsAndValues.put("n", n);
+        fieldsAndValues.put("key", "k");
+        fieldsAndValues.put("delayMs", delayMs);
+        fieldsAndValues.put("exit", exit);
+        return new StreamlineEventImpl(fieldsAndValues, "dsrcid");
+    }
+
+    private static void assertFailed(ListenableFuture<List<Result>> result) throws Exception {
+        try {
+            result.get(30, TimeUnit.SECONDS);
+            fail("Expected the event to fail");
+        } catch (ExecutionException e) {
+            // expected
+        }
+    }
+
+    /**
+     * Records the exit status instead of exiting the JVM.
+     */
+    private static final class HaltRecordingRuntime extends MultiLangProcessorRuntime {
+        private final CountDownLatch halted = new CountDownLatch(1);
+        private volatile int status;
+
+        @Override
+        void halt(int status) {
+            this.status = status;
+            halted.countDown();
+        }
+    }
+}
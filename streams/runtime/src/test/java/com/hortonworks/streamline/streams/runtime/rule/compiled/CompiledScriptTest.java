@@ -0,0 +1,155 @@
+/**
+  * Copyright 2017 Hortonworks.
+  *
+  * Licensed under the Apache License, Version 2.0 (the "License");
+  * you may not use this file except in compliance with the License.
+  * You may obtain a copy of the License at
+
+  *   http://www.apache.org/licenses/LICENSE-2.0
+
+  * Unless required by applicable law or agreed to in writing, software
+  * distributed under the License is distributed on an "AS IS" BASIS,
+  * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  * See the License for the specific language governing permissions and
+  * limitations under the License.
+ **/
+package com.hortonworks.streamline.streams.runtime.rule.compiled;
+
+import com.hortonworks.streamline.common.Schema;
+import com.hortonworks.streamline.streams.StreamlineEvent;
+import com.hortonworks.streamline.streams.common.IndexedStreamlineEvent;
+import com.hortonworks.streamline.streams.common.StreamlineEventImpl;
+import com.hortonworks.streamline.streams.layout.component.rule.expression.AggregateFunctionExpression;
+import com.hortonworks.streamline.streams.layout.component.rule.expression.AsExpression;
+import com.hortonworks.streamline.streams.layout.component.rule.expression.BinaryExpression;
+import com.hortonworks.streamline.streams.layout.component.rule.expression.Condition;
+import com.hortonworks.streamline.streams.layout.component.rule.expression.Expression;
+import com.hortonworks.streamline.streams.layout.component.rule.expression.FieldExpression;
+import com.hortonworks.streamline.streams.layout.component.rule.expression.FunctionExpression;
+import com.hortonworks.streamline.streams.layout.component.rule.expression.Literal;
+import com.hortonworks.streamline.streams.layout.component.rule.expression.MapFieldExpression;
+import com.hortonworks.streamline.streams.layout.component.rule.expression.Operator;
+import com.hortonworks.streamline.streams.layout.component.rule.expression.Projection;
+import com.hortonworks.streamline.streams.runtime.rule.condition.expression.StormSqlExpression;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+import static com.hortonworks.streamline.streams.common.StreamlineEventImpl.GROUP_BY_TRIGGER_EVENT;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class CompiledScriptTest {
+    private final Expression x = new FieldExpression(Schema.Field.of("x", Schema.Type.INTEGER));
+    private final Expression y = new FieldExpression(Schema.Field.of("y", Schema.Type.STRING));
+
+    @Test
+    public void testCondition() throws Exception {
+        CompiledScript script = createScript(new BinaryExpression(Operator.AND,
+                new BinaryExpression(Operator.GREATER_THAN, x, new Literal("5")),
+                new BinaryExpression(Operator.EQUALS, y, new Literal("'abc'"))), null);
+
+        assertEquals(1, script.evaluate(event(10, "abc")).size());
+        assertTrue(script.evaluate(event(5, "abc")).isEmpty());
+        assertTrue(script.evaluate(event(10, "abd")).isEmpty());
+        assertTrue(script.evaluate(GROUP_BY_TRIGGER_EVENT).isEmpty());
+    }
+
+    @Test
+    public void testNumericComparisonAcrossTypes() throws Exception {
+        CompiledScript script = createScript(new BinaryExpression(Operator.LESS_THAN_EQUALS_TO, x, new Literal("1.5")),
+                null);
+
+        assertEquals(1, script.evaluate(event(1L, "abc")).size());
+        assertEquals(1, script.evaluate(event(1.5d, "abc")).size());
+        assertTrue(script.evaluate(event(2, "abc")).isEmpty());
+    }
+
+    @Test
+    public void testMissingFieldDoesNotMatch() throws Exception {
+        CompiledScript script = createScript(new BinaryExpression(Operator.OR,
+                new BinaryExpression(Operator.GREATER_THAN, x, new Literal("5")),
+                new BinaryExpression(Operator.EQUALS, y, new Literal("'abc'"))), null);
+
+        StreamlineEvent event = new StreamlineEventImpl(Collections.<String, Object>singletonMap("y", "abc"), "1");
+        assertTrue(script.evaluate(event).isEmpty());
+    }
+
+    @Test
+    public void testUnknownMapKey() throws Exception {
+        Expression z = new FieldExpression(Schema.Field.of("z", Schema.Type.NESTED));
+        CompiledScript script = createScript(new BinaryExpression(Operator.OR,
+                new BinaryExpression(Operator.EQUALS, new MapFieldExpression(z, "a"), new Literal("1")),
+                new BinaryExpression(Operator.EQUALS, new MapFieldExpression(z, "b"), new Literal("2"))), null);
+
+        Map<String, Object> kv = new HashMap<>();
+        kv.put("z", Collections.singletonMap("b", 2));
+        assertEquals(1, script.evaluate(new StreamlineEventImpl(kv, "1")).size());
+        kv.put("z", Collections.singletonMap("b", 3));
+        assertTrue(script.evaluate(new StreamlineEventImpl(kv, "1")).isEmpty());
+    }
+
+    @Test
+    public void testProjection() throws Exception {
+        CompiledScript script = createScript(new BinaryExpression(Operator.NOT_EQUAL, x, new Literal("0")),
+                new Projection(Arrays.asList(x, new AsExpression(
+                        new FunctionExpression("UPPER", Collections.singletonList(y)), "upper"))));
+
+        StreamlineEvent input = event(1, "abc");
+        Collection<StreamlineEvent> result = script.evaluate(input);
+
+        assertEquals(1, result.size());
+        StreamlineEvent output = result.iterator().next();
+        assertEquals(1, output.get("x"));
+        assertEquals("ABC", output.get("upper"));
+        assertEquals(input.getId(), output.getId());
+    }
+
+    @Test
+    public void testIndexedEvent() throws Exception {
+        CompiledScript script = createScript(new BinaryExpression(Operator.GREATER_THAN, x, new Literal("5")), null);
+
+        Map<String, Object> kv = new HashMap<>();
+        kv.put("x", 10);
+        kv.put("y", "abc");
+        StreamlineEvent input = new IndexedStreamlineEvent(kv, "1");
+        assertSame(input, script.evaluate(input).iterator().next());
+        kv.put("x", 1);
+        assertTrue(script.evaluate(new IndexedStreamlineEvent(kv, "1")).isEmpty());
+        // a different layout
+        assertTrue(script.evaluate(new IndexedStreamlineEvent(Collections.<String, Object>singletonMap("x", 1), "1")).isEmpty());
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void testAggregateNotSupported() throws Exception {
+        createScript(null, new Projection(Collections.singletonList(
+                new AggregateFunctionExpression("MAX", Collections.singletonList(x)))));
+    }
+
+    @Test
+    public void testParseLiteral() throws Exception {
+        assertEquals("it's", ExpressionCompiler.parseLiteral("'it''s'"));
+        assertEquals("abc", ExpressionCompiler.parseLiteral("_ISO-8859-1'abc'"));
+        assertEquals(100L, ExpressionCompiler.parseLiteral("100"));
+        assertEquals(1.5d, ExpressionCompiler.parseLiteral("1.5"));
+        assertEquals(Boolean.TRUE, ExpressionCompiler.parseLiteral("TRUE"));
+    }
+
+    private CompiledScript createScript(Expression condition, Projection projection) {
+        StormSqlExpression expression = new StormSqlExpression(condition != null ? new Condition(condition) : null,
+                projection);
+        return new CompiledScript(expression, new ExpressionCompiler());
+    }
+
+    private StreamlineEvent event(Object xValue, String yValue) {
+        Map<String, Object> kv = new HashMap<>();
+        kv.put("x", xValue);
+        kv.put("y", yValue);
+        return new StreamlineEventImpl(kv, "1");
+    }
+}
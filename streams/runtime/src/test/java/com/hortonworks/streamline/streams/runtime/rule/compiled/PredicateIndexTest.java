@@ -0,0 +1,122 @@
+/**
+  * Copyright 2017 Hortonworks.
+  *
+  * Licensed under the Apache License, Version 2.0 (the "License");
+  * you may not use this file except in compliance with the License.
+  * You may obtain a copy of the License at
+
+  *   http://www.apache.org/licenses/LICENSE-2.0
+
+  * Unless required by applicable law or agreed to in writing, software
+  * distributed under the License is distributed on an "AS IS" BASIS,
+  * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  * See the License for the specific language governing permissions and
+  * limitations under the License.
+ **/
+package com.hortonworks.streamline.streams.runtime.rule.compiled;
+
+import com.hortonworks.streamline.common.Schema;
+import com.hortonworks.streamline.streams.StreamlineEvent;
+import com.hortonworks.streamline.streams.common.StreamlineEventImpl;
+import com.hortonworks.streamline.streams.layout.component.rule.Rule;
+import com.hortonworks.streamline.streams.layout.component.rule.expression.BinaryExpression;
+import com.hortonworks.streamline.streams.layout.component.rule.expression.Condition;
+import com.hortonworks.streamline.streams.layout.component.rule.expression.Expression;
+import com.hortonworks.streamline.streams.layout.component.rule.expression.FieldExpression;
+import com.hortonworks.streamline.streams.layout.component.rule.expression.Literal;
+import com.hortonworks.streamline.streams.layout.component.rule.expression.Operator;
+import com.hortonworks.streamline.streams.runtime.rule.RuleRuntime;
+import com.hortonworks.streamline.streams.runtime.rule.action.ActionRuntime;
+import com.hortonworks.streamline.streams.runtime.rule.condition.expression.StormSqlExpression;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+
+public class PredicateIndexTest {
+    private final Expression temperature = new FieldExpression(Schema.Field.of("temperature", Schema.Type.INTEGER));
+    private final Expression city = new FieldExpression(Schema.Field.of("city", Schema.Type.STRING));
+
+    private List<RuleRuntime> ruleRuntimes;
+    private PredicateIndex predicateIndex;
+
+    @Before
+    public void setUp() throws Exception {
+        ruleRuntimes = new ArrayList<>();
+        // 0: temperature > 100
+        ruleRuntimes.add(ruleRuntime(new BinaryExpression(Operator.GREATER_THAN, temperature, new Literal("100"))));
+        // 1: 50 >= temperature
+        ruleRuntimes.add(ruleRuntime(new BinaryExpression(Operator.GREATER_THAN_EQUALS_TO, new Literal("50"), temperature)));
+        // 2: temperature > 80 AND city = 'sf'
+        ruleRuntimes.add(ruleRuntime(new BinaryExpression(Operator.AND,
+                new BinaryExpression(Operator.GREATER_THAN, temperature, new Literal("80")),
+                new BinaryExpression(Operator.EQUALS, city, new Literal("'sf'")))));
+        // 3: temperature > 100 OR city = 'la', not indexed
+        ruleRuntimes.add(ruleRuntime(new BinaryExpression(Operator.OR,
+                new BinaryExpression(Operator.GREATER_THAN, temperature, new Literal("100")),
+                new BinaryExpression(Operator.EQUALS, city, new Literal("'la'")))));
+        // 4: temperature = 75
+        ruleRuntimes.add(ruleRuntime(new BinaryExpression(Operator.EQUALS, temperature, new Literal("75"))));
+        predicateIndex = new PredicateIndex(ruleRuntimes);
+    }
+
+    @Test
+    public void testCandidates() throws Exception {
+        assertEquals(1, predicateIndex.getUnindexedCount());
+        assertEquals(rules(0, 3), predicateIndex.getCandidates(event(120, "ny")));
+        assertEquals(rules(1, 3), predicateIndex.getCandidates(event(50, "ny")));
+        assertEquals(rules(2, 3), predicateIndex.getCandidates(event(90, "sf")));
+        assertEquals(rules(3), predicateIndex.getCandidates(event(90, "la")));
+        assertEquals(rules(3, 4), predicateIndex.getCandidates(event(75.0d, "ny")));
+    }
+
+    @Test
+    public void testCandidatesIncludeAllMatches() throws Exception {
+        for (int temperature = 0; temperature < 150; temperature += 5) {
+            for (String city : Arrays.asList("sf", "la", "ny")) {
+                StreamlineEvent event = event(temperature, city);
+                List<RuleRuntime> candidates = predicateIndex.getCandidates(event);
+                for (RuleRuntime ruleRuntime : ruleRuntimes) {
+                    if (!ruleRuntime.evaluate(event).isEmpty()) {
+                        assertEquals(true, candidates.contains(ruleRuntime));
+                    }
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testMissingField() throws Exception {
+        StreamlineEvent event = new StreamlineEventImpl(Collections.<String, Object>singletonMap("city", "ny"), "1");
+        assertEquals(rules(3), predicateIndex.getCandidates(event));
+    }
+
+    private List<RuleRuntime> rules(int... indexes) {
+        List<RuleRuntime> result = new ArrayList<>();
+        for (int index : indexes) {
+            result.add(ruleRuntimes.get(index));
+        }
+        return result;
+    }
+
+    private RuleRuntime ruleRuntime(Expression expression) {
+        Rule rule = new Rule();
+        rule.setCondition(new Condition(expression));
+        CompiledScript script = new CompiledScript(new StormSqlExpression(rule.getCondition()), new ExpressionCompiler());
+        return new RuleRuntime(rule, script, Collections.<ActionRuntime>emptyList());
+    }
+
+    private StreamlineEvent event(Object temperature, String city) {
+        Map<String, Object> kv = new HashMap<>();
+        kv.put("temperature", temperature);
+        kv.put("city", city);
+        return new StreamlineEventImpl(kv, "1");
+    }
+}
@@ -0,0 +1,223 @@
+/**
+  * Copyright 2017 Hortonworks.
+  *
+  * Licensed under the Apache License, Version 2.0 (the "License");
+  * you may not use this file except in compliance with the License.
+  * You may obtain a copy of the License at
+
+  *   http://www.apache.org/licenses/LICENSE-2.0
+
+  * Unless required by applicable law or agreed to in writing, software
+  * distributed under the License is distributed on an "AS IS" BASIS,
+  * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  * See the License for the specific language governing permissions and
+  * limitations under the License.
+ **/
+package com.hortonworks.streamline.streams.runtime.rule.compiled;
+
+import com.hortonworks.streamline.common.Schema;
+import com.hortonworks.streamline.streams.StreamlineEvent;
+import com.hortonworks.streamline.streams.common.StreamlineEventImpl;
+import com.hortonworks.streamline.streams.layout.component.rule.Rule;
+import com.hortonworks.streamline.streams.layout.component.rule.expression.AggregateFunctionExpression;
+import com.hortonworks.streamline.streams.layout.component.rule.expression.AsExpression;
+import com.hortonworks.streamline.streams.layout.component.rule.expression.BinaryExpression;
+import com.hortonworks.streamline.streams.layout.component.rule.expression.Condition;
+import com.hortonworks.streamline.streams.layout.component.rule.expression.Expression;
+import com.hortonworks.streamline.streams.layout.component.rule.expression.FieldExpression;
+import com.hortonworks.streamline.streams.layout.component.rule.expression.GroupBy;
+import com.hortonworks.streamline.streams.layout.component.rule.expression.Having;
+import com.hortonworks.streamline.streams.layout.component.rule.expression.Literal;
+import com.hortonworks.streamline.streams.layout.component.rule.expression.Operator;
+import com.hortonworks.streamline.streams.layout.component.rule.expression.Projection;
+import com.hortonworks.streamline.streams.rule.UDAF;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class WindowAggregatorTest {
+    private final Expression device = new FieldExpression(Schema.Field.of("device", Schema.Type.STRING));
+    private final Expression temperature = new FieldExpression(Schema.Field.of("temperature", Schema.Type.INTEGER));
+
+    private WindowAggregator aggregator;
+
+    @Before
+    public void setUp() throws Exception {
+        // SELECT device, COUNT(*) AS cnt, AVG(temperature) AS avg, MAX(temperature) AS max
+        // WHERE temperature > 0 GROUP BY device HAVING COUNT(*) > 1
+        Rule rule = new Rule();
+        rule.setId(1L);
+        rule.setCondition(new Condition(new BinaryExpression(Operator.GREATER_THAN, temperature, new Literal("0"))));
+        rule.setProjection(new Projection(Arrays.asList(device,
+                new AsExpression(count(), "cnt"),
+                new AsExpression(aggregate("AVG", temperature), "avg"),
+                new AsExpression(aggregate("MAX", temperature), "max"))));
+        rule.setGroupBy(new GroupBy(device));
+        rule.setHaving(new Having(new BinaryExpression(Operator.GREATER_THAN, count(), new Literal("1"))));
+        aggregator = new WindowAggregator(rule);
+    }
+
+    @Test
+    public void testAddAndRetract() throws Exception {
+        assertTrue(aggregator.isRetractable());
+        StreamlineEvent a1 = event("a", 10);
+        StreamlineEvent a2 = event("a", 20);
+        StreamlineEvent a3 = event("a", 30);
+        aggregator.add(a1);
+        aggregator.add(a2);
+        aggregator.add(event("b", 5));
+        // filtered by the condition
+        aggregator.add(event("b", -5));
+
+        List<StreamlineEvent> results = aggregator.getResults(1);
+        assertEquals(1, results.size());
+        assertEquals(result("a", 2L, 15L, 20), new HashMap<>(results.get(0)));
+
+        aggregator.retract(a2);
+        aggregator.add(a3);
+        results = aggregator.getResults(2);
+        assertEquals(1, results.size());
+        assertEquals(result("a", 2L, 20L, 30), new HashMap<>(results.get(0)));
+
+        aggregator.retract(a1);
+        aggregator.retract(a3);
+        assertTrue(aggregator.getResults(3).isEmpty());
+    }
+
+    @Test
+    public void testMergePartials() throws Exception {
+        assertTrue(aggregator.isMergeable());
+        WindowAggregator partial1 = new WindowAggregator(aggregator.getRule());
+        WindowAggregator partial2 = new WindowAggregator(aggregator.getRule());
+        partial1.add(event("a", 10));
+        partial1.add(event("b", 5));
+        partial2.add(event("a", 20));
+        partial2.add(event("a", 40));
+        List<StreamlineEvent> partials = new ArrayList<>(partial1.getPartials());
+        partials.addAll(partial2.getPartials());
+        assertEquals(3, partials.size());
+
+        for (StreamlineEvent partial : partials) {
+            aggregator.merge(partial);
+        }
+        List<StreamlineEvent> results = aggregator.getResults(1);
+        assertEquals(1, results.size());
+        assertEquals(result("a", 3L, 23L, 40), new HashMap<>(results.get(0)));
+
+        // merging again does not see the aggregates modified by the previous merge
+        aggregator.clear();
+        for (StreamlineEvent partial : partials) {
+            aggregator.merge(partial);
+        }
+        assertEquals(result("a", 3L, 23L, 40), new HashMap<>(aggregator.getResults(2).get(0)));
+    }
+
+    @Test
+    public void testSumTypeFollowsWindowContents() throws Exception {
+        AggregateFunction sum = AggregateFunctions.builtin("SUM");
+        Object aggregate = sum.init();
+        aggregate = sum.add(aggregate, new Object[]{1L});
+        aggregate = sum.add(aggregate, new Object[]{0.1});
+        aggregate = sum.add(aggregate, new Object[]{0.2});
+        assertEquals(1.3, (Double) sum.result(aggregate), 1e-12);
+
+        aggregate = sum.retract(aggregate, new Object[]{0.1});
+        aggregate = sum.retract(aggregate, new Object[]{0.2});
+        // a full recompute over the remaining values returns a long
+        assertEquals(1L, sum.result(aggregate));
+
+        aggregate = sum.add(aggregate, new Object[]{0.5});
+        Object other = sum.add(sum.init(), new Object[]{2});
+        assertEquals(3.5, (Double) sum.result(sum.merge(aggregate, other)), 0);
+    }
+
+    @Test
+    public void testUdaf() throws Exception {
+        Rule rule = new Rule();
+        rule.setProjection(new Projection(Collections.singletonList(new AsExpression(
+                new AggregateFunctionExpression("MYSUM", MySum.class.getName(), Collections.singletonList(temperature)),
+                "sum"))));
+        WindowAggregator udafAggregator = new WindowAggregator(rule);
+        assertFalse(udafAggregator.isRetractable());
+        assertFalse(udafAggregator.isMergeable());
+
+        udafAggregator.add(event("a", 1));
+        udafAggregator.add(event("b", 2));
+        assertEquals(Collections.<String, Object>singletonMap("sum", 3), new HashMap<>(udafAggregator.getResults(1).get(0)));
+    }
+
+    @Test
+    public void testRetractableUdaf() throws Exception {
+        Rule rule = new Rule();
+        rule.setProjection(new Projection(Collections.singletonList(new AsExpression(
+                new AggregateFunctionExpression("MYSUM", MyRetractableSum.class.getName(),
+                        Collections.singletonList(temperature)), "sum"))));
+        WindowAggregator udafAggregator = new WindowAggregator(rule);
+        assertTrue(udafAggregator.isRetractable());
+
+        StreamlineEvent a = event("a", 1);
+        udafAggregator.add(a);
+        udafAggregator.add(event("b", 2));
+        udafAggregator.add(event("c", 3));
+        udafAggregator.retract(a);
+        assertEquals(Collections.<String, Object>singletonMap("sum", 5), new HashMap<>(udafAggregator.getResults(1).get(0)));
+    }
+
+    public static class MyRetractableSum extends MySum {
+        @Override
+        public Integer retract(Integer aggregate, Integer val) {
+            return aggregate - val;
+        }
+    }
+
+    public static class MySum implements UDAF<Integer, Integer, Integer> {
+        @Override
+        public Integer init() {
+            return 0;
+        }
+
+        @Override
+        public Integer add(Integer aggregate, Integer val) {
+            return aggregate + val;
+        }
+
+        @Override
+        public Integer result(Integer aggregate) {
+            return aggregate;
+        }
+    }
+
+    private Expression count() {
+        return new AggregateFunctionExpression("COUNT", Collections.<Expression>singletonList(FieldExpression.STAR));
+    }
+
+    private Expression aggregate(String name, Expression operand) {
+        return new AggregateFunctionExpression(name, Collections.singletonList(operand));
+    }
+
+    private StreamlineEvent event(String deviceValue, int temperatureValue) {
+        Map<String, Object> kv = new HashMap<>();
+        kv.put("device", deviceValue);
+        kv.put("temperature", temperatureValue);
+        return new StreamlineEventImpl(kv, "1");
+    }
+
+    private Map<String, Object> result(String deviceValue, long count, long avg, int max) {
+        Map<String, Object> kv = new HashMap<>();
+        kv.put("device", deviceValue);
+        kv.put("cnt", count);
+        kv.put("avg", avg);
+        kv.put("max", max);
+        return kv;
+    }
+}
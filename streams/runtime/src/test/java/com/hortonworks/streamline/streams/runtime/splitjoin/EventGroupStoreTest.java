@@ -0,0 +1,138 @@
+/**
+  * Copyright 2017 Hortonworks.
+  *
+  * Licensed under the Apache License, Version 2.0 (the "License");
+  * you may not use this file except in compliance with the License.
+  * You may obtain a copy of the License at
+
+  *   http://www.apache.org/licenses/LICENSE-2.0
+
+  * Unless required by applicable law or agreed to in writing, software
+  * distributed under the License is distributed on an "AS IS" BASIS,
+  * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  * See the License for the specific language governing permissions and
+  * limitations under the License.
+ **/
+package com.hortonworks.streamline.streams.runtime.splitjoin;
+
+import com.hortonworks.streamline.streams.Result;
+import com.hortonworks.streamline.streams.StreamlineEvent;
+import com.hortonworks.streamline.streams.common.StreamlineEventImpl;
+import com.hortonworks.streamline.streams.layout.component.impl.splitjoin.JoinAction;
+import com.hortonworks.streamline.streams.runtime.rule.action.ActionRuntimeContext;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Unit tests for {@link EventGroupStore} and {@link HashedTimerWheel}
+ */
+public class EventGroupStoreTest {
+
+    @Test
+    public void testExactCompletion() {
+        EventGroupStore store = new EventGroupStore(JoinAction.DEFAULT_EXPIRY_INTERVAL, JoinAction.DEFAULT_EXPIRY_INTERVAL, 0);
+        EventGroup group = store.add("g1", createSplitEvent("g1", 1, 3), 0);
+        Assert.assertFalse(group.isComplete());
+        // a partition received again does not count twice
+        store.add("g1", createSplitEvent("g1", 1, 3), 1);
+        Assert.assertFalse(group.isComplete());
+        store.add("g1", createSplitEvent("g1", 2000, 3), 2);
+        Assert.assertFalse(group.isComplete());
+        store.add("g1", createSplitEvent("g1", 2, 3), 3);
+        Assert.assertTrue(group.isComplete());
+
+        List<StreamlineEvent> events = new ArrayList<>();
+        for (StreamlineEvent event : group.getSplitEvents()) {
+            events.add(event);
+        }
+        Assert.assertEquals(3, events.size());
+        Assert.assertEquals(1, events.get(0).getHeader().get(SplitActionRuntime.SPLIT_PARTITION_ID));
+        Assert.assertEquals(2, events.get(1).getHeader().get(SplitActionRuntime.SPLIT_PARTITION_ID));
+
+        Assert.assertSame(group, store.remove("g1"));
+        Assert.assertEquals(0, store.size());
+        // never expires with the default intervals
+        Assert.assertTrue(store.expire(Long.MAX_VALUE).isEmpty());
+    }
+
+    @Test
+    public void testExpiry() {
+        // groups expire after the shorter of the two intervals
+        EventGroupStore store = new EventGroupStore(10000, 1000, 0);
+        store.add("g1", createSplitEvent("g1", 1, 2), 0);
+        store.add("g2", createSplitEvent("g2", 1, 2), 500);
+        store.add("g3", createSplitEvent("g3", 1, 2), 900);
+        store.remove("g3");
+
+        Assert.assertTrue(store.expire(999).isEmpty());
+        List<EventGroup> expired = store.expire(1100);
+        Assert.assertEquals(1, expired.size());
+        Assert.assertEquals("g1", expired.get(0).getGroupId());
+        Assert.assertEquals(1, store.size());
+
+        // far in the future, after many revolutions of the wheel
+        expired = store.expire(1000000);
+        Assert.assertEquals(1, expired.size());
+        Assert.assertEquals("g2", expired.get(0).getGroupId());
+        Assert.assertEquals(0, store.size());
+    }
+
+    @Test
+    public void testTimerWheel() {
+        HashedTimerWheel<String> wheel = new HashedTimerWheel<>(10, 4, 0);
+        wheel.schedule("a", 15);
+        wheel.schedule("b", 95);
+        HashedTimerWheel.Timeout<String> c = wheel.schedule("c", 25);
+        wheel.cancel(c);
+        wheel.cancel(c);
+        Assert.assertEquals(2, wheel.size());
+
+        List<String> expired = new ArrayList<>();
+        Assert.assertEquals(0, wheel.advance(10, expired));
+        Assert.assertEquals(1, wheel.advance(40, expired));
+        Assert.assertEquals(Collections.singletonList("a"), expired);
+        // b shares a bucket with earlier ticks but is only due in a later revolution
+        Assert.assertEquals(0, wheel.advance(90, expired));
+        Assert.assertEquals(1, wheel.advance(100, expired));
+        Assert.assertEquals(0, wheel.size());
+    }
+
+    @Test
+    public void testExpiredGroupsStream() throws Exception {
+        JoinAction joinAction = new JoinAction(null, null, 50L, 50L, "expired-stream");
+        joinAction.setOutputStreams(Collections.singleton("output-stream"));
+        JoinActionRuntime joinActionRuntime = new JoinActionRuntime(joinAction);
+        joinActionRuntime.setActionRuntimeContext(new ActionRuntimeContext(null, joinAction));
+        joinActionRuntime.initialize(Collections.<String, Object>emptyMap());
+        Assert.assertTrue(joinActionRuntime.getOutputStreams().contains("expired-stream"));
+
+        Assert.assertNull(joinActionRuntime.execute(createSplitEvent("g1", 1, 2)));
+        Assert.assertNull(joinActionRuntime.expire(System.currentTimeMillis()));
+        Thread.sleep(100);
+
+        List<Result> results = joinActionRuntime.execute(createSplitEvent("g2", 1, 1));
+        Assert.assertEquals(2, results.size());
+        Assert.assertEquals("output-stream", results.get(0).stream);
+        Assert.assertEquals("expired-stream", results.get(1).stream);
+        Assert.assertEquals(1, results.get(1).events.size());
+        StreamlineEvent expired = results.get(1).events.get(0);
+        Assert.assertEquals("g1", expired.getHeader().get(SplitActionRuntime.SPLIT_GROUP_ID));
+        Assert.assertEquals("expired-stream", expired.getSourceStream());
+    }
+
+    private static StreamlineEvent createSplitEvent(String groupId, int partitionId, int totalPartitions) {
+        Map<String, Object> header = new HashMap<>();
+        header.put(SplitActionRuntime.SPLIT_GROUP_ID, groupId);
+        header.put(SplitActionRuntime.SPLIT_PARTITION_ID, partitionId);
+        header.put(SplitActionRuntime.SPLIT_TOTAL_PARTITIONS_ID, totalPartitions);
+        return new StreamlineEventImpl(Collections.<String, Object>singletonMap("p" + partitionId, partitionId), "ds-1",
+                UUID.randomUUID().toString(), header, "source-stream");
+    }
+}
@@ -0,0 +1,206 @@
+/**
+  * Copyright 2017 Hortonworks.
+  *
+  * Licensed under the Apache License, Version 2.0 (the "License");
+  * you may not use this file except in compliance with the License.
+  * You may obtain a copy of the License at
+
+  *   http://www.apache.org/licenses/LICENSE-2.0
+
+  * Unless required by applicable law or agreed to in writing, software
+  * distributed under the License is distributed on an "AS IS" BASIS,
+  * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  * See the License for the specific language governing permissions and
+  * limitations under the License.
+ **/
+package com.hortonworks.streamline.streams.runtime.transform;
+
+import com.google.common.util.concurrent.ListenableFuture;
+import com.hortonworks.streamline.streams.StreamlineEvent;
+import com.hortonworks.streamline.streams.common.StreamlineEventImpl;
+import com.hortonworks.streamline.streams.layout.component.rule.action.transform.EnrichmentTransform;
+import com.hortonworks.streamline.streams.layout.component.rule.action.transform.InmemoryTransformDataProvider;
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Unit tests for {@link AsyncTransformDataProviderRuntime}
+ */
+public class AsyncTransformDataProviderRuntimeTest {
+    private AsyncTransformDataProviderRuntime asyncDataProvider;
+
+    @After
+    public void tearDown() {
+        if (asyncDataProvider != null) {
+            asyncDataProvider.cleanup();
+        }
+    }
+
+    @Test
+    public void testBatchesAndCoalescesLookups() throws Exception {
+        RecordingDataProvider dataProvider = new RecordingDataProvider();
+        asyncDataProvider = new AsyncTransformDataProviderRuntime(dataProvider, 100, 60, 60, 3, 0, 1);
+        asyncDataProvider.prepare();
+
+        ListenableFuture<Map<Object, Object>> first = asyncDataProvider.getAll(Arrays.asList("a", "b"));
+        ListenableFuture<Map<Object, Object>> second = asyncDataProvider.getAll(Collections.singletonList("a"));
+        assertFalse(first.isDone());
+        // the third distinct key fills the batch
+        ListenableFuture<Map<Object, Object>> third = asyncDataProvider.getAll(Arrays.asList("b", "missing"));
+
+        assertEquals("A", first.get(5, TimeUnit.SECONDS).get("a"));
+        assertEquals("B", first.get().get("b"));
+        assertEquals("A", second.get(5, TimeUnit.SECONDS).get("a"));
+        assertTrue(third.get(5, TimeUnit.SECONDS).containsKey("missing"));
+        assertNull(third.get().get("missing"));
+        assertEquals(1, dataProvider.batches.size());
+        assertEquals(3, dataProvider.batches.get(0).size());
+
+        // cached values, including the missing ones, are not looked up again
+        ListenableFuture<Map<Object, Object>> cached = asyncDataProvider.getAll(Arrays.asList("a", "missing"));
+        assertTrue(cached.isDone());
+        assertEquals("A", cached.get().get("a"));
+        assertEquals(1, dataProvider.batches.size());
+    }
+
+    @Test
+    public void testFlushAndLinger() throws Exception {
+        RecordingDataProvider dataProvider = new RecordingDataProvider();
+        asyncDataProvider = new AsyncTransformDataProviderRuntime(dataProvider, 100, 60, 60, 100, 0, 2);
+        asyncDataProvider.prepare();
+        ListenableFuture<Map<Object, Object>> result = asyncDataProvider.getAll(Collections.singletonList("a"));
+        asyncDataProvider.flush();
+        assertEquals("A", result.get(5, TimeUnit.SECONDS).get("a"));
+        asyncDataProvider.cleanup();
+
+        asyncDataProvider = new AsyncTransformDataProviderRuntime(dataProvider, 100, 60, 60, 100, 10, 2);
+        asyncDataProvider.prepare();
+        result = asyncDataProvider.getAll(Collections.singletonList("b"));
+        assertEquals("B", result.get(5, TimeUnit.SECONDS).get("b"));
+    }
+
+    @Test
+    public void testRefresh() throws Exception {
+        final AtomicInteger version = new AtomicInteger();
+        RecordingDataProvider dataProvider = new RecordingDataProvider() {
+            @Override
+            public Object get(Object key) {
+                return key + "-" + version.get();
+            }
+        };
+        asyncDataProvider = new AsyncTransformDataProviderRuntime(dataProvider, 100, 60, 1, 100, 0, 1);
+        asyncDataProvider.prepare();
+        ListenableFuture<Map<Object, Object>> result = asyncDataProvider.getAll(Collections.singletonList("a"));
+        asyncDataProvider.flush();
+        assertEquals("a-0", result.get(5, TimeUnit.SECONDS).get("a"));
+
+        version.incrementAndGet();
+        Thread.sleep(1100);
+        // the stale value is returned right away and refreshed in the next batch
+        result = asyncDataProvider.getAll(Collections.singletonList("a"));
+        assertTrue(result.isDone());
+        assertEquals("a-0", result.get().get("a"));
+        asyncDataProvider.flush();
+        long deadline = System.currentTimeMillis() + 5000;
+        while (!"a-1".equals(asyncDataProvider.getAll(Collections.singletonList("a")).get().get("a"))) {
+            assertTrue("value not refreshed", System.currentTimeMillis() < deadline);
+            Thread.sleep(10);
+        }
+        assertEquals(2, dataProvider.batches.size());
+    }
+
+    @Test
+    public void testFailedLookup() throws Exception {
+        TransformDataProviderRuntime failing = new RecordingDataProvider() {
+            @Override
+            public Object get(Object key) {
+                throw new RuntimeException("lookup failed");
+            }
+        };
+        asyncDataProvider = new AsyncTransformDataProviderRuntime(failing, 100, 60, 60, 100, 0, 1);
+        asyncDataProvider.prepare();
+        ListenableFuture<Map<Object, Object>> result = asyncDataProvider.getAll(Collections.singletonList("a"));
+        asyncDataProvider.flush();
+        try {
+            result.get(5, TimeUnit.SECONDS);
+            throw new AssertionError("lookup should have failed");
+        } catch (ExecutionException e) {
+            assertEquals("lookup failed", e.getCause().getMessage());
+        }
+    }
+
+    @Test
+    public void testAsyncEnrichment() throws Exception {
+        Map<Object, Object> data = new HashMap<>();
+        data.put("1", "one");
+        EnrichmentTransform enrichmentTransform = new EnrichmentTransform("enricher", Collections.singletonList("id"),
+                new InmemoryTransformDataProvider(data));
+        enrichmentTransform.withAsyncLookups(10, 0, 1);
+        EnrichmentTransformRuntime runtime = new EnrichmentTransformRuntime(enrichmentTransform);
+        try {
+            ListenableFuture<List<StreamlineEvent>> result = runtime.executeAsync(event("1"));
+            runtime.flush();
+            assertEquals("one", enrichments(result.get(5, TimeUnit.SECONDS).get(0)).get("id"));
+            // the synchronous execution looks up through the same batches
+            assertEquals("one", enrichments(runtime.execute(event("1")).get(0)).get("id"));
+            assertNull(enrichments(runtime.execute(event("2")).get(0)).get("id"));
+        } finally {
+            runtime.cleanup();
+        }
+    }
+
+    private static StreamlineEvent event(String id) {
+        return new StreamlineEventImpl(Collections.<String, Object>singletonMap("id", id), "dsrcid");
+    }
+
+    private static Map<String, Object> enrichments(StreamlineEvent event) {
+        return (Map<String, Object>) event.getAuxiliaryFieldsAndValues().get(EnrichmentTransform.ENRICHMENTS_FIELD_NAME);
+    }
+
+    private static class RecordingDataProvider implements BatchedTransformDataProviderRuntime {
+        private final List<List<Object>> batches = new CopyOnWriteArrayList<>();
+
+        @Override
+        public void prepare() {
+        }
+
+        @Override
+        public Object get(Object key) {
+            return "missing".equals(key) ? null : key.toString().toUpperCase();
+        }
+
+        @Override
+        public Map<Object, Object> getAll(Collection<Object> keys) {
+            batches.add(new ArrayList<>(keys));
+            Map<Object, Object> values = new HashMap<>();
+            for (Object key : keys) {
+                Object value = get(key);
+                if (value != null) {
+                    values.put(key, value);
+                }
+            }
+            return values;
+        }
+
+        @Override
+        public void cleanup() {
+        }
+    }
+}
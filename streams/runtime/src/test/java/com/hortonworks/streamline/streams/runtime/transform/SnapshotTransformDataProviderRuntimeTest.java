@@ -0,0 +1,171 @@
+/**
+  * Copyright 2017 Hortonworks.
+  *
+  * Licensed under the Apache License, Version 2.0 (the "License");
+  * you may not use this file except in compliance with the License.
+  * You may obtain a copy of the License at
+
+  *   http://www.apache.org/licenses/LICENSE-2.0
+
+  * Unless required by applicable law or agreed to in writing, software
+  * distributed under the License is distributed on an "AS IS" BASIS,
+  * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  * See the License for the specific language governing permissions and
+  * limitations under the License.
+ **/
+package com.hortonworks.streamline.streams.runtime.transform;
+
+import com.hortonworks.streamline.streams.layout.component.rule.action.transform.SnapshotTransformDataProvider;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Unit tests for {@link SnapshotTransformDataProviderRuntime}
+ */
+public class SnapshotTransformDataProviderRuntimeTest {
+    private File file;
+
+    @Before
+    public void setUp() throws Exception {
+        file = File.createTempFile("snapshot-test", ".csv");
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        file.delete();
+    }
+
+    @Test
+    public void testHashIndex() throws Exception {
+        write("# device registry", "d1,sensor-1", "d2,sensor,2", "", "d3,sensor-3", "d1,sensor-1b");
+        SnapshotTransformDataProvider dataProvider = new SnapshotTransformDataProvider(file.getPath(),
+                SnapshotTransformDataProvider.IndexType.HASH);
+        dataProvider.withRefreshInterval(0);
+        SnapshotTransformDataProviderRuntime runtime = new SnapshotTransformDataProviderRuntime(dataProvider);
+        runtime.prepare();
+        try {
+            assertEquals("sensor-1b", runtime.get("d1"));
+            assertEquals("sensor,2", runtime.get("d2"));
+            assertNull(runtime.get("d4"));
+            Map<Object, Object> values = runtime.getAll(Arrays.<Object>asList("d3", "d4"));
+            assertEquals("sensor-3", values.get("d3"));
+            assertNull(values.get("d4"));
+        } finally {
+            runtime.cleanup();
+        }
+    }
+
+    @Test
+    public void testManyEntries() throws Exception {
+        String[] lines = new String[10000];
+        for (int i = 0; i < lines.length; i++) {
+            lines[i] = "key-" + i + ",value-" + i;
+        }
+        write(lines);
+        SnapshotTransformDataProvider dataProvider = new SnapshotTransformDataProvider(file.getPath(),
+                SnapshotTransformDataProvider.IndexType.HASH);
+        dataProvider.withRefreshInterval(0);
+        SnapshotTransformDataProviderRuntime runtime = new SnapshotTransformDataProviderRuntime(dataProvider);
+        runtime.prepare();
+        try {
+            for (int i = 0; i < lines.length; i++) {
+                assertEquals("value-" + i, runtime.get("key-" + i));
+            }
+            assertNull(runtime.get("key-" + lines.length));
+        } finally {
+            runtime.cleanup();
+        }
+    }
+
+    @Test
+    public void testRangeIndex() throws Exception {
+        write("10.0.0.0,10.255.255.255,private", "100,199,hundreds", "16843008,16843263,1.1.1.x");
+        SnapshotTransformDataProvider dataProvider = new SnapshotTransformDataProvider(file.getPath(),
+                SnapshotTransformDataProvider.IndexType.RANGE);
+        dataProvider.withRefreshInterval(0);
+        // the ranges are not sorted
+        SnapshotTransformDataProviderRuntime runtime = new SnapshotTransformDataProviderRuntime(dataProvider);
+        try {
+            runtime.prepare();
+            throw new AssertionError("unsorted ranges should be rejected");
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+
+        write("100,199,hundreds", "16843008,16843263,1.1.1.x", "10.0.0.0,10.255.255.255,private");
+        runtime.prepare();
+        try {
+            assertEquals("hundreds", runtime.get(150));
+            assertEquals("hundreds", runtime.get("199"));
+            assertNull(runtime.get(200L));
+            assertNull(runtime.get(99));
+            assertEquals("1.1.1.x", runtime.get("1.1.1.1"));
+            assertEquals("private", runtime.get("10.1.2.3"));
+            assertNull(runtime.get("11.0.0.1"));
+            assertNull(runtime.get("not an address"));
+        } finally {
+            runtime.cleanup();
+        }
+    }
+
+    @Test
+    public void testSharedSnapshotRefresh() throws Exception {
+        write("k,v1");
+        SnapshotTransformDataProvider dataProvider = new SnapshotTransformDataProvider(file.getPath(),
+                SnapshotTransformDataProvider.IndexType.HASH);
+        dataProvider.withRefreshInterval(1);
+        SnapshotTransformDataProviderRuntime first = new SnapshotTransformDataProviderRuntime(dataProvider);
+        SnapshotTransformDataProviderRuntime second = new SnapshotTransformDataProviderRuntime(dataProvider);
+        first.prepare();
+        second.prepare();
+        try {
+            assertEquals("v1", first.get("k"));
+
+            File next = File.createTempFile("snapshot-test", ".csv");
+            Files.write(next.toPath(), "k,v2\n".getBytes(StandardCharsets.UTF_8));
+            next.setLastModified(file.lastModified() + 2000);
+            Files.move(next.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+
+            long deadline = System.currentTimeMillis() + 10000;
+            while (!"v2".equals(second.get("k")) && System.currentTimeMillis() < deadline) {
+                Thread.sleep(100);
+            }
+            assertEquals("v2", first.get("k"));
+            assertEquals("v2", second.get("k"));
+        } finally {
+            first.cleanup();
+            second.cleanup();
+        }
+    }
+
+    @Test
+    public void testTableReleasedAfterLastReader() throws Exception {
+        write("k,v1");
+        SnapshotTransformDataProvider dataProvider = new SnapshotTransformDataProvider(file.getPath(),
+                SnapshotTransformDataProvider.IndexType.HASH);
+        MappedLookupTable table = MappedLookupTable.load(dataProvider);
+        assertTrue(table.acquire());
+        // the owner reference is dropped while a lookup is in progress
+        table.release();
+        assertEquals("v1", table.get("k"));
+        table.release();
+        assertFalse(table.acquire());
+    }
+
+    private void write(String... lines) throws Exception {
+        Files.write(file.toPath(), Arrays.asList(lines), StandardCharsets.UTF_8);
+    }
+}
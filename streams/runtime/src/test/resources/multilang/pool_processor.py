@@ -0,0 +1,52 @@
+# Licensed to the Apache Software Foundation (ASF) under one
+# or more contributor license agreements.  See the NOTICE file
+# distributed with this work for additional information
+# regarding copyright ownership.  The ASF licenses this file
+# to you under the Apache License, Version 2.0 (the
+# "License"); you may not use this file except in compliance
+# with the License.  You may obtain a copy of the License at
+#
+# http://www.apache.org/licenses/LICENSE-2.0
+#
+# Unless required by applicable law or agreed to in writing, software
+# distributed under the License is distributed on an "AS IS" BASIS,
+# WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+# See the License for the specific language governing permissions and
+# limitations under the License.
+
+# A processor speaking the json multilang protocol, which emits the number of each event with its pid. An event
+# sleeps for its delayMs field before it is synced, and an event with the exit field makes the process exit.
+import json
+import os
+import sys
+import time
+
+def readMsg():
+    lines = []
+    while True:
+        line = sys.stdin.readline()
+        if not line:
+            sys.exit(0)
+        if line[0:-1] == "end":
+            break
+        lines.append(line)
+    return json.loads("".join(lines))
+
+def sendMsgToParent(msg):
+    sys.stdout.write(json.dumps(msg) + "\nend\n")
+    sys.stdout.flush()
+
+setupInfo = readMsg()
+sendMsgToParent({"pid": os.getpid()})
+open(os.path.join(setupInfo["pidDir"], str(os.getpid())), "w").close()
+while True:
+    msg = readMsg()
+    for event in msg.get("events", [msg]):
+        values = event["fieldsAndValues"]
+        if values.get("exit"):
+            sys.exit(1)
+        time.sleep(values.get("delayMs", 0) / 1000.0)
+        sendMsgToParent({"command": "emit", "outputStream": "out",
+                         "streamlineEvent": {"fieldsAndValues": {"n": values["n"], "pid": os.getpid()},
+                                             "id": None, "sourceId": None, "sourceStream": None}})
+        sendMsgToParent({"command": "sync"})
@@ -51,6 +51,32 @@ public interface Notifier {
      */
     void notify(Notification notification);
 
+    /**
+     * <p>
+     * Invoked by the framework instead of {@link #notify(Notification)} to deliver several
+     * queued notifications at once, when the notifier is configured with a batch size
+     * greater than one. A notifier can override this to deliver the notifications as a
+     * single message (e.g. a digest email). Each notification still has to be acked or
+     * failed via the {@link NotificationContext}, and a notification that cannot be delivered
+     * should be failed on its own instead of throwing, so that the notifications already
+     * handed off are not failed with it. If this method throws, the framework fails the
+     * notifications that were neither acked nor failed.
+     * The default implementation delivers each notification with {@link #notify(Notification)}
+     * and fails the ones it throws for.
+     * </p>
+     *
+     * @param notifications the Notification objects
+     */
+    default void notify(List<Notification> notifications) {
+        for (Notification notification : notifications) {
+            try {
+                notify(notification);
+            } catch (RuntimeException ex) {
+                getContext().fail(notification.getId());
+            }
+        }
+    }
+
     /**
      * <p>
      * Invoked when a notifier is de-registered from the framework.
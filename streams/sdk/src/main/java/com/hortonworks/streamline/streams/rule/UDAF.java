@@ -53,7 +53,37 @@ public interface UDAF<A, V, R> {
     A add(A aggregate, V val);
 
     /**
-     * Returns the result of the aggregate.
+     * Return a new aggregate by removing a value previously added with {@code add} from the aggregate.
+     * This is an optional operation that allows an aggregate to be maintained incrementally over a sliding
+     * window, where the values leaving the window are removed instead of recomputing the aggregate.
+     *
+     * @param aggregate the current aggregate
+     * @param val       the value to remove
+     * @return the new aggregate
+     * @throws UnsupportedOperationException if the aggregate does not support removing values
+     */
+    default A retract(A aggregate, V val) {
+        throw new UnsupportedOperationException("retract");
+    }
+
+    /**
+     * Return an aggregate that combines two aggregates computed over disjoint groups of values, e.g. the
+     * partial aggregates computed by different tasks. This is an optional operation.
+     * Implementations may modify and return the first aggregate but must not modify the second one.
+     * Aggregates merged across tasks are sent between workers and should be serializable.
+     *
+     * @param aggregate1 the first aggregate
+     * @param aggregate2 the second aggregate
+     * @return the combined aggregate
+     * @throws UnsupportedOperationException if the aggregate does not support merging
+     */
+    default A merge(A aggregate1, A aggregate2) {
+        throw new UnsupportedOperationException("merge");
+    }
+
+    /**
+     * Returns the result of the aggregate. An aggregate maintained incrementally keeps changing after its result
+     * is emitted, so the result must not share mutable state with the aggregate.
      *
      * @param aggregate the current aggregate
      * @return the result
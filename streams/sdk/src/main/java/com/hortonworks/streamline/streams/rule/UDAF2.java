@@ -54,7 +54,38 @@ public interface UDAF2<A, V1, V2, R> {
     A add(A aggregate, V1 val1, V2 val2);
 
     /**
-     * Returns the result of the aggregate.
+     * Return a new aggregate by removing a value previously added with {@code add} from the aggregate.
+     * This is an optional operation that allows an aggregate to be maintained incrementally over a sliding
+     * window, where the values leaving the window are removed instead of recomputing the aggregate.
+     *
+     * @param aggregate the current aggregate
+     * @param val1      the value of the first argument to remove
+     * @param val2      the value of the second argument to remove
+     * @return the new aggregate
+     * @throws UnsupportedOperationException if the aggregate does not support removing values
+     */
+    default A retract(A aggregate, V1 val1, V2 val2) {
+        throw new UnsupportedOperationException("retract");
+    }
+
+    /**
+     * Return an aggregate that combines two aggregates computed over disjoint groups of values, e.g. the
+     * partial aggregates computed by different tasks. This is an optional operation.
+     * Implementations may modify and return the first aggregate but must not modify the second one.
+     * Aggregates merged across tasks are sent between workers and should be serializable.
+     *
+     * @param aggregate1 the first aggregate
+     * @param aggregate2 the second aggregate
+     * @return the combined aggregate
+     * @throws UnsupportedOperationException if the aggregate does not support merging
+     */
+    default A merge(A aggregate1, A aggregate2) {
+        throw new UnsupportedOperationException("merge");
+    }
+
+    /**
+     * Returns the result of the aggregate. An aggregate maintained incrementally keeps changing after its result
+     * is emitted, so the result must not share mutable state with the aggregate.
      *
      * @param aggregate the current aggregate
      * @return the result
@@ -114,4 +114,24 @@ public class NotificationsResource {
         throw EntityNotFoundException.byId(id);
     }
 
+    /**
+     * Returns the events with the given ids, fetched with a single multi-get, e.g. /events?id=1&id=2
+     */
+    @GET
+    @Path("/events/")
+    @Timed
+    public Response listEventsByIds(@javax.ws.rs.QueryParam("id") List<String> ids) {
+        List<StreamlineEvent> events = new ArrayList<>();
+        for (StreamlineEvent event : notificationService.getEvents(ids)) {
+            if (event != null) {
+                events.add(event);
+            }
+        }
+        if (!events.isEmpty()) {
+            return WSUtils.respondEntities(events, OK);
+        }
+
+        throw EntityNotFoundException.byFilter("id=" + ids);
+    }
+
 }
@@ -44,7 +44,7 @@ export default class EdgeConfigContainer extends Component {
             grouping: data.grouping ? data.grouping : 'SHUFFLE',
             rules: [],
             streamsArr: [],
-            groupingsArr: [{value: "SHUFFLE", label: "SHUFFLE"},{value: "FIELDS", label: "FIELDS"}],
+            groupingsArr: [{value: "SHUFFLE", label: "SHUFFLE"},{value: "FIELDS", label: "FIELDS"},{value: "PARTIAL_KEY", label: "PARTIAL_KEY"}],
             groupingFieldsArr: [],
             groupingFields: data.groupingFields ? data.groupingFields : [],
             rulesArr: [],
@@ -225,7 +225,7 @@ export default class EdgeConfigContainer extends Component {
         if(showRules && rules.length === 0){
             validDataFlag = false;
         }
-        if(grouping === 'FIELDS' && groupingFields === '') {
+        if((grouping === 'FIELDS' || grouping === 'PARTIAL_KEY') && groupingFields === '') {
             validDataFlag = false;
         }
         if(!validDataFlag)
@@ -246,7 +246,7 @@ export default class EdgeConfigContainer extends Component {
                 grouping: grouping
             }]
         };
-        if(grouping === "FIELDS")
+        if(grouping === "FIELDS" || grouping === "PARTIAL_KEY")
             edgeData.streamGroupings[0].fields = groupingFields;
         if(nodeType === 'window' || nodeType === 'rule' || nodeType === 'branch'){
             if(sourceNode.config.properties.rules && sourceNode.config.properties.rules.length > 0){
@@ -429,7 +429,7 @@ export default class EdgeConfigContainer extends Component {
                         />
                     </div>
                 </div>
-                {grouping === 'FIELDS' ?
+                {grouping === 'FIELDS' || grouping === 'PARTIAL_KEY' ?
                <div className="form-group">
                    <label>Select Fields <span className="text-danger">*</span></label>
                    <div>
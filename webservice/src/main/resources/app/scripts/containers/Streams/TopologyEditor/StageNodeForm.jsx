@@ -44,6 +44,10 @@ export default class StageFormNode extends Component{
 			entryExpirationInterval: '',
 			entryRefreshInterval: '',
 			maxCacheSize: '',
+			asyncLookups: false,
+			maxLookupBatchSize: 100,
+			lookupBatchLingerMs: 10,
+			maxInFlightLookups: 4,
 			showError: false,
 			showErrorLabel: false,
 			changedFields: []
@@ -77,6 +81,12 @@ export default class StageFormNode extends Component{
 							stateObj.entryExpirationInterval = transformObj.entryExpirationInterval;
 							stateObj.entryRefreshInterval = transformObj.entryRefreshInterval;
 							stateObj.maxCacheSize = transformObj.maxCacheSize;
+							stateObj.asyncLookups = transformObj.asyncLookups ? true : false;
+							if(transformObj.asyncLookups){
+								stateObj.maxLookupBatchSize = transformObj.maxLookupBatchSize;
+								stateObj.lookupBatchLingerMs = transformObj.lookupBatchLingerMs;
+								stateObj.maxInFlightLookups = transformObj.maxInFlightLookups;
+							}
 						}
 					}
 				}
@@ -149,6 +159,10 @@ export default class StageFormNode extends Component{
 		this.setState(obj);
 	}
 
+	changeAsyncLookups() {
+		this.setState({asyncLookups: !this.state.asyncLookups});
+	}
+
 	handleFields(arr) {
 		let fields = [];
 		let changedFields = this.state.changedFields;
@@ -165,7 +179,8 @@ export default class StageFormNode extends Component{
 	}
 
 	validateData(){
-		let {transformFields, transform, entryExpirationInterval, entryRefreshInterval, maxCacheSize, changedFields} = this.state;
+		let {transformFields, transform, entryExpirationInterval, entryRefreshInterval, maxCacheSize, asyncLookups,
+			maxLookupBatchSize, lookupBatchLingerMs, maxInFlightLookups, changedFields} = this.state;
 		let validateDataFlag = true;
 
 		if(transform !== ''){
@@ -179,6 +194,9 @@ export default class StageFormNode extends Component{
 					changedFields.push("entryRefreshInterval");
 				if(maxCacheSize === '' && changedFields.indexOf("maxCacheSize") === -1)
 					changedFields.push("maxCacheSize");
+				if(asyncLookups && (maxLookupBatchSize === '' || lookupBatchLingerMs === '' || maxInFlightLookups === '')){
+					validateDataFlag = false;
+				}
 			}
 		} else if(transform === '')
 			validateDataFlag = false;
@@ -191,7 +209,8 @@ export default class StageFormNode extends Component{
 
 	handleSave(name){
                 let {topologyId, versionId, nodeType} = this.props;
-		let {parallelism, transformFields, transform, entryExpirationInterval, entryRefreshInterval, maxCacheSize} = this.state;
+		let {parallelism, transformFields, transform, entryExpirationInterval, entryRefreshInterval, maxCacheSize,
+			asyncLookups, maxLookupBatchSize, lookupBatchLingerMs, maxInFlightLookups} = this.state;
 		let nodeId = this.nodeData.id;
                 return TopologyREST.getNode(topologyId, versionId, nodeType, nodeId)
 			.then(data=>{
@@ -221,6 +240,12 @@ export default class StageFormNode extends Component{
 						maxCacheSize: maxCacheSize,
 						transformDataProvider: {}
 					};
+					if(asyncLookups){
+						transformObj.asyncLookups = true;
+						transformObj.maxLookupBatchSize = maxLookupBatchSize;
+						transformObj.lookupBatchLingerMs = lookupBatchLingerMs;
+						transformObj.maxInFlightLookups = maxInFlightLookups;
+					}
 				}
 				stageConfigData.transforms.push(transformObj);
 
@@ -235,7 +260,8 @@ export default class StageFormNode extends Component{
 	render() {
 		let {topologyId, editMode, nodeType, nodeData, targetNodes, linkShuffleOptions} = this.props;
 		let {transformTypesArr, transformFieldsArr, transformFields, transform, parallelism,
-			entryExpirationInterval, entryRefreshInterval, maxCacheSize, showError, showErrorLabel, changedFields} = this.state;
+			entryExpirationInterval, entryRefreshInterval, maxCacheSize, asyncLookups, maxLookupBatchSize,
+			lookupBatchLingerMs, maxInFlightLookups, showError, showErrorLabel, changedFields} = this.state;
 		return (
 			<div>
 				<Tabs id="stageForm" defaultActiveKey={1} className="schema-tabs">
@@ -314,6 +340,63 @@ export default class StageFormNode extends Component{
 											inputMode="numeric"
 										/>
 									</div>
+								</div>,
+								<div key="4" className="form-group">
+									<label className="col-sm-3 control-label">Asynchronous Lookups</label>
+									<div className="col-sm-6">
+										<input
+											type="checkbox"
+											onChange={this.changeAsyncLookups.bind(this)}
+											value={asyncLookups}
+											checked={asyncLookups}
+											disabled={!editMode}
+										/>
+									</div>
+								</div>,
+								<div key="5" className="form-group">
+									<label className="col-sm-3 control-label">Max Lookup Batch Size</label>
+									<div className="col-sm-6">
+										<input
+											name="maxLookupBatchSize"
+											value={maxLookupBatchSize}
+											onChange={this.handleValueChange.bind(this)}
+											type="number"
+											className="form-control"
+										    disabled={!editMode || !asyncLookups}
+										    min="0"
+											inputMode="numeric"
+										/>
+									</div>
+								</div>,
+								<div key="6" className="form-group">
+									<label className="col-sm-3 control-label">Lookup Batch Linger (ms)</label>
+									<div className="col-sm-6">
+										<input
+											name="lookupBatchLingerMs"
+											value={lookupBatchLingerMs}
+											onChange={this.handleValueChange.bind(this)}
+											type="number"
+											className="form-control"
+										    disabled={!editMode || !asyncLookups}
+										    min="0"
+											inputMode="numeric"
+										/>
+									</div>
+								</div>,
+								<div key="7" className="form-group">
+									<label className="col-sm-3 control-label">Max In Flight Lookups</label>
+									<div className="col-sm-6">
+										<input
+											name="maxInFlightLookups"
+											value={maxInFlightLookups}
+											onChange={this.handleValueChange.bind(this)}
+											type="number"
+											className="form-control"
+										    disabled={!editMode || !asyncLookups}
+										    min="0"
+											inputMode="numeric"
+										/>
+									</div>
 								</div>]
 							: null}
                                                         {/*<div className="form-group">